@@ -0,0 +1,68 @@
+package org.grobid.core.analyzers;
+
+import org.grobid.core.layout.LayoutToken;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the SoftwareAnalyzer tokenizer on the lines of the training corpus, compared
+ * with the former StringTokenizer and regex based segmentation.
+ *
+ * Run from the project root with: ./gradlew jmh -Pbenchmark=SoftwareAnalyzerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SoftwareAnalyzerBenchmark {
+
+    private static final String REGEX = "(?<=[a-zA-Z])(?=\\d)|(?<=\\d)(?=\\D)";
+
+    private List<String> lines;
+
+    @Setup
+    public void setup() throws IOException {
+        lines = Files.readAllLines(
+            Paths.get("resources/dataset/software/corpus/all_clean_post_processed-full.holdout.tei.xml"),
+            StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void referenceTokenize(Blackhole blackhole) {
+        for (String line : lines) {
+            List<String> result = new ArrayList<>();
+            StringTokenizer st = new StringTokenizer(line, SoftwareAnalyzer.DELIMITERS, true);
+            while (st.hasMoreTokens()) {
+                String[] subtokens = st.nextToken().split(REGEX);
+                for (String subtoken : subtokens)
+                    result.add(subtoken);
+            }
+            blackhole.consume(result);
+        }
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole blackhole) {
+        for (String line : lines)
+            blackhole.consume(SoftwareAnalyzer.getInstance().tokenize(line));
+    }
+
+    @Benchmark
+    public void tokenizeWithLayoutToken(Blackhole blackhole) {
+        for (String line : lines) {
+            List<LayoutToken> tokens = SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(line);
+            blackhole.consume(tokens);
+        }
+    }
+}
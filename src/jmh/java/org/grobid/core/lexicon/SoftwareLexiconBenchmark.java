@@ -0,0 +1,162 @@
+package org.grobid.core.lexicon;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lookup latency of the lexical resources of SoftwareLexicon, with the previous storage
+ * (ArrayList scans and TreeMap of boxed doubles) and the current one (hash sets and primitive
+ * open-addressing map). The retained heap of each structure is printed at setup.
+ *
+ * Run from the project root with: ./gradlew jmh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SoftwareLexiconBenchmark {
+
+    private List<String> propertyList;
+    private Set<String> propertySet;
+    private List<String> categoryList;
+    private Set<String> categorySet;
+    private TreeMap<String, Double> idfTree;
+    private StringDoubleMap idfMap;
+
+    // queries, half of them present in the resources
+    private String[] propertyQueries;
+    private String[] categoryQueries;
+    private String[] termQueries;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> properties = readLines("resources/lexicon/softwareVoc.txt.types", false);
+        properties.addAll(readLines("resources/lexicon/softwareRelated.txt.types", false));
+        List<String> categories = readLines("resources/lexicon/softwareVoc.txt.categories", false);
+        List<String> idfLines = readLines("resources/lexicon/idf.label.en.txt.gz", true);
+
+        propertyList = measure("property values, ArrayList", () -> new ArrayList<>(properties));
+        propertySet = measure("property values, HashSet", () -> new HashSet<>(properties));
+        categoryList = measure("categories, ArrayList", () -> new ArrayList<>(categories));
+        categorySet = measure("categories, HashSet", () -> new HashSet<>(categories));
+        idfTree = measure("term idf, TreeMap<String, Double>", () -> {
+            TreeMap<String, Double> map = new TreeMap<>();
+            for (String line : idfLines) {
+                String[] pieces = line.split("\t");
+                map.put(pieces[0], Double.valueOf(pieces[1]));
+            }
+            return map;
+        });
+        idfMap = measure("term idf, StringDoubleMap", () -> {
+            StringDoubleMap map = new StringDoubleMap(idfLines.size());
+            for (String line : idfLines) {
+                String[] pieces = line.split("\t");
+                map.put(pieces[0], Double.parseDouble(pieces[1]));
+            }
+            return map;
+        });
+
+        List<String> terms = new ArrayList<>(idfTree.keySet());
+        propertyQueries = queries(properties);
+        categoryQueries = queries(categories);
+        termQueries = queries(terms);
+    }
+
+    private static List<String> readLines(String path, boolean gzip) throws IOException {
+        List<String> lines = new ArrayList<>();
+        InputStream is = new FileInputStream(path);
+        if (gzip)
+            is = new GZIPInputStream(is);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0 || (gzip && line.split("\t").length != 2))
+                    continue;
+                lines.add(gzip ? line : line.trim().toLowerCase());
+            }
+        }
+        return lines;
+    }
+
+    private static String[] queries(List<String> values) {
+        Random random = new Random(42);
+        String[] queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            // new string instances, as when looking up text from a document
+            String value = new String(values.get(random.nextInt(values.size())).toCharArray());
+            queries[i] = (i % 2 == 0) ? value : value + "#";
+        }
+        return queries;
+    }
+
+    /**
+     * Approximate retained heap of a structure, as the used heap difference around its creation
+     */
+    private static <T> T measure(String name, Supplier<T> supplier) {
+        long before = usedHeap();
+        T structure = supplier.get();
+        long after = usedHeap();
+        System.out.println(name + ": ~" + ((after - before) / 1024) + " KB retained");
+        return structure;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void propertyValuesList(Blackhole blackhole) {
+        for (String query : propertyQueries)
+            blackhole.consume(propertyList.contains(query));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void propertyValuesSet(Blackhole blackhole) {
+        for (String query : propertyQueries)
+            blackhole.consume(propertySet.contains(query));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void categoriesList(Blackhole blackhole) {
+        for (String query : categoryQueries)
+            blackhole.consume(categoryList.contains(query));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void categoriesSet(Blackhole blackhole) {
+        for (String query : categoryQueries)
+            blackhole.consume(categorySet.contains(query));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void termIdfTreeMap(Blackhole blackhole) {
+        for (String query : termQueries) {
+            Double idf = idfTree.get(query);
+            blackhole.consume(idf != null ? idf.doubleValue() : 0.0);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void termIdfPrimitiveMap(Blackhole blackhole) {
+        for (String query : termQueries)
+            blackhole.consume(idfMap.get(query, 0.0));
+    }
+}
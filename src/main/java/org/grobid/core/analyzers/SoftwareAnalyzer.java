@@ -4,8 +4,8 @@ import org.grobid.core.layout.LayoutToken;
 import org.grobid.core.lang.Language;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.StringTokenizer;
 
 /**
  * Tokenizer for all Indo-European languages and identifying software mentions.
@@ -41,13 +41,73 @@ public class SoftwareAnalyzer implements org.grobid.core.analyzers.Analyzer {
     private SoftwareAnalyzer() {
     }
 
+    // version of the segmentation, to be increased with any change of the resulting tokens: the 
+    // compiled software lexicon bundle depends on it, see SoftwareLexicon
+    public static final int VERSION = 1;
+
     public static final String DELIMITERS = " \n\r\t(（[ ^%‰°•*,:;?.!/)）-–−‐«»„=≈<>+~\"“”‘’'`$®]*\u2666\u2665\u2663\u2660\u00A0";
-    private static final String REGEX = "(?<=[a-zA-Z])(?=\\d)|(?<=\\d)(?=\\D)";
+
+    // character classes for the tokenizer
+    private static final byte OTHER = 0;
+    private static final byte DELIMITER = 1;
+    private static final byte DIGIT = 2;
+    private static final byte LETTER = 3;
+
+    private static final byte[] CHAR_CLASSES = new byte[Character.MAX_VALUE + 1];
+    static {
+        for (char c = '0'; c <= '9'; c++)
+            CHAR_CLASSES[c] = DIGIT;
+        for (char c = 'a'; c <= 'z'; c++)
+            CHAR_CLASSES[c] = LETTER;
+        for (char c = 'A'; c <= 'Z'; c++)
+            CHAR_CLASSES[c] = LETTER;
+        for (int i = 0; i < DELIMITERS.length(); i++)
+            CHAR_CLASSES[DELIMITERS.charAt(i)] = DELIMITER;
+    }
+
+    // end offsets of the tokens of the last tokenized text, reused by each thread
+    private static final ThreadLocal<int[]> TOKEN_ENDS = ThreadLocal.withInitial(() -> new int[256]);
 
     public String getName() {
         return "SoftwareAnalyzer";
     }
 
+    /**
+     * Single pass segmentation of a text, writing the end offset of each token in the thread's 
+     * reusable array and returning the number of tokens. Every delimiter character is a token, 
+     * and the other sequences of characters are split between an ASCII letter and a following 
+     * digit, and between a digit and a following non-digit character. 
+     * This is the segmentation formerly done with a StringTokenizer on the delimiters, returning 
+     * the delimiters, followed by a split on (?<=[a-zA-Z])(?=\d)|(?<=\d)(?=\D) of each token.
+     */
+    private static int segment(String text) {
+        int[] ends = TOKEN_ENDS.get();
+        int count = 0;
+        int length = text.length();
+        byte previous = DELIMITER;
+        for (int i = 0; i < length; i++) {
+            byte current = CHAR_CLASSES[text.charAt(i)];
+            boolean boundary = (i > 0) && (current == DELIMITER || previous == DELIMITER ||
+                (previous == DIGIT && current != DIGIT) || (previous == LETTER && current == DIGIT));
+            if (boundary) {
+                if (count == ends.length) {
+                    ends = Arrays.copyOf(ends, ends.length * 2);
+                    TOKEN_ENDS.set(ends);
+                }
+                ends[count++] = i;
+            }
+            previous = current;
+        }
+        if (length > 0) {
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, ends.length * 2);
+                TOKEN_ENDS.set(ends);
+            }
+            ends[count++] = length;
+        }
+        return count;
+    }
+
     public List<String> tokenize(String text) {
         // TBD: if we want to support non Indo-European languages, we should make the tokenization
         // language specific
@@ -55,34 +115,28 @@ public class SoftwareAnalyzer implements org.grobid.core.analyzers.Analyzer {
     }
 
     public List<String> tokenize(String text, Language lang) {
-        List<String> result = new ArrayList<>();
-        StringTokenizer st = new StringTokenizer(text, DELIMITERS, true);
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            // in addition we split "letter" characters and digits
-            String[] subtokens = token.split(REGEX);
-            for (int i = 0; i < subtokens.length; i++) {
-                result.add(subtokens[i]);
-            }
+        int count = segment(text);
+        int[] ends = TOKEN_ENDS.get();
+        List<String> result = new ArrayList<>(count);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            result.add(text.substring(start, ends[i]));
+            start = ends[i];
         }
         return result;
     }
 
     public List<LayoutToken> tokenizeWithLayoutToken(String text) {
-        List<LayoutToken> result = new ArrayList<>();
-        StringTokenizer st = new StringTokenizer(text, DELIMITERS, true);
-        int ind = 0;
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            // in addition we split "letter" characters and digits
-            String[] subtokens = token.split(REGEX);
-            for (int i = 0; i < subtokens.length; i++) {
-                LayoutToken layoutToken = new LayoutToken();
-                layoutToken.setText(subtokens[i]);
-                layoutToken.setOffset(ind);
-                result.add(layoutToken);
-                ind += layoutToken.getText().length();
-            }
+        int count = segment(text);
+        int[] ends = TOKEN_ENDS.get();
+        List<LayoutToken> result = new ArrayList<>(count);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            LayoutToken layoutToken = new LayoutToken();
+            layoutToken.setText(text.substring(start, ends[i]));
+            layoutToken.setOffset(start);
+            result.add(layoutToken);
+            start = ends[i];
         }
 
         return result;
@@ -97,7 +151,7 @@ public class SoftwareAnalyzer implements org.grobid.core.analyzers.Analyzer {
     }
 
     public List<LayoutToken> retokenizeLayoutTokens(List<LayoutToken> tokens) {
-        List<LayoutToken> result = new ArrayList<>();
+        List<LayoutToken> result = new ArrayList<>(tokens.size());
         for (LayoutToken token : tokens) {
             result.addAll(tokenize(token));
         }
@@ -105,21 +159,18 @@ public class SoftwareAnalyzer implements org.grobid.core.analyzers.Analyzer {
     }
 
     public List<LayoutToken> tokenize(LayoutToken chunk) {
-        List<LayoutToken> result = new ArrayList<>();
         String text = chunk.getText();
-        StringTokenizer st = new StringTokenizer(text, DELIMITERS, true);
-        int ind = chunk.getOffset();
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            // in addition we split "letter" characters and digits
-            String[] subtokens = token.split(REGEX);
-            for (int i = 0; i < subtokens.length; i++) {
-                LayoutToken theChunk = new LayoutToken(chunk); // deep copy
-                theChunk.setText(subtokens[i]);
-                theChunk.setOffset(ind);
-                result.add(theChunk);
-                ind += theChunk.getText().length();
-            }
+        int count = segment(text);
+        int[] ends = TOKEN_ENDS.get();
+        List<LayoutToken> result = new ArrayList<>(count);
+        int offset = chunk.getOffset();
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            LayoutToken theChunk = new LayoutToken(chunk); // deep copy
+            theChunk.setText(text.substring(start, ends[i]));
+            theChunk.setOffset(offset + start);
+            result.add(theChunk);
+            start = ends[i];
         }
 
         return result;
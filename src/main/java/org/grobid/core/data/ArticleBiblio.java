@@ -1,9 +1,9 @@
 package org.grobid.core.data;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.grobid.core.utilities.SoftwareResultSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.NodeList;
@@ -12,6 +12,7 @@ import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -73,47 +74,21 @@ public class ArticleBiblio {
      * Convert this ArticleBiblio to JSON string for API response
      */
     public String toJson() {
-        ObjectMapper mapper = new ObjectMapper();
-        StringBuilder json = new StringBuilder();
-        boolean hasField = false;
-
-        json.append("\"biblio\": {");
-
-        // Add DOI if available
-        if (StringUtils.isNotBlank(doi)) {
-            json.append("\"doi\": ");
-            try {
-                json.append(mapper.writeValueAsString(doi));
-            } catch (JsonProcessingException e) {
-                json.append("\"\"");
-            }
-            hasField = true;
-        }
-
-        // Add title if available
-        if (StringUtils.isNotBlank(title)) {
-            if (hasField) json.append(", ");
-            json.append("\"title\": ");
-            try {
-                json.append(mapper.writeValueAsString(title));
-            } catch (JsonProcessingException e) {
-                json.append("\"\"");
-            }
-            hasField = true;
-        }
-
-        // Add authors if available
-        if (StringUtils.isNotBlank(authors)) {
-            if (hasField) json.append(", ");
-            try {
-                json.append("\"authors\": ").append(mapper.writeValueAsString(authors));
-            } catch (JsonProcessingException e) {
-                json.append("\"authors\": \"\"");
-            }
-        }
+        return "\"biblio\": " + SoftwareResultSerializer.toJsonString(this::writeJson);
+    }
 
-        json.append("}");
-        return json.toString();
+    /**
+     * Write the article metadata as a JSON object, only with the available fields
+     */
+    public void writeJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        if (StringUtils.isNotBlank(doi))
+            gen.writeStringField("doi", doi);
+        if (StringUtils.isNotBlank(title))
+            gen.writeStringField("title", title);
+        if (StringUtils.isNotBlank(authors))
+            gen.writeStringField("authors", authors);
+        gen.writeEndObject();
     }
 
     /**
@@ -168,25 +143,32 @@ public class ArticleBiblio {
             String doi = extractDOI(teiDocument, xpath);
             List<Person> authors = extractAuthors(teiDocument, xpath);
 
-            LOGGER.debug("Extracted from TEI: title='{}', doi='{}', authors={}", title, doi, authors.size());
-
-            ArticleBiblio articleMetadata = new ArticleBiblio();
-            articleMetadata.setDoi(doi);
-            articleMetadata.setTitle(title);
-
-            if (CollectionUtils.isNotEmpty(authors)) {
-                articleMetadata.setAuthors(formatAuthors(authors));
-            }
-
-            boolean hasContent = articleMetadata.hasContent();
-            LOGGER.debug("Article metadata has content: {}, result: {}", hasContent, articleMetadata);
-            return hasContent ? Optional.of(articleMetadata) : Optional.empty();
+            return fromTeiHeader(title, doi, authors);
         } catch (Exception e) {
             LOGGER.error("Error extracting article metadata from TEI document", e);
             return Optional.empty();
         }
     }
 
+    /**
+     * Create MetadataArticle from the title, DOI and authors extracted from a TEI header
+     */
+    public static Optional<ArticleBiblio> fromTeiHeader(String title, String doi, List<Person> authors) {
+        LOGGER.debug("Extracted from TEI: title='{}', doi='{}', authors={}", title, doi, authors.size());
+
+        ArticleBiblio articleMetadata = new ArticleBiblio();
+        articleMetadata.setDoi(doi);
+        articleMetadata.setTitle(title);
+
+        if (CollectionUtils.isNotEmpty(authors)) {
+            articleMetadata.setAuthors(formatAuthors(authors));
+        }
+
+        boolean hasContent = articleMetadata.hasContent();
+        LOGGER.debug("Article metadata has content: {}, result: {}", hasContent, articleMetadata);
+        return hasContent ? Optional.of(articleMetadata) : Optional.empty();
+    }
+
     private static String extractTitle(org.w3c.dom.Document doc, XPath xpath) {
         try {
             // Try multiple possible title paths with namespace
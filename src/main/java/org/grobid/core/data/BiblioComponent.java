@@ -1,12 +1,11 @@
 package org.grobid.core.data;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.grobid.core.layout.BoundingBox;
-import org.grobid.core.utilities.TextUtilities;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 /**
  *  Representation of the bibliographical reference element for a software mention.
  *  The component represent the reference callout (position) and its matched full  
@@ -52,19 +51,12 @@ public class BiblioComponent extends SoftwareComponent {
         return refKey;
     }
 
-    public String toJson() {
-        ObjectMapper mapper = new ObjectMapper();
-        
-        StringBuffer buffer = new StringBuffer();
-        buffer.append("{ ");
-                
-        try {
-            buffer.append("\"label\" : " + mapper.writeValueAsString(rawForm));
-        } catch (JsonProcessingException e) {
-            buffer.append("\"label\" : \"" + "JsonProcessingException" + "\"");
-        }
+    @Override
+    public void writeJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("label", rawForm);
         if (normalizedForm != null)
-            buffer.append(", \"normalizedForm\" : \"" + normalizedForm + "\"");
+            gen.writeStringField("normalizedForm", normalizedForm);
 
         /*if (biblio != null) {
             try {
@@ -73,42 +65,11 @@ public class BiblioComponent extends SoftwareComponent {
                 logger.warn("tei for biblio cannot be encoded", e);
             }
         }*/
-        buffer.append(", \"refKey\": " + refKey);
-
-        // knowledge information
-        if (wikidataId != null) {
-            buffer.append(", \"wikidataId\": \"" + wikidataId + "\"");
-        }
-        if (wikipediaExternalRef != -1) {
-            buffer.append(", \"wikipediaExternalRef\": " + wikipediaExternalRef);
-        }
-        if (lang != null) {
-            buffer.append(", \"lang\": \"" + lang + "\"");
-        }
-        if (disambiguationScore != null) {
-            buffer.append(", \"confidence\": " + TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
-        }
+        gen.writeNumberField("refKey", refKey);
 
-        if (offsets != null) {
-            buffer.append(", \"offsetStart\" : " + offsets.start);
-            buffer.append(", \"offsetEnd\" : " + offsets.end);  
-        }
-
-        if ( (boundingBoxes != null) && (boundingBoxes.size() > 0) ) {
-            buffer.append(", \"boundingBoxes\" : [");
-            boolean first = true;
-            for (BoundingBox box : boundingBoxes) {
-                if (first)
-                    first = false;
-                else
-                    buffer.append(",");
-                buffer.append("{").append(box.toJson()).append("}");
-            }
-            buffer.append("] ");
-        }
-        
-        buffer.append(" }");
-        return buffer.toString();
+        writeKnowledgeFields(gen);
+        writePositionFields(gen);
+        gen.writeEndObject();
     }
 
 }   
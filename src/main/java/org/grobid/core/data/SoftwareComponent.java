@@ -7,9 +7,11 @@ import org.grobid.core.lexicon.SoftwareLexicon;
 import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.grobid.core.utilities.SoftwareResultSerializer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -219,21 +221,14 @@ public class SoftwareComponent extends KnowledgeEntity implements Comparable<Sof
 	}
 	
 	public String toJson() {
-		ObjectMapper mapper = new ObjectMapper();
-		
-		StringBuffer buffer = new StringBuffer();
-		buffer.append("{ ");
-		try {
-			buffer.append("\"rawForm\" : " + mapper.writeValueAsString(rawForm));
-		} catch (JsonProcessingException e) {
-			buffer.append("\"rawForm\" : \"" + "JsonProcessingException" + "\"");
-		}
+		return SoftwareResultSerializer.toJsonString(this::writeJson);
+	}
+
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		gen.writeStringField("rawForm", rawForm);
 		if (normalizedForm != null) {
-			try {
-				buffer.append(", \"normalizedForm\" : " + mapper.writeValueAsString(normalizedForm));
-			} catch (JsonProcessingException e) {
-				logger.warn("could not serialize in JSON the normalized form: " + normalizedForm);
-			}
+			gen.writeStringField("normalizedForm", normalizedForm);
 		}
 		/*if (label != null) {
 			String componentType = label.getLabel();
@@ -244,42 +239,56 @@ public class SoftwareComponent extends KnowledgeEntity implements Comparable<Sof
 			buffer.append(", \"component-type\" : \"" + componentType + "\"");	
 		}*/
 
-		// knowledge information
+		writeKnowledgeFields(gen);
+		writePositionFields(gen);
+		gen.writeEndObject();
+	}
+
+	/**
+	 * Write the disambiguation information of the component in the current JSON object
+	 */
+	protected void writeKnowledgeFields(JsonGenerator gen) throws IOException {
 		if (wikidataId != null) {
-			buffer.append(", \"wikidataId\": \"" + wikidataId + "\"");
+			gen.writeStringField("wikidataId", wikidataId);
 		}
 		if (wikipediaExternalRef != -1) {
-			buffer.append(", \"wikipediaExternalRef\": " + wikipediaExternalRef);
+			gen.writeNumberField("wikipediaExternalRef", wikipediaExternalRef);
 		}
 		if (lang != null) {
-			buffer.append(", \"lang\": \"" + lang + "\"");
+			gen.writeStringField("lang", lang);
 		}
 		if (disambiguationScore != null) {
-			buffer.append(", \"confidence\": " + TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
+			gen.writeFieldName("confidence");
+			// binary formats have no textual number representation, the score is rounded instead
+			if (gen.canWriteFormattedNumbers())
+				gen.writeNumber(TextUtilities.formatFourDecimals(disambiguationScore.doubleValue()));
+			else
+				gen.writeNumber(Math.round(disambiguationScore.doubleValue() * 10000.0) / 10000.0);
 		}
+	}
 
+	/**
+	 * Write the offsets and the bounding boxes of the component in the current JSON object
+	 */
+	protected void writePositionFields(JsonGenerator gen) throws IOException {
 		if (offsets != null) {
-			buffer.append(", \"offsetStart\" : " + offsets.start);
-			buffer.append(", \"offsetEnd\" : " + offsets.end);	
+			gen.writeNumberField("offsetStart", offsets.start);
+			gen.writeNumberField("offsetEnd", offsets.end);
 		}
-		
-		//buffer.append(", \"conf\" : \"" + conf + "\"");
-		
+
 		if ( (boundingBoxes != null) && (boundingBoxes.size() > 0) ) {
-			buffer.append(", \"boundingBoxes\" : [");
-			boolean first = true;
+			gen.writeArrayFieldStart("boundingBoxes");
 			for (BoundingBox box : boundingBoxes) {
-				if (first)
-					first = false;
-				else
-					buffer.append(",");
-				buffer.append("{").append(box.toJson()).append("}");
+				gen.writeStartObject();
+				gen.writeNumberField("p", box.getPage());
+				gen.writeNumberField("x", box.getX());
+				gen.writeNumberField("y", box.getY());
+				gen.writeNumberField("w", box.getWidth());
+				gen.writeNumberField("h", box.getHeight());
+				gen.writeEndObject();
 			}
-			buffer.append("] ");
+			gen.writeEndArray();
 		}
-		
-		buffer.append(" }");
-		return buffer.toString();
 	}
 	
     public String toString() {
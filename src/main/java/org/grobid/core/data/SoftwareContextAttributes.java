@@ -1,8 +1,9 @@
 package org.grobid.core.data;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.grobid.core.utilities.SoftwareResultSerializer;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -85,11 +86,30 @@ public class SoftwareContextAttributes {
     }
 
     public String toJson() {
-        StringBuffer buffer = new StringBuffer();
-        buffer.append("{\"used\" : { \"value\": " + this.used + ", \"score\": " + this.usedScore + "}");
-        buffer.append(", \"created\" : { \"value\": " + this.created + ", \"score\": " + this.createdScore + "}");
-        buffer.append(", \"shared\" : { \"value\": " + this.shared + ", \"score\": " + this.sharedScore + "}}");
-        return buffer.toString();
+        return SoftwareResultSerializer.toJsonString(this::writeJson);
+    }
+
+    public void writeJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        writeAttribute(gen, "used", used, usedScore);
+        writeAttribute(gen, "created", created, createdScore);
+        writeAttribute(gen, "shared", shared, sharedScore);
+        gen.writeEndObject();
+    }
+
+    private static void writeAttribute(JsonGenerator gen, String name, Boolean value, Double score) throws IOException {
+        gen.writeObjectFieldStart(name);
+        gen.writeFieldName("value");
+        if (value == null)
+            gen.writeNull();
+        else
+            gen.writeBoolean(value);
+        gen.writeFieldName("score");
+        if (score == null)
+            gen.writeNull();
+        else
+            gen.writeNumber(score);
+        gen.writeEndObject();
     }
 
 }
\ No newline at end of file
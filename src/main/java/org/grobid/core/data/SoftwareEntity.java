@@ -1,7 +1,6 @@
 package org.grobid.core.data;
 
 import org.grobid.core.utilities.OffsetPosition;
-import org.grobid.core.utilities.TextUtilities;
 import org.grobid.core.lexicon.SoftwareLexicon;
 import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
@@ -9,10 +8,11 @@ import org.grobid.core.engines.label.SoftwareTaggingLabels;
 import org.grobid.core.engines.label.TaggingLabel;
 import org.grobid.core.engines.label.TaggingLabels;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.grobid.core.utilities.SoftwareResultSerializer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -434,69 +434,56 @@ public class SoftwareEntity extends KnowledgeEntity implements Comparable<Softwa
 		return this.getSoftwareName().compareTo(theEntity.getSoftwareName());
 	}
 
-	public String toJson() {		
+	public String toJson() {
+		return SoftwareResultSerializer.toJsonString(this::writeJson);
+	}
+
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
 		if (this.softwareName == null) {
-			return "{}";
+			gen.writeEndObject();
+			return;
 		}
-		JsonStringEncoder encoder = JsonStringEncoder.getInstance();
-		byte[] encoded = null;
-		String output = null;
 
-		StringBuffer buffer = new StringBuffer();
-		buffer.append("{ ");
-
-		buffer.append("\"type\": \"software\"");
+		gen.writeStringField("type", "software");
 
 		// type of the software
 		if (type != null) {
-			buffer.append(", \"software-type\": \"");
-			encoded = encoder.quoteAsUTF8(type.getName());
-            output = new String(encoded);
-            buffer.append(output).append("\"");
+			gen.writeStringField("software-type", type.getName());
 		}
 
 		// knowledge information
-		if (softwareName.getWikidataId() != null) {
-			buffer.append(", \"wikidataId\": \"" + softwareName.getWikidataId() + "\"");
-		}
-		if (softwareName.getWikipediaExternalRef() != -1) {
-			buffer.append(", \"wikipediaExternalRef\": " + softwareName.getWikipediaExternalRef());
-		}
-		if (softwareName.getLang() != null) {
-			buffer.append(", \"lang\": \"" + softwareName.getLang() + "\"");
-		}
-		if (softwareName.getDisambiguationScore() != null) {
-			buffer.append(", \"confidence\": " + TextUtilities.formatFourDecimals(softwareName.getDisambiguationScore().doubleValue()));
-		}
+		softwareName.writeKnowledgeFields(gen);
 
-		buffer.append(", \"software-name\": ");
-		buffer.append(softwareName.toJson());
+		gen.writeFieldName("software-name");
+		softwareName.writeJson(gen);
 		
 		if (entityId != null) {
-			buffer.append(", \"id\": \"" + entityId + "\"");	
+			gen.writeStringField("id", entityId);
 		}
 		if (version != null) {
-			buffer.append(", \"version\":" + version.toJson());
+			gen.writeFieldName("version");
+			version.writeJson(gen);
 		}
 		if (creator != null) {
-			buffer.append(", \"publisher\":" + creator.toJson());
+			gen.writeFieldName("publisher");
+			creator.writeJson(gen);
 		}
 		if (softwareURL != null) {
-			buffer.append(", \"url\":" + softwareURL.toJson());
+			gen.writeFieldName("url");
+			softwareURL.writeJson(gen);
 		}
 		if (language != null) {
-			buffer.append(", \"language\":" + language.toJson());
+			gen.writeFieldName("language");
+			language.writeJson(gen);
 		}
 
 		if (inDataAvailabilitySection) {
-            buffer.append(", \"inDataAvailabilitySection\" : true");
-        }
+			gen.writeBooleanField("inDataAvailabilitySection", true);
+		}
 
 		if (context != null && context.length()>0) {
-			//encoded = encoder.quoteAsUTF8(context.replace("\n", " ").replace("  ", " "));
-            encoded = encoder.quoteAsUTF8(context);
-            output = new String(encoded);
-			buffer.append(", \"context\" : \"" + output + "\"");
+			gen.writeStringField("context", context);
 		
 			/*if (globalContextOffset != -1) {
 				buffer.append(", \"contextOffset\" : " + globalContextOffset);
@@ -505,40 +492,31 @@ public class SoftwareEntity extends KnowledgeEntity implements Comparable<Softwa
 
 		if (paragraph != null && paragraph.length()>0) {
 			if (paragraphContextOffset != -1) {
-				buffer.append(", \"contextOffset\": " + paragraphContextOffset);
+				gen.writeNumberField("contextOffset", paragraphContextOffset);
 			}
-
-			//encoded = encoder.quoteAsUTF8(paragraph.replace("\n", " ").replace("  ", " "));
-			encoded = encoder.quoteAsUTF8(paragraph);
-            output = new String(encoded);
-			buffer.append(", \"paragraph\": \"" + output + "\"");
+			gen.writeStringField("paragraph", paragraph);
 		}
 
 		if (mentionContextAttributes != null) {
-			buffer.append(", \"mentionContextAttributes\": " + mentionContextAttributes.toJson());
+			gen.writeFieldName("mentionContextAttributes");
+			mentionContextAttributes.writeJson(gen);
 		}
 
 		if (documentContextAttributes != null) {
-			buffer.append(", \"documentContextAttributes\": " + documentContextAttributes.toJson());
+			gen.writeFieldName("documentContextAttributes");
+			documentContextAttributes.writeJson(gen);
 		}
 
 		if (bibRefs != null) {
-			buffer.append(", \"references\": ["); 
-			boolean first = true;
+			gen.writeArrayFieldStart("references");
 			for(BiblioComponent bibRef : bibRefs) {
 				if (bibRef.getBiblio() == null)
 					continue;
-				if (!first)
-					buffer.append(", ");
-				else
-					first = false;
-				buffer.append(bibRef.toJson());
+				bibRef.writeJson(gen);
 			}
-
-			buffer.append(" ] ");
+			gen.writeEndArray();
 		}
 
-		buffer.append(" }");
-		return buffer.toString();
+		gen.writeEndObject();
 	}
 }
\ No newline at end of file
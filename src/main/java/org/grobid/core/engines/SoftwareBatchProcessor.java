@@ -0,0 +1,350 @@
+package org.grobid.core.engines;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.grobid.core.data.ArticleBiblio;
+import org.grobid.core.data.BibDataSet;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.document.Document;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.utilities.SoftwareResultSerializer;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Document-level parallel batch processing of a directory of PDF, TEI or publisher XML files.
+ *
+ * Input files are pushed in a bounded work queue consumed by a pool of worker threads sharing
+ * the singleton SoftwareParser and its models. The result for each input file is written as
+ * JSON or CBOR in the output directory (same relative path as the input file, with the extension
+ * .software.json or .software.cbor). Files with an existing result are skipped, so an interrupted
+ * run can simply be restarted. Throughput (documents/s and tokens/s) and failures are logged along the processing.
+ */
+public class SoftwareBatchProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftwareBatchProcessor.class);
+
+    // interval between two progress reports in seconds
+    private static final long REPORT_INTERVAL = 30;
+
+    // end of queue marker for the workers
+    private static final File END_OF_QUEUE = new File("");
+
+    public enum InputType {
+        PDF     (".pdf"),
+        TEI     (".tei.xml"),
+        XML     (".xml");
+
+        private String extension;
+
+        private InputType(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Return true if the file can be processed for this type of input. Note that TEI files
+         * are excluded from the XML input type, so that TEI produced by a previous run in the
+         * same directory are not processed as publisher XML.
+         */
+        public boolean accept(File file) {
+            String name = file.getName().toLowerCase();
+            switch (this) {
+                case PDF:
+                    return name.endsWith(".pdf");
+                case TEI:
+                    return name.endsWith(".tei.xml") || name.endsWith(".tei");
+                case XML:
+                    return (name.endsWith(".xml") || name.endsWith(".nxml")) && !name.endsWith(".tei.xml");
+            }
+            return false;
+        }
+    }
+
+    private final SoftwareParser parser;
+    private final InputType inputType;
+    private final int nbThreads;
+
+    private boolean disambiguate = false;
+    private boolean addParagraphContext = false;
+    private Format outputFormat = Format.JSON;
+
+    // progress counters
+    private final AtomicInteger processedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicLong processingTime = new AtomicLong();
+    private long startTime;
+    private long startTokenCount;
+
+    public SoftwareBatchProcessor(SoftwareParser parser, InputType inputType, int nbThreads) {
+        this.parser = parser;
+        this.inputType = inputType;
+        this.nbThreads = Math.max(1, nbThreads);
+    }
+
+    public void setDisambiguate(boolean disambiguate) {
+        this.disambiguate = disambiguate;
+    }
+
+    public void setAddParagraphContext(boolean addParagraphContext) {
+        this.addParagraphContext = addParagraphContext;
+    }
+
+    public void setOutputFormat(Format outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    public int getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Process all the files of the input directory corresponding to the input type.
+     *
+     * @return the number of successfully processed files
+     */
+    public int process(File inputDirectory, File outputDirectory, boolean isRecursive) {
+        if (inputDirectory == null || !inputDirectory.isDirectory()) {
+            throw new GrobidException("Cannot process batch because input directory can not be accessed: " + inputDirectory);
+        }
+        if (outputDirectory == null) {
+            throw new GrobidException("Cannot process batch because output directory is invalid: " + outputDirectory);
+        }
+        if (!outputDirectory.exists() && !outputDirectory.mkdirs()) {
+            throw new GrobidException("Cannot process batch because output directory can not be created: " + outputDirectory);
+        }
+
+        startTime = System.currentTimeMillis();
+        startTokenCount = parser.getLabeledTokenCount();
+
+        BlockingQueue<File> queue = new ArrayBlockingQueue<>(nbThreads * 4);
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(runnable, "software-batch-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < nbThreads; i++) {
+            workers.submit(() -> work(queue, inputDirectory, outputDirectory));
+        }
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "software-batch-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.SECONDS);
+
+        LOGGER.info("Batch processing of " + inputType + " files in " + inputDirectory.getPath() +
+            " with " + nbThreads + " threads");
+        try {
+            enqueue(queue, inputDirectory, inputDirectory, outputDirectory, isRecursive);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Batch processing interrupted, stopping after the documents under processing");
+        } finally {
+            try {
+                for (int i = 0; i < nbThreads; i++) {
+                    queue.put(END_OF_QUEUE);
+                }
+                workers.shutdown();
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                workers.shutdownNow();
+            }
+            reporter.shutdownNow();
+        }
+
+        report();
+        return processedCount.get();
+    }
+
+    private void enqueue(BlockingQueue<File> queue,
+                         File inputRoot,
+                         File directory,
+                         File outputRoot,
+                         boolean isRecursive) throws InterruptedException {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        // deterministic order, so that restarted runs process the files in the same order
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (isRecursive)
+                    enqueue(queue, inputRoot, file, outputRoot, isRecursive);
+                continue;
+            }
+            if (!inputType.accept(file))
+                continue;
+            if (getOutputFile(inputRoot, outputRoot, file).exists()) {
+                skippedCount.incrementAndGet();
+                continue;
+            }
+            queue.put(file);
+        }
+    }
+
+    private void work(BlockingQueue<File> queue, File inputRoot, File outputRoot) {
+        while (true) {
+            File file;
+            try {
+                file = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (file == END_OF_QUEUE)
+                return;
+
+            long start = System.currentTimeMillis();
+            try {
+                writeResult(file, getOutputFile(inputRoot, outputRoot, file));
+                processedCount.incrementAndGet();
+            } catch (Throwable e) {
+                // we keep going with the other files
+                failedCount.incrementAndGet();
+                LOGGER.error("Processing of " + file.getPath() + " failed", e);
+            }
+            processingTime.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Process a single file and write the result in the output format of the processor
+     */
+    public void processFile(File file, OutputStream output) throws Exception {
+        String md5 = md5(file);
+        long start = System.currentTimeMillis();
+        switch (inputType) {
+            case PDF: {
+                Pair<List<SoftwareEntity>, Document> result =
+                    parser.processPDF(file, disambiguate, addParagraphContext);
+                long end = System.currentTimeMillis();
+                SoftwareResultSerializer.write(output, outputFormat, result.getLeft(), result.getRight(), md5, end - start);
+                break;
+            }
+            case TEI: {
+                Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> result =
+                    parser.processTEI(file, disambiguate, addParagraphContext);
+                long end = System.currentTimeMillis();
+                if (result == null)
+                    throw new GrobidException("TEI processing failed for " + file.getPath());
+                SoftwareResultSerializer.write(output, outputFormat,
+                    result.getLeft(), result.getMiddle(), result.getRight(), md5, end - start);
+                break;
+            }
+            case XML: {
+                Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> result =
+                    parser.processXML(file, disambiguate, addParagraphContext);
+                long end = System.currentTimeMillis();
+                if (result == null)
+                    throw new GrobidException("XML processing failed for " + file.getPath());
+                SoftwareResultSerializer.write(output, outputFormat,
+                    result.getLeft(), result.getMiddle(), result.getRight(), md5, end - start);
+                break;
+            }
+        }
+    }
+
+    /**
+     * The output file mirrors the relative path of the input file in the output directory
+     */
+    private File getOutputFile(File inputRoot, File outputRoot, File file) {
+        String relativePath = inputRoot.toPath().relativize(file.toPath()).toString();
+        String lowerPath = relativePath.toLowerCase();
+        if (inputType == InputType.TEI && lowerPath.endsWith(".tei.xml")) {
+            relativePath = relativePath.substring(0, relativePath.length() - 8);
+        } else {
+            int ind = relativePath.lastIndexOf('.');
+            if (ind > relativePath.lastIndexOf(File.separatorChar))
+                relativePath = relativePath.substring(0, ind);
+        }
+        return new File(outputRoot, relativePath + outputFormat.getExtension());
+    }
+
+    /**
+     * Process a file and write its result in a temporary file first, then move it to the final output path,
+     * so that an interrupted run never leaves a partial result that would be skipped later
+     */
+    private void writeResult(File file, File outputFile) throws Exception {
+        File parent = outputFile.getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+        File tmpFile = new File(parent, outputFile.getName() + ".tmp");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath()))) {
+            processFile(file, output);
+        } catch (Exception e) {
+            Files.deleteIfExists(tmpFile.toPath());
+            throw e;
+        }
+        try {
+            Files.move(tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String md5(File file) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : md.digest()) {
+            hex.append(String.format("%02X", b));
+        }
+        return hex.toString();
+    }
+
+    private void report() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        int processed = processedCount.get();
+        long tokens = parser.getLabeledTokenCount() - startTokenCount;
+        double docsPerSecond = processed * 1000.0 / elapsed;
+        double tokensPerSecond = tokens * 1000.0 / elapsed;
+        double averageTime = (processed + failedCount.get()) > 0 ?
+            processingTime.get() / (double)(processed + failedCount.get()) : 0.0;
+        LOGGER.info(String.format("%d documents processed, %d failed, %d skipped (existing result) in %.1f s - " +
+            "%.2f docs/s, %.0f tokens/s, %.0f ms/doc per thread",
+            processed, failedCount.get(), skippedCount.get(), elapsed / 1000.0,
+            docsPerSecond, tokensPerSecond, averageTime));
+    }
+}
@@ -1,5 +1,6 @@
 package org.grobid.core.engines;
 
+import java.io.IOException;
 import java.util.*;
 
 import org.apache.commons.io.FileUtils;
@@ -59,7 +60,11 @@ public class SoftwareContextClassifier {
     private Boolean useBinary; 
 
     private SoftwareConfiguration softwareConfiguration;
-    private JsonParser parser;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // micro-batching of the classification calls across concurrent requests
+    private MicroBatchScheduler<String, ContextScores> classificationScheduler = null;
 
     private static volatile SoftwareContextClassifier instance;
 
@@ -92,7 +97,9 @@ public class SoftwareContextClassifier {
      * Create a new instance.
      */
     private static synchronized void getNewInstance(SoftwareConfiguration configuration) {
-        instance = new SoftwareContextClassifier(configuration);
+        // the instance may have been created by a concurrent call
+        if (instance == null)
+            instance = new SoftwareContextClassifier(configuration);
     }
 
     private SoftwareContextClassifier(SoftwareConfiguration configuration) {
@@ -113,6 +120,19 @@ public class SoftwareContextClassifier {
         } else {
             this.classifier = new DeLFTClassifierModel("context", parameter.delft.architecture);
         }
+
+        this.classificationScheduler = MicroBatchScheduler.create("context", configuration, 
+            new MicroBatchScheduler.BatchProcessor<String, ContextScores>() {
+                @Override
+                public ContextScores process(List<String> contexts) throws Exception {
+                    return classifyDistinctContexts(contexts);
+                }
+
+                @Override
+                public ContextScores slice(ContextScores result, int from, int to) {
+                    return result.slice(from, to);
+                }
+            });
     }
 
     /**
@@ -153,261 +173,264 @@ public class SoftwareContextClassifier {
     }
 
     /**
-     * Process the contexts of a set of entities identified in a document. Each context is
-     * classified and a global decision is realized at document-level using all the mentioned 
-     * contexts corresponding to the same software.  
-     * 
-     * This method uses one multi-class, multi-label classifier.
-     * 
-     **/
-    public List<SoftwareEntity> classifyDocumentContexts(List<SoftwareEntity> entities) {
+     * Scores of the context classes (used, created, shared) for a batch of contexts, in flat
+     * primitive arrays with one value per context and class.
+     */
+    public static class ContextScores {
+        public static final int USED = 0;
+        public static final int CREATED = 1;
+        public static final int SHARED = 2;
+        private static final int NB_CLASSES = 3;
+
+        private final int size;
+        private final double[] scores;
+        private final boolean[] positives;
+        // classes for which a prediction is available
+        private final boolean[] available = new boolean[NB_CLASSES];
+
+        public ContextScores(int size) {
+            this.size = size;
+            this.scores = new double[size * NB_CLASSES];
+            this.positives = new boolean[size * NB_CLASSES];
+        }
 
-        if (this.useBinary)
-            return classifyDocumentContextsBinary(entities);
+        public int size() {
+            return size;
+        }
 
-        List<String> contexts = new ArrayList<>();
-        for(SoftwareEntity entity : entities) {
-            if (entity.getContext() != null && entity.getContext().length()>0) {
-                String localContext = TextUtilities.dehyphenize(entity.getContext());
-                localContext = localContext.replace("\n", " ");
-                localContext = localContext.replaceAll("( )+", " ");
-                contexts.add(localContext);
+        public boolean isAvailable(int contextClass) {
+            return available[contextClass];
+        }
+
+        public boolean hasPredictions() {
+            return available[USED] || available[CREATED] || available[SHARED];
+        }
+
+        public double getScore(int index, int contextClass) {
+            return scores[index * NB_CLASSES + contextClass];
+        }
+
+        public boolean isPositive(int index, int contextClass) {
+            return positives[index * NB_CLASSES + contextClass];
+        }
+
+        /**
+         * Set the prediction of a class for a context. For a binary classifier, the score of the
+         * negative class is also given, otherwise it is NaN.
+         */
+        void set(int index, int contextClass, double positiveScore, double negativeScore) {
+            int position = index * NB_CLASSES + contextClass;
+            if (Double.isNaN(negativeScore)) {
+                scores[position] = positiveScore;
+                positives[position] = positiveScore > 0.5;
             } else {
-                // dummy place holder
-                contexts.add("");
+                scores[position] = (positiveScore > negativeScore) ? positiveScore : 1 - negativeScore;
+                positives[position] = positiveScore > 0.5 && positiveScore > negativeScore;
             }
+            available[contextClass] = true;
         }
 
-        String results = null;
-        try {
-            results = classify(contexts, MODEL_TYPE.all);
-        } catch(Exception e) {
-            LOGGER.error("fail to classify document's set of contexts", e);
-            return entities;
+        /**
+         * Set the available predictions for a context in the given context attributes
+         */
+        public void applyTo(int index, SoftwareContextAttributes contextAttributes) {
+            if (available[USED]) {
+                contextAttributes.setUsedScore(getScore(index, USED));
+                contextAttributes.setUsed(isPositive(index, USED));
+            }
+            if (available[CREATED]) {
+                contextAttributes.setCreatedScore(getScore(index, CREATED));
+                contextAttributes.setCreated(isPositive(index, CREATED));
+            }
+            if (available[SHARED]) {
+                contextAttributes.setSharedScore(getScore(index, SHARED));
+                contextAttributes.setShared(isPositive(index, SHARED));
+            }
         }
 
-        if (results == null) 
-            return entities;
+        /**
+         * Scores for the contexts from index from (inclusive) to index to (exclusive)
+         */
+        private ContextScores slice(int from, int to) {
+            ContextScores result = new ContextScores(to - from);
+            System.arraycopy(scores, from * NB_CLASSES, result.scores, 0, (to - from) * NB_CLASSES);
+            System.arraycopy(positives, from * NB_CLASSES, result.positives, 0, (to - from) * NB_CLASSES);
+            System.arraycopy(available, 0, result.available, 0, NB_CLASSES);
+            return result;
+        }
 
-        // set resulting context classes to entity mentions
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(results);
-
-            int entityRank =0;
-            String lang = null;
-            JsonNode classificationsNode = root.findPath("classifications");
-            if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                Iterator<JsonNode> ite = classificationsNode.elements();
-                while (ite.hasNext()) {
-                    JsonNode classificationNode = ite.next();
-
-                    JsonNode usedNode = classificationNode.findPath("used");
-                    JsonNode createdNode = classificationNode.findPath("creation");
-                    JsonNode sharedNode = classificationNode.findPath("shared");
-                    JsonNode textNode = classificationNode.findPath("text");
-
-                    double scoreUsed = 0.0;
-                    if ((usedNode != null) && (!usedNode.isMissingNode())) {
-                        scoreUsed = usedNode.doubleValue();
-                    }
+        /**
+         * Scores for a list of contexts given the scores of the distinct contexts and the index of
+         * each context in the distinct contexts
+         */
+        private ContextScores expand(int[] contextIndexes) {
+            ContextScores result = new ContextScores(contextIndexes.length);
+            for (int i = 0; i < contextIndexes.length; i++) {
+                System.arraycopy(scores, contextIndexes[i] * NB_CLASSES, result.scores, i * NB_CLASSES, NB_CLASSES);
+                System.arraycopy(positives, contextIndexes[i] * NB_CLASSES, result.positives, i * NB_CLASSES, NB_CLASSES);
+            }
+            System.arraycopy(available, 0, result.available, 0, NB_CLASSES);
+            return result;
+        }
+    }
 
-                    double scoreCreated = 0.0;
-                    if ((createdNode != null) && (!createdNode.isMissingNode())) {
-                        scoreCreated = createdNode.doubleValue();
-                    }
+    /**
+     * Classify a batch of contexts with all the context classes in one pass: the contexts are
+     * normalized once, identical contexts (e.g. several mentions in the same sentence) are
+     * classified only once, and the same batch of distinct contexts is given to the three binary
+     * classifiers or to the multi-label classifier. The classification results are parsed in a
+     * streaming manner directly into the score arrays.
+     *
+     * @return the scores of the classes used, created and shared for each context
+     */
+    public ContextScores classifyContexts(List<String> contexts) throws Exception {
+        Map<String, Integer> distinctIndexes = new HashMap<>();
+        List<String> distinctContexts = new ArrayList<>();
+        int[] contextIndexes = new int[contexts.size()];
+        for (int i = 0; i < contexts.size(); i++) {
+            String localContext = normalizeContext(contexts.get(i));
+            Integer index = distinctIndexes.get(localContext);
+            if (index == null) {
+                index = distinctContexts.size();
+                distinctIndexes.put(localContext, index);
+                distinctContexts.add(localContext);
+            }
+            contextIndexes[i] = index;
+        }
 
-                    double scoreShared = 0.0;
-                    if ((sharedNode != null) && (!sharedNode.isMissingNode())) {
-                        scoreShared = sharedNode.doubleValue();
-                    }
+        ContextScores distinctScores;
+        if (distinctContexts.size() == 0)
+            distinctScores = new ContextScores(0);
+        else if (classificationScheduler != null)
+            distinctScores = classificationScheduler.process(distinctContexts);
+        else
+            distinctScores = classifyDistinctContexts(distinctContexts);
+
+        return distinctScores.expand(contextIndexes);
+    }
+
+    /**
+     * Classify a batch of already normalized contexts with all the context classes
+     */
+    private ContextScores classifyDistinctContexts(List<String> distinctContexts) throws Exception {
+        ContextScores distinctScores = new ContextScores(distinctContexts.size());
+        if (this.useBinary) {
+            parseScores(classify(distinctContexts, MODEL_TYPE.used), distinctScores, 
+                new int[]{ContextScores.USED}, new String[]{"used"}, new String[]{"not_used"});
+            parseScores(classify(distinctContexts, MODEL_TYPE.created), distinctScores, 
+                new int[]{ContextScores.CREATED}, new String[]{"creation"}, new String[]{"not_creation"});
+            parseScores(classify(distinctContexts, MODEL_TYPE.shared), distinctScores, 
+                new int[]{ContextScores.SHARED}, new String[]{"shared"}, new String[]{"not_shared"});
+        } else {
+            parseScores(classify(distinctContexts, MODEL_TYPE.all), distinctScores, 
+                new int[]{ContextScores.USED, ContextScores.CREATED, ContextScores.SHARED},
+                new String[]{"used", "creation", "shared"}, 
+                new String[]{null, null, null});
+        }
+        return distinctScores;
+    }
+
+    private static String normalizeContext(String context) {
+        if (context == null || context.length() == 0) {
+            // dummy place holder
+            return "";
+        }
+        String localContext = TextUtilities.dehyphenize(context);
+        localContext = localContext.replace("\n", " ");
+        localContext = localContext.replaceAll("( )+", " ");
+        return localContext;
+    }
 
-                    String textValue = null;
-                    if ((textNode != null) && (!textNode.isMissingNode())) {
-                        textValue = textNode.textValue();
+    /**
+     * Read the scores of the given classes in the JSON result of a classifier, a class being
+     * identified by the name of its positive label and, for binary classifiers, of its negative label. 
+     * A null result (classifier not producing anything) is ignored.
+     */
+    private static void parseScores(String results, 
+                                    ContextScores scores, 
+                                    int[] contextClasses, 
+                                    String[] positiveLabels, 
+                                    String[] negativeLabels) {
+        if (results == null)
+            return;
+
+        double[] positiveScores = new double[contextClasses.length];
+        double[] negativeScores = new double[contextClasses.length];
+        try (JsonParser jsonParser = mapper.getFactory().createParser(results)) {
+            JsonToken token;
+            while ((token = jsonParser.nextToken()) != null) {
+                if (token != JsonToken.FIELD_NAME || !"classifications".equals(jsonParser.getCurrentName()))
+                    continue;
+                if (jsonParser.nextToken() != JsonToken.START_ARRAY)
+                    return;
+
+                int rank = 0;
+                while (jsonParser.nextToken() == JsonToken.START_OBJECT) {
+                    for (int k = 0; k < contextClasses.length; k++) {
+                        positiveScores[k] = 0.0;
+                        negativeScores[k] = (negativeLabels[k] == null) ? Double.NaN : 0.0;
                     }
-                    
-                    SoftwareContextAttributes contextAttributes = new SoftwareContextAttributes();
-                    contextAttributes.setUsedScore(scoreUsed);
-                    contextAttributes.setCreatedScore(scoreCreated);
-                    contextAttributes.setSharedScore(scoreShared);
-
-                    if (scoreUsed>0.5) 
-                        contextAttributes.setUsed(true);
-                    else 
-                        contextAttributes.setUsed(false);
-
-                    if (scoreCreated > 0.5) 
-                        contextAttributes.setCreated(true);
-                    else 
-                        contextAttributes.setCreated(false);
-
-                    if (scoreShared > 0.5) 
-                        contextAttributes.setShared(true);
-                    else 
-                        contextAttributes.setShared(false);
-                    
-                    SoftwareEntity entity = entities.get(entityRank);
-                    entity.setMentionContextAttributes(contextAttributes);
-
-                    entityRank++;
+                    while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                        String label = jsonParser.getCurrentName();
+                        JsonToken value = jsonParser.nextToken();
+                        if (!value.isNumeric()) {
+                            jsonParser.skipChildren();
+                            continue;
+                        }
+                        for (int k = 0; k < contextClasses.length; k++) {
+                            if (label.equals(positiveLabels[k]))
+                                positiveScores[k] = jsonParser.getDoubleValue();
+                            else if (label.equals(negativeLabels[k]))
+                                negativeScores[k] = jsonParser.getDoubleValue();
+                        }
+                    }
+                    if (rank < scores.size()) {
+                        for (int k = 0; k < contextClasses.length; k++)
+                            scores.set(rank, contextClasses[k], positiveScores[k], negativeScores[k]);
+                    }
+                    rank++;
                 }
+                return;
             }
-        } catch(JsonProcessingException e) {
+        } catch(IOException e) {
             LOGGER.error("failed to parse JSON context classification result", e);
         }
-
-        // in a second pass, we share all predictions for mentions of the same software name in 
-        // different places and apply a consistency propagation
-        return documentPropagation(entities);
     }
 
-
     /**
      * Process the contexts of a set of entities identified in a document. Each context is
      * classified and a global decision is realized at document-level using all the mentioned 
      * contexts corresponding to the same software.  
      * 
-     * This method uses binary classifiers.
+     * This method uses either one multi-class, multi-label classifier or the binary classifiers,
+     * depending on the configuration.
      * 
      **/
-    public List<SoftwareEntity> classifyDocumentContextsBinary(List<SoftwareEntity> entities) {
+    public List<SoftwareEntity> classifyDocumentContexts(List<SoftwareEntity> entities) {
         List<String> contexts = new ArrayList<>();
         for(SoftwareEntity entity : entities) {
-            if (entity.getContext() != null && entity.getContext().length()>0) {
-                String localContext = TextUtilities.dehyphenize(entity.getContext());
-                localContext = localContext.replace("\n", " ");
-                localContext = localContext.replaceAll("( )+", " ");
-                contexts.add(localContext);
-            } else {
-                // dummy place holder
-                contexts.add("");
-            }
+            contexts.add(entity.getContext());
         }
 
-        String resultsUsed = null;
-        String resultsCreated = null;
-        String resultsShared = null;
+        ContextScores scores = null;
         try {
-            resultsUsed = classify(contexts, MODEL_TYPE.used);
-            resultsCreated = classify(contexts, MODEL_TYPE.created);
-            resultsShared = classify(contexts, MODEL_TYPE.shared);
+            scores = classifyContexts(contexts);
         } catch(Exception e) {
             LOGGER.error("fail to classify document's set of contexts", e);
             return entities;
         }
 
-        if (resultsUsed == null && resultsCreated == null && resultsShared == null) 
+        if (!scores.hasPredictions())
             return entities;
 
-        List<String> results = new ArrayList<>();
-        results.add(resultsUsed);
-        results.add(resultsCreated);
-        results.add(resultsShared);
-
         // set resulting context classes to entity mentions
-        for(int i=0; i<results.size(); i++) {
-            if (results.get(i) == null) 
-                continue;
-            try {
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode root = mapper.readTree(results.get(i));
-
-                int entityRank =0;
-                String lang = null;
-                JsonNode classificationsNode = root.findPath("classifications");
-                if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                    Iterator<JsonNode> ite = classificationsNode.elements();
-                    while (ite.hasNext()) {
-                        JsonNode classificationNode = ite.next();
-                        SoftwareEntity entity = entities.get(entityRank);
-                        SoftwareContextAttributes contextAttributes = entity.getMentionContextAttributes();
-                        if (contextAttributes == null)
-                            contextAttributes = new SoftwareContextAttributes();
-                        
-                        if (i==0) {
-                            JsonNode usedNode = classificationNode.findPath("used");
-                            JsonNode notUsedNode = classificationNode.findPath("not_used");
-
-                            double scoreUsed = 0.0;
-                            if ((usedNode != null) && (!usedNode.isMissingNode())) {
-                                scoreUsed = usedNode.doubleValue();
-                            }
-                            double scoreNotUsed = 0.0;
-                            if ((notUsedNode != null) && (!notUsedNode.isMissingNode())) {
-                                scoreNotUsed = notUsedNode.doubleValue();
-                            }
-
-                            if (scoreUsed > scoreNotUsed)
-                                contextAttributes.setUsedScore(scoreUsed);
-                            else 
-                                contextAttributes.setUsedScore(1-scoreNotUsed);
-
-                            if (scoreUsed>0.5 && scoreUsed > scoreNotUsed) 
-                                contextAttributes.setUsed(true);
-                            else 
-                                contextAttributes.setUsed(false);
-                        } else if (i == 1) {
-                            JsonNode createdNode = classificationNode.findPath("creation");
-                            JsonNode notCreatedNode = classificationNode.findPath("not_creation");
-
-                            double scoreCreated = 0.0;
-                            if ((createdNode != null) && (!createdNode.isMissingNode())) {
-                                scoreCreated = createdNode.doubleValue();
-                            }
-
-                            double scoreNotCreated = 0.0;
-                            if ((notCreatedNode != null) && (!notCreatedNode.isMissingNode())) {
-                                scoreNotCreated = notCreatedNode.doubleValue();
-                            }
-
-                            if (scoreCreated > scoreNotCreated)
-                                contextAttributes.setCreatedScore(scoreCreated);
-                            else
-                                contextAttributes.setCreatedScore(1 - scoreNotCreated);
-
-                            if (scoreCreated > 0.5 && scoreCreated > scoreNotCreated) 
-                                contextAttributes.setCreated(true);
-                            else 
-                                contextAttributes.setCreated(false);
-                        } else {
-                            JsonNode sharedNode = classificationNode.findPath("shared");
-                            JsonNode notSharedNode = classificationNode.findPath("not_shared");
-
-                            double scoreShared = 0.0;
-                            if ((sharedNode != null) && (!sharedNode.isMissingNode())) {
-                                scoreShared = sharedNode.doubleValue();
-                            }
-
-                            double scoreNotShared = 0.0;
-                            if ((notSharedNode != null) && (!notSharedNode.isMissingNode())) {
-                                scoreNotShared = notSharedNode.doubleValue();
-                            }
-
-                            if (scoreShared > scoreNotShared)
-                                contextAttributes.setSharedScore(scoreShared);
-                            else
-                                contextAttributes.setSharedScore(1 - scoreNotShared);
-
-                            if (scoreShared > 0.5 && scoreShared > scoreNotShared) 
-                                contextAttributes.setShared(true);
-                            else 
-                                contextAttributes.setShared(false);
-                        }
-
-                        JsonNode textNode = classificationNode.findPath("text");
-                        String textValue = null;
-                        if ((textNode != null) && (!textNode.isMissingNode())) {
-                            textValue = textNode.textValue();
-                        }
-                        
-                        entity.setMentionContextAttributes(contextAttributes);
-                        entityRank++;
-                    }
-                }
-            } catch(JsonProcessingException e) {
-                LOGGER.error("failed to parse JSON context classification result", e);
-            }
+        for(int i=0; i<entities.size(); i++) {
+            SoftwareEntity entity = entities.get(i);
+            SoftwareContextAttributes contextAttributes = entity.getMentionContextAttributes();
+            if (contextAttributes == null || !this.useBinary)
+                contextAttributes = new SoftwareContextAttributes();
+            scores.applyTo(i, contextAttributes);
+            entity.setMentionContextAttributes(contextAttributes);
         }
 
         // in a second pass, we share all predictions for mentions of the same software name in 
@@ -415,150 +438,31 @@ public class SoftwareContextClassifier {
         return documentPropagation(entities);
     }
 
-    public List<String> classifyDocumentContextsBinaryString(List<String> sentences) {
-        List<String> contexts = new ArrayList<>();
-        List<SoftwareContextAttributes> allContextAttributes = new ArrayList<>();
-        for(String sentence : sentences) {
-            if (sentence != null && sentence.length()>0) {
-                String localContext = TextUtilities.dehyphenize(sentence);
-                localContext = localContext.replace("\n", " ");
-                localContext = localContext.replaceAll("( )+", " ");
-                contexts.add(localContext);
-            } else {
-                // dummy place holder
-                contexts.add("");
-            }
-            allContextAttributes.add(new SoftwareContextAttributes());
-        }
+    /**
+     * Process the contexts of a set of entities identified in a document with the binary classifiers.
+     **/
+    public List<SoftwareEntity> classifyDocumentContextsBinary(List<SoftwareEntity> entities) {
+        return classifyDocumentContexts(entities);
+    }
 
-        String resultsUsed = null;
-        String resultsCreated = null;
-        String resultsShared = null;
+    public List<String> classifyDocumentContextsBinaryString(List<String> sentences) {
+        ContextScores scores = null;
         try {
-            resultsUsed = classify(contexts, MODEL_TYPE.used);
-            resultsCreated = classify(contexts, MODEL_TYPE.created);
-            resultsShared = classify(contexts, MODEL_TYPE.shared);
+            scores = classifyContexts(sentences);
         } catch(Exception e) {
             LOGGER.error("fail to classify document's set of contexts", e);
             return null;
         }
 
-        if (resultsUsed == null && resultsCreated == null && resultsShared == null) 
+        if (!scores.hasPredictions())
             return null;
 
-        List<String> results = new ArrayList<>();
-        results.add(resultsUsed);
-        results.add(resultsCreated);
-        results.add(resultsShared);
-
         List<String> resultJson = new ArrayList<>();
-
-        // set resulting context classes to entity mentions
-        for(int i=0; i<results.size(); i++) {
-            if (results.get(i) == null) 
-                continue;
-            try {
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode root = mapper.readTree(results.get(i));
-
-                int sentenceRank =0;
-                String lang = null;
-                JsonNode classificationsNode = root.findPath("classifications");
-                if ((classificationsNode != null) && (!classificationsNode.isMissingNode())) {
-                    Iterator<JsonNode> ite = classificationsNode.elements();
-                    while (ite.hasNext()) {
-                        JsonNode classificationNode = ite.next();
-                        SoftwareContextAttributes contextAttributes = allContextAttributes.get(sentenceRank);
-                        if (i==0) {
-                            JsonNode usedNode = classificationNode.findPath("used");
-                            JsonNode notUsedNode = classificationNode.findPath("not_used");
-
-                            double scoreUsed = 0.0;
-                            if ((usedNode != null) && (!usedNode.isMissingNode())) {
-                                scoreUsed = usedNode.doubleValue();
-                            }
-                            double scoreNotUsed = 0.0;
-                            if ((notUsedNode != null) && (!notUsedNode.isMissingNode())) {
-                                scoreNotUsed = notUsedNode.doubleValue();
-                            }
-
-                            if (scoreUsed > scoreNotUsed)
-                                contextAttributes.setUsedScore(scoreUsed);
-                            else 
-                                contextAttributes.setUsedScore(1-scoreNotUsed);
-
-                            if (scoreUsed>0.5 && scoreUsed > scoreNotUsed) 
-                                contextAttributes.setUsed(true);
-                            else 
-                                contextAttributes.setUsed(false);
-                        } else if (i == 1) {
-                            JsonNode createdNode = classificationNode.findPath("creation");
-                            JsonNode notCreatedNode = classificationNode.findPath("not_creation");
-
-                            double scoreCreated = 0.0;
-                            if ((createdNode != null) && (!createdNode.isMissingNode())) {
-                                scoreCreated = createdNode.doubleValue();
-                            }
-
-                            double scoreNotCreated = 0.0;
-                            if ((notCreatedNode != null) && (!notCreatedNode.isMissingNode())) {
-                                scoreNotCreated = notCreatedNode.doubleValue();
-                            }
-
-                            if (scoreCreated > scoreNotCreated)
-                                contextAttributes.setCreatedScore(scoreCreated);
-                            else
-                                contextAttributes.setCreatedScore(1 - scoreNotCreated);
-
-                            if (scoreCreated > 0.5 && scoreCreated > scoreNotCreated) 
-                                contextAttributes.setCreated(true);
-                            else 
-                                contextAttributes.setCreated(false);
-                        } else {
-                            JsonNode sharedNode = classificationNode.findPath("shared");
-                            JsonNode notSharedNode = classificationNode.findPath("not_shared");
-
-                            double scoreShared = 0.0;
-                            if ((sharedNode != null) && (!sharedNode.isMissingNode())) {
-                                scoreShared = sharedNode.doubleValue();
-                            }
-
-                            double scoreNotShared = 0.0;
-                            if ((notSharedNode != null) && (!notSharedNode.isMissingNode())) {
-                                scoreNotShared = notSharedNode.doubleValue();
-                            }
-
-                            if (scoreShared > scoreNotShared)
-                                contextAttributes.setSharedScore(scoreShared);
-                            else
-                                contextAttributes.setSharedScore(1 - scoreNotShared);
-
-                            if (scoreShared > 0.5 && scoreShared > scoreNotShared) 
-                                contextAttributes.setShared(true);
-                            else 
-                                contextAttributes.setShared(false);
-                        }
-
-                        JsonNode textNode = classificationNode.findPath("text");
-                        String textValue = null;
-                        if ((textNode != null) && (!textNode.isMissingNode())) {
-                            textValue = textNode.textValue();
-                        }
-                        
-                        sentenceRank++;
-                    }
-                }
-            } catch(JsonProcessingException e) {
-                LOGGER.error("failed to parse JSON context classification result", e);
-            }
-        }
-
-        for(SoftwareContextAttributes contextAttributes : allContextAttributes) {
+        for(int i=0; i<sentences.size(); i++) {
+            SoftwareContextAttributes contextAttributes = new SoftwareContextAttributes();
+            scores.applyTo(i, contextAttributes);
             resultJson.add(contextAttributes.toJson());
         }
-
-        // in a second pass, we share all predictions for mentions of the same software name in 
-        // different places and apply a consistency propagation
         return resultJson;
     }
 
@@ -0,0 +1,430 @@
+package org.grobid.core.engines;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.grobid.core.data.SoftwareComponent;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Cache of the entity-fishing disambiguation results, to avoid disambiguating again and again
+ * the same popular software names.
+ *
+ * A result is cached for a mention (software name or creator, normalized surface form) in a
+ * given coarse context, which is the set of software mentions (names and creators) of the
+ * disambiguated segment: "SPSS" alone in a paragraph is cached separately from "SPSS" together
+ * with "IBM". The cached result is the Wikidata and Wikipedia identifiers, the confidence
+ * score and the filtering decision, an absence of result being cached too.
+ *
+ * The cache has two levels: a bounded in-memory cache and an optional on-disk store, which
+ * persists the results between runs. The on-disk store is an append-only file of binary records
+ * with an in-memory index of the record positions, compacted when it grows beyond twice its
+ * maximum number of entries. Entries expire after a given time to live in both levels.
+ */
+public class SoftwareDisambiguationCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftwareDisambiguationCache.class);
+
+    private final Cache<String, Result> memoryCache;
+    private final DiskStore diskStore;
+    private final long timeToLive;
+
+    private final Meter hits;
+    private final Meter diskHits;
+    private final Meter misses;
+
+    /**
+     * Cached disambiguation result of a mention
+     */
+    public static class Result {
+        private final String wikidataId;
+        private final int wikipediaExternalRef;
+        private final Double score;
+        private final String lang;
+        private final boolean filtered;
+        private final long time;
+
+        public Result(String wikidataId, int wikipediaExternalRef, Double score, String lang, boolean filtered, long time) {
+            this.wikidataId = wikidataId;
+            this.wikipediaExternalRef = wikipediaExternalRef;
+            this.score = score;
+            this.lang = lang;
+            this.filtered = filtered;
+            this.time = time;
+        }
+
+        public static Result fromComponent(SoftwareComponent component) {
+            return new Result(component.getWikidataId(), component.getWikipediaExternalRef(),
+                component.getDisambiguationScore(), component.getLang(), component.isFiltered(),
+                System.currentTimeMillis());
+        }
+
+        public void applyTo(SoftwareComponent component) {
+            if (wikidataId != null)
+                component.setWikidataId(wikidataId);
+            if (wikipediaExternalRef != -1)
+                component.setWikipediaExternalRef(wikipediaExternalRef);
+            if (score != null)
+                component.setDisambiguationScore(score);
+            if (lang != null)
+                component.setLang(lang);
+            if (filtered)
+                component.setFiltered(true);
+        }
+
+        private byte[] toBytes(String key) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(key);
+            out.writeLong(time);
+            out.writeUTF(wikidataId == null ? "" : wikidataId);
+            out.writeInt(wikipediaExternalRef);
+            out.writeDouble(score == null ? Double.NaN : score);
+            out.writeUTF(lang == null ? "" : lang);
+            out.writeBoolean(filtered);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private static Result fromBytes(DataInputStream in) throws IOException {
+            long time = in.readLong();
+            String wikidataId = in.readUTF();
+            int wikipediaExternalRef = in.readInt();
+            double score = in.readDouble();
+            String lang = in.readUTF();
+            boolean filtered = in.readBoolean();
+            return new Result(wikidataId.isEmpty() ? null : wikidataId,
+                wikipediaExternalRef,
+                Double.isNaN(score) ? null : score,
+                lang.isEmpty() ? null : lang,
+                filtered,
+                time);
+        }
+    }
+
+    /**
+     * Create the disambiguation cache as set in the configuration, or return null if the cache
+     * is disabled (entityFishingCacheSize set to 0).
+     */
+    public static SoftwareDisambiguationCache create(SoftwareConfiguration configuration) {
+        if (configuration.getEntityFishingCacheSize() <= 0)
+            return null;
+        long timeToLive = TimeUnit.HOURS.toMillis(configuration.getEntityFishingCacheTTL());
+        File diskFile = null;
+        if (configuration.getEntityFishingCachePath() != null && configuration.getEntityFishingCachePath().trim().length() > 0)
+            diskFile = new File(configuration.getEntityFishingCachePath().trim());
+        return new SoftwareDisambiguationCache(configuration.getEntityFishingCacheSize(), timeToLive,
+            diskFile, configuration.getEntityFishingCacheDiskSize());
+    }
+
+    public SoftwareDisambiguationCache(long maxSize, long timeToLive, File diskFile, long maxDiskSize) {
+        this.timeToLive = timeToLive;
+        this.memoryCache = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS)
+            .build();
+
+        DiskStore store = null;
+        if (diskFile != null) {
+            try {
+                store = new DiskStore(diskFile, maxDiskSize, timeToLive);
+            } catch (IOException e) {
+                LOGGER.error("Cannot open the disambiguation cache file " + diskFile.getPath() + ", using memory cache only", e);
+            }
+        }
+        this.diskStore = store;
+
+        MetricRegistry metrics = SoftwareMetrics.getRegistry();
+        hits = metrics.meter("disambiguation.cache.hits");
+        diskHits = metrics.meter("disambiguation.cache.disk-hits");
+        misses = metrics.meter("disambiguation.cache.misses");
+        metrics.gauge("disambiguation.cache.size", () -> (Gauge<Long>) memoryCache::size);
+        if (diskStore != null)
+            metrics.gauge("disambiguation.cache.disk-size", () -> (Gauge<Integer>) diskStore::size);
+    }
+
+    /**
+     * Coarse signature of the context of a segment: hash of the set of its normalized mentions
+     */
+    public static String contextSignature(List<SoftwareEntity> entities) {
+        SortedSet<String> mentions = new TreeSet<>();
+        for (SoftwareEntity entity : entities) {
+            if (entity.getSoftwareName() != null)
+                mentions.add(normalize(entity.getSoftwareName().getRawForm()));
+            if (entity.getCreator() != null)
+                mentions.add(normalize(entity.getCreator().getRawForm()));
+        }
+        return Hashing.murmur3_128().hashString(String.join("\n", mentions), UTF_8).toString().substring(0, 16);
+    }
+
+    /**
+     * Cache key of a mention of a software name or creator in a given context
+     */
+    public static String key(SoftwareComponent component, boolean isCreator, String contextSignature) {
+        return (isCreator ? "c\t" : "s\t") + normalize(component.getRawForm()) + "\t" + contextSignature;
+    }
+
+    private static String normalize(String mention) {
+        if (mention == null)
+            return "";
+        String normalized = Normalizer.normalize(mention, Normalizer.Form.NFKC);
+        return normalized.replaceAll("\\s+", " ").trim();
+    }
+
+    public Result get(String key) {
+        Result result = memoryCache.getIfPresent(key);
+        if (result != null && !isExpired(result)) {
+            hits.mark();
+            return result;
+        }
+
+        if (diskStore != null) {
+            result = diskStore.get(key);
+            if (result != null) {
+                memoryCache.put(key, result);
+                diskHits.mark();
+                return result;
+            }
+        }
+
+        misses.mark();
+        return null;
+    }
+
+    public void put(String key, Result result) {
+        memoryCache.put(key, result);
+        if (diskStore != null)
+            diskStore.put(key, result);
+    }
+
+    public long size() {
+        return memoryCache.size();
+    }
+
+    private boolean isExpired(Result result) {
+        return System.currentTimeMillis() - result.time > timeToLive;
+    }
+
+    /**
+     * Flush and close the on-disk store, the cache then only uses the memory cache. Closing
+     * again has no effect.
+     */
+    public void close() {
+        if (diskStore != null)
+            diskStore.close();
+    }
+
+    /**
+     * Append-only file of cache records, each record being the length of the record followed by
+     * the key and the result. The position of the last record of each key is kept in memory.
+     */
+    private static class DiskStore {
+        private final File file;
+        private final long maxEntries;
+        private final long timeToLive;
+
+        private final Map<String, Long> index = new ConcurrentHashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private FileChannel channel;
+        private long recordCount = 0;
+        private boolean closed = false;
+
+        DiskStore(File file, long maxEntries, long timeToLive) throws IOException {
+            this.file = file;
+            this.maxEntries = Math.max(1, maxEntries);
+            this.timeToLive = timeToLive;
+
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists())
+                parent.mkdirs();
+            load();
+            if (recordCount > index.size() * 2 || index.size() > this.maxEntries)
+                compact();
+            LOGGER.info("Disambiguation cache: " + index.size() + " entries loaded from " + file.getPath());
+        }
+
+        /**
+         * Open the file and index its non-expired records, a truncated last record (interrupted
+         * write) is ignored and overwritten
+         */
+        private void load() throws IOException {
+            long now = System.currentTimeMillis();
+            long position = 0;
+            recordCount = 0;
+            if (file.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    while (true) {
+                        int length;
+                        try {
+                            length = in.readInt();
+                        } catch (EOFException e) {
+                            break;
+                        }
+                        byte[] record = new byte[length];
+                        try {
+                            in.readFully(record);
+                        } catch (EOFException e) {
+                            LOGGER.warn("Truncated record at the end of the disambiguation cache file, ignored");
+                            break;
+                        }
+                        DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+                        String key = recordIn.readUTF();
+                        long time = recordIn.readLong();
+                        if (now - time <= timeToLive)
+                            index.put(key, position);
+                        else
+                            index.remove(key);
+                        recordCount++;
+                        position += 4 + length;
+                    }
+                }
+            }
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.truncate(position);
+            channel.position(position);
+        }
+
+        int size() {
+            return index.size();
+        }
+
+        Result get(String key) {
+            lock.readLock().lock();
+            try {
+                if (closed)
+                    return null;
+                // positions change when the file is compacted, so the index is read under the lock too
+                Long position = index.get(key);
+                if (position == null)
+                    return null;
+                Result result = read(position);
+                if (result == null || System.currentTimeMillis() - result.time > timeToLive)
+                    return null;
+                return result;
+            } catch (IOException e) {
+                LOGGER.warn("Cannot read the disambiguation cache file", e);
+                return null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private Result read(long position) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            if (channel.read(header, position) < 4)
+                return null;
+            header.flip();
+            ByteBuffer body = ByteBuffer.allocate(header.getInt());
+            while (body.hasRemaining()) {
+                if (channel.read(body, position + 4 + body.position()) < 0)
+                    return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+            in.readUTF();
+            return Result.fromBytes(in);
+        }
+
+        void put(String key, Result result) {
+            lock.writeLock().lock();
+            try {
+                if (closed)
+                    return;
+                byte[] record = result.toBytes(key);
+                ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+                buffer.putInt(record.length);
+                buffer.put(record);
+                buffer.flip();
+                long position = channel.size();
+                while (buffer.hasRemaining())
+                    channel.write(buffer, position + buffer.position());
+                index.put(key, position);
+                recordCount++;
+                if (recordCount > maxEntries * 2)
+                    compact();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot write in the disambiguation cache file", e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Rewrite the file with only the most recent non-expired record of each key, keeping
+         * at most the maximum number of entries, most recent first
+         */
+        private void compact() throws IOException {
+            lock.writeLock().lock();
+            try {
+                long now = System.currentTimeMillis();
+                List<Map.Entry<String, Result>> entries = new ArrayList<>();
+                for (Map.Entry<String, Long> entry : index.entrySet()) {
+                    Result result = read(entry.getValue());
+                    if (result != null && now - result.time <= timeToLive)
+                        entries.add(new AbstractMap.SimpleEntry<>(entry.getKey(), result));
+                }
+                entries.sort((e1, e2) -> Long.compare(e2.getValue().time, e1.getValue().time));
+                if (entries.size() > maxEntries)
+                    entries = entries.subList(0, (int) maxEntries);
+
+                File tmpFile = new File(file.getPath() + ".tmp");
+                Map<String, Long> newIndex = new HashMap<>();
+                long position = 0;
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                    for (Map.Entry<String, Result> entry : entries) {
+                        byte[] record = entry.getValue().toBytes(entry.getKey());
+                        out.writeInt(record.length);
+                        out.write(record);
+                        newIndex.put(entry.getKey(), position);
+                        position += 4 + record.length;
+                    }
+                }
+
+                channel.close();
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channel.position(position);
+                index.clear();
+                index.putAll(newIndex);
+                recordCount = newIndex.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                if (closed)
+                    return;
+                closed = true;
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot close the disambiguation cache file", e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
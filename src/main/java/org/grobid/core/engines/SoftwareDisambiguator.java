@@ -1,65 +1,36 @@
 package org.grobid.core.engines;
 
-import nu.xom.Attribute;
-import nu.xom.Element;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.FileUtils;
-import org.grobid.core.GrobidModels;
-import org.grobid.core.analyzers.SoftwareAnalyzer;
 import org.grobid.core.data.SoftwareComponent;
 import org.grobid.core.data.SoftwareEntity;
-import org.grobid.core.data.BiblioItem;
-import org.grobid.core.document.Document;
-import org.grobid.core.document.DocumentPiece;
-import org.grobid.core.document.DocumentSource;
-import org.grobid.core.document.xml.XmlBuilderUtils;
-import org.grobid.core.engines.config.GrobidAnalysisConfig;
-import org.grobid.core.engines.label.SoftwareTaggingLabels;
-import org.grobid.core.engines.label.SegmentationLabels;
-import org.grobid.core.engines.label.TaggingLabel;
-import org.grobid.core.engines.label.TaggingLabels;
-import org.grobid.core.exceptions.GrobidException;
-import org.grobid.core.factory.GrobidFactory;
-import org.grobid.core.features.FeaturesVectorSoftware;
-import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
-import org.grobid.core.layout.LayoutTokenization;
 import org.grobid.core.lexicon.SoftwareLexicon;
-import org.grobid.core.sax.TextChunkSaxHandler;
-import org.grobid.core.tokenization.TaggingTokenCluster;
-import org.grobid.core.tokenization.TaggingTokenClusteror;
+import org.grobid.core.utilities.ProcessingStages;
 import org.grobid.core.utilities.SoftwareConfiguration;
-import org.grobid.core.utilities.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.InputSource;
 
-import com.fasterxml.jackson.core.*;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.node.*;
-import com.fasterxml.jackson.annotation.*;
-import com.fasterxml.jackson.core.io.*;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.*;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.HttpEntity;
 import org.apache.http.util.EntityUtils;
@@ -68,17 +39,25 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.conn.HttpHostConnectException;
-import org.apache.commons.lang3.tuple.Pair;
 
-import static org.apache.commons.lang3.StringUtils.*;
-import static org.grobid.core.document.xml.XmlBuilderUtils.teiElement;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Software entity disambiguator. Once software mentions are recognized and grouped
  * into an entity (software name with recognized attributes), we use entity-fishing
- * service to disambiguate the software against Wikidata, as well as the attribute 
+ * service to disambiguate the software against Wikidata, as well as the attribute
  * values (currently only creator).
  *
+ * All the calls to entity-fishing share a pooled HTTP client with keep-alive connections
+ * and configurable timeouts. Several segments of the same document can be disambiguated
+ * together: they are merged in a few queries of bounded size, sent concurrently, so that
+ * the disambiguation can run in the background while the rest of the document is processed.
+ * After a series of failed calls, the calls to the service are suspended for a while
+ * (circuit breaker), the entities being then simply left non-disambiguated.
+ *
+ * Disambiguation results are cached (see SoftwareDisambiguationCache), a segment whose mentions
+ * are all found in the cache is not sent to entity-fishing.
+ *
  * @author Patrice
  */
 public class SoftwareDisambiguator {
@@ -91,6 +70,29 @@ public class SoftwareDisambiguator {
 
     private static boolean serverStatus = false;
 
+    // number of consecutive failed calls before suspending the calls to entity-fishing
+    private static final int FAILURE_THRESHOLD = 5;
+
+    // duration of the suspension of the calls to entity-fishing in ms, after which a new call is tried
+    private static final long SUSPENSION_DELAY = 30000;
+
+    // separator between the text of two segments merged in the same query
+    private static final String SEGMENT_SEPARATOR = "\n\n";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private CloseableHttpClient httpClient;
+    private ThreadPoolExecutor executor;
+
+    // null if the cache is disabled
+    private SoftwareDisambiguationCache cache;
+
+    // maximum number of characters of text in a query merging several segments
+    private int maxBatchLength;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long suspendedUntil = 0;
+
     public static SoftwareDisambiguator getInstance(SoftwareConfiguration configuration) {
         if (instance == null) {
             getNewInstance(configuration);
@@ -102,22 +104,101 @@ public class SoftwareDisambiguator {
      * Create a new instance.
      */
     private static synchronized void getNewInstance(SoftwareConfiguration configuration) {
-        instance = new SoftwareDisambiguator(configuration);
+        // the instance may have been created by a concurrent call
+        if (instance == null)
+            instance = new SoftwareDisambiguator(configuration);
+    }
+
+    /**
+     * Flush and close the on-disk disambiguation cache of the instance, if created, when the
+     * service stops.
+     */
+    public static void shutdown() {
+        SoftwareDisambiguator disambiguator = instance;
+        if (disambiguator != null && disambiguator.cache != null)
+            disambiguator.cache.close();
     }
 
     private SoftwareDisambiguator(SoftwareConfiguration configuration) {
         try {
             nerd_host = configuration.getEntityFishingHost();
             nerd_port = configuration.getEntityFishingPort();
+            maxBatchLength = configuration.getEntityFishingMaxBatchLength();
+
+            int maxConnections = Math.max(1, configuration.getEntityFishingMaxConnections());
+            httpClient = createHttpClient(maxConnections,
+                configuration.getEntityFishingConnectTimeout(),
+                configuration.getEntityFishingReadTimeout());
+            executor = createExecutor(maxConnections);
+
             serverStatus = checkIfAlive();
-            if (serverStatus == true)
+            if (serverStatus == true) {
                 ensureCustomizationReady();
+                cache = SoftwareDisambiguationCache.create(configuration);
+                // the on-disk cache is also closed when the JVM exits outside of the service
+                if (cache != null) {
+                    SoftwareDisambiguationCache createdCache = cache;
+                    Runtime.getRuntime().addShutdownHook(new Thread(createdCache::close, "disambiguation-cache-close"));
+                }
+            }
         } catch(Exception e) {
             LOGGER.error("Cannot read properties for disambiguation service", e);
         }
     }
 
-    private static int CONTEXT_WINDOW = 50;
+    /**
+     * HTTP client shared by all the calls, with a pool of keep-alive connections
+     *
+     * @param connectTimeout timeout in ms for establishing a connection
+     * @param readTimeout timeout in ms waiting for data, and waiting for a connection from the pool
+     */
+    private static CloseableHttpClient createHttpClient(int maxConnections, int connectTimeout, int readTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(connectTimeout)
+            .setConnectionRequestTimeout(readTimeout)
+            .setSocketTimeout(readTimeout)
+            .build();
+
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictExpiredConnections()
+            .evictIdleConnections(30, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * Bounded executor for the asynchronous calls, one thread per pooled connection. When
+     * the queue is full, the call is made in the calling thread.
+     */
+    private static ThreadPoolExecutor createExecutor(int nbThreads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(nbThreads * 16),
+            runnable -> {
+                Thread thread = new Thread(runnable, "entity-fishing-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static String getServiceUrl(String path) {
+        if ( (nerd_port != null) && (nerd_port.length() > 0) )
+            if (nerd_port.equals("443"))
+                return "https://" + nerd_host + "/service/" + path;
+            else
+                return "http://" + nerd_host + ":" + nerd_port + "/service/" + path;
+        else
+            return "http://" + nerd_host + "/service/" + path;
+    }
 
     /**
      * Check if the disambiguation service is available using its isalive status service
@@ -125,37 +206,18 @@ public class SoftwareDisambiguator {
     public boolean checkIfAlive() {
         boolean result = false;
         try {
-            URL url = null;
-            if ( (nerd_port != null) && (nerd_port.length() > 0) )
-                if (nerd_port.equals("443"))
-                    url = new URL("https://" + nerd_host + "/service/isalive");
-                else
-                    url = new URL("http://" + nerd_host + ":" + nerd_port + "/service/isalive");
-            else
-                url = new URL("http://" + nerd_host + "/service/isalive");
-
+            URL url = new URL(getServiceUrl("isalive"));
             LOGGER.debug("Calling: " + url.toString());
-//System.out.println("Calling: " + url.toString());
-            CloseableHttpClient httpClient = HttpClients.createDefault();
             HttpGet get = new HttpGet(url.toString());
-
-            CloseableHttpResponse response = null;
-            Scanner in = null;
-            try {
-                response = httpClient.execute(get);
-//System.out.println(response.getStatusLine());
+            try (CloseableHttpResponse response = httpClient.execute(get)) {
                 int code = response.getStatusLine().getStatusCode();
+                EntityUtils.consume(response.getEntity());
                 if (code != 200) {
                     LOGGER.error("Failed isalive service: HTTP error code : " + code);
                     return false;
                 } else {
                     result = true;
                 }
-            } finally {
-                if (in != null)
-                    in.close();
-                if (response != null)
-                    response.close();
             }
         } catch (MalformedURLException e) {
             LOGGER.error("disambiguation service not available: MalformedURLException");
@@ -169,40 +231,23 @@ public class SoftwareDisambiguator {
     }
 
     /**
-     * Check if the software customisation is ready on the entity-fishing server, if not load it 
+     * Check if the software customisation is ready on the entity-fishing server, if not load it
      */
     public void ensureCustomizationReady() {
         boolean result = false;
         URL url = null;
-        CloseableHttpResponse response = null;
         try {
-            if ( (nerd_port != null) && (nerd_port.length() > 0) )
-                if (nerd_port.equals("443"))
-                    url = new URL("https://" + nerd_host + "/service/customisation/software");
-                else
-                    url = new URL("http://" + nerd_host + ":" + nerd_port + "/service/customisation/software");
-            else
-                url = new URL("http://" + nerd_host + "/service/customisation/software");
-
+            url = new URL(getServiceUrl("customisation/software"));
             LOGGER.debug("Calling: " + url.toString());
-//System.out.println("Calling: " + url.toString());
-            CloseableHttpClient httpClient = HttpClients.createDefault();
             HttpGet get = new HttpGet(url.toString());
-            Scanner in = null;
-            try {
-                response = httpClient.execute(get);
-//System.out.println(response.getStatusLine());
+            try (CloseableHttpResponse response = httpClient.execute(get)) {
                 int code = response.getStatusLine().getStatusCode();
+                EntityUtils.consume(response.getEntity());
                 if (code != 200) {
                     LOGGER.error("Failed customization lookup service: HTTP error code : " + code);
                 } else {
                     result = true;
                 }
-            } finally {
-                if (in != null)
-                    in.close();
-                if (response != null)
-                    response.close();
             }
         } catch (MalformedURLException e) {
             LOGGER.error("disambiguation service not available: MalformedURLException");
@@ -215,99 +260,140 @@ public class SoftwareDisambiguator {
         if (!result && url != null) {
             LOGGER.info("Software customisation not present on server, loading it...");
             try {
-                if ( (nerd_port != null) && (nerd_port.length() > 0) )
-                    if (nerd_port.equals("443"))
-                        url = new URL("https://" + nerd_host + "/service/customisations");
-                    else
-                       url = new URL("http://" + nerd_host + ":" + nerd_port + "/service/customisations");
-                else
-                    url = new URL("http://" + nerd_host + "/service/customisations");
-
+                url = new URL(getServiceUrl("customisations"));
                 LOGGER.debug("Calling: " + url.toString());
-//System.out.println("Calling: " + url.toString());
+
                 // load the software customisation
                 File cutomisationFile = new File("resources/config/customisation-software.json");
                 cutomisationFile = new File(cutomisationFile.getAbsolutePath());
                 String json = FileUtils.readFileToString(cutomisationFile, "UTF-8");
 
-                CloseableHttpClient httpClient = HttpClients.createDefault();
                 HttpPost post = new HttpPost(url.toString());
-
-                //StringBody stringValue = new StringBody(json, ContentType.MULTIPART_FORM_DATA);
-                //StringBody stringName = new StringBody("software", ContentType.MULTIPART_FORM_DATA);
                 MultipartEntityBuilder builder = MultipartEntityBuilder.create();
                 builder.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
                 builder.addTextBody("value", json);
                 builder.addTextBody("name", "software");
-                //builder.addPart("value", stringValue);
-                //builder.addPart("name", stringName);
-                HttpEntity entity = builder.build();
-                try {
-                    post.setEntity(entity);
-                    response = httpClient.execute(post);
-//System.out.println(response.getStatusLine());
-
+                post.setEntity(builder.build());
+                try (CloseableHttpResponse response = httpClient.execute(post)) {
                     int code = response.getStatusLine().getStatusCode();
+                    EntityUtils.consume(response.getEntity());
                     if (code != 200) {
                         LOGGER.error("Failed loading software customisation: HTTP error code : " + code);
                     } else {
                         LOGGER.info("Software customisation loaded");
                     }
-                } finally {
-                    if (response != null)
-                        response.close();
                 }
-            } catch (MalformedURLException e) {
-                e.printStackTrace();
             } catch (IOException e) {
-                e.printStackTrace();
+                LOGGER.error("Loading software customisation failed", e);
             }
         }
     }
 
     /**
-     * Disambiguate against Wikidata a list of raw entities extracted from text 
-     * represented as a list of tokens. The tokens will be used as disambiguisation 
-     * context, as well the other local raw softwares. 
-     * 
+     * Disambiguate against Wikidata a list of raw entities extracted from text
+     * represented as a list of tokens. The tokens will be used as disambiguisation
+     * context, as well the other local raw softwares.
+     *
      * @return list of disambiguated software entities
      */
     public List<SoftwareEntity> disambiguate(List<SoftwareEntity> entities, List<LayoutToken> tokens) {
-        if ( (entities == null) || (entities.size() == 0) ) 
+        if ( (entities == null) || (entities.size() == 0) )
             return entities;
-        String json = null;
-        try {
-            json = runNerd(entities, tokens, "en");
-        } catch(RuntimeException e) {
-            LOGGER.error("Call to entity-fishing failed.", e);
+        try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.DISAMBIGUATION)) {
+            if (!applyCachedResults(entities))
+                disambiguateSegments(Collections.singletonList(entities), Collections.singletonList(tokens));
         }
-        if (json == null)
-            return entities;
+        return entities;
+    }
+
+    /**
+     * Disambiguate the raw entities of several segments of the same document, in the background.
+     * Segments are merged in queries of bounded size, which are sent concurrently. The entities
+     * are disambiguated in place (Wikidata identifiers, disambiguation score, filtered status),
+     * they must not be modified before the returned future is completed. The future always
+     * completes normally, failed calls leave the entities non-disambiguated.
+     *
+     * @param segmentEntities list of raw entities for each segment
+     * @param segmentTokens list of tokens for each segment, used as disambiguation context
+     */
+    public CompletableFuture<Void> disambiguateAsync(List<List<SoftwareEntity>> segmentEntities,
+                                                     List<List<LayoutToken>> segmentTokens) {
+        if (!serverStatus || segmentEntities == null)
+            return CompletableFuture.completedFuture(null);
+
+        // the step ends when all the calls are completed
+        ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.DISAMBIGUATION);
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        List<List<SoftwareEntity>> batchEntities = new ArrayList<>();
+        List<List<LayoutToken>> batchTokens = new ArrayList<>();
+        int batchLength = 0;
+        for (int i = 0; i < segmentEntities.size(); i++) {
+            if (CollectionUtils.isEmpty(segmentEntities.get(i)) || CollectionUtils.isEmpty(segmentTokens.get(i)))
+                continue;
+            if (applyCachedResults(segmentEntities.get(i)))
+                continue;
+
+            int length = textLength(segmentTokens.get(i));
+            if (batchEntities.size() > 0 && batchLength + length > maxBatchLength) {
+                calls.add(submit(batchEntities, batchTokens));
+                batchEntities = new ArrayList<>();
+                batchTokens = new ArrayList<>();
+                batchLength = 0;
+            }
+            batchEntities.add(segmentEntities.get(i));
+            batchTokens.add(segmentTokens.get(i));
+            batchLength += length + SEGMENT_SEPARATOR.length();
+        }
+        if (batchEntities.size() > 0)
+            calls.add(submit(batchEntities, batchTokens));
 
-        List<SoftwareEntity> filteredEntities = new ArrayList<SoftwareEntity>();
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture[0]))
+            .whenComplete((result, exception) -> step.close());
+    }
 
-//System.out.println(json);
-        int segmentStartOffset = 0;
-        if (tokens != null && tokens.size()>0)
-            segmentStartOffset = tokens.get(0).getOffset();
+    /**
+     * Disambiguate the raw entities of several segments of the same document, waiting for
+     * the result.
+     */
+    public void disambiguateBatch(List<List<SoftwareEntity>> segmentEntities,
+                                  List<List<LayoutToken>> segmentTokens) {
+        disambiguateAsync(segmentEntities, segmentTokens).join();
+    }
 
-        // build a map for the existing entities in order to catch them easily
-        // based on their positions
-        Map<Integer, SoftwareComponent> entityPositions = new TreeMap<Integer, SoftwareComponent>();
-        for(SoftwareEntity entity : entities) {
-            SoftwareComponent softwareName = entity.getSoftwareName();
-            SoftwareComponent softwareCreator = entity.getCreator();
+    private CompletableFuture<Void> submit(List<List<SoftwareEntity>> batchEntities,
+                                           List<List<LayoutToken>> batchTokens) {
+        return CompletableFuture.runAsync(() -> disambiguateSegments(batchEntities, batchTokens), executor);
+    }
+
+    private static int textLength(List<LayoutToken> tokens) {
+        int length = 0;
+        for (LayoutToken token : tokens) {
+            if (token.getText() != null)
+                length += token.getText().length();
+        }
+        return length;
+    }
 
-            entityPositions.put(Integer.valueOf(softwareName.getOffsetStart()), softwareName);
-            if (softwareCreator != null)
-                entityPositions.put(Integer.valueOf(softwareCreator.getOffsetStart()), softwareCreator);
+    /**
+     * Disambiguate with a single query the raw entities of a list of segments
+     */
+    private void disambiguateSegments(List<List<SoftwareEntity>> segmentEntities,
+                                      List<List<LayoutToken>> segmentTokens) {
+        // map the software components to disambiguate to their start offset in the query text
+        Map<Integer, SoftwareComponent> entityPositions = new TreeMap<Integer, SoftwareComponent>();
+        String json = null;
+        try {
+            String query = buildQuery(segmentEntities, segmentTokens, "en", entityPositions);
+            json = callService(query);
+        } catch(RuntimeException e) {
+            LOGGER.error("Call to entity-fishing failed.", e);
         }
+        if (json == null)
+            return;
 
         // merge entity disambiguation with actual extracted mentions
-        JsonNode root = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            root = mapper.readTree(json);
+            JsonNode root = mapper.readTree(json);
 
             // given that we have potentially a wikipedia identifier, we need the language
             // to be able to solve it in the right wikipedia version
@@ -319,7 +405,7 @@ public class SoftwareDisambiguator {
                     lang = langNode.textValue();
                 }
             }
-            
+
             JsonNode entitiesNode = root.findPath("entities");
             if ((entitiesNode != null) && (!entitiesNode.isMissingNode())) {
                 // we have an array of entity
@@ -328,157 +414,200 @@ public class SoftwareDisambiguator {
                     JsonNode entityNode = ite.next();
                     JsonNode startNode = entityNode.findPath("offsetStart");
                     int startOff = -1;
-                    //int endOff = -1;
                     if ((startNode != null) && (!startNode.isMissingNode())) {
                         startOff = startNode.intValue();
                     }
-                    /*JsonNode endNode = entityNode.findPath("offsetEnd");
-                    if ((endNode != null) && (!endNode.isMissingNode())) {
-                        endOff = endNode.intValue();
-                    }*/
-                    double score = -1;
-                    JsonNode scoreNode = entityNode.findPath("confidence_score");
-                    if ((scoreNode != null) && (!scoreNode.isMissingNode())) {
-                        score = scoreNode.doubleValue();
-                    }
-                    int wikipediaId = -1;
-                    JsonNode wikipediaNode = entityNode.findPath("wikipediaExternalRef");
-                    if ((wikipediaNode != null) && (!wikipediaNode.isMissingNode())) {
-                        wikipediaId = wikipediaNode.intValue();
-                    }
-                    String wikidataId = null;
-                    JsonNode wikidataNode = entityNode.findPath("wikidataId");
-                    if ((wikidataNode != null) && (!wikidataNode.isMissingNode())) {
-                        wikidataId = wikidataNode.textValue();
-                    }
+                    SoftwareComponent component = entityPositions.get(startOff);
+                    if (component != null)
+                        mergeDisambiguation(component, entityNode, lang);
+                }
+            }
 
-                    // domains, e.g. "domains" : [ "Biology", "Engineering" ]
-                    
-                    // statements
-                    Map<String, List<String>> statements = new TreeMap<String,List<String>>();
-                    JsonNode statementsNode = entityNode.findPath("statements");
-                    if ((statementsNode != null) && (!statementsNode.isMissingNode())) {
-                        if (statementsNode.isArray()) {
-                            for (JsonNode statement : statementsNode) {
-                                JsonNode propertyIdNode = statement.findPath("propertyId");
-                                JsonNode valueNode = statement.findPath("value");
-                                if ( (propertyIdNode != null) && (!propertyIdNode.isMissingNode()) &&
-                                     (valueNode != null) && (!valueNode.isMissingNode()) ) {
-                                    List<String> localValues = statements.get(propertyIdNode.textValue());
-                                    if (localValues == null)
-                                        localValues = new ArrayList<String>();
-                                    localValues.add(valueNode.textValue());
-
-                                    statements.put(propertyIdNode.textValue(), localValues);
-                                }
-                            }
-                        }
-                    }
+            // the results are cached, including the absence of result for a component
+            if (cache != null) {
+                for(List<SoftwareEntity> entities : segmentEntities)
+                    cacheResults(entities);
+            }
 
-                    // statements can be used to filter obvious non-software entities which are
-                    // mere disambiguation errors
-
-                    // check if value of P31 (instance of) are observed software values
-                    boolean toBeFiltered = true;
-                    if ( (statements != null) && (statements.get("P31") != null) ) {
-                        List<String> p31 = statements.get("P31");
-                        for(String p31Value : p31) {
-                            if (SoftwareLexicon.getInstance().inSoftwarePropertyValues(p31Value)) {
-                                toBeFiltered = false;
-                                break;
-                            }
-                        }
-                    }
+            // propagate filtering status
+            for(List<SoftwareEntity> entities : segmentEntities)
+                propagateFiltering(entities);
 
-                    // check if any of the P279 (subclass of) values are compatible with software entities, 
-                    // as collected in existing wikidata software entities
-                    if ( toBeFiltered && (statements != null) && (statements.get("P279") != null) ) {
-                        List<String> p279 = statements.get("P279");
-                        for(String p279Value : p279) {
-                            if (SoftwareLexicon.getInstance().inSoftwarePropertyValues(p279Value)) {
-                                toBeFiltered = false;
-                                break;
-                            }
-                        }
-                    }
+            // we could also retrieve the "global_categories" and use that for filtering out some non-software senses
+            // e.g. [{"weight" : 0.16666666666666666, "source" : "wikipedia-en", "category" : "Bioinformatics", "page_id" : 726312}, ...
 
-                    // occurence of any of these properties mean a software (to be refined)
-                    // P178: developer, P3499: Gentoo package identifier, P1324: source code repository, 
-                    // P277: programing language, P348: software version
-                    if ( toBeFiltered && (statements != null) && (statements.get("P178") != null || statements.get("P3499") != null
-                        || statements.get("P1324") != null || statements.get("P277") != null || statements.get("P348") != null) ) {
-                        toBeFiltered = false;
-                    }
-                    
-                    // completely hacky for the moment and to be reviewed
-                    if ( toBeFiltered && (statements != null) && (statements.get("P856") != null) ) {
-                        List<String> p856 = statements.get("P856");
-                        for(String p856Value : p856) {
-                            // these are official web page values, we allow github and apache as possible software web page
-                            // keyterms (.edu, .org ?)
-                            if (p856Value.indexOf("apache") != -1 || p856Value.indexOf("github") != -1 || 
-                                p856Value.indexOf("stanford.edu") != -1) {
-                                toBeFiltered = false;
-                                break;
-                            }
-                        }
-                    }
+        } catch (Exception e) {
+            LOGGER.error("Invalid JSON answer from the NERD", e);
+        }
+    }
 
-                    // also to be reviewed: anything related to the production of software is kept
-                    if ( toBeFiltered && (statements != null) && (statements.get("P1056") != null) ) {
-                        List<String> p1056 = statements.get("P1056");
-                        for(String p1056Value : p1056) {
-                            if (SoftwareLexicon.getInstance().inSoftwarePropertyValues(p1056Value)) {
-                                toBeFiltered = false;
-                                break;
-                            }
-                        }
-                    }
+    private static void propagateFiltering(List<SoftwareEntity> entities) {
+        for(SoftwareEntity entity : entities) {
+            SoftwareComponent softwareName = entity.getSoftwareName();
+            if (softwareName.isFiltered()) {
+                entity.setFiltered(true);
+            }
+        }
+    }
 
-                    // if we have absolutely no statement, we don't filter
-                    if ( toBeFiltered && (statements == null || statements.size() == 0 || statementsNode.isMissingNode()) ) {
-                        toBeFiltered = false;
-                    }
+    /**
+     * Disambiguate the entities of a segment with the cached results, only if all the components
+     * to disambiguate are in the cache.
+     *
+     * @return true if the entities have been disambiguated with the cache
+     */
+    private boolean applyCachedResults(List<SoftwareEntity> entities) {
+        if (cache == null)
+            return false;
+        String signature = SoftwareDisambiguationCache.contextSignature(entities);
+        List<SoftwareComponent> components = new ArrayList<>();
+        List<SoftwareDisambiguationCache.Result> results = new ArrayList<>();
+        for(SoftwareEntity entity : entities) {
+            SoftwareDisambiguationCache.Result result =
+                cache.get(SoftwareDisambiguationCache.key(entity.getSoftwareName(), false, signature));
+            if (result == null)
+                return false;
+            components.add(entity.getSoftwareName());
+            results.add(result);
+            if (entity.getCreator() != null) {
+                result = cache.get(SoftwareDisambiguationCache.key(entity.getCreator(), true, signature));
+                if (result == null)
+                    return false;
+                components.add(entity.getCreator());
+                results.add(result);
+            }
+        }
+        for (int i = 0; i < components.size(); i++)
+            results.get(i).applyTo(components.get(i));
+        propagateFiltering(entities);
+        return true;
+    }
 
-//System.out.println(""+startOff + " / " + (startOff+segmentStartOffset+1));
-                    SoftwareComponent component = entityPositions.get(startOff+segmentStartOffset+1);
-                    if (component != null) {
-                        // merging
-                        if (wikidataId != null)
-                            component.setWikidataId(wikidataId);
-                        if (wikipediaId != -1)
-                            component.setWikipediaExternalRef(wikipediaId);
-                        if (score != -1)
-                            component.setDisambiguationScore(score);
-                        if (lang != null)
-                            component.setLang(lang);
-
-                        if (toBeFiltered) {
-                            component.setFiltered(true);
-//System.out.println("filtered entity: " + wikidataId);
-                            //continue;
-                        }
+    private void cacheResults(List<SoftwareEntity> entities) {
+        String signature = SoftwareDisambiguationCache.contextSignature(entities);
+        for(SoftwareEntity entity : entities) {
+            cache.put(SoftwareDisambiguationCache.key(entity.getSoftwareName(), false, signature),
+                SoftwareDisambiguationCache.Result.fromComponent(entity.getSoftwareName()));
+            if (entity.getCreator() != null)
+                cache.put(SoftwareDisambiguationCache.key(entity.getCreator(), true, signature),
+                    SoftwareDisambiguationCache.Result.fromComponent(entity.getCreator()));
+        }
+    }
+
+    /**
+     * Merge the disambiguation result of an entity returned by entity-fishing in the
+     * corresponding software component
+     */
+    private static void mergeDisambiguation(SoftwareComponent component, JsonNode entityNode, String lang) {
+        double score = -1;
+        JsonNode scoreNode = entityNode.findPath("confidence_score");
+        if ((scoreNode != null) && (!scoreNode.isMissingNode())) {
+            score = scoreNode.doubleValue();
+        }
+        int wikipediaId = -1;
+        JsonNode wikipediaNode = entityNode.findPath("wikipediaExternalRef");
+        if ((wikipediaNode != null) && (!wikipediaNode.isMissingNode())) {
+            wikipediaId = wikipediaNode.intValue();
+        }
+        String wikidataId = null;
+        JsonNode wikidataNode = entityNode.findPath("wikidataId");
+        if ((wikidataNode != null) && (!wikidataNode.isMissingNode())) {
+            wikidataId = wikidataNode.textValue();
+        }
+
+        // domains, e.g. "domains" : [ "Biology", "Engineering" ]
+
+        // statements
+        Map<String, List<String>> statements = new TreeMap<String,List<String>>();
+        JsonNode statementsNode = entityNode.findPath("statements");
+        if ((statementsNode != null) && (!statementsNode.isMissingNode())) {
+            if (statementsNode.isArray()) {
+                for (JsonNode statement : statementsNode) {
+                    JsonNode propertyIdNode = statement.findPath("propertyId");
+                    JsonNode valueNode = statement.findPath("value");
+                    if ( (propertyIdNode != null) && (!propertyIdNode.isMissingNode()) &&
+                         (valueNode != null) && (!valueNode.isMissingNode()) ) {
+                        List<String> localValues = statements.get(propertyIdNode.textValue());
+                        if (localValues == null)
+                            localValues = new ArrayList<String>();
+                        localValues.add(valueNode.textValue());
+
+                        statements.put(propertyIdNode.textValue(), localValues);
                     }
                 }
             }
+        }
 
-            // propagate filtering status
-            for(SoftwareEntity entity : entities) {
-                SoftwareComponent softwareName = entity.getSoftwareName();
-                if (softwareName.isFiltered()) {
-                    entity.setFiltered(true);
+        // merging
+        if (wikidataId != null)
+            component.setWikidataId(wikidataId);
+        if (wikipediaId != -1)
+            component.setWikipediaExternalRef(wikipediaId);
+        if (score != -1)
+            component.setDisambiguationScore(score);
+        if (lang != null)
+            component.setLang(lang);
+
+        // statements can be used to filter obvious non-software entities which are
+        // mere disambiguation errors
+        if (toBeFiltered(statements))
+            component.setFiltered(true);
+    }
+
+    /**
+     * Return true if the Wikidata statements of a disambiguated entity indicate that it is
+     * not a software
+     */
+    private static boolean toBeFiltered(Map<String, List<String>> statements) {
+        // if we have absolutely no statement, we don't filter
+        if (statements == null || statements.size() == 0)
+            return false;
+
+        // check if value of P31 (instance of) are observed software values
+        if (inSoftwarePropertyValues(statements.get("P31")))
+            return false;
+
+        // check if any of the P279 (subclass of) values are compatible with software entities,
+        // as collected in existing wikidata software entities
+        if (inSoftwarePropertyValues(statements.get("P279")))
+            return false;
+
+        // occurence of any of these properties mean a software (to be refined)
+        // P178: developer, P3499: Gentoo package identifier, P1324: source code repository,
+        // P277: programing language, P348: software version
+        if (statements.get("P178") != null || statements.get("P3499") != null
+            || statements.get("P1324") != null || statements.get("P277") != null || statements.get("P348") != null) {
+            return false;
+        }
+
+        // completely hacky for the moment and to be reviewed
+        if (statements.get("P856") != null) {
+            List<String> p856 = statements.get("P856");
+            for(String p856Value : p856) {
+                // these are official web page values, we allow github and apache as possible software web page
+                // keyterms (.edu, .org ?)
+                if (p856Value.indexOf("apache") != -1 || p856Value.indexOf("github") != -1 ||
+                    p856Value.indexOf("stanford.edu") != -1) {
+                    return false;
                 }
             }
+        }
 
-            // we could also retrieve the "global_categories" and use that for filtering out some non-software senses
-            // e.g. [{"weight" : 0.16666666666666666, "source" : "wikipedia-en", "category" : "Bioinformatics", "page_id" : 726312}, ...
+        // also to be reviewed: anything related to the production of software is kept
+        if (inSoftwarePropertyValues(statements.get("P1056")))
+            return false;
 
-        } catch (Exception e) {
-            LOGGER.error("Invalid JSON answer from the NERD", e);
-            e.printStackTrace();
-        }
+        return true;
+    }
 
-        return entities;
+    private static boolean inSoftwarePropertyValues(List<String> values) {
+        if (values == null)
+            return false;
+        for(String value : values) {
+            if (SoftwareLexicon.getInstance().inSoftwarePropertyValues(value))
+                return true;
+        }
+        return false;
     }
 
     private static String RESOURCEPATH = "disambiguate";
@@ -486,131 +615,136 @@ public class SoftwareDisambiguator {
     /**
      * Call entity fishing disambiguation service on server.
      *
-     * To be Moved in a Worker !
-     *
      * @return the resulting disambiguated context in JSON or null
      */
     public String runNerd(List<SoftwareEntity> entities, List<LayoutToken> subtokens, String lang) throws RuntimeException {
-        if (!serverStatus)
-            return null;
+        String query = buildQuery(Collections.singletonList(entities), Collections.singletonList(subtokens), lang,
+            new TreeMap<Integer, SoftwareComponent>());
+        return callService(query);
+    }
 
-        StringBuffer output = new StringBuffer();
-        try {
-            URL url = null;
-            if ( (nerd_port != null) && (nerd_port.length() > 0) )
-                if (nerd_port.equals("443"))
-                    url = new URL("https://" + nerd_host + "/service/" + RESOURCEPATH);
-                else
-                    url = new URL("http://" + nerd_host + ":" + nerd_port + "/service/" + RESOURCEPATH);
-            else
-                url = new URL("http://" + nerd_host + "/service/" + RESOURCEPATH);
-//System.out.println("calling... " + url.toString());
-            CloseableHttpClient httpClient = HttpClients.createDefault();
-            HttpPost post = new HttpPost(url.toString());
-            //post.addHeader("Content-Type", "application/json");
-            //post.addHeader("Accept", "application/json");
-
-            // we create the query structure
-            // context as an JSON array of strings
-            JsonStringEncoder encoder = JsonStringEncoder.getInstance();
-            StringBuffer buffer = new StringBuffer();
-            buffer.append("{\"language\":{\"lang\":\"" + lang + "\"}");
-            //buffer.append(",\"nbest\": 0");
-            // we ask for French and German language correspondences in the result
-            //buffer.append(", \"resultLanguages\":[ \"de\", \"fr\"]");
-            buffer.append(", \"text\": \"");
-            int startSegmentOffset = -1;
-            for(LayoutToken token : subtokens) {
-                String tokenText = token.getText();
-                if (startSegmentOffset == -1)
-                    startSegmentOffset = token.getOffset()+1;
-                if (tokenText.equals("\n")) 
-                    tokenText = " ";
-                byte[] encodedText = encoder.quoteAsUTF8(tokenText);
-                String outputEncodedText = new String(encodedText);
-                buffer.append(outputEncodedText);
+    /**
+     * Build the entity-fishing query for a list of segments. The text of the segments are
+     * concatenated and the software components to disambiguate (software names and creators)
+     * are given with their offsets in this text, no other mention is disambiguated.
+     *
+     * @param entityPositions filled with the software components indexed by their start offset in the query text
+     */
+    private static String buildQuery(List<List<SoftwareEntity>> segmentEntities,
+                                     List<List<LayoutToken>> segmentTokens,
+                                     String lang,
+                                     Map<Integer, SoftwareComponent> entityPositions) {
+        ObjectNode query = mapper.createObjectNode();
+        query.putObject("language").put("lang", lang);
+
+        StringBuilder text = new StringBuilder();
+        ArrayNode entitiesNode = mapper.createArrayNode();
+        for (int i = 0; i < segmentEntities.size(); i++) {
+            if (i > 0)
+                text.append(SEGMENT_SEPARATOR);
+            int segmentStart = text.length();
+            if (segmentTokens.get(i) != null) {
+                for(LayoutToken token : segmentTokens.get(i)) {
+                    String tokenText = token.getText();
+                    if (tokenText == null)
+                        continue;
+                    if (tokenText.equals("\n"))
+                        tokenText = " ";
+                    text.append(tokenText);
+                }
             }
-            if (startSegmentOffset == -1)
-                startSegmentOffset = 1;
-
-            // no mention, it means only the mentions given in the query will be dismabiguated!
-            buffer.append("\", \"mentions\": []");
 
-            buffer.append(", \"entities\": [");
-            boolean first = true;
-            List<SoftwareComponent> components = new ArrayList<SoftwareComponent>();
-            for(SoftwareEntity entity : entities) {
+            // the component offsets are relative to the text of their segment
+            for(SoftwareEntity entity : segmentEntities.get(i)) {
                 // get the software components interesting to disambiguate
-                SoftwareComponent softwareName = entity.getSoftwareName();
-                SoftwareComponent softwareCreator = entity.getCreator();
-
-                components.add(softwareName);
-                if (softwareCreator != null)
-                    components.add(softwareName);
-            }
-
-            for(SoftwareComponent component: components) {
-                if (first) {
-                    first = false;
-                } else {
-                    buffer.append(", ");
+                List<SoftwareComponent> components = new ArrayList<>();
+                components.add(entity.getSoftwareName());
+                if (entity.getCreator() != null)
+                    components.add(entity.getCreator());
+
+                for(SoftwareComponent component : components) {
+                    int offsetStart = segmentStart + component.getOffsetStart();
+                    ObjectNode entityNode = entitiesNode.addObject();
+                    entityNode.put("rawName", component.getRawForm());
+                    entityNode.put("offsetStart", offsetStart);
+                    entityNode.put("offsetEnd", segmentStart + component.getOffsetEnd());
+                    entityPositions.put(Integer.valueOf(offsetStart), component);
                 }
-
-                byte[] encodedText = encoder.quoteAsUTF8(component.getRawForm() );
-                String outputEncodedText = new String(encodedText);
-
-                buffer.append("{\"rawName\": \"" + outputEncodedText + "\", \"offsetStart\": " + (component.getOffsetStart() - startSegmentOffset)+ 
-                    ", \"offsetEnd\": " + (component.getOffsetEnd() - startSegmentOffset));
-                //buffer.append(", \"type\": \"");
-                buffer.append(" }");
             }
+        }
+
+        query.put("text", text.toString());
+        // no mention, it means only the mentions given in the query will be dismabiguated!
+        query.putArray("mentions");
+        query.set("entities", entitiesNode);
+        query.put("full", true);
+        query.put("customisation", "software");
+        query.put("minSelectorScore", 0.2);
+
+        String json = query.toString();
+        LOGGER.debug(json);
+        return json;
+    }
 
-            buffer.append("], \"full\": true, \"customisation\": \"software\", \"minSelectorScore\": 0.2 }");
-            //buffer.append("] }");
-            LOGGER.debug(buffer.toString());
-//System.out.println(buffer.toString());
+    /**
+     * Send a query to the entity-fishing disambiguation service, through the circuit breaker.
+     *
+     * @return the JSON response or null if the call failed or was not attempted
+     */
+    private String callService(String query) {
+        if (!serverStatus || !allowCall())
+            return null;
 
-            //params.add(new BasicNameValuePair("query", buffer.toString()));
+        try {
+            HttpPost post = new HttpPost(getServiceUrl(RESOURCEPATH));
 
-            StringBody stringBody = new StringBody(buffer.toString(), ContentType.MULTIPART_FORM_DATA);
+            StringBody stringBody = new StringBody(query, ContentType.MULTIPART_FORM_DATA.withCharset(UTF_8));
             MultipartEntityBuilder builder = MultipartEntityBuilder.create();
             builder.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
             builder.addPart("query", stringBody);
-            HttpEntity entity = builder.build();
-
-            CloseableHttpResponse response = null;
-            Scanner in = null;
-            try {
-                //post.setEntity(new UrlEncodedFormEntity(params));
-                post.setEntity(entity);
-                response = httpClient.execute(post);
-                // System.out.println(response.getStatusLine());
+            post.setEntity(builder.build());
 
+            try (CloseableHttpResponse response = httpClient.execute(post)) {
                 int code = response.getStatusLine().getStatusCode();
+                HttpEntity entityResp = response.getEntity();
+                String output = (entityResp == null) ? null : EntityUtils.toString(entityResp, UTF_8);
                 if (code != 200) {
                     LOGGER.error("Failed annotating text segment: HTTP error code : " + code);
+                    // client errors are specific to the query, not a sign of unavailability of the service
+                    if (code >= 500)
+                        recordFailure();
+                    else
+                        recordSuccess();
                     return null;
                 }
-
-                HttpEntity entityResp = response.getEntity();
-                in = new Scanner(entityResp.getContent());
-                while (in.hasNext()) {
-                    output.append(in.next());
-                    output.append(" ");
-                }
-                EntityUtils.consume(entityResp);
-            } finally {
-                if (in != null)
-                    in.close();
-                if (response != null)
-                    response.close();
+                recordSuccess();
+                return (output == null) ? null : output.trim();
             }
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
         } catch (IOException e) {
-            e.printStackTrace();
+            recordFailure();
+            LOGGER.error("Call to entity-fishing failed: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Circuit breaker: calls are not attempted during the suspension delay following a series
+     * of consecutive failures, then a new call is tried.
+     */
+    private boolean allowCall() {
+        return System.currentTimeMillis() >= suspendedUntil;
+    }
+
+    private void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    private void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD) {
+            suspendedUntil = System.currentTimeMillis() + SUSPENSION_DELAY;
+            LOGGER.warn("entity-fishing calls suspended for " + (SUSPENSION_DELAY / 1000) +
+                " s after " + consecutiveFailures.get() + " consecutive failures");
         }
-        return output.toString().trim();
     }
 
 }
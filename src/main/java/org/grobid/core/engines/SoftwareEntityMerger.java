@@ -0,0 +1,161 @@
+package org.grobid.core.engines;
+
+import org.grobid.core.data.BiblioComponent;
+import org.grobid.core.data.SoftwareComponent;
+import org.grobid.core.data.SoftwareEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Document-level merge of the information of the software entities having the same software name,
+ * at the end of the PDF and TEI processing. It only depends on the entity list, so it can be
+ * applied to the entities of any kind of input.
+ *
+ * The entities are grouped by software name with hash maps, and the missing information of an
+ * entity is taken from the first entity of its group having it, in document order. This gives
+ * the same result as merging every pair of entities of a group, in linear time. The copies of
+ * the components propagated to other entities do not have positions: one copy is made per group
+ * and shared by all the entities receiving it. Bibliographical reference lists are not shared,
+ * because references can still be added to an entity.
+ */
+public class SoftwareEntityMerger {
+
+    private SoftwareEntityMerger() {
+    }
+
+    /**
+     * Propagate the disambiguation of software names to the non-disambiguated entities with the
+     * same software name raw form
+     */
+    public static void propagateDisambiguation(List<SoftwareEntity> entities) {
+        Map<String, SoftwareComponent> disambiguatedNames = new HashMap<>();
+        for (SoftwareEntity entity : entities) {
+            SoftwareComponent name = entity.getSoftwareName();
+            if (name != null && name.getRawForm() != null && name.getWikidataId() != null)
+                disambiguatedNames.putIfAbsent(name.getRawForm(), name);
+        }
+        if (disambiguatedNames.isEmpty())
+            return;
+
+        for (SoftwareEntity entity : entities) {
+            SoftwareComponent name = entity.getSoftwareName();
+            if (name == null || name.getWikidataId() != null)
+                continue;
+            SoftwareComponent source = disambiguatedNames.get(name.getRawForm());
+            if (source != null) {
+                source.copyKnowledgeInformationTo(name);
+                name.setLang(source.getLang());
+            }
+        }
+    }
+
+    /**
+     * Propagate the bibliographical references to the entities without references having the
+     * same software name raw form
+     */
+    public static void propagateBibRefs(List<SoftwareEntity> entities) {
+        for (List<SoftwareEntity> group : groupBy(entities, SoftwareComponent::getRawForm).values()) {
+            List<BiblioComponent> bibRefs = null;
+            for (SoftwareEntity entity : group) {
+                if (entity.getBibRefs() != null && entity.getBibRefs().size() > 0) {
+                    bibRefs = copyBibRefs(entity.getBibRefs());
+                    break;
+                }
+            }
+            if (bibRefs == null)
+                continue;
+            for (SoftwareEntity entity : group) {
+                if (entity.getBibRefs() == null)
+                    entity.setBibRefs(new ArrayList<>(bibRefs));
+            }
+        }
+    }
+
+    /**
+     * Merge the attributes (version, creator, URL, programming language, bibliographical references
+     * and disambiguation) of the entities with the same software name normalized form, each missing
+     * attribute being copied from the first entity having it
+     */
+    public static void mergeAttributes(List<SoftwareEntity> entities) {
+        for (List<SoftwareEntity> group : groupBy(entities, SoftwareComponent::getNormalizedForm).values()) {
+            if (group.size() < 2)
+                continue;
+
+            SoftwareComponent version = copyFirst(group, SoftwareEntity::getVersion);
+            SoftwareComponent creator = copyFirst(group, SoftwareEntity::getCreator);
+            SoftwareComponent softwareURL = copyFirst(group, SoftwareEntity::getSoftwareURL);
+            SoftwareComponent language = copyFirst(group, SoftwareEntity::getLanguage);
+
+            List<BiblioComponent> bibRefs = null;
+            SoftwareComponent disambiguatedName = null;
+            for (SoftwareEntity entity : group) {
+                if (bibRefs == null && entity.getBibRefs() != null && entity.getBibRefs().size() > 0)
+                    bibRefs = copyBibRefs(entity.getBibRefs());
+                if (disambiguatedName == null && entity.getSoftwareName().getWikidataId() != null)
+                    disambiguatedName = entity.getSoftwareName();
+            }
+
+            for (SoftwareEntity entity : group) {
+                if (entity.getVersion() == null && version != null)
+                    entity.setVersion(version);
+                if (entity.getCreator() == null && creator != null)
+                    entity.setCreator(creator);
+                if (entity.getSoftwareURL() == null && softwareURL != null)
+                    entity.setSoftwareURL(softwareURL);
+                if (entity.getLanguage() == null && language != null)
+                    entity.setLanguage(language);
+                if (entity.getBibRefs() == null && bibRefs != null)
+                    entity.setBibRefs(new ArrayList<>(bibRefs));
+
+                SoftwareComponent name = entity.getSoftwareName();
+                if (name.getWikidataId() == null && disambiguatedName != null) {
+                    disambiguatedName.copyKnowledgeInformationTo(name);
+                    name.setLang(disambiguatedName.getLang());
+                }
+            }
+        }
+    }
+
+    /**
+     * Group the entities having a software name by a form of the name, in document order
+     */
+    private static Map<String, List<SoftwareEntity>> groupBy(List<SoftwareEntity> entities,
+                                                            Function<SoftwareComponent, String> form) {
+        Map<String, List<SoftwareEntity>> groups = new LinkedHashMap<>();
+        for (SoftwareEntity entity : entities) {
+            SoftwareComponent name = entity.getSoftwareName();
+            if (name == null)
+                continue;
+            String key = form.apply(name);
+            if (key != null)
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+        }
+        return groups;
+    }
+
+    /**
+     * Copy without position of the first component of the group for an attribute, or null
+     */
+    private static SoftwareComponent copyFirst(List<SoftwareEntity> group,
+                                               Function<SoftwareEntity, SoftwareComponent> attribute) {
+        for (SoftwareEntity entity : group) {
+            SoftwareComponent component = attribute.apply(entity);
+            if (component != null)
+                return new SoftwareComponent(component);
+        }
+        return null;
+    }
+
+    private static List<BiblioComponent> copyBibRefs(List<BiblioComponent> bibRefs) {
+        List<BiblioComponent> copies = new ArrayList<>();
+        for (BiblioComponent bibRef : bibRefs) {
+            copies.add(new BiblioComponent(bibRef));
+        }
+        return copies;
+    }
+}
@@ -5,6 +5,7 @@ import nu.xom.Element;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
@@ -24,13 +25,17 @@ import org.grobid.core.engines.label.TaggingLabels;
 import org.grobid.core.engines.tagging.GrobidCRFEngine;
 import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.factory.GrobidFactory;
+import org.grobid.core.features.AnalyzedSegment;
 import org.grobid.core.features.FeatureFactory;
 import org.grobid.core.features.FeaturesVectorSoftware;
+import org.grobid.core.features.SoftwareFeatureMatrix;
+import org.grobid.core.features.SoftwareFeatureMatrixBuilder;
+import org.grobid.core.features.SoftwareLabeledResult;
 import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
 import org.grobid.core.layout.LayoutTokenization;
 import org.grobid.core.layout.PDFAnnotation;
-import org.grobid.core.lexicon.FastMatcher;
+import org.grobid.core.lexicon.DocumentTermMatcher;
 import org.grobid.core.lexicon.Lexicon;
 import org.grobid.core.lexicon.SoftwareLexicon;
 import org.grobid.core.sax.TextChunkSaxHandler;
@@ -46,13 +51,29 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -76,6 +97,20 @@ public class SoftwareParser extends AbstractParser {
     private SoftwareConfiguration softwareConfiguration;
     private SoftwareTypeParser softwareTypeParser;
 
+    // total number of tokens sent to the software sequence labeling model by this instance, 
+    // used for throughput reporting
+    private final AtomicLong labeledTokenCount = new AtomicLong();
+
+    // false if the in-JVM Pub2TEI transformation cannot be used (e.g. Saxon not available)
+    private volatile boolean pub2teiInJVM = true;
+
+    // micro-batching of the labeling calls across concurrent requests, only for a DeLFT model
+    private MicroBatchScheduler<SoftwareFeatureMatrix, SoftwareLabeledResult> labelingScheduler = null;
+
+    // threads shared by all the requests for processing the chunks of segments of a document, null if
+    // the segments are processed in the calling thread only
+    private ThreadPoolExecutor segmentExecutor = null;
+
     public static SoftwareParser getInstance(SoftwareConfiguration configuration) {
         if (instance == null) {
             getNewInstance(configuration);
@@ -87,7 +122,9 @@ public class SoftwareParser extends AbstractParser {
      * Create a new instance.
      */
     private static synchronized void getNewInstance(SoftwareConfiguration configuration) {
-        instance = new SoftwareParser(configuration);
+        // the instance may have been created by a concurrent call
+        if (instance == null)
+            instance = new SoftwareParser(configuration);
     }
 
 
@@ -96,11 +133,55 @@ public class SoftwareParser extends AbstractParser {
             GrobidCRFEngine.valueOf(configuration.getModel("software").engine.toUpperCase()),
             configuration.getModel("software").delft.architecture);
 
-        softwareLexicon = SoftwareLexicon.getInstance();
+        softwareLexicon = SoftwareLexicon.getInstance(configuration);
         parsers = new EngineParsers();
         disambiguator = SoftwareDisambiguator.getInstance(configuration);
         softwareConfiguration = configuration;
         softwareTypeParser = SoftwareTypeParser.getInstance(configuration);
+
+        if (configuration.getModel("software").engine.equals("delft"))
+            labelingScheduler = SoftwareLabeledResult.createScheduler("software", this, configuration);
+
+        if (configuration.getSegmentParallelism() > 1)
+            segmentExecutor = createSegmentExecutor(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Configuration of the instance, read by each request
+     */
+    SoftwareConfiguration getSoftwareConfiguration() {
+        return softwareConfiguration;
+    }
+
+    /**
+     * Load the GROBID models used for processing the PDF documents, otherwise loaded by the
+     * first processed PDF
+     */
+    public void loadGrobidModels() {
+        parsers.getSegmentationParser();
+        parsers.getHeaderParser();
+        parsers.getFullTextParser();
+        parsers.getReferenceSegmenterParser();
+        parsers.getCitationParser();
+    }
+
+    /**
+     * Bounded executor for processing the chunks of segments, one thread per core. When the queue 
+     * is full, the chunk is processed in the calling thread.
+     */
+    private static ThreadPoolExecutor createSegmentExecutor(int nbThreads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(nbThreads * 4),
+            runnable -> {
+                Thread thread = new Thread(runnable, "software-segments-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     public List<List<SoftwareEntity>> processTexts(List<List<LayoutToken>> tokens, boolean disambiguate) throws Exception {
@@ -108,102 +189,143 @@ public class SoftwareParser extends AbstractParser {
             return new ArrayList<>();
         }
 
-        List<String> ressList = new ArrayList<>();
+        // the feature matrices are built once and shared by the software and software-type models
+        List<SoftwareFeatureMatrix> featuresList = new ArrayList<>();
+        List<AnalyzedSegment> segments = new ArrayList<>();
 
-        for (List<LayoutToken> tokensSentence : tokens) {
-            // to store software name positions (names coming from the optional dictionary)
-            List<OffsetPosition> softwareTokenPositions = softwareLexicon.tokenPositionsSoftwareNames(tokensSentence);
-            List<OffsetPosition> urlPositions = Lexicon.getInstance().tokenPositionsUrlPattern(tokensSentence);
-            String ress = addFeatures(tokensSentence, softwareTokenPositions, urlPositions);
-            ressList.add(ress + "\n");
+        try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.FEATURES)) {
+            for (List<LayoutToken> tokensSentence : tokens) {
+                AnalyzedSegment segment = new AnalyzedSegment(tokensSentence);
+                segments.add(segment);
+                // to store software name positions (names coming from the optional dictionary)
+                List<OffsetPosition> softwareTokenPositions = segment.getSoftwareNamePositions();
+                List<OffsetPosition> urlPositions = Lexicon.getInstance().tokenPositionsUrlPattern(tokensSentence);
+                SoftwareFeatureMatrix features = SoftwareFeatureMatrixBuilder.build(tokensSentence, softwareTokenPositions, urlPositions);
+                countLabeledTokens(features.getTokenRowCount());
+                featuresList.add(features);
+            }
         }
-        String res;
-        try {
-            res = label(ressList);
+        SoftwareLabeledResult res;
+        try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.SOFTWARE_LABELLING)) {
+            res = SoftwareLabeledResult.label(this, featuresList, labelingScheduler);
         } catch (Exception e) {
             throw new GrobidException("Sequence labeling for software parsing failed.", e);
         }
-        String[] split = res.split("\n\n");
-        List<String> resList = Arrays.asList(split);
-
 
-        List<SoftwareComponent> allComponents = new ArrayList<>();
         List<List<SoftwareEntity>> allEntities = new ArrayList<>();
-
-        int sentenceStartToken = 0;
-
         for (int i = 0; i < tokens.size(); i++) {
-
-            List<SoftwareComponent> components = extractSoftwareComponents(LayoutTokensUtil.toText(tokens.get(i)), resList.get(i), tokens.get(i));
+            List<SoftwareComponent> components = extractSoftwareComponents(segments.get(i).getText(), res.getSequenceResult(i), tokens.get(i));
             // we group the identified components by full entities
-            List<SoftwareEntity> entities = groupByEntities(components);
-            // disambiguation
+            allEntities.add(groupByEntities(components));
+        }
 
-            if (disambiguate) {
-                entities = disambiguator.disambiguate(entities, tokens.get(i));
-                // apply existing filtering
-                List<Integer> indexToBeFiltered = new ArrayList<>();
-                int k = 0;
-                for (SoftwareEntity entity : entities) {
-                    if (entity.isFiltered()) {
-                        indexToBeFiltered.add(Integer.valueOf(k));
-                    }
-                    k++;
-                }
+        // disambiguation of all the sentences in the background, while the software types are labeled
+        CompletableFuture<Void> disambiguation = disambiguate ?
+            disambiguator.disambiguateAsync(allEntities, tokens) : CompletableFuture.completedFuture(null);
 
-                if (indexToBeFiltered.size() > 0) {
-                    for (int j = indexToBeFiltered.size() - 1; j >= 0; j--) {
-                        entities.remove(indexToBeFiltered.get(j).intValue());
-                    }
-                }
-            }
+        // refine software types, if there is anything to refine, with a single labeling call 
+        // of the software-type model over the already built feature matrices
+        List<List<SoftwareType>> allEntityTypes = labelSoftwareTypes(featuresList, tokens, allEntities);
 
+        disambiguation.join();
+
+        for (int i = 0; i < tokens.size(); i++) {
+            List<SoftwareEntity> entities = allEntities.get(i);
+
+            // apply existing filtering
+            if (disambiguate)
+                entities = removeFilteredEntities(entities);
 
             // propagate
-            // we prepare a matcher for all the identified software names
-            FastMatcher termPattern = prepareTermPattern(entities);
-            // we prepare the frequencies for each software name in the whole document
-            Map<String, Integer> frequencies = prepareFrequencies(entities, tokens.get(i));
+            // we prepare a matcher for all the identified software names, with their frequencies in the whole document
+            DocumentTermMatcher termMatcher = prepareTermMatcher(entities, tokens.get(i));
             // we prepare a map for mapping a software name with its positions of annotation in the document and its IDF
             Map<String, Double> termProfiles = prepareTermProfiles(entities);
             // we prepare a list of existing positions to avoid overlap
-            List<OffsetPosition> placeTaken = preparePlaceTaken(entities);
+            OffsetPositionIndex placeTaken = preparePlaceTaken(entities);
             // and call the propagation method
-            entities = propagateLayoutTokenSequence(tokens.get(i), entities, termProfiles, termPattern, placeTaken, frequencies, false, false, false);
+            entities = propagateLayoutTokenSequence(segments.get(i), entities, termProfiles, termMatcher, placeTaken, false, false, false);
             Collections.sort(entities);
 
-            // refine software types, if there is anything to refine
-            if (entities.size() > 0) {
-                try {
-                    List<SoftwareType> entityTypes = softwareTypeParser.processFeatureInput(LayoutTokensUtil.toText(tokens.get(i)), resList.get(i), tokens.get(i));
-                    /*for(SoftwareType entityType : entityTypes) {
-                        System.out.println("\n" + entityType.toString());
-                    }*/
-                    if (entityTypes != null && entityTypes.size() > 0) {
-                        entities = refineTypes(entities, entityTypes);
-
-                        // additional sort in case new entites were introduced
-                        Collections.sort(entities);
-                    }
+            // the software types were labeled before filtering, they are ignored if all the entities were filtered
+            List<SoftwareType> entityTypes = allEntityTypes.get(i);
+            if (entities.size() > 0 && entityTypes != null && entityTypes.size() > 0) {
+                entities = refineTypes(entities, entityTypes);
 
-                } catch (Exception e) {
-                    throw new GrobidException("Sequence labeling for software type parsing failed.", e);
-                }
+                // additional sort in case new entites were introduced
+                Collections.sort(entities);
             }
 
             // attach a local text context to the entities
-            entities = addContext(entities, LayoutTokensUtil.toText(tokens.get(i)), tokens.get(i), false, false, false);
+            entities = addContext(entities, segments.get(i).getText(), tokens.get(i), false, false, false);
 
             // finally classify the context for predicting the role of the software mention
             entities = SoftwareContextClassifier.getInstance(softwareConfiguration).classifyDocumentContexts(entities);
 
-            allEntities.add(entities);
-            allComponents.addAll(components);
+            allEntities.set(i, entities);
+            ProcessingStages.count(ProcessingStages.MENTIONS, entities.size());
         }
 
         return allEntities;
     }
 
+    /**
+     * Remove the entities filtered by the disambiguation, as not corresponding to a software
+     */
+    private static List<SoftwareEntity> removeFilteredEntities(List<SoftwareEntity> entities) {
+        List<SoftwareEntity> result = new ArrayList<>();
+        for (SoftwareEntity entity : entities) {
+            if (!entity.isFiltered())
+                result.add(entity);
+        }
+        return result;
+    }
+
+    /**
+     * Label with the software-type model the segments where software entities have been found, 
+     * reusing the feature matrices already built for the software model, so that features are 
+     * computed once and the software-type model is called only once for the whole batch. 
+     * The result is aligned with the list of segments, with a null value for segments 
+     * without entity.
+     */
+    private List<List<SoftwareType>> labelSoftwareTypes(List<SoftwareFeatureMatrix> segmentFeatures,
+                                                        List<List<LayoutToken>> segmentTokens,
+                                                        List<List<SoftwareEntity>> segmentEntities) {
+        List<List<SoftwareType>> allEntityTypes = new ArrayList<>();
+        List<SoftwareFeatureMatrix> selectedFeatures = new ArrayList<>();
+        List<List<LayoutToken>> selectedTokens = new ArrayList<>();
+        for (int i = 0; i < segmentEntities.size(); i++) {
+            allEntityTypes.add(null);
+            if (CollectionUtils.isNotEmpty(segmentEntities.get(i)) && segmentFeatures.get(i).getTokenRowCount() > 0) {
+                selectedFeatures.add(segmentFeatures.get(i));
+                selectedTokens.add(segmentTokens.get(i));
+            }
+        }
+
+        if (selectedFeatures.size() == 0)
+            return allEntityTypes;
+
+        List<List<SoftwareType>> selectedEntityTypes;
+        try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.TYPE_LABELLING)) {
+            selectedEntityTypes = softwareTypeParser.processFeatureInputs(selectedFeatures, selectedTokens);
+        } catch (Exception e) {
+            throw new GrobidException("Sequence labeling for software type parsing failed.", e);
+        }
+
+        if (selectedEntityTypes == null)
+            return allEntityTypes;
+
+        int l = 0;
+        for (int i = 0; i < segmentEntities.size() && l < selectedEntityTypes.size(); i++) {
+            if (CollectionUtils.isNotEmpty(segmentEntities.get(i)) && segmentFeatures.get(i).getTokenRowCount() > 0) {
+                allEntityTypes.set(i, selectedEntityTypes.get(l));
+                l++;
+            }
+        }
+
+        return allEntityTypes;
+    }
+
     /**
      * Extract all Software mentions from a simple piece of text.
      */
@@ -266,18 +388,23 @@ public class SoftwareParser extends AbstractParser {
         List<SoftwareComponent> components = new ArrayList<SoftwareComponent>();
         List<SoftwareEntity> entities = null;
         try {
+            AnalyzedSegment segment = new AnalyzedSegment(tokens);
             // to store software name positions (names coming from the optional dictionary)
-            List<OffsetPosition> softwareTokenPositions = softwareLexicon.tokenPositionsSoftwareNames(tokens);
-            List<OffsetPosition> urlPositions = Lexicon.getInstance().tokenPositionsUrlPattern(tokens);
-            String ress = addFeatures(tokens, softwareTokenPositions, urlPositions);
-            String res;
-            try {
-                res = label(ress);
+            List<OffsetPosition> softwareTokenPositions = segment.getSoftwareNamePositions();
+            SoftwareFeatureMatrix features;
+            try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.FEATURES)) {
+                List<OffsetPosition> urlPositions = Lexicon.getInstance().tokenPositionsUrlPattern(tokens);
+                features = SoftwareFeatureMatrixBuilder.build(tokens, softwareTokenPositions, urlPositions);
+            }
+            countLabeledTokens(features.getTokenRowCount());
+            SoftwareLabeledResult res;
+            try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.SOFTWARE_LABELLING)) {
+                res = SoftwareLabeledResult.label(this, Collections.singletonList(features), labelingScheduler);
             } catch (Exception e) {
                 throw new GrobidException("Sequence labeling for software parsing failed.", e);
             }
 
-            components = extractSoftwareComponents(text, res, tokens);
+            components = extractSoftwareComponents(text, res.getSequenceResult(0), tokens);
 
             // we group the identified components by full entities
             entities = groupByEntities(components);
@@ -303,22 +430,20 @@ public class SoftwareParser extends AbstractParser {
             }
 
             // propagate
-            // we prepare a matcher for all the identified software names
-            FastMatcher termPattern = prepareTermPattern(entities);
-            // we prepare the frequencies for each software name in the whole document
-            Map<String, Integer> frequencies = prepareFrequencies(entities, tokens);
+            // we prepare a matcher for all the identified software names, with their frequencies in the whole document
+            DocumentTermMatcher termMatcher = prepareTermMatcher(entities, tokens);
             // we prepare a map for mapping a software name with its positions of annotation in the document and its IDF
             Map<String, Double> termProfiles = prepareTermProfiles(entities);
             // we prepare a list of existing positions to avoid overlap
-            List<OffsetPosition> placeTaken = preparePlaceTaken(entities);
+            OffsetPositionIndex placeTaken = preparePlaceTaken(entities);
             // and call the propagation method
-            entities = propagateLayoutTokenSequence(tokens, entities, termProfiles, termPattern, placeTaken, frequencies, false, false, false);
+            entities = propagateLayoutTokenSequence(segment, entities, termProfiles, termMatcher, placeTaken, false, false, false);
             Collections.sort(entities);
 
             // refine software types, if there is anything to refine
             if (entities.size() > 0) {
-                try {
-                    List<SoftwareType> entityTypes = softwareTypeParser.processFeatureInput(text, ress, tokens);
+                try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.TYPE_LABELLING)) {
+                    List<SoftwareType> entityTypes = softwareTypeParser.processFeatureInput(text, features, tokens);
                     /*for(SoftwareType entityType : entityTypes) {
                         System.out.println("\n" + entityType.toString());
                     }*/
@@ -340,6 +465,7 @@ public class SoftwareParser extends AbstractParser {
             // finally classify the context for predicting the role of the software mention
             entities = SoftwareContextClassifier.getInstance(softwareConfiguration).classifyDocumentContexts(entities);
 
+            ProcessingStages.count(ProcessingStages.MENTIONS, entities.size());
         } catch (Exception e) {
             throw new GrobidException("An exception occurred while running Grobid.", e);
         }
@@ -374,11 +500,13 @@ public class SoftwareParser extends AbstractParser {
                     .consolidateCitations(0)
                     .build();
 
+            ProcessingStages.begin(ProcessingStages.SEGMENTATION);
             DocumentSource documentSource =
                 DocumentSource.fromPdf(file, config.getStartPage(), config.getEndPage());
             doc = parsers.getSegmentationParser().processing(documentSource, config);
 
             // process bibliographical reference section first
+            ProcessingStages.begin(ProcessingStages.CITATIONS);
             List<BibDataSet> resCitations = parsers.getCitationParser().
                 processingReferenceSection(doc, parsers.getReferenceSegmenterParser(), config.getConsolidateCitations());
 
@@ -390,9 +518,15 @@ public class SoftwareParser extends AbstractParser {
             // segment of interest (e.g. header, body, annex) and possibly apply
             // the corresponding model to further filter by structure types
 
-            List<List<LayoutToken>> selectedLayoutTokenSequences = new ArrayList<>();
+            List<AnalyzedSegment> selectedSegments = new ArrayList<>();
+
+            // the header and body paragraph segments are kept for the propagation pass, so that 
+            // their text and offsets are not recomputed
+            List<AnalyzedSegment> headerSegments = new ArrayList<>();
+            List<AnalyzedSegment> bodySegments = new ArrayList<>();
 
             // from the header, we are interested in title, abstract and keywords
+            ProcessingStages.begin(ProcessingStages.HEADER);
             BiblioItem resHeader = new BiblioItem();
             doc.setResHeader(resHeader);
             SortedSet<DocumentPiece> documentParts = doc.getDocumentPart(SegmentationLabels.HEADER);
@@ -408,28 +542,36 @@ public class SoftwareParser extends AbstractParser {
                         // title
                         List<LayoutToken> titleTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_TITLE);
                         if (titleTokens != null) {
-                            selectedLayoutTokenSequences.add(titleTokens);
+                            AnalyzedSegment segment = new AnalyzedSegment(titleTokens);
+                            selectedSegments.add(segment);
+                            headerSegments.add(segment);
                         }
 
                         // abstract
                         List<LayoutToken> abstractTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_ABSTRACT);
                         if (abstractTokens != null) {
-                            selectedLayoutTokenSequences.add(abstractTokens);
+                            AnalyzedSegment segment = new AnalyzedSegment(abstractTokens);
+                            selectedSegments.add(segment);
+                            headerSegments.add(segment);
                         }
 
                         // keywords
                         List<LayoutToken> keywordTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_KEYWORD);
                         if (keywordTokens != null) {
-                            selectedLayoutTokenSequences.add(keywordTokens);
+                            AnalyzedSegment segment = new AnalyzedSegment(keywordTokens);
+                            selectedSegments.add(segment);
+                            headerSegments.add(segment);
                         }
                     }
                 } catch (Exception e) {
                     logger.error("Fail to parse header area for file " + file.getPath(), e);
                     resHeader = null;
+                    headerSegments.clear();
                 }
             }
 
             // process selected structures in the body,
+            ProcessingStages.begin(ProcessingStages.FULLTEXT);
             documentParts = doc.getDocumentPart(SegmentationLabels.BODY);
             List<TaggingTokenCluster> bodyClusters = null;
             if (documentParts != null) {
@@ -472,7 +614,7 @@ public class SoftwareParser extends AbstractParser {
                             //|| clusterLabel.equals(TaggingLabels.SECTION) {
                             if (lastClusterLabel == null || curParagraphTokens == null || isNewParagraph(lastClusterLabel)) {
                                 if (curParagraphTokens != null)
-                                    selectedLayoutTokenSequences.add(curParagraphTokens);
+                                    bodySegments.add(new AnalyzedSegment(curParagraphTokens));
                                 curParagraphTokens = new ArrayList<>();
                             }
                             curParagraphTokens.addAll(localTokenization);
@@ -488,7 +630,8 @@ public class SoftwareParser extends AbstractParser {
                     }
                     // last paragraph
                     if (curParagraphTokens != null)
-                        selectedLayoutTokenSequences.add(curParagraphTokens);
+                        bodySegments.add(new AnalyzedSegment(curParagraphTokens));
+                    selectedSegments.addAll(bodySegments);
                 }
             }
 
@@ -500,7 +643,7 @@ public class SoftwareParser extends AbstractParser {
             if (documentParts != null) {
                 List<LayoutToken> annexTokens = doc.getTokenizationParts(documentParts, doc.getTokenizations());
                 if (annexTokens != null) {
-                    selectedLayoutTokenSequences.add(annexTokens);
+                    selectedSegments.add(new AnalyzedSegment(annexTokens));
                 }
             }
 
@@ -509,7 +652,7 @@ public class SoftwareParser extends AbstractParser {
             if (documentParts != null) {
                 List<LayoutToken> footnoteTokens = doc.getTokenizationParts(documentParts, doc.getTokenizations());
                 if (footnoteTokens != null) {
-                    selectedLayoutTokenSequences.add(footnoteTokens);
+                    selectedSegments.add(new AnalyzedSegment(footnoteTokens));
                 }
             }
 
@@ -519,30 +662,18 @@ public class SoftwareParser extends AbstractParser {
             if (documentParts != null) {
                 availabilityTokens = doc.getTokenizationParts(documentParts, doc.getTokenizations());
                 if (availabilityTokens != null) {
-                    selectedLayoutTokenSequences.add(availabilityTokens);
+                    selectedSegments.add(new AnalyzedSegment(availabilityTokens));
                 }
             }
 
             // actual processing of the selected sequences which have been delayed to be processed in groups and
             // take advantage of deep learning batch
-            processLayoutTokenSequenceMultiple(selectedLayoutTokenSequences, entities, disambiguate, addParagraphContext, true, false, doc.getPDFAnnotations());
+            ProcessingStages.begin(ProcessingStages.MENTION_EXTRACTION);
+            processLayoutTokenSequences(selectedSegments, entities, disambiguate, addParagraphContext, true, false, doc.getPDFAnnotations());
 
             // propagate the disambiguated entities to the non-disambiguated entities corresponding to the same software name
-            for (SoftwareEntity entity1 : entities) {
-                if (entity1.getSoftwareName() != null && entity1.getSoftwareName().getWikidataId() != null) {
-                    for (SoftwareEntity entity2 : entities) {
-                        if (entity2.getSoftwareName() != null && entity2.getSoftwareName().getWikidataId() != null) {
-                            // if the entity is already disambiguated, nothing possible
-                            continue;
-                        }
-                        if (entity2.getSoftwareName() != null &&
-                            entity2.getSoftwareName().getRawForm().equals(entity1.getSoftwareName().getRawForm())) {
-                            entity1.getSoftwareName().copyKnowledgeInformationTo(entity2.getSoftwareName());
-                            entity2.getSoftwareName().setLang(entity1.getSoftwareName().getLang());
-                        }
-                    }
-                }
-            }
+            ProcessingStages.begin(ProcessingStages.PROPAGATION);
+            SoftwareEntityMerger.propagateDisambiguation(entities);
 
             // use identified software names to possibly normalize hyphenized software names
             // e.g. for MOD-ELLER, normalize to MODELLER because MODELLER is found elsewhere in the document
@@ -594,85 +725,36 @@ public class SoftwareParser extends AbstractParser {
             // document where the same term appears without labeling. For controlling the propagation we use a tf-idf measure
             // of the term. As possible improvement, a specific classifier could be used.
 
-            // we prepare a matcher for all the identified software names
-            FastMatcher termPattern = prepareTermPattern(entities);
-            // we prepare the frequencies for each software name in the whole document
-            Map<String, Integer> frequencies = prepareFrequencies(entities, doc.getTokenizations());
+            // we prepare a matcher for all the identified software names, with their frequencies in the whole document
+            DocumentTermMatcher termMatcher = prepareTermMatcher(entities, doc.getTokenizations());
             // we prepare a map for mapping a software name with its positions of annotation in the document and its IDF
             Map<String, Double> termProfiles = prepareTermProfiles(entities);
-            List<OffsetPosition> placeTaken = preparePlaceTaken(entities);
+            OffsetPositionIndex placeTaken = preparePlaceTaken(entities);
 
-            // second pass, header
-            if (resHeader != null) {
-                // title
-                List<LayoutToken> titleTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_TITLE);
-                if (titleTokens != null) {
-                    propagateLayoutTokenSequence(titleTokens, entities, termProfiles, termPattern, placeTaken, frequencies, addParagraphContext, true, false);
-                }
-
-                // abstract
-                List<LayoutToken> abstractTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_ABSTRACT);
-                if (abstractTokens != null) {
-                    propagateLayoutTokenSequence(abstractTokens, entities, termProfiles, termPattern, placeTaken, frequencies, addParagraphContext, true, false);
-                }
-
-                // keywords
-                List<LayoutToken> keywordTokens = resHeader.getLayoutTokens(TaggingLabels.HEADER_KEYWORD);
-                if (keywordTokens != null) {
-                    propagateLayoutTokenSequence(keywordTokens, entities, termProfiles, termPattern, placeTaken, frequencies, addParagraphContext, true, false);
-                }
+            // second pass, header and body paragraphs
+            for (AnalyzedSegment segment : headerSegments) {
+                propagateLayoutTokenSequence(segment, entities, termProfiles, termMatcher, placeTaken, addParagraphContext, true, false);
             }
-
-            // second pass, body
-            if (bodyClusters != null) {
-                List<LayoutToken> curParagraphTokens = null;
-                TaggingLabel lastClusterLabel = null;
-                for (TaggingTokenCluster cluster : bodyClusters) {
-                    if (cluster == null) {
-                        continue;
-                    }
-
-                    TaggingLabel clusterLabel = cluster.getTaggingLabel();
-
-                    List<LayoutToken> localTokenization = cluster.concatTokens();
-                    if ((localTokenization == null) || (localTokenization.size() == 0))
-                        continue;
-
-                    if (TEIFormatter.MARKER_LABELS.contains(clusterLabel)) {
-                        if (curParagraphTokens == null)
-                            curParagraphTokens = new ArrayList<>();
-                        curParagraphTokens.addAll(localTokenization);
-                    } else if (clusterLabel.equals(TaggingLabels.PARAGRAPH) || clusterLabel.equals(TaggingLabels.ITEM)) {
-                        if (lastClusterLabel == null || curParagraphTokens == null || isNewParagraph(lastClusterLabel)) {
-                            if (curParagraphTokens != null)
-                                propagateLayoutTokenSequence(curParagraphTokens, entities, termProfiles, termPattern, placeTaken, frequencies, addParagraphContext, true, false);
-                            curParagraphTokens = new ArrayList<>();
-                        }
-                        curParagraphTokens.addAll(localTokenization);
-                    }
-
-                    lastClusterLabel = clusterLabel;
-                }
-
-                if (curParagraphTokens != null)
-                    propagateLayoutTokenSequence(curParagraphTokens, entities, termProfiles, termPattern, placeTaken, frequencies, addParagraphContext, true, false);
+            for (AnalyzedSegment segment : bodySegments) {
+                propagateLayoutTokenSequence(segment, entities, termProfiles, termMatcher, placeTaken, addParagraphContext, true, false);
             }
 
             // second pass, annex - if relevant, uncomment
             /*documentParts = doc.getDocumentPart(SegmentationLabels.ANNEX);
             if (documentParts != null) {
                 List<LayoutToken> tokenizationParts = doc.getTokenizationParts(documentParts, doc.getTokenizations());
-                propagateLayoutTokenSequence(tokenizationParts, entities, termProfiles, termPattern, placeTaken, frequencies, true, false);
+                propagateLayoutTokenSequence(tokenizationParts, entities, termProfiles, termMatcher, placeTaken, true, false);
             }*/
 
             // second pass, footnotes (if relevant, uncomment)
             /*documentParts = doc.getDocumentPart(SegmentationLabel.FOOTNOTE);
             if (documentParts != null) {
                 List<LayoutToken> tokenizationParts = doc.getTokenizationParts(documentParts, doc.getTokenizations());
-                propagateLayoutTokenSequence(tokenizationParts, entities, termProfiles, termPattern, placeTaken, frequencies, true, false);
+                propagateLayoutTokenSequence(tokenizationParts, entities, termProfiles, termMatcher, placeTaken, true, false);
             }*/
 
             // finally we attach and match bibliographical reference callout
+            ProcessingStages.begin(ProcessingStages.REFERENCES);
             TEIFormatter formatter = new TEIFormatter(doc, parsers.getFullTextParser());
             // second pass, body
             if ((bodyClusters != null) && (resCitations != null) && (resCitations.size() > 0)) {
@@ -776,45 +858,13 @@ public class SoftwareParser extends AbstractParser {
                 }
 
                 // propagate the bib. ref. to the entities corresponding to the same software name without bib. ref.
-                for (SoftwareEntity entity1 : entities) {
-                    if (entity1.getBibRefs() != null && entity1.getBibRefs().size() > 0) {
-                        for (SoftwareEntity entity2 : entities) {
-                            if (entity2.getBibRefs() != null) {
-                                continue;
-                            }
-                            if (entity2.getSoftwareName() != null &&
-                                entity2.getSoftwareName().getRawForm().equals(entity1.getSoftwareName().getRawForm())) {
-                                List<BiblioComponent> newBibRefs = new ArrayList<>();
-                                for (BiblioComponent bibComponent : entity1.getBibRefs()) {
-                                    newBibRefs.add(new BiblioComponent(bibComponent));
-                                }
-                                entity2.setBibRefs(newBibRefs);
-                            }
-                        }
-                    }
-                }
+                SoftwareEntityMerger.propagateBibRefs(entities);
             }
 
             logger.info(entities.size() + " total software entities");
             // propagate the non-disambiguated entities attributes to the new propagated entities corresponding
             // to the same software name
-            for (SoftwareEntity entity1 : entities) {
-                if (entity1.getSoftwareName() != null) {
-                    for (SoftwareEntity entity2 : entities) {
-                        if (entity2.getSoftwareName() != null &&
-                            entity2.getSoftwareName().getNormalizedForm().equals(entity1.getSoftwareName().getNormalizedForm())) {
-                            SoftwareEntity.mergeWithCopy(entity1, entity2);
-                            if (entity1.getSoftwareName().getWikidataId() != null && entity2.getSoftwareName().getWikidataId() == null) {
-                                entity1.getSoftwareName().copyKnowledgeInformationTo(entity2.getSoftwareName());
-                                entity2.getSoftwareName().setLang(entity1.getSoftwareName().getLang());
-                            } else if (entity2.getSoftwareName().getWikidataId() != null && entity1.getSoftwareName().getWikidataId() == null) {
-                                entity2.getSoftwareName().copyKnowledgeInformationTo(entity1.getSoftwareName());
-                                entity1.getSoftwareName().setLang(entity2.getSoftwareName().getLang());
-                            }
-                        }
-                    }
-                }
-            }
+            SoftwareEntityMerger.mergeAttributes(entities);
 
             Collections.sort(entities);
 
@@ -822,7 +872,9 @@ public class SoftwareParser extends AbstractParser {
             if (availabilityTokens != null && availabilityTokens.size() > 0)
                 entities = markDAS(entities, availabilityTokens);
 
+            ProcessingStages.begin(ProcessingStages.CONTEXT_CLASSIFICATION);
             entities = SoftwareContextClassifier.getInstance(softwareConfiguration).classifyDocumentContexts(entities);
+            ProcessingStages.count(ProcessingStages.MENTIONS, entities.size());
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -844,9 +896,9 @@ public class SoftwareParser extends AbstractParser {
         boolean fromXML,
         List<PDFAnnotation> pdfAnnotations
     ) {
-        List<LayoutTokenization> layoutTokenizations = new ArrayList<>();
-        layoutTokenizations.add(new LayoutTokenization(layoutTokens));
-        return processLayoutTokenSequences(layoutTokenizations, entities, disambiguate, addParagraphContext, fromPDF, fromXML, pdfAnnotations);
+        List<AnalyzedSegment> segments = new ArrayList<>();
+        segments.add(new AnalyzedSegment(layoutTokens));
+        return processLayoutTokenSequences(segments, entities, disambiguate, addParagraphContext, fromPDF, fromXML, pdfAnnotations);
     }
 
     /**
@@ -881,17 +933,23 @@ public class SoftwareParser extends AbstractParser {
         boolean fromXML,
         List<PDFAnnotation> pdfAnnotations
     ) {
-        List<LayoutTokenization> layoutTokenizations = new ArrayList<>();
+        List<AnalyzedSegment> segments = new ArrayList<>();
         for (List<LayoutToken> layoutTokens : layoutTokenList)
-            layoutTokenizations.add(new LayoutTokenization(layoutTokens));
-        return processLayoutTokenSequences(layoutTokenizations, entities, disambiguate, addParagraphContext, fromPDF, fromXML, pdfAnnotations);
+            segments.add(new AnalyzedSegment(layoutTokens));
+        return processLayoutTokenSequences(segments, entities, disambiguate, addParagraphContext, fromPDF, fromXML, pdfAnnotations);
     }
 
     /**
-     * Process with the software model a set of arbitrary sequence of LayoutTokenization
+     * Process with the software model a set of arbitrary sequence of LayoutToken objects, given
+     * as analyzed segments so that their retokenization, text and lexical matches are computed once.
+     *
+     * The segments are grouped in chunks of consecutive segments, of about segmentChunkSize tokens,
+     * and at most segmentParallelism chunks are processed concurrently. The chunks only depend on
+     * the segments and the entities are added in the order of the chunks, so the result does not
+     * depend on the number of threads.
      */
     private List<SoftwareEntity> processLayoutTokenSequences(
-        List<LayoutTokenization> layoutTokenizations,
+        List<AnalyzedSegment> segments,
         List<SoftwareEntity> entities,
         boolean disambiguate,
         boolean addParagraphContext,
@@ -899,99 +957,188 @@ public class SoftwareParser extends AbstractParser {
         boolean fromXML,
         List<PDFAnnotation> pdfAnnotations
     ) {
-        StringBuilder allRess = new StringBuilder();
-        for (LayoutTokenization layoutTokenization : layoutTokenizations) {
-            List<LayoutToken> layoutTokens = layoutTokenization.getTokenization();
-            layoutTokens = SoftwareAnalyzer.getInstance().retokenizeLayoutTokens(layoutTokens);
+        List<List<AnalyzedSegment>> chunks = chunkSegments(segments);
+        int nbWorkers = (segmentExecutor == null) ? 1 : Math.min(softwareConfiguration.getSegmentParallelism(), chunks.size());
+        if (nbWorkers <= 1) {
+            for (List<AnalyzedSegment> chunk : chunks)
+                entities.addAll(processSegmentChunk(chunk, disambiguate, addParagraphContext, fromPDF, fromXML, pdfAnnotations));
+            return entities;
+        }
 
-            if (CollectionUtils.isEmpty(layoutTokens))
-                continue;
+        // the workers take the next chunk to process, the calling thread being one of them
+        List<List<SoftwareEntity>> chunkEntities = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+        AtomicInteger nextChunk = new AtomicInteger();
+        // the steps of the workers are recorded for the processing of the document
+        ProcessingStages stages = ProcessingStages.current();
+        Runnable worker = () -> {
+            ProcessingStages previousStages = ProcessingStages.propagate(stages);
+            int index;
+            try {
+                while ((index = nextChunk.getAndIncrement()) < chunks.size()) {
+                    chunkEntities.set(index, processSegmentChunk(chunks.get(index), disambiguate,
+                        addParagraphContext, fromPDF, fromXML, pdfAnnotations));
+                }
+            } catch (RuntimeException e) {
+                // no more chunk to process for the other workers
+                nextChunk.set(chunks.size());
+                throw e;
+            } finally {
+                ProcessingStages.propagate(previousStages);
+            }
+        };
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 1; i < nbWorkers; i++)
+            workers.add(CompletableFuture.runAsync(worker, segmentExecutor));
+        worker.run();
+        try {
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new GrobidException("Processing of the document segments failed", e.getCause());
+        }
 
-            // positions for lexical match
-            List<OffsetPosition> softwareTokenPositions = softwareLexicon.tokenPositionsSoftwareNames(layoutTokens);
-            List<OffsetPosition> urlTokensPositions = Lexicon.tokenPositionUrlPatternWithPdfAnnotations(layoutTokens, pdfAnnotations).stream()
-                .map(Pair::getLeft)
-                .collect(Collectors.toList());
+        for (List<SoftwareEntity> localEntities : chunkEntities)
+            entities.addAll(localEntities);
+        return entities;
+    }
 
-            urlTokensPositions.stream().forEach(o -> o.end += 1);
+    /**
+     * Group consecutive segments in chunks of at least segmentChunkSize tokens, except the last one
+     */
+    private List<List<AnalyzedSegment>> chunkSegments(List<AnalyzedSegment> segments) {
+        int chunkSize = softwareConfiguration.getSegmentChunkSize();
+        List<List<AnalyzedSegment>> chunks = new ArrayList<>();
+        if (chunkSize <= 0) {
+            chunks.add(segments);
+            return chunks;
+        }
+        List<AnalyzedSegment> chunk = new ArrayList<>();
+        int chunkTokens = 0;
+        for (AnalyzedSegment segment : segments) {
+            chunk.add(segment);
+            chunkTokens += segment.size();
+            if (chunkTokens >= chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkTokens = 0;
+            }
+        }
+        if (chunk.size() > 0)
+            chunks.add(chunk);
+        return chunks;
+    }
 
-            // string representation of the feature matrix for sequence labeling lib
-            String ress = addFeatures(layoutTokens, softwareTokenPositions, urlTokensPositions);
-            allRess.append(ress);
-            allRess.append("\n\n");
+    /**
+     * Process with the software model a chunk of segments: feature matrices, labeling, extraction of
+     * the entities, disambiguation, software types and contexts. Return the entities of the chunk.
+     */
+    private List<SoftwareEntity> processSegmentChunk(
+        List<AnalyzedSegment> segments,
+        boolean disambiguate,
+        boolean addParagraphContext,
+        boolean fromPDF,
+        boolean fromXML,
+        List<PDFAnnotation> pdfAnnotations
+    ) {
+        List<SoftwareEntity> entities = new ArrayList<>();
+
+        // the retokenized segments and their feature matrices are kept, because they are shared 
+        // by the software and software-type models
+        List<AnalyzedSegment> analyzedSegments = new ArrayList<>();
+        List<SoftwareFeatureMatrix> segmentFeatures = new ArrayList<>();
+        try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.FEATURES)) {
+            for (AnalyzedSegment segment : segments) {
+                AnalyzedSegment analyzedSegment = segment.getRetokenized();
+                List<LayoutToken> layoutTokens = analyzedSegment.getTokens();
+
+                if (CollectionUtils.isEmpty(layoutTokens))
+                    continue;
+
+                // positions for lexical match
+                List<OffsetPosition> softwareTokenPositions = analyzedSegment.getSoftwareNamePositions();
+                List<OffsetPosition> urlTokensPositions = analyzedSegment.getUrlPositions(pdfAnnotations).stream()
+                    .map(o -> new OffsetPosition(o.start, o.end + 1))
+                    .collect(Collectors.toList());
+
+                // feature matrix for sequence labeling lib
+                SoftwareFeatureMatrix features = SoftwareFeatureMatrixBuilder.build(layoutTokens, softwareTokenPositions, urlTokensPositions);
+                if (features.getTokenRowCount() == 0)
+                    continue;
+                countLabeledTokens(features.getTokenRowCount());
+
+                analyzedSegments.add(analyzedSegment);
+                segmentFeatures.add(features);
+            }
         }
 
-        // labeled result from sequence labelling lib
-        String allResString = allRess.toString();
-        if (StringUtils.isBlank(allResString)) {
+        if (segmentFeatures.size() == 0) {
             // empty content, nothing more to do
             return entities;
         }
 
-        String res = label(allResString);
-        int l = 0;
-        String[] resBlocks = res.split("\n\n");
-        for (LayoutTokenization layoutTokenization : layoutTokenizations) {
-            List<LayoutToken> layoutTokens = layoutTokenization.getTokenization();
-            layoutTokens = SoftwareAnalyzer.getInstance().retokenizeLayoutTokens(layoutTokens);
+        // labeled result from sequence labelling lib
+        SoftwareLabeledResult res;
+        try (ProcessingStages.Step step = ProcessingStages.step(ProcessingStages.SOFTWARE_LABELLING)) {
+            res = SoftwareLabeledResult.label(this, segmentFeatures, labelingScheduler);
+        }
 
-            if (CollectionUtils.isEmpty(layoutTokens))
-                continue;
+        List<AnalyzedSegment> processedSegments = new ArrayList<>();
+        List<List<LayoutToken>> processedTokens = new ArrayList<>();
+        List<SoftwareFeatureMatrix> processedFeatures = new ArrayList<>();
+        List<List<SoftwareEntity>> processedEntities = new ArrayList<>();
+        for (int i = 0; i < analyzedSegments.size(); i++) {
+            AnalyzedSegment analyzedSegment = analyzedSegments.get(i);
+            List<LayoutToken> layoutTokens = analyzedSegment.getTokens();
 
             // text of the selected segment
-            String text = LayoutTokensUtil.toText(layoutTokens);
-
-            if (l >= resBlocks.length)
-                break;
+            String text = analyzedSegment.getText();
 
-            String localRes = resBlocks[l];
+            String localRes = res.getSequenceResult(i);
 
             if (StringUtils.isBlank(localRes)) {
                 continue;
             }
 
             List<SoftwareComponent> components = extractSoftwareComponents(text, localRes, layoutTokens);
-            l++;
 
             List<SoftwareEntity> localEntities = groupByEntities(components);
 
-            // disambiguation
-            if (disambiguate) {
-                localEntities = disambiguator.disambiguate(localEntities, layoutTokens);
+            processedSegments.add(analyzedSegment);
+            processedTokens.add(layoutTokens);
+            processedFeatures.add(segmentFeatures.get(i));
+            processedEntities.add(localEntities);
+        }
 
-                // apply existing filtering
-                List<Integer> indexToBeFiltered = new ArrayList<>();
-                int k = 0;
-                for (SoftwareEntity entity : localEntities) {
-                    if (entity.isFiltered()) {
-                        indexToBeFiltered.add(Integer.valueOf(k));
-                    }
-                    k++;
-                }
+        // disambiguation of all the segments in the background, while the software types are labeled
+        CompletableFuture<Void> disambiguation = disambiguate ?
+            disambiguator.disambiguateAsync(processedEntities, processedTokens) : CompletableFuture.completedFuture(null);
 
-                if (indexToBeFiltered.size() > 0) {
-                    for (int j = indexToBeFiltered.size() - 1; j >= 0; j--) {
-                        localEntities.remove(indexToBeFiltered.get(j).intValue());
-                    }
-                }
-            }
+        // refine software types, if there is anything to refine, with a single call to the software-type 
+        // model for all the segments having entities and reusing the feature matrices
+        List<List<SoftwareType>> allEntityTypes = labelSoftwareTypes(processedFeatures, processedTokens, processedEntities);
+
+        disambiguation.join();
+
+        for (int i = 0; i < processedTokens.size(); i++) {
+            List<LayoutToken> layoutTokens = processedTokens.get(i);
+            List<SoftwareEntity> localEntities = processedEntities.get(i);
+
+            // apply existing filtering
+            if (disambiguate)
+                localEntities = removeFilteredEntities(localEntities);
 
             // note using dehyphenized text looks nicer, but break entity-level offsets
             // we would need to re-align offsets in a post-processing if we go with
             // dehyphenized text in the context
             //text = LayoutTokensUtil.normalizeDehyphenizeText(layoutTokens);
+            String text = processedSegments.get(i).getText();
 
-            // finally refine software types, if there is anything to refine
-            if (CollectionUtils.isNotEmpty(localEntities)) {
-                try {
-                    List<SoftwareType> entityTypes = softwareTypeParser.processFeatureInput(text, localRes, layoutTokens);
-                    if (CollectionUtils.isNotEmpty(entityTypes)) {
-                        localEntities = refineTypes(localEntities, entityTypes);
-                        Collections.sort(localEntities);
-                    }
-                } catch (Exception e) {
-                    throw new GrobidException("Sequence labeling for software type parsing failed.", e);
-                }
+            // the software types were labeled before filtering, they are ignored if all the entities were filtered
+            List<SoftwareType> entityTypes = allEntityTypes.get(i);
+            if (localEntities.size() > 0 && CollectionUtils.isNotEmpty(entityTypes)) {
+                localEntities = refineTypes(localEntities, entityTypes);
+                Collections.sort(localEntities);
             }
 
             localEntities = addContext(localEntities, text, layoutTokens, fromPDF, fromXML, addParagraphContext);
@@ -1084,21 +1231,40 @@ public class SoftwareParser extends AbstractParser {
         List<LayoutToken> layoutTokens,
         List<SoftwareEntity> entities,
         Map<String, Double> termProfiles,
-        FastMatcher termPattern,
-        List<OffsetPosition> placeTaken,
-        Map<String, Integer> frequencies,
+        DocumentTermMatcher termMatcher,
+        OffsetPositionIndex placeTaken,
+        boolean addParagraphContext,
+        boolean fromPDF,
+        boolean fromXML
+    ) {
+        return propagateLayoutTokenSequence(new AnalyzedSegment(layoutTokens), entities, termProfiles, termMatcher,
+            placeTaken, addParagraphContext, fromPDF, fromXML);
+    }
+
+    /**
+     * Propagate the identified software names to their other occurrences in a segment, using 
+     * the text and the token offsets of the segment
+     */
+    public List<SoftwareEntity> propagateLayoutTokenSequence(
+        AnalyzedSegment segment,
+        List<SoftwareEntity> entities,
+        Map<String, Double> termProfiles,
+        DocumentTermMatcher termMatcher,
+        OffsetPositionIndex placeTaken,
         boolean addParagraphContext,
         boolean fromPDF,
         boolean fromXML
     ) {
+        List<LayoutToken> layoutTokens = segment.getTokens();
+
         // possible offset of the sequence in the complete document tokenization
         int offsetShift = 0;
         if (layoutTokens != null && layoutTokens.size() > 0 && layoutTokens.get(0).getOffset() != 0) {
             offsetShift = layoutTokens.get(0).getOffset();
         }
 
-        List<OffsetPosition> results = termPattern.matchLayoutToken(layoutTokens, true, true);
-        // above: do not ignore delimiters and case sensitive matching
+        List<OffsetPosition> results = termMatcher.matchLayoutTokens(layoutTokens);
+        // above: delimiters ignored in the text and case sensitive matching
 
         if ((results == null) || (results.size() == 0)) {
             return entities;
@@ -1111,15 +1277,9 @@ public class SoftwareParser extends AbstractParser {
             List<LayoutToken> matchedTokens = layoutTokens.subList(position.start, position.end + 1);
 
             // we recompute matched position using local tokens (safer than using doc level offsets)
-            int matchedPositionStart = 0;
-            for (int i = 0; i < position.start; i++) {
-                LayoutToken theToken = layoutTokens.get(i);
-                if (theToken.getText() == null)
-                    continue;
-                matchedPositionStart += theToken.getText().length();
-            }
+            int matchedPositionStart = segment.getCharOffset(position.start);
 
-            String term = LayoutTokensUtil.toText(matchedTokens);
+            String term = segment.getText(position.start, position.end);
             if (term.length() == 1 && !"R".equals(term)) {
                 // if the term is just one character, better skip it (except for "R" alone,
                 // but we will need to consider if it creates too many false matches)
@@ -1134,7 +1294,8 @@ public class SoftwareParser extends AbstractParser {
             );
 
             int termFrequency = 1;
-            if (frequencies != null && frequencies.get(term) != null)
+            Map<String, Integer> frequencies = termMatcher.getFrequencies();
+            if (frequencies.get(term) != null)
                 termFrequency = frequencies.get(term);
 
             // check the tf-idf of the term
@@ -1171,12 +1332,13 @@ public class SoftwareParser extends AbstractParser {
                 localEntities.add(entity);
                 entities.add(entity);
 
-                placeTaken.add(new OffsetPosition(matchedPosition.start + offsetShift, matchedPosition.end + offsetShift));
+                placeTaken.add(matchedPosition.start + offsetShift, matchedPosition.end + offsetShift);
             }
         }
 
         // add context to the new entities
-        addContext(localEntities, null, layoutTokens, fromPDF, fromXML, addParagraphContext);
+        if (localEntities.size() > 0)
+            addContext(localEntities, segment.getText(), layoutTokens, fromPDF, fromXML, addParagraphContext);
 
         return entities;
     }
@@ -1206,28 +1368,31 @@ public class SoftwareParser extends AbstractParser {
             && lastClusterLabel != TaggingLabels.TABLE);
     }
 
-    private boolean overlapsPosition(final List<OffsetPosition> list, final OffsetPosition position,
-                                     int offsetShift) {
+    static boolean overlapsPosition(final OffsetPositionIndex index, final OffsetPosition position,
+                                    int offsetShift) {
         // note: in principle, positions related to absolute document offsets from the layout tokens, so offsetShift
-        // does not be used. However, to be conservative, we also consider it.
-        for (OffsetPosition pos : list) {
-            if (pos.start == position.start || pos.start - offsetShift == position.start)
-                return true;
-            if (pos.end == position.end || pos.end - offsetShift == position.end)
-                return true;
-            if (position.start <= pos.start && pos.start <= position.end)
-                return true;
-            if (position.start <= pos.start - offsetShift && pos.start - offsetShift <= position.end)
-                return true;
-            if (pos.start - offsetShift <= position.start && position.start <= pos.end - offsetShift)
-                return true;
-            if (pos.start - offsetShift <= position.start && position.start <= pos.end - offsetShift)
-                return true;
-            if (pos.start <= position.start && position.start < pos.end)
-                return true;
-            if (position.start < pos.end && pos.end <= position.end)
-                return true;
-        }
+        // does not be used. However, to be conservative, we also consider it. Only the positions intersecting
+        // the position, shifted or not, can overlap it.
+        OffsetPositionIndex.PositionVisitor overlap = (id, start, end) -> overlapsPosition(start, end, position, offsetShift);
+        return index.visitIntersecting(position.start, position.end, overlap) ||
+            (offsetShift != 0 && index.visitIntersecting(position.start + offsetShift, position.end + offsetShift, overlap));
+    }
+
+    private static boolean overlapsPosition(int start, int end, final OffsetPosition position, int offsetShift) {
+        if (start == position.start || start - offsetShift == position.start)
+            return true;
+        if (end == position.end || end - offsetShift == position.end)
+            return true;
+        if (position.start <= start && start <= position.end)
+            return true;
+        if (position.start <= start - offsetShift && start - offsetShift <= position.end)
+            return true;
+        if (start - offsetShift <= position.start && position.start <= end - offsetShift)
+            return true;
+        if (start <= position.start && position.start < end)
+            return true;
+        if (position.start < end && end <= position.end)
+            return true;
         return false;
     }
 
@@ -1308,17 +1473,25 @@ public class SoftwareParser extends AbstractParser {
      * Try to attach relevant bib ref component to software entities.
      * Default max interval between ref and "mention" boundary is 5 characters, but it can be modified if needed.
      */
-    public List<SoftwareEntity> attachRefBib
+    public static List<SoftwareEntity> attachRefBib
     (List<SoftwareEntity> entities, List<BiblioComponent> refBibComponents) {
         return attachRefBib(entities, refBibComponents, 5);
     }
 
-    public List<SoftwareEntity> attachRefBib
+    public static List<SoftwareEntity> attachRefBib
         (List<SoftwareEntity> entities, List<BiblioComponent> refBibComponents, int intervalMax) {
 
         // we anchor the process to the software names and aggregate other closest components on the right
         // if we cross a bib ref component we attach it, if a bib ref component is just after the last
         // component of the entity group, we attach it
+
+        // bib ref components are normally in document order, the candidate ones are then found with a
+        // binary search and the scan stops at the first one too far on the right
+        boolean sortedRefBibs = true;
+        for (int i = 1; i < refBibComponents.size() && sortedRefBibs; i++) {
+            sortedRefBibs = refBibComponents.get(i - 1).getOffsetStart() <= refBibComponents.get(i).getOffsetStart();
+        }
+
         for (SoftwareEntity entity : entities) {
             // positions are relative to the context if present, so they have to be shifted in this case
             // to be comparable with reference marker offsets
@@ -1356,33 +1529,60 @@ public class SoftwareParser extends AbstractParser {
             }
 
             // find included or just next bib ref callout
-            for (BiblioComponent refBib : refBibComponents) {
-                if ((refBib.getOffsetStart() >= pos) &&
-                    (refBib.getOffsetStart() <= endPos + intervalMax)) {
+            if (sortedRefBibs) {
+                for (int i = firstRefBibFrom(refBibComponents, pos); i < refBibComponents.size(); i++) {
+                    BiblioComponent refBib = refBibComponents.get(i);
+                    if (refBib.getOffsetStart() > endPos + intervalMax)
+                        break;
                     entity.addBibRef(refBib);
                     endPos = refBib.getOffsetEnd();
                 }
+            } else {
+                for (BiblioComponent refBib : refBibComponents) {
+                    if ((refBib.getOffsetStart() >= pos) &&
+                        (refBib.getOffsetStart() <= endPos + intervalMax)) {
+                        entity.addBibRef(refBib);
+                        endPos = refBib.getOffsetEnd();
+                    }
+                }
             }
         }
 
         return entities;
     }
 
+    /**
+     * Index of the first bib ref component starting at or after a given offset, in a list sorted by start
+     */
+    private static int firstRefBibFrom(List<BiblioComponent> refBibComponents, int offset) {
+        int low = 0;
+        int high = refBibComponents.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (refBibComponents.get(middle).getOffsetStart() < offset)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
 
     /**
      * Avoid having a version number where we identified a reference callout
      */
-    public List<SoftwareEntity> filterByRefCallout
+    public static List<SoftwareEntity> filterByRefCallout
     (List<SoftwareEntity> entities, List<BiblioComponent> refBibComponents) {
+        OffsetPositionIndex refBibIndex = new OffsetPositionIndex();
         for (BiblioComponent refBib : refBibComponents) {
-            for (SoftwareEntity entity : entities) {
-                if (entity.getVersion() == null)
-                    continue;
-                SoftwareComponent version = entity.getVersion();
-                if ((refBib.getOffsetStart() >= version.getOffsetStart()) &&
-                    (refBib.getOffsetEnd() <= version.getOffsetEnd())) {
-                    entity.setVersion(null);
-                }
+            refBibIndex.add(refBib.getOffsetStart(), refBib.getOffsetEnd());
+        }
+        for (SoftwareEntity entity : entities) {
+            if (entity.getVersion() == null)
+                continue;
+            SoftwareComponent version = entity.getVersion();
+            if (refBibIndex.anyContainedIn(version.getOffsetStart(), version.getOffsetEnd())) {
+                entity.setVersion(null);
             }
         }
         return entities;
@@ -1392,11 +1592,32 @@ public class SoftwareParser extends AbstractParser {
     /**
      *
      */
+    /**
+     * Process all the PDF files of a directory and write for each of them the extracted software 
+     * mentions as JSON in the output directory, using one worker thread per available processor. 
+     * See SoftwareBatchProcessor for more options. 
+     *
+     * @return the number of successfully processed files
+     */
     public int batchProcess(String inputDirectory,
                             String outputDirectory,
                             boolean isRecursive) throws IOException {
-        // TBD
-        return 0;
+        SoftwareBatchProcessor batchProcessor = new SoftwareBatchProcessor(this, 
+            SoftwareBatchProcessor.InputType.PDF, Runtime.getRuntime().availableProcessors());
+        return batchProcessor.process(new File(inputDirectory), new File(outputDirectory), isRecursive);
+    }
+
+    /**
+     * Total number of tokens processed by the software sequence labeling model since the 
+     * creation of the parser
+     */
+    public long getLabeledTokenCount() {
+        return labeledTokenCount.get();
+    }
+
+    private void countLabeledTokens(int count) {
+        labeledTokenCount.addAndGet(count);
+        ProcessingStages.count(ProcessingStages.TOKENS, count);
     }
 
     /**
@@ -1623,39 +1844,39 @@ public class SoftwareParser extends AbstractParser {
         return root;
     }
 
-    public List<OffsetPosition> preparePlaceTaken(List<SoftwareEntity> entities) {
-        List<OffsetPosition> localPositions = new ArrayList<>();
+    public OffsetPositionIndex preparePlaceTaken(List<SoftwareEntity> entities) {
+        OffsetPositionIndex localPositions = new OffsetPositionIndex();
         for (SoftwareEntity entity : entities) {
             SoftwareComponent nameComponent = entity.getSoftwareName();
             if (nameComponent == null)
                 continue;
             List<LayoutToken> localTokens = nameComponent.getTokens();
-            localPositions.add(new OffsetPosition(localTokens.get(0).getOffset(),
-                localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1));
+            localPositions.add(localTokens.get(0).getOffset(),
+                localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1);
 
             // we need to add the other component to avoid overlap
             SoftwareComponent versionComponent = entity.getVersion();
             if (versionComponent != null) {
                 localTokens = versionComponent.getTokens();
                 if (localTokens.size() > 0) {
-                    localPositions.add(new OffsetPosition(localTokens.get(0).getOffset(),
-                        localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1));
+                    localPositions.add(localTokens.get(0).getOffset(),
+                        localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1);
                 }
             }
             SoftwareComponent publisherComponent = entity.getCreator();
             if (publisherComponent != null) {
                 localTokens = publisherComponent.getTokens();
                 if (localTokens.size() > 0) {
-                    localPositions.add(new OffsetPosition(localTokens.get(0).getOffset(),
-                        localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1));
+                    localPositions.add(localTokens.get(0).getOffset(),
+                        localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1);
                 }
             }
             SoftwareComponent urlComponent = entity.getSoftwareURL();
             if (urlComponent != null) {
                 localTokens = urlComponent.getTokens();
                 if (localTokens.size() > 0) {
-                    localPositions.add(new OffsetPosition(localTokens.get(0).getOffset(),
-                        localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1));
+                    localPositions.add(localTokens.get(0).getOffset(),
+                        localTokens.get(localTokens.size() - 1).getOffset() + localTokens.get(localTokens.size() - 1).getText().length() - 1);
                 }
             }
         }
@@ -1691,14 +1912,20 @@ public class SoftwareParser extends AbstractParser {
         return result;
     }
 
-    public FastMatcher prepareTermPattern(List<SoftwareEntity> entities) {
-        FastMatcher termPattern = new FastMatcher();
-        List<String> added = new ArrayList<>();
+    /**
+     * Prepare the matcher of the identified software names for a document, with the frequency
+     * of each software name in the document tokens, computed in the same pass
+     */
+    public DocumentTermMatcher prepareTermMatcher(List<SoftwareEntity> entities, List<LayoutToken> documentTokens) {
+        Set<String> propagatedTerms = new LinkedHashSet<>();
+        Set<String> countedTerms = new LinkedHashSet<>();
         for (SoftwareEntity entity : entities) {
             SoftwareComponent nameComponent = entity.getSoftwareName();
             if (nameComponent == null)
                 continue;
 
+            countedTerms.add(nameComponent.getRawForm());
+
             // we don't propagate implicit software names
             if (entity.getType() == SoftwareLexicon.Software_Type.IMPLICIT)
                 continue;
@@ -1717,113 +1944,18 @@ public class SoftwareParser extends AbstractParser {
                 continue;
             }
 
-            if (!added.contains(term)) {
-                termPattern.loadTerm(term, SoftwareAnalyzer.getInstance(), false);
-                added.add(term);
-            }
-
-            if (!term.equals(nameComponent.getNormalizedForm())) {
-                if (!added.contains(nameComponent.getNormalizedForm())) {
-                    termPattern.loadTerm(nameComponent.getNormalizedForm(), SoftwareAnalyzer.getInstance(), false);
-                    added.add(nameComponent.getNormalizedForm());
-                }
-            }
-        }
-        return termPattern;
-    }
-
-    public Map<String, Integer> prepareFrequencies(List<SoftwareEntity> entities, List<LayoutToken> tokens) {
-        Map<String, Integer> frequencies = new TreeMap<String, Integer>();
-        for (SoftwareEntity entity : entities) {
-            SoftwareComponent nameComponent = entity.getSoftwareName();
-            if (nameComponent == null)
-                continue;
-            String term = nameComponent.getRawForm();
-            if (frequencies.get(term) == null) {
-                FastMatcher localTermPattern = new FastMatcher();
-                localTermPattern.loadTerm(term, SoftwareAnalyzer.getInstance());
-                List<OffsetPosition> results = localTermPattern.matchLayoutToken(tokens, true, true);
-                // ignore delimiters, but case sensitive matching
-                int freq = 0;
-                if (results != null) {
-                    freq = results.size();
-                }
-                frequencies.put(term, Integer.valueOf(freq));
-            }
+            propagatedTerms.add(term);
+            if (!term.equals(nameComponent.getNormalizedForm()) && nameComponent.getNormalizedForm() != null)
+                propagatedTerms.add(nameComponent.getNormalizedForm());
         }
-        return frequencies;
+        return new DocumentTermMatcher(new ArrayList<>(propagatedTerms), new ArrayList<>(countedTerms), documentTokens);
     }
 
     @SuppressWarnings({"UnusedParameters"})
     public String addFeatures(List<LayoutToken> tokens,
                               List<OffsetPosition> softwareTokenPositions,
                               List<OffsetPosition> urlPositions) {
-        int totalLine = tokens.size();
-        int posit = 0;
-        int currentSoftwareIndex = 0;
-        List<OffsetPosition> localPositions = softwareTokenPositions;
-        boolean isSoftwarePattern = false;
-        boolean isUrl = false;
-        StringBuilder result = new StringBuilder();
-        try {
-            for (LayoutToken token : tokens) {
-                if (token.getText().trim().equals("@newline")) {
-                    result.append("\n");
-                    posit++;
-                    continue;
-                }
-
-                String text = token.getText();
-                if (text.equals(" ") || text.equals("\n")) {
-                    posit++;
-                    continue;
-                }
-
-                // parano normalisation
-                text = UnicodeUtil.normaliseTextAndRemoveSpaces(text);
-                if (text.trim().length() == 0) {
-                    posit++;
-                    continue;
-                }
-
-                // do we have a software-match token at position posit?
-                if ((localPositions != null) && (localPositions.size() > 0)) {
-                    for (int mm = currentSoftwareIndex; mm < localPositions.size(); mm++) {
-                        if ((posit >= localPositions.get(mm).start) && (posit <= localPositions.get(mm).end)) {
-                            isSoftwarePattern = true;
-                            currentSoftwareIndex = mm;
-                            break;
-                        } else if (posit < localPositions.get(mm).start) {
-                            isSoftwarePattern = false;
-                            break;
-                        } else if (posit > localPositions.get(mm).end) {
-                            continue;
-                        }
-                    }
-                }
-
-                isUrl = false;
-                if (urlPositions != null) {
-                    for (OffsetPosition thePosition : urlPositions) {
-                        if (posit >= thePosition.start && posit <= thePosition.end) {
-                            isUrl = true;
-                            break;
-                        }
-                    }
-                }
-
-                FeaturesVectorSoftware featuresVector =
-                    FeaturesVectorSoftware.addFeaturesSoftware(text, null,
-                        softwareLexicon.inSoftwareDictionary(text), isSoftwarePattern, isUrl);
-                result.append(featuresVector.printVector());
-                result.append("\n");
-                posit++;
-                isSoftwarePattern = false;
-            }
-        } catch (Exception e) {
-            throw new GrobidException("An exception occurred while running Grobid.", e);
-        }
-        return result.toString();
+        return SoftwareFeatureMatrixBuilder.build(tokens, softwareTokenPositions, urlPositions).toString();
     }
 
     /**
@@ -1886,6 +2018,7 @@ public class SoftwareParser extends AbstractParser {
             sentencePositions = new ArrayList<>();
             sentencePositions.add(new OffsetPosition(0, text.length()));
         }
+        OffsetPositionIndex sentenceIndex = new OffsetPositionIndex(sentencePositions);
 
         for (SoftwareEntity entity : entities) {
             SoftwareComponent softwareName = entity.getSoftwareName();
@@ -1900,62 +2033,61 @@ public class SoftwareParser extends AbstractParser {
             if (startEntity < 0 || endEntity < 0)
                 continue;
 
-            // get the sentence corresponding to these positions
-            for (OffsetPosition sentencePosition : sentencePositions) {
-                int startSentence = sentencePosition.start;
-                int endSentence = sentencePosition.end;
+            // get the first sentence containing these positions
+            int sentenceId = sentenceIndex.firstContaining(startEntity, endEntity);
+            if (sentenceId == -1)
+                continue;
+            OffsetPosition sentencePosition = sentencePositions.get(sentenceId);
+            int startSentence = sentencePosition.start;
+            int endSentence = sentencePosition.end;
 
-                //System.out.println("startSentence: " + startSentence + ", endSentence: " + endSentence);
+            //System.out.println("startSentence: " + startSentence + ", endSentence: " + endSentence);
 
-                if (startSentence <= startEntity && endEntity <= endSentence) {
-                    // set the context as the identified sentence
-                    entity.setContext(text.substring(startSentence, endSentence));
+            // set the context as the identified sentence
+            entity.setContext(text.substring(startSentence, endSentence));
 
-                    //System.out.println("context: " + entity.getContext());
+            //System.out.println("context: " + entity.getContext());
 
-                    if (fromPDF || fromXML) {
-                        // we relate the entity offset to the context text
-                        // update the offsets of the entity components relatively to the context
-                        softwareName.setOffsetStart(startEntity - startSentence);
-                        softwareName.setOffsetEnd(endEntity - startSentence);
+            if (fromPDF || fromXML) {
+                // we relate the entity offset to the context text
+                // update the offsets of the entity components relatively to the context
+                softwareName.setOffsetStart(startEntity - startSentence);
+                softwareName.setOffsetEnd(endEntity - startSentence);
 
-                        SoftwareComponent version = entity.getVersion();
-                        if (version != null) {
-                            version.setOffsetStart(version.getOffsetStart() - startSentence);
-                            version.setOffsetEnd(version.getOffsetEnd() - startSentence);
-                        }
+                SoftwareComponent version = entity.getVersion();
+                if (version != null) {
+                    version.setOffsetStart(version.getOffsetStart() - startSentence);
+                    version.setOffsetEnd(version.getOffsetEnd() - startSentence);
+                }
 
-                        SoftwareComponent creator = entity.getCreator();
-                        if (creator != null) {
-                            creator.setOffsetStart(creator.getOffsetStart() - startSentence);
-                            creator.setOffsetEnd(creator.getOffsetEnd() - startSentence);
-                        }
+                SoftwareComponent creator = entity.getCreator();
+                if (creator != null) {
+                    creator.setOffsetStart(creator.getOffsetStart() - startSentence);
+                    creator.setOffsetEnd(creator.getOffsetEnd() - startSentence);
+                }
 
-                        SoftwareComponent softwareURL = entity.getSoftwareURL();
-                        if (softwareURL != null) {
-                            softwareURL.setOffsetStart(softwareURL.getOffsetStart() - startSentence);
-                            softwareURL.setOffsetEnd(softwareURL.getOffsetEnd() - startSentence);
-                        }
+                SoftwareComponent softwareURL = entity.getSoftwareURL();
+                if (softwareURL != null) {
+                    softwareURL.setOffsetStart(softwareURL.getOffsetStart() - startSentence);
+                    softwareURL.setOffsetEnd(softwareURL.getOffsetEnd() - startSentence);
+                }
 
-                        /*
-                        // normally no bib ref attached to a software mention at this stage
-                        List<BiblioComponent> localBibRefs = entity.getBibRefs();
-                        if (localBibRefs != null) {
-                            for(BiblioComponent localBibRef : localBibRefs) {
-                                localBibRef.setOffsetStart(localBibRef.getOffsetStart() - startSentence - offsetShift);
-                                localBibRef.setOffsetEnd(localBibRef.getOffsetEnd() - startSentence - offsetShift);
-                            }
-                        }
-                        */
+                /*
+                // normally no bib ref attached to a software mention at this stage
+                List<BiblioComponent> localBibRefs = entity.getBibRefs();
+                if (localBibRefs != null) {
+                    for(BiblioComponent localBibRef : localBibRefs) {
+                        localBibRef.setOffsetStart(localBibRef.getOffsetStart() - startSentence - offsetShift);
+                        localBibRef.setOffsetEnd(localBibRef.getOffsetEnd() - startSentence - offsetShift);
+                    }
+                }
+                */
 
-                        entity.setGlobalContextOffset(startSentence + offsetShift);
+                entity.setGlobalContextOffset(startSentence + offsetShift);
 
-                        if (addParagraphContext) {
-                            entity.setParagraphContextOffset(startSentence);
-                            entity.setParagraph(text);
-                        }
-                    }
-                    break;
+                if (addParagraphContext) {
+                    entity.setParagraphContextOffset(startSentence);
+                    entity.setParagraph(text);
                 }
             }
         }
@@ -2477,16 +2609,20 @@ public class SoftwareParser extends AbstractParser {
                                                                                               boolean addParagraphContext) throws IOException {
         Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> resultExtraction = null;
         try {
-            String tei = processXML(file);
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            //tei = avoidDomParserAttributeBug(tei);
+            // the XML document is transformed with Pub2TEI in the current JVM with the cached compiled
+            // stylesheets, if Saxon cannot be loaded we fall back to the transformation with an external process
+            Pub2TEITransformer transformer = pub2teiTransformer();
+            if (transformer != null) {
+                return processBufferedTEI(output -> {
+                    ProcessingStages.begin(ProcessingStages.XML_TRANSFORMATION);
+                    transformer.transform(file, output);
+                }, disambiguate, addParagraphContext);
+            }
 
-            org.w3c.dom.Document document = builder.parse(new InputSource(new StringReader(tei)));
-            //document.getDocumentElement().normalize();
+            ProcessingStages.begin(ProcessingStages.XML_TRANSFORMATION);
+            String tei = processXML(file);
 
-            resultExtraction = processTEIDocument(document, disambiguate, addParagraphContext);
+            resultExtraction = processTEIDocument(new StreamSource(new StringReader(tei)), disambiguate, addParagraphContext);
 
             //tei = restoreDomParserAttributeBug(tei);
 
@@ -2508,13 +2644,9 @@ public class SoftwareParser extends AbstractParser {
         boolean addParagraphContext
     ) throws IOException {
         Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> resultExtraction = null;
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            org.w3c.dom.Document document = builder.parse(file);
-            //document.getDocumentElement().normalize();
-            resultExtraction = processTEIDocument(document, disambiguate, addParagraphContext);
+        // the TEI file is streamed, its DOM is not built
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            resultExtraction = processTEIDocument(new StreamSource(input, file.toURI().toString()), disambiguate, addParagraphContext);
             //tei = restoreDomParserAttributeBug(tei);
 
         } catch (final Exception exp) {
@@ -2525,10 +2657,25 @@ public class SoftwareParser extends AbstractParser {
         return resultExtraction;
     }
 
+    /**
+     * The in-JVM Pub2TEI transformer, null if Saxon or the stylesheets cannot be loaded
+     */
+    private Pub2TEITransformer pub2teiTransformer() {
+        if (pub2teiInJVM) {
+            try {
+                return Pub2TEITransformer.getInstance(softwareConfiguration);
+            } catch (GrobidException e) {
+                logger.warn("In-JVM Pub2TEI transformation not available, falling back to an external process", e);
+                pub2teiInJVM = false;
+            }
+        }
+        return null;
+    }
+
     /**
      * Tranform an XML document (for example JATS) to a TEI document.
      * Transformation of the XML/JATS/NLM/etc. document is realised thanks to Pub2TEI
-     * (https://github.com/kermitt2/pub2tei)
+     * (https://github.com/kermitt2/pub2tei) with an external process. 
      *
      * @return TEI string
      */
@@ -2564,64 +2711,132 @@ public class SoftwareParser extends AbstractParser {
 
 
     /**
-     * Extract all software mentions from a publisher XML file
+     * Extract all software mentions from a TEI DOM document
      */
     public Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> processTEIDocument(
         org.w3c.dom.Document doc,
         boolean disambiguate,
         boolean addParagraphContext
+    ) {
+        // StAX cannot read a DOM, the DOM is serialized to the TEI reader
+        return processBufferedTEI(output -> TransformerFactory.newInstance().newTransformer()
+            .transform(new DOMSource(doc), new StreamResult(output)), disambiguate, addParagraphContext);
+    }
+
+    /**
+     * Writer of a TEI document to a byte stream, encoded in UTF-8
+     */
+    private interface TEIWriter {
+        void write(OutputStream output) throws Exception;
+    }
+
+    /**
+     * Extract all software mentions from a TEI document written in memory then read in the same
+     * thread. The serialized TEI is buffered in chunks, without DOM, and read from these chunks
+     * without copy.
+     */
+    private Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> processBufferedTEI(
+        TEIWriter teiWriter,
+        boolean disambiguate,
+        boolean addParagraphContext
+    ) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            teiWriter.write(buffer);
+        } catch (GrobidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("An exception occurred while writing the TEI document.", e);
+        }
+        return processTEIDocument(new StreamSource(buffer.toInputStream()), disambiguate, addParagraphContext);
+    }
+
+    /**
+     * Extract all software mentions from a TEI document, which is streamed: the paragraphs are 
+     * tokenized and the bibliographical references parsed while the document is read, without DOM
+     */
+    public Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> processTEIDocument(
+        StreamSource teiSource,
+        boolean disambiguate,
+        boolean addParagraphContext
     ) {
         List<SoftwareEntity> entities = new ArrayList<>();
 
         List<List<LayoutToken>> selectedLayoutTokenSequencesRaw = new ArrayList<>();
-        List<List<LayoutToken>> selectedOriginalLayoutTokenSequences = new ArrayList<>();
+        List<AnalyzedSegment> selectedOriginalSegments = new ArrayList<>();
         List<LayoutToken> docLayoutTokens = new ArrayList<>();
 
         List<Map<String, Pair<OffsetPosition, String>>> selectedRefInfos = new ArrayList<>();
 
-        org.w3c.dom.NodeList paragraphList = doc.getElementsByTagName("p");
-        int globalPos = 0;
-        for (int i = 0; i < paragraphList.getLength(); i++) {
-            org.w3c.dom.Element paragraphElement = (org.w3c.dom.Element) paragraphList.item(i);
+        // the tokenized original text of each paragraph is reused for the propagation pass, with 
+        // the position where its tokens have been shifted
+        List<AnalyzedSegment> paragraphSegments = new ArrayList<>();
+        List<Integer> paragraphSegmentShifts = new ArrayList<>();
 
-            // check that the father is not <abstract> and not <figDesc>
-            /*org.w3c.dom.Node fatherNode = paragraphElement.getParentNode();
-            if (fatherNode != null) {
-                if ("availability".equals(fatherNode.getNodeName()))
-                    continue;
-            }*/
+        // local bibliographical references to spot in the XML mark-up, to attach and propagate
+        List<BibDataSet> resCitations = new ArrayList<>();
 
-            Pair<String, Map<String, Pair<OffsetPosition, String>>> contentTextAndRef =
-                XMLUtilities.getTextNoRefMarkersAndMarkerPositions(paragraphElement, globalPos);
-            String contentText = UnicodeUtil.normaliseText(contentTextAndRef.getLeft());
-            Map<String, Pair<OffsetPosition, String>> refInfos = contentTextAndRef.getRight();
-
-            if (StringUtils.isNotBlank(contentText)) {
-                List<LayoutToken> paragraphTokens =
-                    SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(contentText);
-                String originalText = UnicodeUtil.normaliseText(paragraphElement.getTextContent());
-                List<LayoutToken> originalParagraphTokens =
-                    SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(originalText);
-                if (CollectionUtils.isNotEmpty(paragraphTokens)) {
-                    // shift the paragraph tokens to the global position
-                    for (LayoutToken paragraphToken : paragraphTokens) {
-                        paragraphToken.setOffset(paragraphToken.getOffset() + globalPos);
-                    }
-                    for (LayoutToken originalParagraphToken : originalParagraphTokens) {
-                        originalParagraphToken.setOffset(originalParagraphToken.getOffset() + globalPos);
+        TEIStreamReader teiReader = new TEIStreamReader(new TEIStreamReader.TEIContentHandler() {
+            private int globalPos = 0;
+
+            @Override
+            public void paragraph(TEIStreamReader.Paragraph paragraph) {
+                String contentText = UnicodeUtil.normaliseText(paragraph.getText());
+                String originalText = UnicodeUtil.normaliseText(paragraph.getFullText());
+
+                if (StringUtils.isNotBlank(contentText)) {
+                    List<LayoutToken> paragraphTokens =
+                        SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(contentText);
+                    List<LayoutToken> originalParagraphTokens =
+                        SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(originalText);
+                    if (CollectionUtils.isNotEmpty(paragraphTokens)) {
+                        // shift the paragraph tokens to the global position
+                        for (LayoutToken paragraphToken : paragraphTokens) {
+                            paragraphToken.setOffset(paragraphToken.getOffset() + globalPos);
+                        }
+                        for (LayoutToken originalParagraphToken : originalParagraphTokens) {
+                            originalParagraphToken.setOffset(originalParagraphToken.getOffset() + globalPos);
+                        }
+
+                        selectedLayoutTokenSequencesRaw.add(paragraphTokens);
+                        docLayoutTokens.addAll(originalParagraphTokens);
+
+                        selectedRefInfos.add(paragraph.getRefMarkers(globalPos));
+                        AnalyzedSegment originalSegment = new AnalyzedSegment(originalParagraphTokens);
+                        selectedOriginalSegments.add(originalSegment);
+                        paragraphSegments.add(originalSegment);
+                        paragraphSegmentShifts.add(globalPos);
+                        globalPos += contentText.length();
+                        return;
                     }
 
-                    selectedLayoutTokenSequencesRaw.add(paragraphTokens);
-                    docLayoutTokens.addAll(originalParagraphTokens);
+                    globalPos += contentText.length();
+                }
 
-                    selectedRefInfos.add(refInfos);
-                    selectedOriginalLayoutTokenSequences.add(originalParagraphTokens);
+                // paragraph without text outside reference markers, only used for the propagation pass
+                if (originalText != null && originalText.length() > 0) {
+                    paragraphSegments.add(new AnalyzedSegment(
+                        SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(originalText)));
+                    paragraphSegmentShifts.add(0);
                 }
+            }
 
-                globalPos += contentText.length();
+            @Override
+            public void bibliographicalReference(String xmlId, BiblioItem biblio) {
+                BibDataSet bds = new BibDataSet();
+                bds.setResBib(biblio);
+                bds.setRefSymbol(xmlId);
+                resCitations.add(bds);
             }
+        });
+        ProcessingStages.begin(ProcessingStages.TEI_READING);
+        try {
+            teiReader.read(teiSource);
+        } catch (XMLStreamException e) {
+            throw new GrobidException("An exception occurred while reading the TEI document.", e);
         }
 
+        ProcessingStages.begin(ProcessingStages.MENTION_EXTRACTION);
         List<List<LayoutToken>> selectedLayoutTokenSequences = new ArrayList<>(selectedLayoutTokenSequencesRaw);
 
         if (isSequenceLabellingUsingDL()) {
@@ -2653,7 +2868,6 @@ public class SoftwareParser extends AbstractParser {
         }
 
         processLayoutTokenSequenceMultiple(selectedLayoutTokenSequences, entities, disambiguate, addParagraphContext, false, true);
-        selectedLayoutTokenSequences = selectedOriginalLayoutTokenSequences;
 
         // filter out components outside context, restore original tokenization
         int sequenceIndex = 0;
@@ -2671,12 +2885,12 @@ public class SoftwareParser extends AbstractParser {
                 //System.out.println(softwareName.getRawForm() + " / " + softwareName.getOffsetStart() + "-" + softwareName.getOffsetEnd() +
                 //    " / global offset: " + globalContextOffset + " / context: " + context + " / final context pos: " + (globalContextOffset+context.length()) );
 
-                for (int i = sequenceIndex; i < selectedLayoutTokenSequences.size(); i++) {
+                for (int i = sequenceIndex; i < selectedOriginalSegments.size(); i++) {
                     int posStartSequence = -1;
-                    List<LayoutToken> selectedLayoutTokenSequence = selectedLayoutTokenSequences.get(i);
-                    if (CollectionUtils.isNotEmpty(selectedLayoutTokenSequence)) {
-                        posStartSequence = selectedLayoutTokenSequence.get(0).getOffset();
-                        String localText = LayoutTokensUtil.toText(selectedLayoutTokenSequence);
+                    AnalyzedSegment selectedSegment = selectedOriginalSegments.get(i);
+                    if (!selectedSegment.isEmpty()) {
+                        posStartSequence = selectedSegment.getTokens().get(0).getOffset();
+                        String localText = selectedSegment.getText();
                         if (posStartSequence <= globalContextOffset && globalContextOffset < posStartSequence + localText.length()) {
                             // the context is within this sequence
                             int maxBound = Math.min((globalContextOffset - posStartSequence) + context.length() + 1, localText.length());
@@ -2726,100 +2940,38 @@ public class SoftwareParser extends AbstractParser {
         }
 
         // propagate the disambiguated entities to the non-disambiguated entities corresponding to the same software name
-        for (SoftwareEntity entity1 : entities) {
-            if (entity1.getSoftwareName() != null && entity1.getSoftwareName().getWikidataId() != null) {
-                for (SoftwareEntity entity2 : entities) {
-                    if (entity2.getSoftwareName() != null && entity2.getSoftwareName().getWikidataId() != null) {
-                        // if the entity is already disambiguated, nothing possible
-                        continue;
-                    }
-                    if (entity2.getSoftwareName() != null &&
-                        entity2.getSoftwareName().getRawForm().equals(entity1.getSoftwareName().getRawForm())) {
-                        entity1.getSoftwareName().copyKnowledgeInformationTo(entity2.getSoftwareName());
-                        entity2.getSoftwareName().setLang(entity1.getSoftwareName().getLang());
-                    }
-                }
-            }
-        }
+        ProcessingStages.begin(ProcessingStages.PROPAGATION);
+        SoftwareEntityMerger.propagateDisambiguation(entities);
 
         // second pass for document level consistency
-        // we prepare a matcher for all the identified software names
-        FastMatcher termPattern = prepareTermPattern(entities);
-        // we prepare the frequencies for each software name in the whole document
-        Map<String, Integer> frequencies = prepareFrequencies(entities, docLayoutTokens);
+        // we prepare a matcher for all the identified software names, with their frequencies in the whole document
+        DocumentTermMatcher termMatcher = prepareTermMatcher(entities, docLayoutTokens);
         // we prepare a map for mapping a software name with its positions of annotation in the document and its IDF
         Map<String, Double> termProfiles = prepareTermProfiles(entities);
-        List<OffsetPosition> placeTaken = preparePlaceTaken(entities);
-
-        globalPos = 0;
-        for (int i = 0; i < paragraphList.getLength(); i++) {
-            org.w3c.dom.Element paragraphElement = (org.w3c.dom.Element) paragraphList.item(i);
-
-            // check that the father is not <abstract> and not <figDesc>
-            /*org.w3c.dom.Node fatherNode = paragraphElement.getParentNode();
-            if (fatherNode != null) {
-                if ("availability".equals(fatherNode.getNodeName()))
-                    continue;
-            }*/
+        OffsetPositionIndex placeTaken = preparePlaceTaken(entities);
 
-            String contentText = UnicodeUtil.normaliseText(paragraphElement.getTextContent());
-            if (contentText != null && contentText.length() > 0) {
-                List<LayoutToken> paragraphTokens =
-                    SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(contentText);
-
-                if (paragraphTokens != null && paragraphTokens.size() > 0) {
-                    for (LayoutToken paragraphToken : paragraphTokens) {
-                        paragraphToken.setOffset(paragraphToken.getOffset() + globalPos);
-                    }
-                    propagateLayoutTokenSequence(paragraphTokens, entities, termProfiles, termPattern, placeTaken, frequencies, addParagraphContext, false, true);
+        int globalPos = 0;
+        for (int i = 0; i < paragraphSegments.size(); i++) {
+            // already tokenized, only the offsets are shifted to the current position
+            AnalyzedSegment paragraphSegment = paragraphSegments.get(i);
+            int shift = globalPos - paragraphSegmentShifts.get(i);
+            if (shift != 0) {
+                for (LayoutToken paragraphToken : paragraphSegment.getTokens()) {
+                    paragraphToken.setOffset(paragraphToken.getOffset() + shift);
                 }
-                globalPos += contentText.length();
             }
+            if (!paragraphSegment.isEmpty())
+                propagateLayoutTokenSequence(paragraphSegment, entities, termProfiles, termMatcher, placeTaken, addParagraphContext, false, true);
+            globalPos += paragraphSegment.getText().length();
         }
 
         // propagate the non-disambiguated entities attributes to the new propagated entities corresponding
         // to the same software name
-        for (SoftwareEntity entity1 : entities) {
-            if (entity1.getSoftwareName() != null) {
-                for (SoftwareEntity entity2 : entities) {
-                    if (entity2.getSoftwareName() != null &&
-                        entity2.getSoftwareName().getNormalizedForm().equals(entity1.getSoftwareName().getNormalizedForm())) {
-                        SoftwareEntity.mergeWithCopy(entity1, entity2);
-                        if (entity1.getSoftwareName().getWikidataId() != null && entity2.getSoftwareName().getWikidataId() == null) {
-                            entity1.getSoftwareName().copyKnowledgeInformationTo(entity2.getSoftwareName());
-                            entity2.getSoftwareName().setLang(entity1.getSoftwareName().getLang());
-                        } else if (entity2.getSoftwareName().getWikidataId() != null && entity1.getSoftwareName().getWikidataId() == null) {
-                            entity2.getSoftwareName().copyKnowledgeInformationTo(entity1.getSoftwareName());
-                            entity1.getSoftwareName().setLang(entity2.getSoftwareName().getLang());
-                        }
-                    }
-                }
-            }
-        }
+        SoftwareEntityMerger.mergeAttributes(entities);
 
         //Collections.sort(entities);
 
-        // local bibliographical references to spot in the XML mark-up, to attach and propagate
-        List<BibDataSet> resCitations = new ArrayList<>();
-        org.w3c.dom.NodeList bibList = doc.getElementsByTagName("biblStruct");
-        for (int i = 0; i < bibList.getLength(); i++) {
-            org.w3c.dom.Element biblStructElement = (org.w3c.dom.Element) bibList.item(i);
-
-            // filter <biblStruct> not having as father <listBibl>
-            /*org.w3c.dom.Node fatherNode = biblStructElement.getParentNode();
-            if (fatherNode != null) {
-                if (!"listBibl".equals(fatherNode.getNodeName()))
-                    continue;
-            }*/
-
-            BiblioItem biblio = XMLUtilities.parseTEIBiblioItem(doc, biblStructElement);
-
-            BibDataSet bds = new BibDataSet();
-            bds.setResBib(biblio);
-            bds.setRefSymbol(biblStructElement.getAttribute("xml:id"));
-            resCitations.add(bds);
-        }
-
+        ProcessingStages.begin(ProcessingStages.REFERENCES);
         entities = attachReferencesXML(entities,
             selectedRefInfos,
             resCitations);
@@ -2857,32 +3009,15 @@ public class SoftwareParser extends AbstractParser {
         }
 
         // propagate the bib. ref. to the entities corresponding to the same software name without bib. ref.
-        if (CollectionUtils.isNotEmpty(entities)) {
-            for (SoftwareEntity entity1 : entities) {
-                if (CollectionUtils.isNotEmpty(entity1.getBibRefs())) {
-                    for (SoftwareEntity entity2 : entities) {
-                        if (entity2.getBibRefs() != null) {
-                            continue;
-                        }
-                        if (entity2.getSoftwareName() != null &&
-                            entity2.getSoftwareName().getRawForm().equals(entity1.getSoftwareName().getRawForm())) {
-                            List<BiblioComponent> newBibRefs = new ArrayList<>();
-                            for (BiblioComponent bibComponent : entity1.getBibRefs()) {
-                                newBibRefs.add(new BiblioComponent(bibComponent));
-                            }
-                            entity2.setBibRefs(newBibRefs);
-                        }
-                    }
-                }
-            }
-        }
+        SoftwareEntityMerger.propagateBibRefs(entities);
 
         Collections.sort(entities);
 
         // finally classify the context for predicting the role of the software mention
 //        entities = SoftwareContextClassifier.getInstance(softwareConfiguration).classifyDocumentContexts(entities);
 
-        Optional<ArticleBiblio> metadata = ArticleBiblio.fromTeiDocument(doc);
+        ProcessingStages.count(ProcessingStages.MENTIONS, entities.size());
+        Optional<ArticleBiblio> metadata = teiReader.getArticleBiblio();
         return Triple.of(metadata, entities, resCitations);
     }
 
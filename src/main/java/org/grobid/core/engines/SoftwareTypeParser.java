@@ -21,6 +21,9 @@ import org.grobid.core.engines.tagging.GrobidCRFEngine;
 import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.factory.GrobidFactory;
 import org.grobid.core.features.FeaturesVectorSoftware;
+import org.grobid.core.features.SoftwareFeatureMatrix;
+import org.grobid.core.features.SoftwareFeatureMatrixBuilder;
+import org.grobid.core.features.SoftwareLabeledResult;
 import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
 import org.grobid.core.layout.LayoutTokenization;
@@ -64,6 +67,9 @@ public class SoftwareTypeParser extends AbstractParser {
     private EngineParsers parsers;
     private SoftwareConfiguration softwareConfiguration;
 
+    // micro-batching of the labeling calls across concurrent requests, only for a DeLFT model
+    private MicroBatchScheduler<SoftwareFeatureMatrix, SoftwareLabeledResult> labelingScheduler = null;
+
     public static SoftwareTypeParser getInstance(SoftwareConfiguration configuration) {
         if (instance == null) {
             getNewInstance(configuration);
@@ -75,7 +81,9 @@ public class SoftwareTypeParser extends AbstractParser {
      * Create a new instance.
      */
     private static synchronized void getNewInstance(SoftwareConfiguration configuration) {
-        instance = new SoftwareTypeParser(configuration);
+        // the instance may have been created by a concurrent call
+        if (instance == null)
+            instance = new SoftwareTypeParser(configuration);
     }
 
     
@@ -84,9 +92,12 @@ public class SoftwareTypeParser extends AbstractParser {
             GrobidCRFEngine.valueOf(configuration.getModel("software-type").engine.toUpperCase()),
             configuration.getModel("software-type").delft.architecture);
 
-        softwareLexicon = SoftwareLexicon.getInstance();
+        softwareLexicon = SoftwareLexicon.getInstance(configuration);
         parsers = new EngineParsers();
         softwareConfiguration = configuration;
+
+        if (configuration.getModel("software-type").engine.equals("delft"))
+            labelingScheduler = SoftwareLabeledResult.createScheduler("software-type", this, configuration);
     }
 
     public List<SoftwareType> processSentence(String sentence) throws Exception {
@@ -119,8 +130,8 @@ public class SoftwareTypeParser extends AbstractParser {
     }
 
     public List<List<SoftwareType>> processSentencesTokenSequenceMultiple(List<List<LayoutToken>> layoutTokenList) throws Exception {
-        StringBuilder allRess = new StringBuilder();
-        List<List<SoftwareType>> entities = new ArrayList<>();
+        List<SoftwareFeatureMatrix> allFeatures = new ArrayList<>();
+        List<List<LayoutToken>> allTokens = new ArrayList<>();
         for(List<LayoutToken> layoutTokens : layoutTokenList) {
             layoutTokens = SoftwareAnalyzer.getInstance().retokenizeLayoutTokens(layoutTokens);
 
@@ -131,60 +142,40 @@ public class SoftwareTypeParser extends AbstractParser {
             List<OffsetPosition> softwareTokenPositions = softwareLexicon.tokenPositionsSoftwareNames(layoutTokens);
             List<OffsetPosition> urlPositions = Lexicon.getInstance().tokenPositionsUrlPattern(layoutTokens);
 
-            // string representation of the feature matrix for sequence labeling lib
-            String ress = SoftwareParser.getInstance(softwareConfiguration).addFeatures(layoutTokens, softwareTokenPositions, urlPositions);
-            allRess.append(ress);
-            allRess.append("\n\n");   
-        }
-
-        // labeled result from sequence labelling lib
-        String allResString = allRess.toString();
-        if (allResString.trim().length() == 0) {
-            // empty content, nothing more to do
-            return entities;
-        }
-
-        String res = label(allResString);
-        int l = 0;
-        String[] resBlocks = res.split("\n\n");
-        for(List<LayoutToken> layoutTokens : layoutTokenList) {
-            layoutTokens = SoftwareAnalyzer.getInstance().retokenizeLayoutTokens(layoutTokens);
-
-            if ( (layoutTokens == null) || (layoutTokens.size() == 0) )
-                continue;
-
-            // text of the selected segment
-            String text = LayoutTokensUtil.toText(layoutTokens);
-            String localRes = resBlocks[l];
-
-            if (localRes == null || localRes.length() == 0) 
-                continue;
-
-            List<SoftwareType> localTypes = extractSoftwareTypes(text, localRes, layoutTokens);
-            entities.add(localTypes);
-            l++;
+            // feature matrix for sequence labeling lib, the software-type model shares the same 
+            // features as the software model
+            SoftwareFeatureMatrix features = SoftwareFeatureMatrixBuilder.build(layoutTokens,
+                softwareTokenPositions, urlPositions);
+            allFeatures.add(features);
+            allTokens.add(layoutTokens);
         }
 
+        List<List<SoftwareType>> entities = processFeatureInputs(allFeatures, allTokens);
+        if (entities == null)
+            entities = new ArrayList<>();
         return entities;
     }
 
     /**
      * Process one already prepared input with features
      **/
-    public List<SoftwareType> processFeatureInput(String text, String inputFeatures, List<LayoutToken> tokens) throws Exception {
-        if (inputFeatures.trim().length() == 0) {
+    public List<SoftwareType> processFeatureInput(String text, SoftwareFeatureMatrix inputFeatures, List<LayoutToken> tokens) throws Exception {
+        if (inputFeatures == null || inputFeatures.getTokenRowCount() == 0) {
             // empty content, nothing more to do
             return null;
         }
 
-        String res = label(inputFeatures);
-        return extractSoftwareTypes(text, res, tokens);
+        SoftwareLabeledResult res = SoftwareLabeledResult.label(this, Collections.singletonList(inputFeatures), labelingScheduler);
+        return extractSoftwareTypes(text, res.getSequenceResult(0), tokens);
     }
 
     /**
-     * Process a list of already prepared input with features
+     * Process a list of already prepared inputs with features, typically the feature matrices 
+     * built for the software model, with a single call to the sequence labeling lib. 
+     * The returned list is aligned with the input list, with an empty list of types for 
+     * segments without result.
      **/
-    public List<List<SoftwareType>> processFeatureInputs(List<String> inputFeatures, List<List<LayoutToken>> layoutTokenList) throws Exception {
+    public List<List<SoftwareType>> processFeatureInputs(List<SoftwareFeatureMatrix> inputFeatures, List<List<LayoutToken>> layoutTokenList) throws Exception {
         if (inputFeatures == null || inputFeatures.size() == 0) {
             // empty content, nothing more to do
             return null;
@@ -192,11 +183,14 @@ public class SoftwareTypeParser extends AbstractParser {
 
         List<List<SoftwareType>> entities = new ArrayList<>();
 
-        String res = label(inputFeatures);
-        int l = 0;
-        String[] resBlocks = res.split("\n\n");
-        for(List<LayoutToken> layoutTokens : layoutTokenList) {
-            String localRes = resBlocks[l];
+        SoftwareLabeledResult res = SoftwareLabeledResult.label(this, inputFeatures, labelingScheduler);
+        for(int l=0; l < layoutTokenList.size(); l++) {
+            List<LayoutToken> layoutTokens = layoutTokenList.get(l);
+            String localRes = res.getSequenceResult(l);
+            if (localRes.trim().length() == 0) {
+                entities.add(new ArrayList<>());
+                continue;
+            }
             String localText = LayoutTokensUtil.toText(layoutTokens);
             List<SoftwareType> localTypes = extractSoftwareTypes(localText, localRes, layoutTokens);
             entities.add(localTypes);
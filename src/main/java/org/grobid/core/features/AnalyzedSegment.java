@@ -0,0 +1,122 @@
+package org.grobid.core.features;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.grobid.core.analyzers.SoftwareAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.layout.PDFAnnotation;
+import org.grobid.core.lexicon.Lexicon;
+import org.grobid.core.lexicon.SoftwareLexicon;
+import org.grobid.core.utilities.OffsetPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A token sequence of a document (title, abstract, paragraph, ...) with the results of its
+ * analysis, shared by the successive processing stages so that each of them is computed at most
+ * once per segment: the text, the character offsets of the tokens, the form retokenized with the
+ * SoftwareAnalyzer and the positions of the software lexicon and URL matches.
+ *
+ * The token list is not copied and must not be modified after the creation of the segment.
+ * Character offsets are relative to the text of the segment, token positions are indexes in
+ * the token list.
+ */
+public class AnalyzedSegment {
+
+    private final List<LayoutToken> tokens;
+
+    private String text = null;
+
+    // start character offset of each token in the text, and text length as last element
+    private int[] tokenOffsets = null;
+
+    private AnalyzedSegment retokenized = null;
+
+    private List<OffsetPosition> softwareNamePositions = null;
+    private List<OffsetPosition> urlPositions = null;
+
+    public AnalyzedSegment(List<LayoutToken> tokens) {
+        this.tokens = (tokens == null) ? new ArrayList<>() : tokens;
+    }
+
+    public List<LayoutToken> getTokens() {
+        return tokens;
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    public boolean isEmpty() {
+        return tokens.isEmpty();
+    }
+
+    /**
+     * Concatenated text of the tokens, identical to LayoutTokensUtil.toText()
+     */
+    public String getText() {
+        if (text == null)
+            analyzeText();
+        return text;
+    }
+
+    private void analyzeText() {
+        int[] offsets = new int[tokens.size() + 1];
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            offsets[i] = builder.length();
+            builder.append(tokens.get(i).getText());
+        }
+        offsets[tokens.size()] = builder.length();
+        tokenOffsets = offsets;
+        text = builder.toString();
+    }
+
+    /**
+     * Character offset in the segment text of the start of a token
+     */
+    public int getCharOffset(int tokenIndex) {
+        if (tokenOffsets == null)
+            analyzeText();
+        return tokenOffsets[tokenIndex];
+    }
+
+    /**
+     * Text of the tokens from start to end, both included
+     */
+    public String getText(int startToken, int endToken) {
+        return getText().substring(getCharOffset(startToken), getCharOffset(endToken + 1));
+    }
+
+    /**
+     * The segment retokenized with the SoftwareAnalyzer
+     */
+    public AnalyzedSegment getRetokenized() {
+        if (retokenized == null)
+            retokenized = new AnalyzedSegment(SoftwareAnalyzer.getInstance().retokenizeLayoutTokens(tokens));
+        return retokenized;
+    }
+
+    /**
+     * Token positions of the names of the software lexicon
+     */
+    public List<OffsetPosition> getSoftwareNamePositions() {
+        if (softwareNamePositions == null)
+            softwareNamePositions = SoftwareLexicon.getInstance().tokenPositionsSoftwareNames(tokens);
+        return softwareNamePositions;
+    }
+
+    /**
+     * Token positions of the URL, using the PDF annotations when available. As the positions
+     * are shared, they must not be modified.
+     */
+    public List<OffsetPosition> getUrlPositions(List<PDFAnnotation> pdfAnnotations) {
+        if (urlPositions == null) {
+            List<OffsetPosition> positions = new ArrayList<>();
+            for (Pair<OffsetPosition, ?> match : Lexicon.tokenPositionUrlPatternWithPdfAnnotations(tokens, pdfAnnotations))
+                positions.add(match.getLeft());
+            urlPositions = positions;
+        }
+        return urlPositions;
+    }
+}
@@ -50,36 +50,63 @@ public class FeaturesVectorSoftware {
     public String printVector() {
         if (string == null) return null;
         if (string.length() == 0) return null;
-        StringBuffer res = new StringBuffer();
+        StringBuilder res = new StringBuilder();
+        appendVector(res, string, string.toLowerCase(), capitalisation, digit, singleChar, punctType, 
+            softwareName, isSoftwareToken, shadowNumber, wordShape, wordShapeTrimmed, http, label);
+        return res.toString();
+    }
 
+    /**
+     * Write the text representation of a feature vector, as expected by the sequence labeling 
+     * libraries, directly in the provided buffer. This is the single place where the order 
+     * of the feature columns is defined.
+     */
+    static void appendVector(StringBuilder res, 
+                            String string, 
+                            String lowercase, 
+                            String capitalisation, 
+                            String digit, 
+                            boolean singleChar, 
+                            String punctType, 
+                            boolean softwareName, 
+                            boolean isSoftwareToken, 
+                            String shadowNumber, 
+                            String wordShape, 
+                            String wordShapeTrimmed, 
+                            boolean http, 
+                            String label) {
         // token string (1)
         res.append(string);
 
         // lowercase string
-        res.append(" " + string.toLowerCase());
+        res.append(' ').append(lowercase);
 
         // prefix (5)
-        res.append(" " + TextUtilities.prefix(string, 1));
-        res.append(" " + TextUtilities.prefix(string, 2));
-        res.append(" " + TextUtilities.prefix(string, 3));
-        res.append(" " + TextUtilities.prefix(string, 4));
-        res.append(" " + TextUtilities.prefix(string, 5));
+        for (int i = 1; i <= 5; i++) {
+            res.append(' ');
+            if (string.length() < i)
+                res.append(string);
+            else
+                res.append(string, 0, i);
+        }
 
         // suffix (5)
-        res.append(" " + TextUtilities.suffix(string, 1));
-        res.append(" " + TextUtilities.suffix(string, 2));
-        res.append(" " + TextUtilities.suffix(string, 3));
-        res.append(" " + TextUtilities.suffix(string, 4));
-        res.append(" " + TextUtilities.suffix(string, 5));
+        for (int i = 1; i <= 5; i++) {
+            res.append(' ');
+            if (string.length() < i)
+                res.append(string);
+            else
+                res.append(string, string.length() - i, string.length());
+        }
 
         // capitalisation (1)
         if (digit.equals("ALLDIGIT"))
             res.append(" NOCAPS");
         else
-            res.append(" " + capitalisation);
+            res.append(' ').append(capitalisation);
 
         // digit information (1)
-        res.append(" " + digit);
+        res.append(' ').append(digit);
 
         // character information (1)
         if (singleChar)
@@ -88,7 +115,7 @@ public class FeaturesVectorSoftware {
             res.append(" 0"); 
 
         // punctuation information (1)
-        res.append(" " + punctType); // in case the token is a punctuation (NO otherwise)
+        res.append(' ').append(punctType); // in case the token is a punctuation (NO otherwise)
 
 		// lexical information (1), token is a token in the software vocabulary
         if (softwareName)
@@ -106,13 +133,13 @@ public class FeaturesVectorSoftware {
         //res.append(" " + string.length()); // /
 
 		// shadow number (1)
-		res.append(" " + shadowNumber); // /
+		res.append(' ').append(shadowNumber); // /
 		
 		// word shape (1)
-		res.append(" " + wordShape);
+		res.append(' ').append(wordShape);
 		
 		// word shape trimmed (1)
-		res.append(" " + wordShapeTrimmed);
+		res.append(' ').append(wordShapeTrimmed);
 
         if (http)
             res.append(" 1");
@@ -121,11 +148,56 @@ public class FeaturesVectorSoftware {
 		
         // label - for training data (1)
         if (label != null)
-            res.append(" " + label + "");
+            res.append(' ').append(label);
         else
             res.append(" 0");
+    }
 
-        return res.toString();
+    // values of the categorical features, the index in these arrays are the feature ids
+    // used in the columnar representation SoftwareFeatureMatrix
+    public static final String[] CAPITALISATION_VALUES = {"NOCAPS", "INITCAP", "ALLCAPS"};
+    public static final String[] DIGIT_VALUES = {"NODIGIT", "CONTAINDIGIT", "ALLDIGIT"};
+    public static final String[] PUNCT_TYPE_VALUES = 
+        {"NOPUNCT", "PUNCT", "OPENBRACKET", "ENDBRACKET", "DOT", "COMMA", "HYPHEN", "QUOTE"};
+
+    static byte capitalisationId(FeatureFactory featureFactory, String word) {
+        if (featureFactory.test_all_capital(word))
+            return 2;
+        else if (featureFactory.test_first_capital(word))
+            return 1;
+        else
+            return 0;
+    }
+
+    static byte digitId(FeatureFactory featureFactory, String word) {
+        if (featureFactory.test_number(word))
+            return 2;
+        else if (featureFactory.test_digit(word))
+            return 1;
+        else
+            return 0;
+    }
+
+    static byte punctTypeId(FeatureFactory featureFactory, String word) {
+        byte punctType = 0;
+        Matcher m0 = featureFactory.isPunct.matcher(word);
+        if (m0.find()) {
+            punctType = 1;
+        }
+        if ((word.equals("(")) | (word.equals("["))) {
+            punctType = 2;
+        } else if ((word.equals(")")) | (word.equals("]"))) {
+            punctType = 3;
+        } else if (word.equals(".")) {
+            punctType = 4;
+        } else if (word.equals(",")) {
+            punctType = 5;
+        } else if (word.equals("-")) {
+            punctType = 6;
+        } else if (word.equals("\"") | word.equals("\'") | word.equals("`")) {
+            punctType = 7;
+        }
+        return punctType;
     }
 
     /**
@@ -153,46 +225,9 @@ public class FeaturesVectorSoftware {
                 featuresVector.singleChar = true;
             }
 
-            if (featureFactory.test_all_capital(word))
-                featuresVector.capitalisation = "ALLCAPS";
-            else if (featureFactory.test_first_capital(word))
-                featuresVector.capitalisation = "INITCAP";
-            else
-                featuresVector.capitalisation = "NOCAPS";
-
-            if (featureFactory.test_number(word))
-                featuresVector.digit = "ALLDIGIT";
-            else if (featureFactory.test_digit(word))
-                featuresVector.digit = "CONTAINDIGIT";
-            else
-                featuresVector.digit = "NODIGIT";
-
-            Matcher m0 = featureFactory.isPunct.matcher(word);
-            if (m0.find()) {
-                featuresVector.punctType = "PUNCT";
-            }
-            if ((word.equals("(")) | (word.equals("["))) {
-                featuresVector.punctType = "OPENBRACKET";
-            } else if ((word.equals(")")) | (word.equals("]"))) {
-                featuresVector.punctType = "ENDBRACKET";
-            } else if (word.equals(".")) {
-                featuresVector.punctType = "DOT";
-            } else if (word.equals(",")) {
-                featuresVector.punctType = "COMMA";
-            } else if (word.equals("-")) {
-                featuresVector.punctType = "HYPHEN";
-            } else if (word.equals("\"") | word.equals("\'") | word.equals("`")) {
-                featuresVector.punctType = "QUOTE";
-            }
-
-            if (featuresVector.capitalisation == null)
-                featuresVector.capitalisation = "NOCAPS";
-
-            if (featuresVector.digit == null)
-                featuresVector.digit = "NODIGIT";
-
-            if (featuresVector.punctType == null)
-                featuresVector.punctType = "NOPUNCT";
+            featuresVector.capitalisation = CAPITALISATION_VALUES[capitalisationId(featureFactory, word)];
+            featuresVector.digit = DIGIT_VALUES[digitId(featureFactory, word)];
+            featuresVector.punctType = PUNCT_TYPE_VALUES[punctTypeId(featureFactory, word)];
 
 			if (featureFactory.test_common(word)) {
                 featuresVector.commonName = true;
@@ -0,0 +1,89 @@
+package org.grobid.core.features;
+
+import org.grobid.core.utilities.TextUtilities;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of the features derived from a token string only (lowercase, capitalisation, digit,
+ * punctuation type, shadow number and word shapes), computed once per distinct token string and
+ * identified by an int id, so that the feature matrices only keep the id of each token. The
+ * prefixes and suffixes are substrings of the token, written without allocation when rendered.
+ *
+ * The table is shared by all the documents and bounded: beyond MAX_SIZE distinct token strings,
+ * the features of a new token string are not interned and are computed again when needed.
+ */
+final class LexicalFeatureTable {
+
+    static final int MAX_SIZE = 200000;
+
+    static final int NOT_INTERNED = -1;
+
+    /**
+     * Features of a token string
+     */
+    static final class Entry {
+        final String lowercase;
+        final byte capitalisation;
+        final byte digit;
+        final byte punctType;
+        final String shadowNumber;
+        final String wordShape;
+        final String wordShapeTrimmed;
+
+        private Entry(String word) {
+            FeatureFactory featureFactory = FeatureFactory.getInstance();
+            lowercase = word.toLowerCase();
+            capitalisation = FeaturesVectorSoftware.capitalisationId(featureFactory, word);
+            digit = FeaturesVectorSoftware.digitId(featureFactory, word);
+            punctType = FeaturesVectorSoftware.punctTypeId(featureFactory, word);
+            shadowNumber = TextUtilities.shadowNumbers(word);
+            wordShape = TextUtilities.wordShape(word);
+            wordShapeTrimmed = TextUtilities.wordShapeTrimmed(word);
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // the entries are written before their id is published in the map, under the lock
+    private static final Object lock = new Object();
+    private static volatile Entry[] entries = new Entry[1024];
+    private static int size = 0;
+
+    private LexicalFeatureTable() {
+    }
+
+    /**
+     * Id of the features of a token string, NOT_INTERNED if the table is full
+     */
+    static int intern(String word) {
+        Integer id = ids.get(word);
+        if (id != null)
+            return id;
+        synchronized (lock) {
+            id = ids.get(word);
+            if (id != null)
+                return id;
+            if (size >= MAX_SIZE)
+                return NOT_INTERNED;
+            Entry[] current = entries;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, Math.min(MAX_SIZE, current.length * 2));
+                entries = current;
+            }
+            current[size] = new Entry(word);
+            ids.put(word, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Features of an interned token string, or computed for a token string not interned
+     */
+    static Entry get(int id, String word) {
+        if (id == NOT_INTERNED)
+            return new Entry(word);
+        return entries[id];
+    }
+}
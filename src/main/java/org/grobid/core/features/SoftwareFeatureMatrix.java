@@ -0,0 +1,226 @@
+package org.grobid.core.features;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar representation of the feature matrix of a token sequence for the software and
+ * software-type models.
+ *
+ * The features derived from the token string only (lowercase, capitalisation, digit,
+ * punctuation type, shadow number and word shapes) are interned once per distinct token string
+ * in LexicalFeatureTable, and stored as an int id per row. The contextual boolean features are
+ * stored as bit flags, and the token string is kept by reference. The prefixes and suffixes are
+ * written from the token string when the matrix is rendered in the text format of the sequence
+ * labeling libraries, directly in a single buffer for a whole batch of sequences.
+ *
+ * The text rendering is strictly identical to the concatenation of FeaturesVectorSoftware.printVector()
+ * lines, so it can be used for training data export too.
+ */
+public class SoftwareFeatureMatrix {
+
+    private static final int DEFAULT_CAPACITY = 32;
+
+    static final byte FLAG_SINGLE_CHAR = 1;
+    static final byte FLAG_SOFTWARE_NAME = 2;
+    static final byte FLAG_SOFTWARE_TOKEN = 4;
+    static final byte FLAG_HTTP = 8;
+
+    // index of the LayoutToken corresponding to each row
+    private int[] tokenIndexes;
+
+    // normalized token string, null for an explicit line break row
+    private String[] words;
+
+    // id of the features of the token string in LexicalFeatureTable
+    private int[] lexicalIds;
+    private byte[] flags;
+
+    // optional labels, only used for training data
+    private String[] labels = null;
+
+    // number of rows
+    private int size = 0;
+
+    // number of rows corresponding to an actual token (excluding line breaks)
+    private int tokenRowCount = 0;
+
+    public SoftwareFeatureMatrix() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SoftwareFeatureMatrix(int capacity) {
+        if (capacity < 1)
+            capacity = 1;
+        tokenIndexes = new int[capacity];
+        words = new String[capacity];
+        lexicalIds = new int[capacity];
+        flags = new byte[capacity];
+    }
+
+    /**
+     * Add a row of features for a token, the token string being already normalized.
+     */
+    public void addToken(int tokenIndex,
+                         String word,
+                         boolean isSoftwareToken,
+                         boolean isSoftwarePattern,
+                         boolean isUrl) {
+        ensureCapacity(size + 1);
+
+        tokenIndexes[size] = tokenIndex;
+        words[size] = word;
+        lexicalIds[size] = LexicalFeatureTable.intern(word);
+
+        byte flag = 0;
+        if (word.length() == 1)
+            flag |= FLAG_SINGLE_CHAR;
+        if (isSoftwareToken)
+            flag |= FLAG_SOFTWARE_NAME;
+        if (isSoftwarePattern)
+            flag |= FLAG_SOFTWARE_TOKEN;
+        if (isUrl)
+            flag |= FLAG_HTTP;
+        flags[size] = flag;
+
+        size++;
+        tokenRowCount++;
+    }
+
+    /**
+     * Add an explicit line break (for instance coming from a @newline token in training data)
+     */
+    public void addLineBreak(int tokenIndex) {
+        ensureCapacity(size + 1);
+        tokenIndexes[size] = tokenIndex;
+        words[size] = null;
+        size++;
+    }
+
+    public void setLabel(int row, String label) {
+        if (labels == null)
+            labels = new String[words.length];
+        labels[row] = label;
+    }
+
+    public String getLabel(int row) {
+        if (labels == null)
+            return null;
+        return labels[row];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTokenRowCount() {
+        return tokenRowCount;
+    }
+
+    public boolean isLineBreak(int row) {
+        return words[row] == null;
+    }
+
+    public int getTokenIndex(int row) {
+        return tokenIndexes[row];
+    }
+
+    public String getWord(int row) {
+        return words[row];
+    }
+
+    public String getCapitalisation(int row) {
+        return FeaturesVectorSoftware.CAPITALISATION_VALUES[lexicalFeatures(row).capitalisation];
+    }
+
+    public String getDigit(int row) {
+        return FeaturesVectorSoftware.DIGIT_VALUES[lexicalFeatures(row).digit];
+    }
+
+    public String getPunctType(int row) {
+        return FeaturesVectorSoftware.PUNCT_TYPE_VALUES[lexicalFeatures(row).punctType];
+    }
+
+    private LexicalFeatureTable.Entry lexicalFeatures(int row) {
+        return LexicalFeatureTable.get(lexicalIds[row], words[row]);
+    }
+
+    public boolean isSoftwareName(int row) {
+        return (flags[row] & FLAG_SOFTWARE_NAME) != 0;
+    }
+
+    public boolean isSoftwareToken(int row) {
+        return (flags[row] & FLAG_SOFTWARE_TOKEN) != 0;
+    }
+
+    public boolean isUrl(int row) {
+        return (flags[row] & FLAG_HTTP) != 0;
+    }
+
+    /**
+     * Write the text representation of the feature matrix, one line per token, in the
+     * provided buffer.
+     */
+    public void appendTo(StringBuilder buffer) {
+        for (int row = 0; row < size; row++) {
+            if (words[row] == null) {
+                buffer.append('\n');
+                continue;
+            }
+            LexicalFeatureTable.Entry features = lexicalFeatures(row);
+            FeaturesVectorSoftware.appendVector(buffer,
+                words[row],
+                features.lowercase,
+                FeaturesVectorSoftware.CAPITALISATION_VALUES[features.capitalisation],
+                FeaturesVectorSoftware.DIGIT_VALUES[features.digit],
+                (flags[row] & FLAG_SINGLE_CHAR) != 0,
+                FeaturesVectorSoftware.PUNCT_TYPE_VALUES[features.punctType],
+                (flags[row] & FLAG_SOFTWARE_NAME) != 0,
+                (flags[row] & FLAG_SOFTWARE_TOKEN) != 0,
+                features.shadowNumber,
+                features.wordShape,
+                features.wordShapeTrimmed,
+                (flags[row] & FLAG_HTTP) != 0,
+                getLabel(row));
+            buffer.append('\n');
+        }
+    }
+
+    /**
+     * Text representation of the feature matrix, to be used for training data export
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder(size * 80);
+        appendTo(buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Text representation of a batch of feature matrices, with sequences separated by an
+     * empty line, as expected by the sequence labeling libraries.
+     */
+    public static String render(List<SoftwareFeatureMatrix> matrices) {
+        int capacity = 0;
+        for (SoftwareFeatureMatrix matrix : matrices)
+            capacity += matrix.size() * 80 + 2;
+        StringBuilder buffer = new StringBuilder(capacity);
+        for (SoftwareFeatureMatrix matrix : matrices) {
+            matrix.appendTo(buffer);
+            buffer.append("\n\n");
+        }
+        return buffer.toString();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= words.length)
+            return;
+        int newCapacity = Math.max(capacity, words.length * 2);
+        tokenIndexes = Arrays.copyOf(tokenIndexes, newCapacity);
+        words = Arrays.copyOf(words, newCapacity);
+        lexicalIds = Arrays.copyOf(lexicalIds, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        if (labels != null)
+            labels = Arrays.copyOf(labels, newCapacity);
+    }
+}
@@ -0,0 +1,93 @@
+package org.grobid.core.features;
+
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.lexicon.SoftwareLexicon;
+import org.grobid.core.utilities.OffsetPosition;
+import org.grobid.core.utilities.UnicodeUtil;
+
+import java.util.List;
+
+/**
+ * Build the feature matrix of a token sequence, shared by the software and software-type models
+ * which use the same features.
+ */
+public class SoftwareFeatureMatrixBuilder {
+
+    private SoftwareFeatureMatrixBuilder() {
+    }
+
+    /**
+     * Build the feature matrix of a token sequence. The text representation of the matrix is
+     * only produced when passed to the sequence labeling library or for training data.
+     *
+     * @param softwareTokenPositions token positions of the known software names
+     * @param urlPositions token positions of the URLs
+     */
+    public static SoftwareFeatureMatrix build(List<LayoutToken> tokens,
+                                              List<OffsetPosition> softwareTokenPositions,
+                                              List<OffsetPosition> urlPositions) {
+        SoftwareLexicon softwareLexicon = SoftwareLexicon.getInstance();
+        int posit = 0;
+        int currentSoftwareIndex = 0;
+        List<OffsetPosition> localPositions = softwareTokenPositions;
+        boolean isSoftwarePattern = false;
+        boolean isUrl = false;
+        SoftwareFeatureMatrix matrix = new SoftwareFeatureMatrix(tokens.size());
+        try {
+            for (LayoutToken token : tokens) {
+                if (token.getText().trim().equals("@newline")) {
+                    matrix.addLineBreak(posit);
+                    posit++;
+                    continue;
+                }
+
+                String text = token.getText();
+                if (text.equals(" ") || text.equals("\n")) {
+                    posit++;
+                    continue;
+                }
+
+                // parano normalisation
+                text = UnicodeUtil.normaliseTextAndRemoveSpaces(text);
+                if (text.trim().length() == 0) {
+                    posit++;
+                    continue;
+                }
+
+                // do we have a software-match token at position posit?
+                if ((localPositions != null) && (localPositions.size() > 0)) {
+                    for (int mm = currentSoftwareIndex; mm < localPositions.size(); mm++) {
+                        if ((posit >= localPositions.get(mm).start) && (posit <= localPositions.get(mm).end)) {
+                            isSoftwarePattern = true;
+                            currentSoftwareIndex = mm;
+                            break;
+                        } else if (posit < localPositions.get(mm).start) {
+                            isSoftwarePattern = false;
+                            break;
+                        } else if (posit > localPositions.get(mm).end) {
+                            continue;
+                        }
+                    }
+                }
+
+                isUrl = false;
+                if (urlPositions != null) {
+                    for (OffsetPosition thePosition : urlPositions) {
+                        if (posit >= thePosition.start && posit <= thePosition.end) {
+                            isUrl = true;
+                            break;
+                        }
+                    }
+                }
+
+                matrix.addToken(posit, text, softwareLexicon.inSoftwareDictionary(text), isSoftwarePattern, isUrl);
+                posit++;
+                isSoftwarePattern = false;
+            }
+        } catch (Exception e) {
+            throw new GrobidException("An exception occurred while running Grobid.", e);
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,170 @@
+package org.grobid.core.features;
+
+import org.grobid.core.engines.AbstractParser;
+import org.grobid.core.utilities.MicroBatchScheduler;
+import org.grobid.core.utilities.SoftwareConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Result of the sequence labeling of a batch of feature matrices, indexed by sequence and
+ * by token row.
+ *
+ * The raw output of the sequence labeling library is parsed once: for each sequence we keep
+ * the character span of its block in the raw output (still needed by the GROBID clusteror)
+ * and the predicted label of each token row. Sequences are aligned with the input matrices
+ * by counting token rows, so additional empty lines in the output do not shift the blocks.
+ */
+public class SoftwareLabeledResult {
+
+    private final String raw;
+
+    // character span of each sequence block in the raw result, end is exclusive
+    private final int[] blockStarts;
+    private final int[] blockEnds;
+
+    // predicted label for each token row of each sequence
+    private final String[][] labels;
+
+    private SoftwareLabeledResult(String raw, int[] blockStarts, int[] blockEnds, String[][] labels) {
+        this.raw = raw;
+        this.blockStarts = blockStarts;
+        this.blockEnds = blockEnds;
+        this.labels = labels;
+    }
+
+    /**
+     * Render the feature matrices in a single input, label it with the given parser model
+     * and parse the result.
+     */
+    public static SoftwareLabeledResult label(AbstractParser parser, List<SoftwareFeatureMatrix> matrices) {
+        String input = SoftwareFeatureMatrix.render(matrices);
+        String res = null;
+        if (input.trim().length() > 0)
+            res = parser.label(input);
+        return parse(res, matrices);
+    }
+
+    /**
+     * Label the feature matrices through a micro-batching scheduler shared by concurrent requests,
+     * or directly if the scheduler is null.
+     */
+    public static SoftwareLabeledResult label(AbstractParser parser, 
+                                              List<SoftwareFeatureMatrix> matrices,
+                                              MicroBatchScheduler<SoftwareFeatureMatrix, SoftwareLabeledResult> scheduler) {
+        if (scheduler == null)
+            return label(parser, matrices);
+        return scheduler.process(matrices);
+    }
+
+    /**
+     * Create a micro-batching scheduler for the labeling of feature matrices with the given parser
+     * model, or return null if micro-batching is disabled in the configuration.
+     */
+    public static MicroBatchScheduler<SoftwareFeatureMatrix, SoftwareLabeledResult> createScheduler(String name,
+                                                                                                   AbstractParser parser,
+                                                                                                   SoftwareConfiguration configuration) {
+        return MicroBatchScheduler.create(name, configuration, 
+            new MicroBatchScheduler.BatchProcessor<SoftwareFeatureMatrix, SoftwareLabeledResult>() {
+                @Override
+                public SoftwareLabeledResult process(List<SoftwareFeatureMatrix> matrices) {
+                    return label(parser, matrices);
+                }
+
+                @Override
+                public SoftwareLabeledResult slice(SoftwareLabeledResult result, int from, int to) {
+                    return result.slice(from, to);
+                }
+            });
+    }
+
+    /**
+     * Parse the raw output of the sequence labeling library for the given feature matrices.
+     */
+    public static SoftwareLabeledResult parse(String res, List<SoftwareFeatureMatrix> matrices) {
+        int nbSequences = matrices.size();
+        int[] blockStarts = new int[nbSequences];
+        int[] blockEnds = new int[nbSequences];
+        String[][] labels = new String[nbSequences][];
+
+        int pos = 0;
+        int length = (res == null) ? 0 : res.length();
+        for (int i = 0; i < nbSequences; i++) {
+            int expectedRows = matrices.get(i).getTokenRowCount();
+            labels[i] = new String[expectedRows];
+
+            // skip empty lines before the block
+            while (pos < length && res.charAt(pos) == '\n')
+                pos++;
+
+            blockStarts[i] = pos;
+            blockEnds[i] = pos;
+            int row = 0;
+            while (row < expectedRows && pos < length) {
+                int lineEnd = res.indexOf('\n', pos);
+                if (lineEnd == -1)
+                    lineEnd = length;
+                if (lineEnd > pos) {
+                    labels[i][row] = lastField(res, pos, lineEnd);
+                    row++;
+                    blockEnds[i] = lineEnd;
+                }
+                pos = lineEnd + 1;
+            }
+        }
+
+        return new SoftwareLabeledResult(res, blockStarts, blockEnds, labels);
+    }
+
+    private static String lastField(String res, int start, int end) {
+        int fieldStart = end;
+        while (fieldStart > start) {
+            char c = res.charAt(fieldStart - 1);
+            if (c == ' ' || c == '\t')
+                break;
+            fieldStart--;
+        }
+        return res.substring(fieldStart, end);
+    }
+
+    /**
+     * Result restricted to the sequences from index from (inclusive) to index to (exclusive),
+     * sharing the same raw output.
+     */
+    public SoftwareLabeledResult slice(int from, int to) {
+        return new SoftwareLabeledResult(raw,
+            Arrays.copyOfRange(blockStarts, from, to),
+            Arrays.copyOfRange(blockEnds, from, to),
+            Arrays.copyOfRange(labels, from, to));
+    }
+
+    public int getSequenceCount() {
+        return labels.length;
+    }
+
+    /**
+     * Raw labeled block of the sequence at the given index, as expected by TaggingTokenClusteror,
+     * empty if nothing was labeled for this sequence.
+     */
+    public String getSequenceResult(int sequence) {
+        if (raw == null || blockEnds[sequence] <= blockStarts[sequence])
+            return "";
+        return raw.substring(blockStarts[sequence], blockEnds[sequence]);
+    }
+
+    public String[] getLabels(int sequence) {
+        return labels[sequence];
+    }
+
+    /**
+     * Predicted label for a token row of a sequence, null if the row was not labeled.
+     */
+    public String getLabel(int sequence, int row) {
+        return labels[sequence][row];
+    }
+
+    public String getRaw() {
+        return raw;
+    }
+}
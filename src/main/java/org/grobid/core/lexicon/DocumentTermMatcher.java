@@ -0,0 +1,191 @@
+package org.grobid.core.lexicon;
+
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.OffsetPosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matcher for the software names identified in a document, used for the document-level
+ * propagation of the mentions.
+ *
+ * A single token-level automaton is built with all the names of the document: the terms to
+ * propagate and the terms whose frequency is counted. The whole document is matched in one pass,
+ * which gives both the frequencies of the counted terms and the matches of the propagated terms.
+ * The matches of a segment (title, paragraph, ...) are then taken from the document matches when
+ * the segment is a contiguous part of the document token list, and the segment is only matched
+ * again otherwise.
+ *
+ * Matching follows the FastMatcher conventions of the propagation: case sensitive, spaces and
+ * delimiters ignored in the text. Delimiters are ignored in the counted terms, while a term to
+ * propagate containing a delimiter is never matched.
+ *
+ * An instance is created for one document and is not thread-safe.
+ */
+public class DocumentTermMatcher {
+
+    private final SoftwareNameMatcher automaton;
+
+    // states at the end of the propagated terms
+    private final boolean[] propagatedStates;
+
+    private final Map<String, Integer> frequencies = new HashMap<>();
+
+    private final List<LayoutToken> documentTokens;
+
+    // matches of the propagated terms in the document, by increasing end token index
+    private int[] matchStarts = new int[16];
+    private int[] matchEnds = new int[16];
+    private int matchCount = 0;
+
+    // expected index of the next segment in the document tokens, segments being usually 
+    // matched in document order
+    private int cursor = 0;
+
+    public DocumentTermMatcher(List<String> propagatedTerms, List<String> countedTerms, List<LayoutToken> documentTokens) {
+        this.documentTokens = (documentTokens == null) ? new ArrayList<>() : documentTokens;
+
+        List<String> names = new ArrayList<>();
+        for (String term : propagatedTerms) {
+            if (!SoftwareNameMatcher.containsDelimiter(term))
+                names.add(term);
+        }
+        int propagatedCount = names.size();
+        names.addAll(countedTerms);
+
+        int[] nameStates = new int[names.size()];
+        automaton = SoftwareNameMatcher.build(names, nameStates);
+        propagatedStates = new boolean[automaton.getStateCount()];
+        for (int i = 0; i < propagatedCount; i++) {
+            if (nameStates[i] != 0)
+                propagatedStates[nameStates[i]] = true;
+        }
+
+        // single pass over the document
+        int[] counts = new int[automaton.getStateCount()];
+        automaton.match(this.documentTokens, (start, end, state) -> {
+            counts[state]++;
+            if (propagatedStates[state])
+                addMatch(start, end);
+        });
+
+        for (int i = propagatedCount; i < names.size(); i++) {
+            int state = nameStates[i];
+            frequencies.put(names.get(i), (state == 0) ? 0 : counts[state]);
+        }
+    }
+
+    private void addMatch(int start, int end) {
+        if (matchCount == matchStarts.length) {
+            matchStarts = Arrays.copyOf(matchStarts, matchCount * 2);
+            matchEnds = Arrays.copyOf(matchEnds, matchCount * 2);
+        }
+        matchStarts[matchCount] = start;
+        matchEnds[matchCount] = end;
+        matchCount++;
+    }
+
+    /**
+     * Number of occurrences in the document of each counted term
+     */
+    public Map<String, Integer> getFrequencies() {
+        return frequencies;
+    }
+
+    /**
+     * Positions (token index of the first and last matched tokens) of the propagated terms in
+     * a sequence of layout tokens, sorted by start and end token index
+     */
+    public List<OffsetPosition> matchLayoutTokens(List<LayoutToken> tokens) {
+        List<OffsetPosition> results = new ArrayList<>();
+        if (tokens == null || tokens.isEmpty())
+            return results;
+
+        int first = locate(tokens);
+        if (first >= 0) {
+            int last = first + tokens.size() - 1;
+            for (int i = firstMatchEndingFrom(first); i < matchCount && matchEnds[i] <= last; i++) {
+                if (matchStarts[i] >= first)
+                    results.add(new OffsetPosition(matchStarts[i] - first, matchEnds[i] - first));
+            }
+        } else {
+            automaton.match(tokens, (start, end, state) -> {
+                if (propagatedStates[state])
+                    results.add(new OffsetPosition(start, end));
+            });
+        }
+
+        if (results.size() > 1)
+            results.sort(SoftwareNameMatcher.POSITION_ORDER);
+        return results;
+    }
+
+    private int firstMatchEndingFrom(int index) {
+        int low = 0;
+        int high = matchCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (matchEnds[middle] < index)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Index of a token sequence in the document tokens if it is a contiguous part of it, 
+     * with the same token objects, or -1
+     */
+    private int locate(List<LayoutToken> tokens) {
+        LayoutToken firstToken = tokens.get(0);
+        int index;
+        if (cursor < documentTokens.size() && documentTokens.get(cursor) == firstToken)
+            index = cursor;
+        else
+            index = searchByOffset(firstToken);
+
+        if (index < 0 || index + tokens.size() > documentTokens.size())
+            return -1;
+        for (int k = 1; k < tokens.size(); k++) {
+            if (documentTokens.get(index + k) != tokens.get(k))
+                return -1;
+        }
+        cursor = index + tokens.size();
+        return index;
+    }
+
+    /**
+     * Binary search of a token in the document tokens by character offset, which are increasing
+     * in a document tokenization, -1 if not found
+     */
+    private int searchByOffset(LayoutToken token) {
+        int offset = token.getOffset();
+        int low = 0;
+        int high = documentTokens.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleOffset = documentTokens.get(middle).getOffset();
+            if (middleOffset < offset) {
+                low = middle + 1;
+            } else if (middleOffset > offset) {
+                high = middle - 1;
+            } else {
+                // several tokens can share an offset (empty tokens)
+                int i = middle;
+                while (i > 0 && documentTokens.get(i - 1).getOffset() == offset)
+                    i--;
+                for (; i < documentTokens.size() && documentTokens.get(i).getOffset() == offset; i++) {
+                    if (documentTokens.get(i) == token)
+                        return i;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
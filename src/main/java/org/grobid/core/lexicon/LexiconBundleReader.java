@@ -0,0 +1,116 @@
+package org.grobid.core.lexicon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader for the binary lexicon bundle written by LexiconBundleWriter.
+ *
+ * The bundle file is memory-mapped, so it is read directly from the page cache (shared by all
+ * the processes using the same bundle), and the primitive arrays are copied in bulk.
+ */
+public class LexiconBundleReader {
+
+    private final ByteBuffer buffer;
+
+    // reused for decoding strings
+    private byte[] scratch = new byte[256];
+
+    public LexiconBundleReader(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public int readInt() throws IOException {
+        try {
+            return buffer.getInt();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated lexicon bundle", e);
+        }
+    }
+
+    public long readLong() throws IOException {
+        try {
+            return buffer.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated lexicon bundle", e);
+        }
+    }
+
+    public String readString() throws IOException {
+        int length = readLength(1);
+        if (length == -1)
+            return null;
+        if (length > scratch.length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public List<String> readStrings() throws IOException {
+        int size = readLength(Integer.BYTES);
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            values.add(readString());
+        return values;
+    }
+
+    public String[] readStringArray() throws IOException {
+        String[] values = new String[readLength(Integer.BYTES)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = readString();
+        return values;
+    }
+
+    public int[] readInts() throws IOException {
+        int[] values = new int[readLength(Integer.BYTES)];
+        buffer.asIntBuffer().get(values);
+        skip(values.length * (long) Integer.BYTES);
+        return values;
+    }
+
+    public long[] readLongs() throws IOException {
+        long[] values = new long[readLength(Long.BYTES)];
+        buffer.asLongBuffer().get(values);
+        skip(values.length * (long) Long.BYTES);
+        return values;
+    }
+
+    public double[] readDoubles() throws IOException {
+        double[] values = new double[readLength(Double.BYTES)];
+        buffer.asDoubleBuffer().get(values);
+        skip(values.length * (long) Double.BYTES);
+        return values;
+    }
+
+    public boolean[] readBooleans() throws IOException {
+        boolean[] values = new boolean[readLength(1)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = buffer.get() != 0;
+        return values;
+    }
+
+    /**
+     * Read an array or string length, checked against the remaining size of the bundle given
+     * the minimum size in bytes of an element
+     */
+    private int readLength(int elementBytes) throws IOException {
+        int length = readInt();
+        if (length < -1 || (long) length * elementBytes > buffer.remaining())
+            throw new IOException("Invalid length in lexicon bundle: " + length);
+        return length;
+    }
+
+    private void skip(long bytes) {
+        buffer.position(buffer.position() + (int) bytes);
+    }
+}
@@ -0,0 +1,85 @@
+package org.grobid.core.lexicon;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Writer for the binary lexicon bundle read by LexiconBundleReader.
+ *
+ * Values are written in big-endian order, strings as their UTF-8 length followed by their bytes
+ * (length -1 for null), and arrays as their length followed by their elements, so that they can
+ * be copied in bulk from a memory-mapped file when reading.
+ */
+public class LexiconBundleWriter implements Closeable {
+
+    private final DataOutputStream output;
+
+    public LexiconBundleWriter(File file) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+    }
+
+    public void writeInt(int value) throws IOException {
+        output.writeInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        output.writeLong(value);
+    }
+
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    public void writeStrings(Collection<String> values) throws IOException {
+        output.writeInt(values.size());
+        for (String value : values)
+            writeString(value);
+    }
+
+    public void writeStrings(String[] values) throws IOException {
+        output.writeInt(values.length);
+        for (String value : values)
+            writeString(value);
+    }
+
+    public void writeInts(int[] values) throws IOException {
+        output.writeInt(values.length);
+        for (int value : values)
+            output.writeInt(value);
+    }
+
+    public void writeLongs(long[] values) throws IOException {
+        output.writeInt(values.length);
+        for (long value : values)
+            output.writeLong(value);
+    }
+
+    public void writeDoubles(double[] values) throws IOException {
+        output.writeInt(values.length);
+        for (double value : values)
+            output.writeDouble(value);
+    }
+
+    public void writeBooleans(boolean[] values) throws IOException {
+        output.writeInt(values.length);
+        for (boolean value : values)
+            output.writeBoolean(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -5,10 +5,10 @@ import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.exceptions.GrobidResourceException;
 import org.grobid.core.utilities.GrobidProperties;
 import org.grobid.core.utilities.Pair;
+import org.grobid.core.utilities.SoftwareConfiguration;
 import org.grobid.core.utilities.OffsetPosition;
 import org.grobid.core.utilities.LayoutTokensUtil;
 import org.grobid.core.utilities.Utilities;
-import org.grobid.core.lexicon.FastMatcher;
 import org.grobid.core.layout.LayoutToken;
 
 import org.slf4j.Logger;
@@ -16,6 +16,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
+import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 
 import java.util.regex.Pattern;
@@ -50,73 +51,167 @@ public class SoftwareLexicon {
 
     private static Logger LOGGER = LoggerFactory.getLogger(SoftwareLexicon.class);
 
+    // compiled form of all the lexical resources below (software name vocabulary and matcher, 
+    // term idf, categories, types, stopwords, programming languages and blacklists), rebuilt 
+    // when one of the lexicon files or the tokenization changes. The packaged bundle is only 
+    // written by compile_lexicon, a bundle compiled at startup is written to the cache path
+    private static final String PACKAGED_BUNDLE = "resources/lexicon/software-lexicon.bundle";
+    private static final String BUNDLE_NAME = "software-lexicon.bundle";
+    private static final int BUNDLE_FORMAT_VERSION = 3;
+
     private Set<String> softwareVocabulary = null;
-    private FastMatcher softwarePattern = null;
+    private SoftwareNameMatcher softwarePattern = null;
 
-    private Map<String, Double> termIDF = null;
+    // term IDF, with primitive values
+    private StringDoubleMap termIDF = null;
 
     // the list of Wikipedia categories where software articles belong to
-    private List<String> wikipediaCategories = null;
+    private Set<String> wikipediaCategories = null;
 
     // the list of P31 and P279 values of the Wikidata software entities
-    private List<String> propertyValues = null;
+    private Set<String> propertyValues = null;
 
-    private List<String> englishStopwords = null;
+    private Set<String> englishStopwords = null;
 
-    private List<String> blacklistSoftwareNames = null;
+    private Set<String> blacklistSoftwareNames = null;
 
     // a map to store information on programming languages:
     // name of the programming language (as Wikipedia English page title), Wikipedia EN URL, Wikidata ID
     private Map<String, Pair<String,String>> programmingLanguages = null;
 
+    // checksum of the lexicon files
+    private long checksum;
+
     private static volatile SoftwareLexicon instance;
 
     public static synchronized SoftwareLexicon getInstance() {
+        return getInstance(null);
+    }
+
+    /**
+     * The lexicon, a bundle compiled at first use being written to the lexiconBundlePath of the 
+     * configuration, or to the grobid tmp directory if not set
+     */
+    public static synchronized SoftwareLexicon getInstance(SoftwareConfiguration configuration) {
         if (instance == null)
-            instance = new SoftwareLexicon();
+            instance = new SoftwareLexicon(cacheBundleFile(configuration));
 
         return instance;
     }
 
-    private SoftwareLexicon() {
+    private static File cacheBundleFile(SoftwareConfiguration configuration) {
+        if (configuration != null && configuration.getLexiconBundlePath() != null)
+            return new File(configuration.getLexiconBundlePath()).getAbsoluteFile();
+        File directory;
+        try {
+            directory = GrobidProperties.getInstance().getTempPath();
+        } catch (RuntimeException e) {
+            // grobid home not initialized, e.g. when running the lexicon alone
+            directory = new File(System.getProperty("java.io.tmpdir"));
+        }
+        return new File(directory, BUNDLE_NAME).getAbsoluteFile();
+    }
+
+    /**
+     * @param cacheBundleFile where the bundle is written when compiled from the lexicon files
+     */
+    private SoftwareLexicon(File cacheBundleFile) {
         // init the lexicon
         LOGGER.info("Init software lexicon");
-        softwareVocabulary = new HashSet<String>();
-
-        // Software lexicon
 
         //File file = new File(GrobidProperties.getGrobidHomePath()+"/../software-mentions/resources/lexicon/wikidata-softwares.txt");
-        File file = new File("resources/lexicon/wikidata-software.txt");
+        File softwareNamesFile = getLexiconFile("resources/lexicon/wikidata-software.txt", "software dictionary");
+        File idfFile = getLexiconFile("resources/lexicon/idf.label.en.txt.gz", "software dictionary");
+        File categoriesFile = getLexiconFile("resources/lexicon/softwareVoc.txt.categories", 
+            "software category dictionary");
+        File typesFile = getLexiconFile("resources/lexicon/softwareVoc.txt.types", "software subtype dictionary");
+        File typesExtraFile = getLexiconFile("resources/lexicon/softwareRelated.txt.types", 
+            "software subtype dictionary");
+        File stopwordsFile = getLexiconFile("resources/lexicon/stopwords_en.txt", "English stopwords");
+        File programmingLanguagesFile = getLexiconFile("resources/lexicon/programming-languages.csv", 
+            "programming language map");
+        File blacklistFile = getLexiconFile("resources/lexicon/software_name_blacklist.txt", 
+            "software name blacklist");
+        File covidBlacklistFile = getLexiconFile("resources/lexicon/covid_blacklist.txt", 
+            "covid domain software name blacklist");
+
+        // use the packaged or the cached bundle if it is up to date with all the lexicon files and 
+        // the code compiling them, otherwise read the lexicon files and compile the bundle for the 
+        // next startup
+        File packagedBundleFile = new File(PACKAGED_BUNDLE).getAbsoluteFile();
+        checksum = checksum(softwareNamesFile, idfFile, categoriesFile, typesFile, typesExtraFile, 
+            stopwordsFile, programmingLanguagesFile, blacklistFile, covidBlacklistFile);
+
+        long start = System.currentTimeMillis();
+        File loadedBundleFile = null;
+        if (loadBundle(packagedBundleFile, checksum))
+            loadedBundleFile = packagedBundleFile;
+        else if (!cacheBundleFile.equals(packagedBundleFile) && loadBundle(cacheBundleFile, checksum))
+            loadedBundleFile = cacheBundleFile;
+
+        if (loadedBundleFile != null) {
+            LOGGER.info("Software lexicon loaded from " + loadedBundleFile.getPath() + " in " + 
+                (System.currentTimeMillis() - start) + " ms");
+        } else {
+            loadSoftwareNames(softwareNamesFile);
+            loadTermIDF(idfFile);
+            loadCategories(categoriesFile);
+            loadPropertyValues(typesFile, typesExtraFile);
+            loadStopwords(stopwordsFile);
+            loadProgrammingLanguages(programmingLanguagesFile);
+            loadBlacklist(blacklistFile, covidBlacklistFile);
+            LOGGER.info("Software lexicon loaded from the lexicon files in " + 
+                (System.currentTimeMillis() - start) + " ms");
+            saveBundle(cacheBundleFile, checksum);
+        }
+        LOGGER.info("Software name matcher: " + softwarePattern.getStateCount() + " states, " + 
+            softwareVocabulary.size() + " vocabulary tokens");
+    }
+
+    /**
+     * Compile the packaged lexicon bundle ahead of time, typically when building a container image, 
+     * so that the service does not have to do it at its first startup.
+     */
+    public static void main(String[] args) {
+        synchronized (SoftwareLexicon.class) {
+            instance = new SoftwareLexicon(new File(PACKAGED_BUNDLE).getAbsoluteFile());
+        }
+    }
+
+    private static File getLexiconFile(String path, String description) {
+        File file = new File(path);
         file = new File(file.getAbsolutePath());
         if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize software dictionary, because file '" + 
+            throw new GrobidResourceException("Cannot initialize " + description + ", because file '" + 
                 file.getAbsolutePath() + "' does not exists.");
         }
         if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize software dictionary, because cannot read file '" + 
+            throw new GrobidResourceException("Cannot initialize " + description + ", because cannot read file '" + 
                 file.getAbsolutePath() + "'.");
         }
+        return file;
+    }
 
+    private void loadSoftwareNames(File file) {
+        softwareVocabulary = new HashSet<String>();
         BufferedReader dis = null;
         // read the lexicon file
         try {
-            softwarePattern = new FastMatcher(file, SoftwareAnalyzer.getInstance(), true); // case sensitive
-
-            //dis = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+            List<String> names = new ArrayList<>();
             dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
             String l = null;
             while ((l = dis.readLine()) != null) {
                 if (l.length() == 0) continue;
+                names.add(l);
                 List<String> tokens = SoftwareAnalyzer.getInstance().tokenize(l);
                 for(String token : tokens) {
                     if (token.length() > 1) {
                         // should we filter out 100% numerical tokens?
-                        if (!softwareVocabulary.contains(token)) {
-                            softwareVocabulary.add(token);
-                        }
+                        softwareVocabulary.add(token);
                     }
                 }
             }
+            softwarePattern = SoftwareNameMatcher.build(names);
         } catch (FileNotFoundException e) {
             throw new GrobidException("SoftwareLexicon file not found.", e);
         } catch (IOException e) {
@@ -129,22 +224,13 @@ public class SoftwareLexicon {
                 throw new GrobidResourceException("Cannot close IO stream.", e);
             }
         }
+    }
 
-        // term idf
-        file = new File("resources/lexicon/idf.label.en.txt.gz");
-        file = new File(file.getAbsolutePath());
-        if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize software dictionary, because file '" + 
-                file.getAbsolutePath() + "' does not exists.");
-        }
-        if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize software dictionary, because cannot read file '" + 
-                file.getAbsolutePath() + "'.");
-        }
-
+    private void loadTermIDF(File file) {
+        BufferedReader dis = null;
         // read the idf file
         try {
-            termIDF = new TreeMap<String, Double>();
+            termIDF = new StringDoubleMap(100000);
 
             dis = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
             //dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
@@ -168,7 +254,7 @@ public class SoftwareLexicon {
                     continue;
                 }
 
-                termIDF.put(term, Double.valueOf(idf));
+                termIDF.put(term, idf);
             }
         } catch (FileNotFoundException e) {
             throw new GrobidException("SoftwareLexicon file not found.", e);
@@ -182,21 +268,13 @@ public class SoftwareLexicon {
                 throw new GrobidResourceException("Cannot close IO stream.", e);
             }
         }
+    }
 
-        // load the list of Wikipedia categories where software articles belong to
-        file = new File("resources/lexicon/softwareVoc.txt.categories");
-        file = new File(file.getAbsolutePath());
-        if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize software category dictionary, because file '" + 
-                file.getAbsolutePath() + "' does not exists.");
-        }
-        if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize software category dictionary, because cannot read file '" + 
-                file.getAbsolutePath() + "'.");
-        }
+    private void loadCategories(File file) {
+        BufferedReader dis = null;
         // read the file
         try {
-            wikipediaCategories = new ArrayList<String>();
+            wikipediaCategories = new HashSet<String>();
 
             dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
             String l = null;
@@ -216,69 +294,39 @@ public class SoftwareLexicon {
                 throw new GrobidResourceException("Cannot close IO stream.", e);
             }
         }
+    }
 
-        // load the list of P31 and P279 values of the Wikidata software entities
-        file = new File("resources/lexicon/softwareVoc.txt.types");
-        file = new File(file.getAbsolutePath());
-        File fileExtra = new File("resources/lexicon/softwareRelated.txt.types");
-        fileExtra = new File(fileExtra.getAbsolutePath());
-        if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize software subtype dictionary, because file '" + 
-                file.getAbsolutePath() + "' does not exists.");
-        }
-        if (!fileExtra.exists()) {
-            throw new GrobidResourceException("Cannot initialize software subtype dictionary, because file '" + 
-                fileExtra.getAbsolutePath() + "' does not exists.");
-        }
-        if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize software subtype dictionary, because cannot read file '" + 
-                file.getAbsolutePath() + "'.");
-        }
-        if (!fileExtra.canRead()) {
-            throw new GrobidResourceException("Cannot initialize software subtype dictionary, because cannot read file '" + 
-                fileExtra.getAbsolutePath() + "'.");
-        }
-        // read the file
-        try {
-            propertyValues = new ArrayList<String>();
-
-            dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
-            String l = null;
-            while ((l = dis.readLine()) != null) {
-                if (l.length() == 0) continue;
-                propertyValues.add(l.trim().toLowerCase());
-            }
-
-            dis = new BufferedReader(new InputStreamReader(new FileInputStream(fileExtra), "UTF-8"));
-            while ((l = dis.readLine()) != null) {
-                if (l.length() == 0) continue;
-                propertyValues.add(l.trim().toLowerCase());
-            }
-        } catch (FileNotFoundException e) {
-            throw new GrobidException("Software subtypes dictionary file not found.", e);
-        } catch (IOException e) {
-            throw new GrobidException("Cannot read software subtypes dictionary file.", e);
-        } finally {
+    private void loadPropertyValues(File... files) {
+        propertyValues = new HashSet<String>();
+        for (File file : files) {
+            BufferedReader dis = null;
+            // read the file
             try {
-                if (dis != null)
-                    dis.close();
-            } catch(Exception e) {
-                throw new GrobidResourceException("Cannot close IO stream.", e);
+                dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+                String l = null;
+                while ((l = dis.readLine()) != null) {
+                    if (l.length() == 0) continue;
+                    propertyValues.add(l.trim().toLowerCase());
+                }
+            } catch (FileNotFoundException e) {
+                throw new GrobidException("Software subtypes dictionary file not found.", e);
+            } catch (IOException e) {
+                throw new GrobidException("Cannot read software subtypes dictionary file.", e);
+            } finally {
+                try {
+                    if (dis != null)
+                        dis.close();
+                } catch(Exception e) {
+                    throw new GrobidResourceException("Cannot close IO stream.", e);
+                }
             }
         }
+    }
 
+    private void loadStopwords(File file) {
         // a list of stopwords for English for conservative checks with software names
-        englishStopwords = new ArrayList<>();
-        file = new File("resources/lexicon/stopwords_en.txt");
-        file = new File(file.getAbsolutePath());
-        if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize English stopwords, because file '" + 
-                file.getAbsolutePath() + "' does not exists.");
-        }
-        if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize English stopwords, because cannot read file '" + 
-                file.getAbsolutePath() + "'.");
-        }
+        englishStopwords = new HashSet<>();
+        BufferedReader dis = null;
         // read the file
         try {
             dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
@@ -299,18 +347,11 @@ public class SoftwareLexicon {
                 throw new GrobidResourceException("Cannot close IO stream.", e);
             }
         }
+    }
 
-        programmingLanguages = new TreeMap<>();
-        file = new File("resources/lexicon/programming-languages.csv");
-        file = new File(file.getAbsolutePath());
-        if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize programming language map, because file '" + 
-                file.getAbsolutePath() + "' does not exists.");
-        }
-        if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize programming language map, because cannot read file '" + 
-                file.getAbsolutePath() + "'.");
-        }
+    private void loadProgrammingLanguages(File file) {
+        programmingLanguages = new HashMap<>();
+        BufferedReader dis = null;
         // read the file
         try {
             dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
@@ -341,19 +382,12 @@ public class SoftwareLexicon {
                 throw new GrobidResourceException("Cannot close IO stream.", e);
             }
         }
+    }
 
+    private void loadBlacklist(File file, File covidFile) {
         // a list of invalid software names for conservative checks
-        blacklistSoftwareNames = new ArrayList<>();
-        file = new File("resources/lexicon/software_name_blacklist.txt");
-        file = new File(file.getAbsolutePath());
-        if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize software name blacklist, because file '" + 
-                file.getAbsolutePath() + "' does not exists.");
-        }
-        if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize software name blacklist, because cannot read file '" + 
-                file.getAbsolutePath() + "'.");
-        }
+        blacklistSoftwareNames = new HashSet<>();
+        BufferedReader dis = null;
         // read the file
         try {
             dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
@@ -376,19 +410,10 @@ public class SoftwareLexicon {
             }
         }
 
-        file = new File("resources/lexicon/covid_blacklist.txt");
-        file = new File(file.getAbsolutePath());
-        if (!file.exists()) {
-            throw new GrobidResourceException("Cannot initialize covid domain software name blacklist, because file '" + 
-                file.getAbsolutePath() + "' does not exists.");
-        }
-        if (!file.canRead()) {
-            throw new GrobidResourceException("Cannot initialize covid domain software name blacklist, because cannot read file '" + 
-                file.getAbsolutePath() + "'.");
-        }
+        dis = null;
         // read the file
         try {
-            dis = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            dis = new BufferedReader(new InputStreamReader(new FileInputStream(covidFile), "UTF-8"));
             String l = null;
             while ((l = dis.readLine()) != null) {
                 if (l.length() == 0) continue;
@@ -419,13 +444,127 @@ public class SoftwareLexicon {
 	}
 
     public List<OffsetPosition> tokenPositionsSoftwareNamesVectorLabeled(List<Pair<String, String>> pairs) {
-        List<OffsetPosition> results = softwarePattern.matcherPairs(pairs, true); // case sensitive
-        return results;
+        return softwarePattern.matchPairs(pairs); // case sensitive
+    }
+
+    /**
+     * Checksum of the content of the lexicon files and of the versions of the code compiling 
+     * them, identifying the lexicon version
+     */
+    public long getChecksum() {
+        return checksum;
     }
 
     public List<OffsetPosition> tokenPositionsSoftwareNames(List<LayoutToken> vector) {
-        List<OffsetPosition> results = softwarePattern.matchLayoutToken(vector, true, true); // case sensitive
-        return results;
+        return softwarePattern.matchLayoutTokens(vector); // case sensitive
+    }
+
+    /**
+     * CRC32 over the versions of the tokenization and of the software name matcher, then the 
+     * content of the lexicon files
+     */
+    private static long checksum(File... files) {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[65536];
+        for (int version : new int[] {SoftwareAnalyzer.VERSION, SoftwareNameMatcher.FORMAT_VERSION}) {
+            for (int shift = 24; shift >= 0; shift -= 8)
+                crc.update(version >>> shift);
+        }
+        for (File file : files) {
+            try (InputStream is = new FileInputStream(file)) {
+                int read;
+                while ((read = is.read(buffer)) != -1)
+                    crc.update(buffer, 0, read);
+            } catch (IOException e) {
+                throw new GrobidResourceException("Cannot read lexicon file '" + file.getAbsolutePath() + "'.", e);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Load all the lexical resources from the compiled bundle, if it exists and corresponds 
+     * to the current lexicon files
+     */
+    private boolean loadBundle(File bundleFile, long checksum) {
+        if (!bundleFile.exists())
+            return false;
+        try {
+            LexiconBundleReader input = new LexiconBundleReader(bundleFile);
+            if (input.readInt() != BUNDLE_FORMAT_VERSION || input.readLong() != checksum) {
+                LOGGER.info("Compiled software lexicon is outdated, it will be rebuilt");
+                return false;
+            }
+
+            List<String> vocabulary = input.readStrings();
+            SoftwareNameMatcher pattern = SoftwareNameMatcher.read(input);
+
+            StringDoubleMap idfMap = StringDoubleMap.read(input);
+
+            Set<String> categories = new HashSet<>(input.readStrings());
+            Set<String> values = new HashSet<>(input.readStrings());
+            Set<String> stopwords = new HashSet<>(input.readStrings());
+
+            int languageCount = input.readInt();
+            Map<String, Pair<String,String>> languages = new HashMap<>(languageCount * 2);
+            for (int i = 0; i < languageCount; i++)
+                languages.put(input.readString(), new Pair<>(input.readString(), input.readString()));
+
+            Set<String> blacklist = new HashSet<>(input.readStrings());
+
+            softwareVocabulary = new HashSet<>(vocabulary);
+            softwarePattern = pattern;
+            termIDF = idfMap;
+            wikipediaCategories = categories;
+            propertyValues = values;
+            englishStopwords = stopwords;
+            programmingLanguages = languages;
+            blacklistSoftwareNames = blacklist;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Cannot read the compiled software lexicon " + bundleFile.getPath() + ", it will be rebuilt", e);
+            return false;
+        }
+    }
+
+    private void saveBundle(File bundleFile, long checksum) {
+        File directory = bundleFile.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            LOGGER.warn("Cannot create the directory of the compiled software lexicon " + bundleFile.getPath());
+            return;
+        }
+        File tmpFile = new File(bundleFile.getPath() + ".tmp");
+        try (LexiconBundleWriter output = new LexiconBundleWriter(tmpFile)) {
+            output.writeInt(BUNDLE_FORMAT_VERSION);
+            output.writeLong(checksum);
+
+            output.writeStrings(softwareVocabulary);
+            softwarePattern.write(output);
+
+            termIDF.write(output);
+
+            output.writeStrings(wikipediaCategories);
+            output.writeStrings(propertyValues);
+            output.writeStrings(englishStopwords);
+
+            output.writeInt(programmingLanguages.size());
+            for (Map.Entry<String, Pair<String,String>> entry : programmingLanguages.entrySet()) {
+                output.writeString(entry.getKey());
+                output.writeString(entry.getValue().getA());
+                output.writeString(entry.getValue().getB());
+            }
+
+            output.writeStrings(blacklistSoftwareNames);
+        } catch (IOException e) {
+            // not critical, the lexicon files will be processed again at next startup
+            LOGGER.warn("Cannot write the compiled software lexicon " + bundleFile.getPath(), e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(bundleFile)) {
+            LOGGER.warn("Cannot write the compiled software lexicon " + bundleFile.getPath());
+            tmpFile.delete();
+        }
     }
 
     // to use the url pattern in grobid-core after merging branch update_header
@@ -505,11 +644,7 @@ public class SoftwareLexicon {
     }
 
     public double getTermIDF(String term) {
-        Double idf = termIDF.get(term);
-        if (idf != null)
-            return idf.doubleValue();
-        else 
-            return 0.0;
+        return termIDF.get(term, 0.0);
     }
 
     public boolean inSoftwarePropertyValues(String value) {
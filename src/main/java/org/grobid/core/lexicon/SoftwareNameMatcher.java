@@ -0,0 +1,430 @@
+package org.grobid.core.lexicon;
+
+import org.grobid.core.analyzers.SoftwareAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.OffsetPosition;
+import org.grobid.core.utilities.Pair;
+import org.grobid.core.utilities.UnicodeUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Token-level Aho-Corasick automaton for matching the software names of the lexicon in token
+ * sequences, as a replacement of FastMatcher for the large software name gazetteer.
+ *
+ * Tokens are mapped to integer identifiers with an open-addressing string table, and the goto
+ * function is stored as a single open-addressing table keyed by (state, token id), so the
+ * automaton is compact and a sequence is matched in a single linear pass, without allocation
+ * apart from the returned positions. All the occurrences of all the names are returned, including
+ * overlapping ones, sorted by start and end token index. As with FastMatcher, space and delimiter
+ * tokens are ignored both in the names and in the matched sequences, matching is case sensitive.
+ *
+ * The automaton can be written to and read from the binary lexicon bundle, to avoid tokenizing
+ * the lexicon at startup.
+ */
+public class SoftwareNameMatcher {
+
+    // same delimiters as FastMatcher
+    private static final String DELIMITERS =
+        "\n\r\t\f\u00A0(（[ •*,:;?.!/)）-−–‐«»„\"“”‘’'`$#@]*\u2666\u2665\u2663\u2660\u00A0";
+
+    static final Comparator<OffsetPosition> POSITION_ORDER =
+        Comparator.<OffsetPosition>comparingInt(p -> p.start).thenComparingInt(p -> p.end);
+
+    // version of the written automaton, to be increased with any change of the automaton layout or 
+    // of the token matching, part of the checksum of the compiled software lexicon bundle
+    static final int FORMAT_VERSION = 2;
+
+    // token vocabulary, open addressing
+    private String[] vocabulary;
+    private int[] vocabularyIds;
+    private int vocabularySize;
+
+    // goto function, open addressing on (state << 32 | token id), -1 as empty key
+    private long[] transitionKeys;
+    private int[] transitionTargets;
+    private int transitionCount;
+
+    // states, 0 is the root
+    private int stateCount;
+    private int[] depth;
+    private boolean[] terminal;
+    private int[] fail;
+    // next state with a name ending in the failure chain, or 0 if none
+    private int[] outputLink;
+
+    // number of tokens of the longest name
+    private int maxDepth;
+
+    // only used at build time
+    private int[] parent;
+    private int[] label;
+
+    private SoftwareNameMatcher() {
+    }
+
+    /**
+     * Build the automaton for a list of names, tokenized with the SoftwareAnalyzer
+     */
+    public static SoftwareNameMatcher build(List<String> names) {
+        return build(names, null);
+    }
+
+    /**
+     * Build the automaton for a list of names, and if not null, fill nameStates with the state
+     * reached at the end of each name, 0 if the name has no token to match
+     */
+    static SoftwareNameMatcher build(List<String> names, int[] nameStates) {
+        SoftwareNameMatcher matcher = new SoftwareNameMatcher();
+        matcher.vocabulary = new String[1024];
+        matcher.vocabularyIds = new int[1024];
+        matcher.transitionKeys = new long[1024];
+        Arrays.fill(matcher.transitionKeys, -1L);
+        matcher.transitionTargets = new int[1024];
+        matcher.depth = new int[1024];
+        matcher.terminal = new boolean[1024];
+        matcher.parent = new int[1024];
+        matcher.label = new int[1024];
+        matcher.stateCount = 1;
+
+        for (int i = 0; i < names.size(); i++) {
+            int state = matcher.addName(names.get(i));
+            if (nameStates != null)
+                nameStates[i] = state;
+        }
+        matcher.computeFailureLinks();
+
+        matcher.parent = null;
+        matcher.label = null;
+        return matcher;
+    }
+
+    private int addName(String name) {
+        if (name == null || name.trim().length() == 0)
+            return 0;
+        int state = 0;
+        for (String token : SoftwareAnalyzer.getInstance().tokenize(name)) {
+            String text = normalizeToken(token);
+            if (text == null)
+                continue;
+            int id = tokenId(text);
+            if (id < 0)
+                id = addToken(text);
+            int next = transition(state, id);
+            if (next < 0)
+                next = addState(state, id);
+            state = next;
+        }
+        if (state != 0) {
+            terminal[state] = true;
+            maxDepth = Math.max(maxDepth, depth[state]);
+        }
+        return state;
+    }
+
+    private int addState(int from, int id) {
+        if (stateCount == depth.length) {
+            int capacity = depth.length * 2;
+            depth = Arrays.copyOf(depth, capacity);
+            terminal = Arrays.copyOf(terminal, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            label = Arrays.copyOf(label, capacity);
+        }
+        int state = stateCount++;
+        depth[state] = depth[from] + 1;
+        parent[state] = from;
+        label[state] = id;
+        putTransition(from, id, state);
+        return state;
+    }
+
+    /**
+     * Standard breadth-first computation of the failure and output links, states are visited
+     * by increasing depth so that the links of shorter states are always available
+     */
+    private void computeFailureLinks() {
+        fail = new int[stateCount];
+        outputLink = new int[stateCount];
+
+        int[] countByDepth = new int[maxDepth + 2];
+        for (int state = 0; state < stateCount; state++)
+            countByDepth[depth[state] + 1]++;
+        for (int d = 1; d < countByDepth.length; d++)
+            countByDepth[d] += countByDepth[d - 1];
+        int[] order = new int[stateCount];
+        for (int state = 0; state < stateCount; state++)
+            order[countByDepth[depth[state]]++] = state;
+
+        for (int i = 1; i < stateCount; i++) {
+            int state = order[i];
+            int from = parent[state];
+            int id = label[state];
+            if (from == 0) {
+                fail[state] = 0;
+            } else {
+                int f = fail[from];
+                int next;
+                while ((next = transition(f, id)) < 0 && f != 0)
+                    f = fail[f];
+                fail[state] = (next < 0) ? 0 : next;
+            }
+            int f = fail[state];
+            outputLink[state] = terminal[f] ? f : outputLink[f];
+        }
+    }
+
+    /**
+     * Positions (token index of the first and last matched tokens) of the software names in a
+     * sequence of layout tokens
+     */
+    public List<OffsetPosition> matchLayoutTokens(List<LayoutToken> tokens) {
+        if (tokens == null || tokens.isEmpty())
+            return new ArrayList<>();
+        return match(tokens.size(), i -> tokens.get(i).getText());
+    }
+
+    /**
+     * Positions of the software names in a sequence of (token, label) pairs
+     */
+    public List<OffsetPosition> matchPairs(List<Pair<String, String>> pairs) {
+        if (pairs == null || pairs.isEmpty())
+            return new ArrayList<>();
+        return match(pairs.size(), i -> pairs.get(i).getA());
+    }
+
+    private List<OffsetPosition> match(int size, IntFunction<String> tokenAt) {
+        List<OffsetPosition> results = new ArrayList<>();
+        match(size, tokenAt, (start, end, state) -> results.add(new OffsetPosition(start, end)));
+        if (results.size() > 1)
+            results.sort(POSITION_ORDER);
+        return results;
+    }
+
+    /**
+     * Receives the matches of the names, with the token index of the first and last matched
+     * tokens and the state reached at the end of the name
+     */
+    interface MatchHandler {
+        void match(int start, int end, int state);
+    }
+
+    /**
+     * Report all the matches in a sequence of layout tokens to a handler, by increasing end
+     * token index
+     */
+    void match(List<LayoutToken> tokens, MatchHandler handler) {
+        if (tokens != null && !tokens.isEmpty())
+            match(tokens.size(), i -> tokens.get(i).getText(), handler);
+    }
+
+    private void match(int size, IntFunction<String> tokenAt, MatchHandler handler) {
+        if (maxDepth == 0)
+            return;
+
+        // token index of the last matched tokens, as a ring buffer
+        int[] positions = new int[maxDepth];
+        int count = 0;
+        int state = 0;
+        for (int i = 0; i < size; i++) {
+            String text = normalizeToken(tokenAt.apply(i));
+            if (text == null)
+                continue;
+            positions[count % maxDepth] = i;
+            count++;
+
+            int id = tokenId(text);
+            if (id < 0) {
+                state = 0;
+                continue;
+            }
+            int next;
+            while ((next = transition(state, id)) < 0 && state != 0)
+                state = fail[state];
+            state = (next < 0) ? 0 : next;
+
+            for (int s = terminal[state] ? state : outputLink[state]; s != 0; s = outputLink[s]) {
+                int start = positions[(count - depth[s]) % maxDepth];
+                handler.match(start, i, s);
+            }
+        }
+    }
+
+    /**
+     * Return the normalized form of a token, or null if the token is ignored (space, delimiter)
+     */
+    private static String normalizeToken(String token) {
+        if (token == null || token.isEmpty() || token.equals(" ") || token.equals("\n"))
+            return null;
+        if (isDelimiter(token))
+            return null;
+        // most tokens are plain ASCII letters and digits, which are unchanged by the normalization
+        boolean plain = true;
+        for (int i = 0; i < token.length() && plain; i++) {
+            char c = token.charAt(i);
+            plain = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+        }
+        if (plain)
+            return token;
+        String normalized = UnicodeUtil.normaliseTextAndRemoveSpaces(token);
+        return (normalized == null || normalized.isEmpty()) ? null : normalized;
+    }
+
+    private static boolean isDelimiter(String token) {
+        return token.length() == 1 ? DELIMITERS.indexOf(token.charAt(0)) != -1 : DELIMITERS.contains(token);
+    }
+
+    /**
+     * Return true if the tokenized name contains a delimiter token. As delimiters are ignored in
+     * the matched sequences, such a name can only be matched if its delimiters are ignored too.
+     */
+    static boolean containsDelimiter(String name) {
+        if (name == null)
+            return false;
+        for (String token : SoftwareAnalyzer.getInstance().tokenize(name)) {
+            if (token.isEmpty() || token.equals(" ") || token.equals("\n"))
+                continue;
+            if (isDelimiter(token))
+                return true;
+        }
+        return false;
+    }
+
+    private static int mix(long key) {
+        key ^= (key >>> 33);
+        key *= 0xff51afd7ed558ccdL;
+        key ^= (key >>> 33);
+        return (int) key;
+    }
+
+    private int tokenId(String token) {
+        int mask = vocabulary.length - 1;
+        int index = mix(token.hashCode()) & mask;
+        while (vocabulary[index] != null) {
+            if (vocabulary[index].equals(token))
+                return vocabularyIds[index];
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int addToken(String token) {
+        if ((vocabularySize + 1) * 2 > vocabulary.length) {
+            String[] oldVocabulary = vocabulary;
+            int[] oldIds = vocabularyIds;
+            vocabulary = new String[oldVocabulary.length * 2];
+            vocabularyIds = new int[oldVocabulary.length * 2];
+            for (int i = 0; i < oldVocabulary.length; i++) {
+                if (oldVocabulary[i] != null)
+                    insertToken(oldVocabulary[i], oldIds[i]);
+            }
+        }
+        int id = vocabularySize++;
+        insertToken(token, id);
+        return id;
+    }
+
+    private void insertToken(String token, int id) {
+        int mask = vocabulary.length - 1;
+        int index = mix(token.hashCode()) & mask;
+        while (vocabulary[index] != null)
+            index = (index + 1) & mask;
+        vocabulary[index] = token;
+        vocabularyIds[index] = id;
+    }
+
+    private int transition(int state, int id) {
+        long key = ((long) state << 32) | id;
+        int mask = transitionKeys.length - 1;
+        int index = mix(key) & mask;
+        long current;
+        while ((current = transitionKeys[index]) != -1L) {
+            if (current == key)
+                return transitionTargets[index];
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void putTransition(int state, int id, int target) {
+        if ((transitionCount + 1) * 2 > transitionKeys.length) {
+            long[] oldKeys = transitionKeys;
+            int[] oldTargets = transitionTargets;
+            transitionKeys = new long[oldKeys.length * 2];
+            Arrays.fill(transitionKeys, -1L);
+            transitionTargets = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1L)
+                    insertTransition(oldKeys[i], oldTargets[i]);
+            }
+        }
+        insertTransition(((long) state << 32) | id, target);
+        transitionCount++;
+    }
+
+    private void insertTransition(long key, int target) {
+        int mask = transitionKeys.length - 1;
+        int index = mix(key) & mask;
+        while (transitionKeys[index] != -1L)
+            index = (index + 1) & mask;
+        transitionKeys[index] = key;
+        transitionTargets[index] = target;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Write the automaton in a lexicon bundle
+     */
+    public void write(LexiconBundleWriter output) throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(maxDepth);
+        output.writeInt(vocabularySize);
+        output.writeStrings(vocabulary);
+        output.writeInts(vocabularyIds);
+        output.writeInt(transitionCount);
+        output.writeLongs(transitionKeys);
+        output.writeInts(transitionTargets);
+        output.writeInt(stateCount);
+        output.writeInts(Arrays.copyOf(depth, stateCount));
+        output.writeBooleans(Arrays.copyOf(terminal, stateCount));
+        output.writeInts(fail);
+        output.writeInts(outputLink);
+    }
+
+    /**
+     * Read an automaton written with write()
+     */
+    public static SoftwareNameMatcher read(LexiconBundleReader input) throws IOException {
+        int version = input.readInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported software name matcher format: " + version);
+
+        SoftwareNameMatcher matcher = new SoftwareNameMatcher();
+        matcher.maxDepth = input.readInt();
+        matcher.vocabularySize = input.readInt();
+        matcher.vocabulary = input.readStringArray();
+        matcher.vocabularyIds = input.readInts();
+        matcher.transitionCount = input.readInt();
+        matcher.transitionKeys = input.readLongs();
+        matcher.transitionTargets = input.readInts();
+        matcher.stateCount = input.readInt();
+        matcher.depth = input.readInts();
+        matcher.terminal = input.readBooleans();
+        matcher.fail = input.readInts();
+        matcher.outputLink = input.readInts();
+
+        if (matcher.vocabularyIds.length != matcher.vocabulary.length ||
+            matcher.transitionTargets.length != matcher.transitionKeys.length ||
+            matcher.depth.length != matcher.stateCount || matcher.terminal.length != matcher.stateCount ||
+            matcher.fail.length != matcher.stateCount || matcher.outputLink.length != matcher.stateCount)
+            throw new IOException("Inconsistent software name matcher data");
+        return matcher;
+    }
+}
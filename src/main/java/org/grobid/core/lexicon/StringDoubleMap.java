@@ -0,0 +1,108 @@
+package org.grobid.core.lexicon;
+
+import java.io.IOException;
+
+/**
+ * Map from strings to primitive double values with open addressing (linear probing), used for
+ * large read-mostly lexical resources like the term IDF.
+ *
+ * Compared to a TreeMap or HashMap of boxed values, there is no entry or Double object per key
+ * and a lookup is a hash and a few array accesses. The two arrays are written as they are in
+ * the lexicon bundle, so reading the map does not require re-hashing the keys.
+ */
+public class StringDoubleMap {
+
+    private String[] keys;
+    private double[] values;
+    private int size;
+
+    public StringDoubleMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2)
+            capacity <<= 1;
+        keys = new String[capacity];
+        values = new double[capacity];
+    }
+
+    private StringDoubleMap(String[] keys, double[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    private static int mix(int hash) {
+        long key = hash;
+        key ^= (key >>> 33);
+        key *= 0xff51afd7ed558ccdL;
+        key ^= (key >>> 33);
+        return (int) key;
+    }
+
+    private int indexOf(String key) {
+        int mask = keys.length - 1;
+        int index = mix(key.hashCode()) & mask;
+        String current;
+        while ((current = keys[index]) != null) {
+            if (current.equals(key))
+                return index;
+            index = (index + 1) & mask;
+        }
+        // free slot where the key would be inserted
+        return index;
+    }
+
+    public void put(String key, double value) {
+        if ((size + 1) * 2 > keys.length) {
+            String[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new double[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+        int index = indexOf(key);
+        if (keys[index] == null) {
+            keys[index] = key;
+            size++;
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Value of a key, or the default value if the key is not present
+     */
+    public double get(String key, double defaultValue) {
+        if (key == null)
+            return defaultValue;
+        int index = indexOf(key);
+        return (keys[index] != null) ? values[index] : defaultValue;
+    }
+
+    public boolean containsKey(String key) {
+        return key != null && keys[indexOf(key)] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void write(LexiconBundleWriter output) throws IOException {
+        output.writeInt(size);
+        output.writeStrings(keys);
+        output.writeDoubles(values);
+    }
+
+    public static StringDoubleMap read(LexiconBundleReader input) throws IOException {
+        int size = input.readInt();
+        String[] keys = input.readStringArray();
+        double[] values = input.readDoubles();
+        if (keys.length != values.length || Integer.bitCount(keys.length) != 1 || size * 2 > keys.length)
+            throw new IOException("Inconsistent string to double map data");
+        return new StringDoubleMap(keys, values, size);
+    }
+}
@@ -1,15 +1,22 @@
 package org.grobid.core.main.batch;
 
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.engines.SoftwareBatchProcessor;
 import org.grobid.core.engines.SoftwareParser;
+import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.main.GrobidHomeFinder;
 import org.grobid.core.utilities.GrobidProperties;
 import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareResultSerializer;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
 import org.grobid.core.utilities.GrobidConfig.ModelParameters;
 import org.grobid.core.main.LibraryLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -27,12 +34,16 @@ public class SoftwareMain {
 
     private static final String COMMAND_PROCESS_TEXT = "processText";
     private static final String COMMAND_PROCESS_PDF = "processPDF";
+    private static final String COMMAND_PROCESS_TEI = "processTEI";
+    private static final String COMMAND_PROCESS_XML = "processXML";
 	private static final String COMMAND_CREATE_TRAINING = "createTraining";
 	private static final String COMMAND_BOOTSTRAP_TRAINING_PDF = "bootstrapTrainingPDF";
 
     private static List<String> availableCommands = Arrays.asList(
             COMMAND_PROCESS_TEXT,
             COMMAND_PROCESS_PDF,
+            COMMAND_PROCESS_TEI,
+            COMMAND_PROCESS_XML,
 			COMMAND_CREATE_TRAINING,
 			COMMAND_BOOTSTRAP_TRAINING_PDF
     );
@@ -42,6 +53,19 @@ public class SoftwareMain {
      */
     private static GrobidMainArgs gbdArgs;
 
+    /**
+     * Number of worker threads for the batch processing, default is the number of available processors
+     */
+    private static int nbThreads = Runtime.getRuntime().availableProcessors();
+
+    private static boolean disambiguate = false;
+    private static boolean addParagraphContext = false;
+
+    /**
+     * Format of the results, JSON or CBOR
+     */
+    private static Format outputFormat = Format.JSON;
+
     /**
      * Build the path to grobid.properties from the path to grobid-home.
      *
@@ -116,6 +140,10 @@ public class SoftwareMain {
         help.append("-dOut: gives the path to the directory where the result files will be saved. The default output directory is the curent directory.\n");
         help.append("-s: is the parameter used for process using string as input and not file.\n");
         help.append("-r: recursive directory processing, default processing is not recursive.\n");
+        help.append("-n: number of worker threads for the batch processing, default is the number of available processors.\n");
+        help.append("-disambiguate: disambiguate the extracted software mentions against entity-fishing.\n");
+        help.append("-addParagraphContext: add the full paragraph context of the mentions in the results.\n");
+        help.append("-format: format of the results, json (default) or cbor (binary JSON, see SoftwareResultReader).\n");
         help.append("-exe: gives the command to execute. The value should be one of these:\n");
         help.append("\t" + availableCommands + "\n");
         return help.toString();
@@ -187,11 +215,61 @@ public class SoftwareMain {
                     gbdArgs.setRecursive(true);
                     continue;
                 }
+                if (currArg.equals("-n")) {
+                    if (i + 1 < pArgs.length) {
+                        try {
+                            nbThreads = Integer.parseInt(pArgs[i + 1]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("-n value should be a number of threads: " + pArgs[i + 1]);
+                            result = false;
+                            break;
+                        }
+                    }
+                    i++;
+                    continue;
+                }
+                if (currArg.equals("-disambiguate")) {
+                    disambiguate = true;
+                    continue;
+                }
+                if (currArg.equals("-addParagraphContext")) {
+                    addParagraphContext = true;
+                    continue;
+                }
+                if (currArg.equals("-format")) {
+                    if (i + 1 < pArgs.length) {
+                        try {
+                            outputFormat = Format.fromName(pArgs[i + 1]);
+                        } catch (GrobidException e) {
+                            System.err.println("-format value should be json or cbor: " + pArgs[i + 1]);
+                            result = false;
+                            break;
+                        }
+                    }
+                    i++;
+                    continue;
+                }
             }
         }
         return result;
     }
 
+    /**
+     * Process a raw text and write its result as the text service does, see
+     * SoftwareProcessString.processText()
+     */
+    static void processText(SoftwareParser softwareParser,
+                            String text,
+                            boolean disambiguate,
+                            Format format,
+                            OutputStream output) throws IOException {
+        text = text.replaceAll("\\n", " ").replaceAll("\\t", " ");
+        long start = System.currentTimeMillis();
+        List<SoftwareEntity> entities = softwareParser.processText(text, disambiguate);
+        long end = System.currentTimeMillis();
+        SoftwareResultSerializer.write(output, format, entities, end - start);
+    }
+
     public static void main(final String[] args) throws Exception {
         gbdArgs = new GrobidMainArgs();
 
@@ -218,6 +296,31 @@ public class SoftwareMain {
                 nb = softwareParser.createTrainingBatch(gbdArgs.getPath2Input(), gbdArgs.getPath2Output(), -1);
             }  else if (gbdArgs.getProcessMethodName().equals(COMMAND_BOOTSTRAP_TRAINING_PDF)) {
                 nb = softwareParser.boostrapTrainingPDF(gbdArgs.getPath2Input(), gbdArgs.getPath2Output(), -1);
+            } else if (gbdArgs.getProcessMethodName().equals(COMMAND_PROCESS_TEXT)) {
+                if (gbdArgs.getInput() == null) {
+                    throw new RuntimeException("The command " + COMMAND_PROCESS_TEXT + " requires a string input (-s)");
+                }
+                processText(softwareParser, gbdArgs.getInput(), disambiguate, outputFormat, System.out);
+                System.out.flush();
+                nb = 1;
+            } else if (gbdArgs.getProcessMethodName().equals(COMMAND_PROCESS_PDF) ||
+                gbdArgs.getProcessMethodName().equals(COMMAND_PROCESS_TEI) ||
+                gbdArgs.getProcessMethodName().equals(COMMAND_PROCESS_XML)) {
+                SoftwareBatchProcessor.InputType inputType = SoftwareBatchProcessor.InputType.PDF;
+                if (gbdArgs.getProcessMethodName().equals(COMMAND_PROCESS_TEI))
+                    inputType = SoftwareBatchProcessor.InputType.TEI;
+                else if (gbdArgs.getProcessMethodName().equals(COMMAND_PROCESS_XML))
+                    inputType = SoftwareBatchProcessor.InputType.XML;
+
+                SoftwareBatchProcessor batchProcessor = new SoftwareBatchProcessor(softwareParser, inputType, nbThreads);
+                batchProcessor.setDisambiguate(disambiguate);
+                batchProcessor.setAddParagraphContext(addParagraphContext);
+                batchProcessor.setOutputFormat(outputFormat);
+                String outputPath = gbdArgs.getPath2Output();
+                if (outputPath == null)
+                    outputPath = new File(".").getAbsolutePath();
+                nb = batchProcessor.process(new File(gbdArgs.getPath2Input()), 
+                    new File(outputPath), gbdArgs.isRecursive());
             } else {
                 throw new RuntimeException("Command not yet implemented.");
             }
@@ -0,0 +1,236 @@
+package org.grobid.core.utilities;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.grobid.core.exceptions.GrobidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micro-batching of the inference calls to a model across concurrent requests.
+ *
+ * Each caller submits its own batch of items (sequences to label, contexts to classify) and
+ * waits for its result. A scheduler thread collects the submitted batches for at most a given
+ * delay after the first one, or until a given number of items is reached, and a worker thread
+ * runs a single inference call on the concatenation of the collected items and gives back to
+ * each caller the slice of the result corresponding to its items. With deep learning models,
+ * larger batches give a much better throughput than many small calls.
+ *
+ * At most a given number of batches are processed concurrently by the worker threads. A batch
+ * is only collected once a worker is free, so that the requests submitted while all the workers
+ * are busy are grouped in the next batch.
+ *
+ * The scheduler only waits for more items while other requests are in flight: a request
+ * submitted alone, e.g. an interactive request on an idle server, is processed at once and does
+ * not pay the delay.
+ *
+ * The number of pending items and requests, the size of the batches and the inference time
+ * are exposed as metrics.
+ *
+ * @param <I> type of the input items
+ * @param <R> type of the result of an inference call for a list of items
+ */
+public class MicroBatchScheduler<I, R> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MicroBatchScheduler.class);
+
+    /**
+     * Inference call for a list of items, with a way to extract the part of the result
+     * corresponding to a sub-list of the items
+     */
+    public interface BatchProcessor<I, R> {
+        R process(List<I> items) throws Exception;
+
+        R slice(R result, int from, int to);
+    }
+
+    private static class Request<I, R> {
+        final List<I> items;
+        final CompletableFuture<R> result = new CompletableFuture<>();
+
+        Request(List<I> items) {
+            this.items = items;
+        }
+    }
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final BatchProcessor<I, R> processor;
+
+    // a permit for each worker, taken while a batch is collected and processed
+    private final Semaphore freeWorkers;
+    private final ExecutorService workers;
+
+    private final LinkedBlockingQueue<Request<I, R>> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingItems = new AtomicInteger();
+    // requests submitted and not yet completed
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    private final Histogram batchSizes;
+    private final Timer inferenceTimer;
+
+    /**
+     * @param name name of the scheduler, used for the thread and the metrics
+     * @param maxBatchSize number of items triggering an inference call
+     * @param maxDelay maximum waiting time in ms for collecting items after the first submitted batch
+     * @param parallelBatches maximum number of batches processed concurrently
+     */
+    public MicroBatchScheduler(String name, int maxBatchSize, long maxDelay, int parallelBatches,
+                               BatchProcessor<I, R> processor) {
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelay = Math.max(0, maxDelay);
+        this.processor = processor;
+
+        int workerCount = Math.max(1, parallelBatches);
+        freeWorkers = new Semaphore(workerCount);
+        AtomicInteger workerIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread worker = new Thread(runnable, "batch-worker-" + name + "-" + workerIndex.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+
+        MetricRegistry metrics = SoftwareMetrics.getRegistry();
+        String prefix = MetricRegistry.name("scheduler", name);
+        metrics.gauge(MetricRegistry.name(prefix, "queue-depth"), () -> (Gauge<Integer>) pendingItems::get);
+        metrics.gauge(MetricRegistry.name(prefix, "queued-requests"), () -> (Gauge<Integer>) queue::size);
+        batchSizes = metrics.histogram(MetricRegistry.name(prefix, "batch-size"));
+        inferenceTimer = metrics.timer(MetricRegistry.name(prefix, "inference"));
+
+        Thread thread = new Thread(this::run, "batch-scheduler-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Create a scheduler as set in the configuration, or return null if micro-batching is
+     * disabled (schedulerBatchSize set to 0)
+     */
+    public static <I, R> MicroBatchScheduler<I, R> create(String name,
+                                                          SoftwareConfiguration configuration,
+                                                          BatchProcessor<I, R> processor) {
+        if (configuration.getSchedulerBatchSize() <= 0)
+            return null;
+        LOGGER.info("Micro-batching of the " + name + " model: batches of " + configuration.getSchedulerBatchSize() +
+            " items, max. delay " + configuration.getSchedulerBatchDelay() + " ms, at most " +
+            configuration.getSchedulerParallelBatches() + " concurrent batches");
+        return new MicroBatchScheduler<>(name, configuration.getSchedulerBatchSize(),
+            configuration.getSchedulerBatchDelay(), configuration.getSchedulerParallelBatches(), processor);
+    }
+
+    /**
+     * Submit a list of items and wait for the corresponding result
+     */
+    public R process(List<I> items) {
+        Request<I, R> request = new Request<>(items);
+        activeRequests.incrementAndGet();
+        // decremented by the worker completing the request, before it takes the next batch
+        request.result.whenComplete((result, failure) -> activeRequests.decrementAndGet());
+        pendingItems.addAndGet(items.size());
+        queue.add(request);
+        try {
+            return request.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrobidException("Interrupted while waiting for the " + name + " model", e);
+        } catch (ExecutionException e) {
+            throw new GrobidException("Inference with the " + name + " model failed", e.getCause());
+        }
+    }
+
+    int getQueuedRequests() {
+        return queue.size();
+    }
+
+    private void run() {
+        Request<I, R> carried = null;
+        while (true) {
+            List<Request<I, R>> batch = new ArrayList<>();
+            int batchSize = 0;
+            try {
+                // the requests submitted while all the workers are busy join the next batch
+                freeWorkers.acquire();
+                Request<I, R> first = (carried != null) ? carried : queue.take();
+                carried = null;
+                batch.add(first);
+                batchSize += first.items.size();
+
+                long deadline = System.currentTimeMillis() + maxDelay;
+                while (batchSize < maxBatchSize) {
+                    // no wait when the collected requests are the only ones in flight
+                    long wait = (activeRequests.get() > batch.size()) ? deadline - System.currentTimeMillis() : 0;
+                    Request<I, R> next = (wait > 0) ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (next == null)
+                        break;
+                    if (batchSize + next.items.size() > maxBatchSize) {
+                        // kept for the next batch, a single request larger than the batch size is processed alone
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                    batchSize += next.items.size();
+                }
+            } catch (InterruptedException e) {
+                LOGGER.warn("Batch scheduler " + name + " interrupted");
+                for (Request<I, R> request : batch)
+                    request.result.completeExceptionally(e);
+                if (carried != null)
+                    carried.result.completeExceptionally(e);
+                workers.shutdown();
+                return;
+            }
+
+            pendingItems.addAndGet(-batchSize);
+            List<Request<I, R>> collected = batch;
+            int collectedSize = batchSize;
+            workers.execute(() -> {
+                try {
+                    processBatch(collected, collectedSize);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    private void processBatch(List<Request<I, R>> batch, int batchSize) {
+        List<I> items = new ArrayList<>(batchSize);
+        for (Request<I, R> request : batch)
+            items.addAll(request.items);
+
+        batchSizes.update(batchSize);
+        R result;
+        try (Timer.Context context = inferenceTimer.time()) {
+            result = processor.process(items);
+        } catch (Throwable e) {
+            for (Request<I, R> request : batch)
+                request.result.completeExceptionally(e);
+            return;
+        }
+
+        int from = 0;
+        for (Request<I, R> request : batch) {
+            int to = from + request.items.size();
+            try {
+                request.result.complete(processor.slice(result, from, to));
+            } catch (Throwable e) {
+                request.result.completeExceptionally(e);
+            }
+            from = to;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.grobid.core.utilities;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of offset positions sorted by start, for the overlap and containment queries between
+ * the positions of mentions, sentences and reference markers.
+ *
+ * Each position is identified by its insertion order. Positions with the same start are kept in
+ * insertion order. The sorted positions are the leaves of an implicit balanced tree where each
+ * node holds the greatest end of its leaves, as in an interval tree: a query only descends into
+ * the nodes ending at or after the interval, so it costs O(log n) per visited position, whatever
+ * the length of the indexed positions. A whole sentence or paragraph span does not make the
+ * queries on the short positions around it linear.
+ * Ill-formed positions (start greater than end) are kept apart and always visited.
+ *
+ * The index is not thread-safe.
+ */
+public class OffsetPositionIndex {
+
+    /**
+     * Receives the positions visited by a query, returns true to stop the query
+     */
+    public interface PositionVisitor {
+        boolean visit(int id, int start, int end);
+    }
+
+    // well-formed positions, sorted by start then insertion order
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] ids = new int[16];
+    private int count = 0;
+
+    // greatest end of the well-formed positions under each node of the tree, the root at 1 and 
+    // the leaf of the rank r at ends.length + r, Integer.MIN_VALUE for the leaves without position
+    private int[] maxEnds = newMaxEnds(16);
+
+    // ill-formed positions
+    private int[] otherStarts = new int[0];
+    private int[] otherEnds = new int[0];
+    private int[] otherIds = new int[0];
+    private int otherCount = 0;
+
+    public OffsetPositionIndex() {
+    }
+
+    public OffsetPositionIndex(List<OffsetPosition> positions) {
+        for (OffsetPosition position : positions)
+            add(position.start, position.end);
+    }
+
+    public int size() {
+        return count + otherCount;
+    }
+
+    /**
+     * Add a position and return its identifier
+     */
+    public int add(int start, int end) {
+        int id = size();
+        if (start > end) {
+            if (otherCount == otherStarts.length) {
+                int capacity = Math.max(4, otherCount * 2);
+                otherStarts = Arrays.copyOf(otherStarts, capacity);
+                otherEnds = Arrays.copyOf(otherEnds, capacity);
+                otherIds = Arrays.copyOf(otherIds, capacity);
+            }
+            otherStarts[otherCount] = start;
+            otherEnds[otherCount] = end;
+            otherIds[otherCount] = id;
+            otherCount++;
+            return id;
+        }
+
+        boolean grown = false;
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            ids = Arrays.copyOf(ids, count * 2);
+            maxEnds = newMaxEnds(count * 2);
+            grown = true;
+        }
+        // positions are mostly added in document order, so usually appended
+        int rank = firstRankAfter(start);
+        if (rank < count) {
+            System.arraycopy(starts, rank, starts, rank + 1, count - rank);
+            System.arraycopy(ends, rank, ends, rank + 1, count - rank);
+            System.arraycopy(ids, rank, ids, rank + 1, count - rank);
+        }
+        starts[rank] = start;
+        ends[rank] = end;
+        ids[rank] = id;
+        count++;
+
+        // the leaves from the rank are shifted, all of them are new when the capacity has grown
+        updateMaxEnds(grown ? 0 : rank, count);
+        return id;
+    }
+
+    public int add(OffsetPosition position) {
+        return add(position.start, position.end);
+    }
+
+    private static int[] newMaxEnds(int capacity) {
+        int[] maxEnds = new int[2 * capacity];
+        Arrays.fill(maxEnds, Integer.MIN_VALUE);
+        return maxEnds;
+    }
+
+    /**
+     * Update the leaves of the ranks [from, to[ and their ancestors
+     */
+    private void updateMaxEnds(int from, int to) {
+        int leaves = ends.length;
+        for (int rank = from; rank < to; rank++)
+            maxEnds[leaves + rank] = ends[rank];
+        for (int low = (leaves + from) >>> 1, high = (leaves + to - 1) >>> 1; low > 0; low >>>= 1, high >>>= 1) {
+            for (int node = low; node <= high; node++)
+                maxEnds[node] = Math.max(maxEnds[2 * node], maxEnds[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Rank of the first well-formed position with a start strictly greater than the given value
+     */
+    private int firstRankAfter(int start) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= start)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Visit the positions intersecting the interval [from, to], bounds included, the well-formed
+     * ones by increasing start, then the ill-formed ones. Returns true if the visitor stopped
+     * the query.
+     */
+    public boolean visitIntersecting(int from, int to, PositionVisitor visitor) {
+        if (from > to)
+            return visitAll(visitor);
+        // the intersecting positions start at or before the end of the interval and end at or after its start
+        if (visitEndingFrom(1, 0, ends.length, firstRankAfter(to), from, visitor))
+            return true;
+        return visitOthers(visitor);
+    }
+
+    /**
+     * Visit by increasing rank the positions of the ranks [low, high[ under a node, with a rank
+     * lower than the limit and an end greater or equal to the given value
+     */
+    private boolean visitEndingFrom(int node, int low, int high, int limit, int from, PositionVisitor visitor) {
+        if (low >= limit || maxEnds[node] < from)
+            return false;
+        if (high - low == 1)
+            return visitor.visit(ids[low], starts[low], ends[low]);
+        int middle = (low + high) >>> 1;
+        return visitEndingFrom(2 * node, low, middle, limit, from, visitor) ||
+            visitEndingFrom(2 * node + 1, middle, high, limit, from, visitor);
+    }
+
+    /**
+     * Visit all the positions, the well-formed ones by increasing start, then the ill-formed ones.
+     * Returns true if the visitor stopped the query.
+     */
+    public boolean visitAll(PositionVisitor visitor) {
+        for (int rank = 0; rank < count; rank++) {
+            if (visitor.visit(ids[rank], starts[rank], ends[rank]))
+                return true;
+        }
+        return visitOthers(visitor);
+    }
+
+    private boolean visitOthers(PositionVisitor visitor) {
+        for (int i = 0; i < otherCount; i++) {
+            if (visitor.visit(otherIds[i], otherStarts[i], otherEnds[i]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Identifier of the first added position containing [from, to], bounds included, or -1
+     */
+    public int firstContaining(int from, int to) {
+        int[] first = {-1};
+        visitIntersecting(from, to, (id, start, end) -> {
+            if (start <= from && to <= end && (first[0] == -1 || id < first[0]))
+                first[0] = id;
+            return false;
+        });
+        return first[0];
+    }
+
+    /**
+     * Return true if a position is contained in [from, to], bounds included
+     */
+    public boolean anyContainedIn(int from, int to) {
+        return visitIntersecting(from, to, (id, start, end) -> from <= start && end <= to);
+    }
+}
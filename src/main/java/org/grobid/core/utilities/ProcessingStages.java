@@ -0,0 +1,251 @@
+package org.grobid.core.utilities;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumentation of the processing of a document: pipeline stages, steps and counts, published
+ * as metrics and, for a given processing, as a time breakdown.
+ *
+ * The stages are the successive parts of a processing run by the calling thread. The parsers
+ * mark the beginning of each stage with begin(), which ends the previous stage. Stages are only
+ * recorded when a ProcessingStages has been attached to the thread running the processing, e.g.
+ * by a service or an asynchronous job, otherwise begin() does nothing. The durations of a stage
+ * entered several times are summed.
+ *
+ * The steps are parts of the processing which can run concurrently on several threads, such as
+ * the labeling of the chunks of segments of a document; their duration is the sum of the
+ * durations on all threads. The steps and counts are always published as metrics, and recorded
+ * for the processing when a ProcessingStages is attached to the thread, see propagate() for the
+ * worker threads.
+ *
+ * Each stage and step has a timer in the metric registry (stages.name and steps.name), each
+ * count a counter (processed.name).
+ */
+public class ProcessingStages implements SoftwareResultSerializer.JsonWritable {
+
+    // stages
+    public static final String SEGMENTATION = "segmentation";
+    public static final String CITATIONS = "citations";
+    public static final String HEADER = "header";
+    public static final String FULLTEXT = "fulltext";
+    public static final String XML_TRANSFORMATION = "xml-transformation";
+    public static final String TEI_READING = "tei-reading";
+    public static final String MENTION_EXTRACTION = "mention-extraction";
+    public static final String PROPAGATION = "propagation";
+    public static final String REFERENCES = "references";
+    public static final String CONTEXT_CLASSIFICATION = "context-classification";
+    public static final String SERIALIZATION = "serialization";
+
+    // steps, within the mention extraction stage
+    public static final String FEATURES = "features";
+    public static final String SOFTWARE_LABELLING = "software-labelling";
+    public static final String TYPE_LABELLING = "type-labelling";
+    public static final String DISAMBIGUATION = "disambiguation";
+
+    // counts
+    public static final String TOKENS = "tokens";
+    public static final String MENTIONS = "mentions";
+
+    /**
+     * Notified when a stage begins, with the durations of the stages ended so far
+     */
+    public interface Listener {
+        void stageBegun(String stage, Map<String, Long> durations);
+    }
+
+    /**
+     * Running step, ended when closed
+     */
+    public static final class Step implements AutoCloseable {
+        private final String name;
+        private final ProcessingStages stages;
+        private final long start = System.nanoTime();
+
+        private Step(String name, ProcessingStages stages) {
+            this.name = name;
+            this.stages = stages;
+        }
+
+        @Override
+        public void close() {
+            long time = System.nanoTime() - start;
+            SoftwareMetrics.getRegistry().timer(MetricRegistry.name("steps", name)).update(time, TimeUnit.NANOSECONDS);
+            if (stages != null)
+                stages.addStep(name, time);
+        }
+    }
+
+    private static final ThreadLocal<ProcessingStages> current = new ThreadLocal<>();
+
+    private final Listener listener;
+
+    // durations in nanoseconds
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+    private final Map<String, Long> stepDurations = new LinkedHashMap<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private String stage = null;
+    private long stageStart = 0;
+
+    public ProcessingStages() {
+        this(null);
+    }
+
+    public ProcessingStages(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Record the stages of the processings run by the current thread in the given instance
+     */
+    public static void attach(ProcessingStages stages) {
+        current.set(stages);
+    }
+
+    /**
+     * End the current stage and stop recording the stages of the current thread
+     */
+    public static void detach() {
+        ProcessingStages stages = current.get();
+        if (stages != null) {
+            stages.end();
+            current.remove();
+        }
+    }
+
+    /**
+     * Instance attached to the current thread, or null
+     */
+    public static ProcessingStages current() {
+        return current.get();
+    }
+
+    /**
+     * Record the steps and counts of the current thread in the given instance, attached to
+     * another thread running the same processing, without ending any stage. Returns the
+     * previous instance of the current thread, to be restored with propagate() as well.
+     */
+    public static ProcessingStages propagate(ProcessingStages stages) {
+        ProcessingStages previous = current.get();
+        if (stages == null)
+            current.remove();
+        else
+            current.set(stages);
+        return previous;
+    }
+
+    /**
+     * Mark the beginning of a stage of the processing run by the current thread
+     */
+    public static void begin(String stage) {
+        ProcessingStages stages = current.get();
+        if (stages != null)
+            stages.beginStage(stage);
+    }
+
+    /**
+     * Start a step of the processing run by the current thread, to be closed when ended
+     */
+    public static Step step(String name) {
+        return new Step(name, current.get());
+    }
+
+    /**
+     * Add a count of processed items (tokens, mentions) for the processing run by the current thread
+     */
+    public static void count(String name, long count) {
+        SoftwareMetrics.getRegistry().counter(MetricRegistry.name("processed", name)).inc(count);
+        ProcessingStages stages = current.get();
+        if (stages != null) {
+            synchronized (stages) {
+                stages.counts.merge(name, count, Long::sum);
+            }
+        }
+    }
+
+    public void beginStage(String stage) {
+        Map<String, Long> endedDurations;
+        synchronized (this) {
+            endStage();
+            this.stage = stage;
+            this.stageStart = System.nanoTime();
+            endedDurations = toMillis(durations);
+        }
+        if (listener != null)
+            listener.stageBegun(stage, endedDurations);
+    }
+
+    public synchronized void end() {
+        endStage();
+        stage = null;
+    }
+
+    private void endStage() {
+        if (stage != null) {
+            long time = System.nanoTime() - stageStart;
+            durations.merge(stage, time, Long::sum);
+            SoftwareMetrics.getRegistry().timer(MetricRegistry.name("stages", stage)).update(time, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void addStep(String name, long time) {
+        stepDurations.merge(name, time, Long::sum);
+    }
+
+    /**
+     * Current stage, null if no stage is running
+     */
+    public synchronized String getStage() {
+        return stage;
+    }
+
+    /**
+     * Time spent in each ended stage in milliseconds, in the order the stages began
+     */
+    public synchronized Map<String, Long> getDurations() {
+        return toMillis(durations);
+    }
+
+    /**
+     * Time spent in each step in milliseconds, summed over the threads
+     */
+    public synchronized Map<String, Long> getStepDurations() {
+        return toMillis(stepDurations);
+    }
+
+    public synchronized Map<String, Long> getCounts() {
+        return new LinkedHashMap<>(counts);
+    }
+
+    private static Map<String, Long> toMillis(Map<String, Long> nanoDurations) {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> duration : nanoDurations.entrySet())
+            millis.put(duration.getKey(), TimeUnit.NANOSECONDS.toMillis(duration.getValue()));
+        return millis;
+    }
+
+    /**
+     * Breakdown of the processing: durations in milliseconds of the ended stages and of the
+     * steps, and counts
+     */
+    @Override
+    public void writeJson(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        writeMap(gen, "stages", getDurations());
+        writeMap(gen, "steps", getStepDurations());
+        writeMap(gen, "counts", getCounts());
+        gen.writeEndObject();
+    }
+
+    private static void writeMap(JsonGenerator gen, String fieldName, Map<String, Long> values) throws IOException {
+        gen.writeObjectFieldStart(fieldName);
+        for (Map.Entry<String, Long> value : values.entrySet())
+            gen.writeNumberField(value.getKey(), value.getValue());
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,132 @@
+package org.grobid.core.utilities;
+
+import org.grobid.core.exceptions.GrobidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * In-JVM Pub2TEI transformation of publisher XML documents (JATS, NLM, etc.) into TEI
+ * (https://github.com/kermitt2/pub2tei).
+ *
+ * The Pub2TEI stylesheets are XSLT 2.0, so the transformation uses the Saxon HE processor
+ * shipped with Pub2TEI (Samples/saxon9he.jar), or Saxon if already present in the classpath,
+ * through the standard JAXP API. The Publishers.xsl stylesheet is compiled once and the
+ * resulting Templates object, which is thread-safe, is reused for every document.
+ *
+ * The input document is streamed through a SAX reader which never loads the DTD, so no
+ * DOCTYPE pre-processing of the input file and no network access are needed, and the result
+ * is serialized directly to an output stream, without temporary file.
+ */
+public class Pub2TEITransformer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Pub2TEITransformer.class);
+
+    private static final String SAXON_TRANSFORMER_FACTORY = "net.sf.saxon.TransformerFactoryImpl";
+
+    private static volatile Pub2TEITransformer instance;
+
+    private final Templates templates;
+
+    public static Pub2TEITransformer getInstance(SoftwareConfiguration configuration) {
+        if (instance == null) {
+            getNewInstance(configuration);
+        }
+        return instance;
+    }
+
+    /**
+     * Create a new instance.
+     */
+    private static synchronized void getNewInstance(SoftwareConfiguration configuration) {
+        if (instance == null)
+            instance = new Pub2TEITransformer(configuration.getPub2TEIPath());
+    }
+
+    private Pub2TEITransformer(String pathToPub2TEI) {
+        if (pathToPub2TEI == null) {
+            throw new GrobidException("The path to Pub2TEI is not set in the configuration (pub2teiPath)");
+        }
+        File dirToPub2TEI = new File(pathToPub2TEI).getAbsoluteFile();
+        File stylesheet = new File(dirToPub2TEI, "Stylesheets" + File.separator + "Publishers.xsl");
+        if (!stylesheet.exists()) {
+            throw new GrobidException("Pub2TEI stylesheet not found: " + stylesheet.getPath());
+        }
+
+        try {
+            TransformerFactory factory = TransformerFactory.newInstance(SAXON_TRANSFORMER_FACTORY,
+                getSaxonClassLoader(dirToPub2TEI));
+            long start = System.currentTimeMillis();
+            templates = factory.newTemplates(new StreamSource(stylesheet));
+            LOGGER.info("Pub2TEI stylesheets compiled in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            throw new GrobidException("Cannot compile the Pub2TEI stylesheets under " + dirToPub2TEI.getPath(), e);
+        }
+    }
+
+    /**
+     * Use Saxon from the classpath if available, otherwise the Saxon jar shipped with Pub2TEI
+     */
+    private static ClassLoader getSaxonClassLoader(File dirToPub2TEI) throws Exception {
+        ClassLoader parent = Pub2TEITransformer.class.getClassLoader();
+        try {
+            Class.forName(SAXON_TRANSFORMER_FACTORY, false, parent);
+            return parent;
+        } catch (ClassNotFoundException e) {
+            File saxonJar = new File(dirToPub2TEI, "Samples" + File.separator + "saxon9he.jar");
+            if (!saxonJar.exists()) {
+                throw new GrobidException("Saxon not found in the classpath nor under Pub2TEI: " + saxonJar.getPath());
+            }
+            return new URLClassLoader(new URL[]{ saxonJar.toURI().toURL() }, parent);
+        }
+    }
+
+    /**
+     * Transform a publisher XML file into TEI serialized in UTF-8 without indentation to the given
+     * output, for reading the TEI without building its DOM.
+     */
+    public void transform(File xmlFile, OutputStream output) throws Exception {
+        SAXSource source = new SAXSource(createXMLReader(), new InputSource(xmlFile.toURI().toString()));
+
+        // transformer objects are not thread-safe, but are cheap to create from the compiled templates
+        Transformer transformer = templates.newTransformer();
+        // no whitespace added to the text content of the TEI elements
+        transformer.setOutputProperty(OutputKeys.INDENT, "no");
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        transformer.transform(source, new StreamResult(output));
+    }
+
+    /**
+     * SAX reader ignoring the DOCTYPE declaration: the external DTD is never loaded and
+     * any external entity is resolved as empty.
+     */
+    private static XMLReader createXMLReader() throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        try {
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (Exception e) {
+            LOGGER.debug("SAX parser feature not supported", e);
+        }
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        reader.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader("")));
+        return reader;
+    }
+}
@@ -12,9 +12,49 @@ public class SoftwareConfiguration {
     private String entityFishingHost;
     private String entityFishingPort;
 
+    // entity-fishing client settings, timeouts in ms
+    private int entityFishingMaxConnections = 8;
+    private int entityFishingConnectTimeout = 5000;
+    private int entityFishingReadTimeout = 60000;
+    private int entityFishingMaxBatchLength = 10000;
+
+    // disambiguation cache settings, time to live in hours
+    private int entityFishingCacheSize = 100000;
+    private int entityFishingCacheTTL = 720;
+    private String entityFishingCachePath;
+    private int entityFishingCacheDiskSize = 1000000;
+
+    // micro-batching of the deep learning model calls across concurrent requests, delay in ms, with at most
+    // the given number of batches of a model processed concurrently
+    private int schedulerBatchSize = 64;
+    private int schedulerBatchDelay = 10;
+    private int schedulerParallelBatches = 2;
+
+    // processing of the segments of a document in chunks of about the given number of tokens, with at most
+    // the given number of chunks processed concurrently for a document
+    private int segmentParallelism = 4;
+    private int segmentChunkSize = 4000;
+
+    // cache of the service results, sizes in MB
+    private int resultCacheSize = 256;
+    private String resultCachePath;
+    private int resultCacheDiskSize = 10000;
+    private int resultCacheMaxEntrySize = 16;
+
+    // asynchronous processing of the documents, time to live of the results in hours
+    private int jobWorkers = 2;
+    private int jobQueueSize = 1000;
+    private String jobPath;
+    private int jobResultTTL = 24;
+
+    // number of runs of the warm-up text through the models at service startup
+    private int warmUpIterations = 3;
+
     private String corpusPath;
     //private String templatePath;
     private String tmpPath;
+    // compiled lexicon bundle written at startup, in the grobid tmp directory if not set
+    private String lexiconBundlePath;
     private String pub2teiPath;
     public String version;
 
@@ -47,6 +87,182 @@ public class SoftwareConfiguration {
         this.entityFishingPort = entityFishingPort;
     }
 
+    public int getEntityFishingMaxConnections() {
+        return entityFishingMaxConnections;
+    }
+
+    public void setEntityFishingMaxConnections(int entityFishingMaxConnections) {
+        this.entityFishingMaxConnections = entityFishingMaxConnections;
+    }
+
+    public int getEntityFishingConnectTimeout() {
+        return entityFishingConnectTimeout;
+    }
+
+    public void setEntityFishingConnectTimeout(int entityFishingConnectTimeout) {
+        this.entityFishingConnectTimeout = entityFishingConnectTimeout;
+    }
+
+    public int getEntityFishingReadTimeout() {
+        return entityFishingReadTimeout;
+    }
+
+    public void setEntityFishingReadTimeout(int entityFishingReadTimeout) {
+        this.entityFishingReadTimeout = entityFishingReadTimeout;
+    }
+
+    public int getEntityFishingMaxBatchLength() {
+        return entityFishingMaxBatchLength;
+    }
+
+    public void setEntityFishingMaxBatchLength(int entityFishingMaxBatchLength) {
+        this.entityFishingMaxBatchLength = entityFishingMaxBatchLength;
+    }
+
+    public int getEntityFishingCacheSize() {
+        return entityFishingCacheSize;
+    }
+
+    public void setEntityFishingCacheSize(int entityFishingCacheSize) {
+        this.entityFishingCacheSize = entityFishingCacheSize;
+    }
+
+    public int getEntityFishingCacheTTL() {
+        return entityFishingCacheTTL;
+    }
+
+    public void setEntityFishingCacheTTL(int entityFishingCacheTTL) {
+        this.entityFishingCacheTTL = entityFishingCacheTTL;
+    }
+
+    public String getEntityFishingCachePath() {
+        return entityFishingCachePath;
+    }
+
+    public void setEntityFishingCachePath(String entityFishingCachePath) {
+        this.entityFishingCachePath = entityFishingCachePath;
+    }
+
+    public int getEntityFishingCacheDiskSize() {
+        return entityFishingCacheDiskSize;
+    }
+
+    public void setEntityFishingCacheDiskSize(int entityFishingCacheDiskSize) {
+        this.entityFishingCacheDiskSize = entityFishingCacheDiskSize;
+    }
+
+    public int getSchedulerBatchSize() {
+        return schedulerBatchSize;
+    }
+
+    public void setSchedulerBatchSize(int schedulerBatchSize) {
+        this.schedulerBatchSize = schedulerBatchSize;
+    }
+
+    public int getSchedulerBatchDelay() {
+        return schedulerBatchDelay;
+    }
+
+    public void setSchedulerBatchDelay(int schedulerBatchDelay) {
+        this.schedulerBatchDelay = schedulerBatchDelay;
+    }
+
+    public int getSchedulerParallelBatches() {
+        return schedulerParallelBatches;
+    }
+
+    public void setSchedulerParallelBatches(int schedulerParallelBatches) {
+        this.schedulerParallelBatches = schedulerParallelBatches;
+    }
+
+    public int getSegmentParallelism() {
+        return segmentParallelism;
+    }
+
+    public void setSegmentParallelism(int segmentParallelism) {
+        this.segmentParallelism = segmentParallelism;
+    }
+
+    public int getSegmentChunkSize() {
+        return segmentChunkSize;
+    }
+
+    public void setSegmentChunkSize(int segmentChunkSize) {
+        this.segmentChunkSize = segmentChunkSize;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public String getResultCachePath() {
+        return resultCachePath;
+    }
+
+    public void setResultCachePath(String resultCachePath) {
+        this.resultCachePath = resultCachePath;
+    }
+
+    public int getResultCacheDiskSize() {
+        return resultCacheDiskSize;
+    }
+
+    public void setResultCacheDiskSize(int resultCacheDiskSize) {
+        this.resultCacheDiskSize = resultCacheDiskSize;
+    }
+
+    public int getResultCacheMaxEntrySize() {
+        return resultCacheMaxEntrySize;
+    }
+
+    public void setResultCacheMaxEntrySize(int resultCacheMaxEntrySize) {
+        this.resultCacheMaxEntrySize = resultCacheMaxEntrySize;
+    }
+
+    public int getJobWorkers() {
+        return jobWorkers;
+    }
+
+    public void setJobWorkers(int jobWorkers) {
+        this.jobWorkers = jobWorkers;
+    }
+
+    public int getJobQueueSize() {
+        return jobQueueSize;
+    }
+
+    public void setJobQueueSize(int jobQueueSize) {
+        this.jobQueueSize = jobQueueSize;
+    }
+
+    public String getJobPath() {
+        return jobPath;
+    }
+
+    public void setJobPath(String jobPath) {
+        this.jobPath = jobPath;
+    }
+
+    public int getJobResultTTL() {
+        return jobResultTTL;
+    }
+
+    public void setJobResultTTL(int jobResultTTL) {
+        this.jobResultTTL = jobResultTTL;
+    }
+
+    public int getWarmUpIterations() {
+        return warmUpIterations;
+    }
+
+    public void setWarmUpIterations(int warmUpIterations) {
+        this.warmUpIterations = warmUpIterations;
+    }
+
     public List<ModelParameters> getModels() {
         return models;
     }
@@ -93,6 +309,14 @@ public class SoftwareConfiguration {
         this.tmpPath = tmpPath;
     }
 
+    public String getLexiconBundlePath() {
+        return lexiconBundlePath;
+    }
+
+    public void setLexiconBundlePath(String lexiconBundlePath) {
+        this.lexiconBundlePath = lexiconBundlePath;
+    }
+
     public Boolean getUseBinaryContextClassifiers() {
         return this.useBinaryContextClassifiers;
     }
@@ -0,0 +1,21 @@
+package org.grobid.core.utilities;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * Access to the metric registry of the software mention extraction engines.
+ *
+ * The engines register their metrics in a shared registry which does not depend on the
+ * web service, so that they are available in batch mode too. When running as a service,
+ * this registry is attached to the Dropwizard registry and the metrics are exposed on the
+ * admin port.
+ */
+public class SoftwareMetrics {
+
+    public static final String REGISTRY_NAME = "software-mentions";
+
+    public static MetricRegistry getRegistry() {
+        return SharedMetricRegistries.getOrCreate(REGISTRY_NAME);
+    }
+}
@@ -0,0 +1,368 @@
+package org.grobid.core.utilities;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.grobid.core.lexicon.SoftwareLexicon;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Cache of the serialized results of the processed documents, so that a document submitted again
+ * (e.g. by a crawler retrying a request) is answered without running the parsers again.
+ *
+ * A result is identified by the MD5 of the submitted file, the kind of input (PDF, XML, TEI), the
+ * processing options and the output format. The keys are prefixed by a signature of the version,
+ * revision, model configuration, lexicon and entity-fishing server of the service, so that the
+ * results obtained with a different configuration are never returned. A cached result is returned
+ * as it was written, with the runtime of the processing that produced it.
+ *
+ * Results larger than the maximum size of an entry are not cached, and the copy of such a result
+ * being written is dropped as soon as it exceeds this size.
+ *
+ * The cache has two levels: a bounded in-memory cache and an optional on-disk store, with one file
+ * per result in a directory, the least recently used results being evicted when the total size
+ * of the files exceeds the maximum size. The files of another configuration are deleted when the
+ * store is opened.
+ */
+public class SoftwareResultCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftwareResultCache.class);
+
+    private static final String RESULT_FILE_EXTENSION = ".result";
+
+    private static volatile SoftwareResultCache instance;
+    private static volatile boolean initialized = false;
+
+    private final String signature;
+    private final long maxEntrySize;
+    private final Cache<String, byte[]> memoryCache;
+    private final DiskStore diskStore;
+
+    private final Meter hits;
+    private final Meter diskHits;
+    private final Meter misses;
+    private final Meter oversized;
+
+    /**
+     * Return the result cache as set in the configuration, or null if the cache is disabled
+     * (resultCacheSize set to 0 and no resultCachePath)
+     */
+    public static SoftwareResultCache getInstance(SoftwareConfiguration configuration) {
+        if (!initialized) {
+            getNewInstance(configuration);
+        }
+        return instance;
+    }
+
+    /**
+     * Create a new instance.
+     */
+    private static synchronized void getNewInstance(SoftwareConfiguration configuration) {
+        if (initialized)
+            return;
+        File directory = null;
+        if (configuration.getResultCachePath() != null && configuration.getResultCachePath().trim().length() > 0)
+            directory = new File(configuration.getResultCachePath().trim());
+        if (configuration.getResultCacheSize() > 0 || directory != null) {
+            instance = new SoftwareResultCache(configurationSignature(configuration),
+                megabytes(configuration.getResultCacheSize()), directory,
+                megabytes(configuration.getResultCacheDiskSize()),
+                megabytes(configuration.getResultCacheMaxEntrySize()));
+        }
+        initialized = true;
+    }
+
+    private static long megabytes(long size) {
+        return Math.max(0, size) * 1024 * 1024;
+    }
+
+    /**
+     * @param signature signature of the configuration used to produce the results
+     * @param maxSize maximum size in bytes of the in-memory results, 0 for no in-memory cache
+     * @param directory directory of the on-disk store, null for no on-disk store
+     * @param maxDiskSize maximum size in bytes of the on-disk results
+     * @param maxEntrySize maximum size in bytes of a cached result
+     */
+    public SoftwareResultCache(String signature, long maxSize, File directory, long maxDiskSize, long maxEntrySize) {
+        this.signature = signature;
+        this.maxEntrySize = maxEntrySize;
+        this.memoryCache = (maxSize <= 0) ? null : CacheBuilder.newBuilder()
+            .maximumWeight(maxSize)
+            .<String, byte[]>weigher((key, result) -> result.length)
+            .build();
+
+        DiskStore store = null;
+        if (directory != null) {
+            try {
+                store = new DiskStore(directory, maxDiskSize, signature);
+            } catch (IOException e) {
+                LOGGER.error("Cannot open the result cache directory " + directory.getPath() + ", using memory cache only", e);
+            }
+        }
+        this.diskStore = store;
+
+        MetricRegistry metrics = SoftwareMetrics.getRegistry();
+        hits = metrics.meter("result.cache.hits");
+        diskHits = metrics.meter("result.cache.disk-hits");
+        misses = metrics.meter("result.cache.misses");
+        oversized = metrics.meter("result.cache.oversized");
+        if (memoryCache != null)
+            metrics.gauge("result.cache.size", () -> (Gauge<Long>) memoryCache::size);
+        if (diskStore != null)
+            metrics.gauge("result.cache.disk-size", () -> (Gauge<Long>) diskStore::totalSize);
+    }
+
+    /**
+     * Signature of the version, revision, model configuration, lexicon and entity-fishing server
+     * of the service
+     */
+    public static String configurationSignature(SoftwareConfiguration configuration) {
+        String models;
+        try {
+            models = new ObjectMapper().writeValueAsString(configuration.getModels());
+        } catch (Exception e) {
+            models = String.valueOf(configuration.getModels());
+        }
+        String description = String.join("\n", Versioner.getVersion(), Versioner.getRevision(), models,
+            String.valueOf(configuration.getUseBinaryContextClassifiers()),
+            String.valueOf(SoftwareLexicon.getInstance().getChecksum()),
+            configuration.getEntityFishingHost(), configuration.getEntityFishingPort(),
+            String.valueOf(configuration.getEntityFishingMaxBatchLength()));
+        return Hashing.murmur3_128().hashString(description, UTF_8).toString().substring(0, 16);
+    }
+
+    /**
+     * Cache key of the result of a submitted file
+     *
+     * @param inputType kind of input, e.g. "pdf"
+     * @param md5 MD5 of the submitted file
+     */
+    public String key(String inputType, String md5, boolean disambiguate, boolean addParagraphContext, Format format) {
+        String request = String.join("\t", inputType, md5, String.valueOf(disambiguate),
+            String.valueOf(addParagraphContext), format.name());
+        return signature + "-" + Hashing.murmur3_128().hashString(request, UTF_8).toString();
+    }
+
+    public byte[] get(String key) {
+        if (memoryCache != null) {
+            byte[] result = memoryCache.getIfPresent(key);
+            if (result != null) {
+                hits.mark();
+                return result;
+            }
+        }
+
+        if (diskStore != null) {
+            byte[] result = diskStore.get(key);
+            if (result != null) {
+                if (memoryCache != null)
+                    memoryCache.put(key, result);
+                diskHits.mark();
+                return result;
+            }
+        }
+
+        misses.mark();
+        return null;
+    }
+
+    /**
+     * Cache a result, unless it is larger than the maximum size of an entry
+     */
+    public void put(String key, byte[] result) {
+        if (result.length > maxEntrySize) {
+            oversized.mark();
+            return;
+        }
+        if (memoryCache != null)
+            memoryCache.put(key, result);
+        if (diskStore != null)
+            diskStore.put(key, result);
+    }
+
+    /**
+     * Cache a result written in a file, unless it is larger than the maximum size of an entry
+     */
+    public void put(String key, File result) {
+        if (result.length() > maxEntrySize) {
+            oversized.mark();
+            return;
+        }
+        try {
+            put(key, Files.readAllBytes(result.toPath()));
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read the result file " + result.getPath() + " to cache it", e);
+        }
+    }
+
+    /**
+     * Start a copy of the result of the given key, as it is written
+     */
+    public ResultCopy copy(String key) {
+        return new ResultCopy(key);
+    }
+
+    /**
+     * Copy of a result being written, cached when committed. The copy is dropped as soon as the
+     * result exceeds the maximum size of an entry, so that a large result is not kept in memory.
+     */
+    public class ResultCopy extends OutputStream {
+        private final String key;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private ResultCopy(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (copy == null)
+                return;
+            if (copy.size() + (long) len > maxEntrySize) {
+                oversized.mark();
+                copy = null;
+                return;
+            }
+            copy.write(b, off, len);
+        }
+
+        /**
+         * Cache the copied result, if it was not dropped
+         */
+        public void commit() {
+            if (copy != null)
+                put(key, copy.toByteArray());
+            copy = null;
+        }
+    }
+
+    /**
+     * Directory of result files, named by their key. The size of each file is kept in memory,
+     * in least recently used order.
+     */
+    private static class DiskStore {
+        private final File directory;
+        private final long maxSize;
+
+        private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+        private long totalSize = 0;
+
+        DiskStore(File directory, long maxSize, String signature) throws IOException {
+            this.directory = directory;
+            this.maxSize = maxSize;
+
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("Cannot create the directory " + directory.getPath());
+            File[] files = directory.listFiles();
+            if (files == null)
+                throw new IOException("Cannot list the directory " + directory.getPath());
+
+            // oldest first, as the least recently used
+            List<File> resultFiles = new ArrayList<>(Arrays.asList(files));
+            resultFiles.sort(Comparator.comparingLong(File::lastModified));
+            int deleted = 0;
+            for (File file : resultFiles) {
+                String name = file.getName();
+                if (!file.isFile() || !name.endsWith(RESULT_FILE_EXTENSION))
+                    continue;
+                if (!name.startsWith(signature + "-")) {
+                    // result of a previous version or model configuration
+                    if (file.delete())
+                        deleted++;
+                    continue;
+                }
+                String key = name.substring(0, name.length() - RESULT_FILE_EXTENSION.length());
+                sizes.put(key, file.length());
+                totalSize += file.length();
+            }
+            evict();
+            LOGGER.info("Result cache: " + sizes.size() + " results loaded from " + directory.getPath() +
+                ", " + deleted + " results of another configuration deleted");
+        }
+
+        synchronized long totalSize() {
+            return totalSize;
+        }
+
+        byte[] get(String key) {
+            synchronized (this) {
+                if (sizes.get(key) == null)
+                    return null;
+            }
+            try {
+                return Files.readAllBytes(file(key).toPath());
+            } catch (NoSuchFileException e) {
+                // evicted in the meantime
+                return null;
+            } catch (IOException e) {
+                LOGGER.warn("Cannot read the result cache file of " + key, e);
+                return null;
+            }
+        }
+
+        void put(String key, byte[] result) {
+            File tmpFile = new File(directory, key + ".tmp" + Thread.currentThread().getId());
+            try {
+                Files.write(tmpFile.toPath(), result);
+                synchronized (this) {
+                    Files.move(tmpFile.toPath(), file(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                    Long previousSize = sizes.put(key, (long) result.length);
+                    totalSize += result.length - (previousSize == null ? 0 : previousSize);
+                    evict();
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Cannot write the result cache file of " + key, e);
+                tmpFile.delete();
+            }
+        }
+
+        /**
+         * Delete the least recently used results until the total size is below the maximum size
+         */
+        private void evict() {
+            Iterator<Map.Entry<String, Long>> iterator = sizes.entrySet().iterator();
+            while (totalSize > maxSize && iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                File file = file(entry.getKey());
+                if (file.exists() && !file.delete()) {
+                    LOGGER.warn("Cannot delete the result cache file " + file.getPath());
+                    continue;
+                }
+                totalSize -= entry.getValue();
+                iterator.remove();
+            }
+        }
+
+        private File file(String key) {
+            return new File(directory, key + RESULT_FILE_EXTENSION);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package org.grobid.core.utilities;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.grobid.core.data.ArticleBiblio;
+import org.grobid.core.data.BiblioComponent;
+import org.grobid.core.data.BiblioItem;
+import org.grobid.core.data.SoftwareComponent;
+import org.grobid.core.data.SoftwareContextAttributes;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.layout.BoundingBox;
+import org.grobid.core.lexicon.SoftwareLexicon;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader of the software mention results produced by SoftwareResultSerializer, in JSON or in
+ * the binary CBOR format. The format is detected from the first bytes of the input.
+ *
+ * Mentions are read back as SoftwareEntity objects with their components, bounding boxes and
+ * context attributes. The reference callouts of a mention are BiblioComponent objects with an
+ * empty BiblioItem, the full references are given as TEI by refKey with getReferences().
+ * Unknown fields are ignored, so that results produced by newer versions can still be read.
+ */
+public class SoftwareResultReader {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final CBORFactory cborFactory = new CBORFactory();
+
+    /**
+     * Dimensions of a page of the processed PDF, in the unit of the bounding boxes
+     */
+    public static class PageDimension {
+        private double height;
+        private double width;
+
+        public double getHeight() {
+            return height;
+        }
+
+        public double getWidth() {
+            return width;
+        }
+    }
+
+    /**
+     * A result for a document or a text
+     */
+    public static class Result {
+        private String application;
+        private String version;
+        private String revision;
+        private String date;
+        private String md5;
+        private ArticleBiblio biblio;
+        private List<PageDimension> pages = new ArrayList<>();
+        private List<SoftwareEntity> mentions = new ArrayList<>();
+        private Map<Integer, String> references = new LinkedHashMap<>();
+        private long runtime = -1;
+
+        public String getApplication() {
+            return application;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        public String getMd5() {
+            return md5;
+        }
+
+        public ArticleBiblio getBiblio() {
+            return biblio;
+        }
+
+        public List<PageDimension> getPages() {
+            return pages;
+        }
+
+        public List<SoftwareEntity> getMentions() {
+            return mentions;
+        }
+
+        /**
+         * TEI of the bibliographical references indexed by refKey
+         */
+        public Map<Integer, String> getReferences() {
+            return references;
+        }
+
+        public long getRuntime() {
+            return runtime;
+        }
+    }
+
+    /**
+     * Read a JSON or CBOR result, the stream is not closed
+     */
+    public static Result read(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(1);
+        int first = buffered.read();
+        buffered.reset();
+
+        SoftwareResultSerializer.Format format = isJsonStart(first) ?
+            SoftwareResultSerializer.Format.JSON : SoftwareResultSerializer.Format.CBOR;
+        return read(buffered, format);
+    }
+
+    /**
+     * Read a result in the given format, the stream is not closed
+     */
+    public static Result read(InputStream input, SoftwareResultSerializer.Format format) throws IOException {
+        JsonFactory factory = (format == SoftwareResultSerializer.Format.CBOR) ? cborFactory : jsonFactory;
+        try (JsonParser parser = factory.createParser(input)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new GrobidException("Invalid software mention result, an object is expected");
+            return readResult(parser);
+        }
+    }
+
+    private static boolean isJsonStart(int first) {
+        return first == '{' || first == ' ' || first == '\n' || first == '\r' || first == '\t';
+    }
+
+    private static Result readResult(JsonParser parser) throws IOException {
+        Result result = new Result();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "application":
+                    result.application = parser.getText();
+                    break;
+                case "version":
+                    result.version = parser.getText();
+                    break;
+                case "revision":
+                    result.revision = parser.getText();
+                    break;
+                case "date":
+                    result.date = parser.getText();
+                    break;
+                case "md5":
+                    result.md5 = parser.getText();
+                    break;
+                case "biblio":
+                    result.biblio = readBiblio(parser);
+                    break;
+                case "pages":
+                    while (parser.nextToken() == JsonToken.START_OBJECT)
+                        result.pages.add(readPage(parser));
+                    break;
+                case "mentions":
+                    while (parser.nextToken() == JsonToken.START_OBJECT)
+                        result.mentions.add(readEntity(parser));
+                    break;
+                case "references":
+                    while (parser.nextToken() == JsonToken.START_OBJECT)
+                        readReference(parser, result.references);
+                    break;
+                case "runtime":
+                    result.runtime = parser.getLongValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    private static ArticleBiblio readBiblio(JsonParser parser) throws IOException {
+        ArticleBiblio biblio = new ArticleBiblio();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "doi":
+                    biblio.setDoi(parser.getText());
+                    break;
+                case "title":
+                    biblio.setTitle(parser.getText());
+                    break;
+                case "authors":
+                    biblio.setAuthors(parser.getText());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return biblio;
+    }
+
+    private static PageDimension readPage(JsonParser parser) throws IOException {
+        PageDimension page = new PageDimension();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "page_height":
+                    page.height = parser.getDoubleValue();
+                    break;
+                case "page_width":
+                    page.width = parser.getDoubleValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return page;
+    }
+
+    private static void readReference(JsonParser parser, Map<Integer, String> references) throws IOException {
+        int refKey = -1;
+        String tei = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "refKey":
+                    refKey = parser.getIntValue();
+                    break;
+                case "tei":
+                    tei = parser.getText();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        references.put(refKey, tei);
+    }
+
+    private static SoftwareEntity readEntity(JsonParser parser) throws IOException {
+        SoftwareEntity entity = new SoftwareEntity();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "software-type":
+                    entity.setType(SoftwareLexicon.Software_Type.valueOf(parser.getText().toUpperCase()));
+                    break;
+                case "software-name":
+                    entity.setSoftwareName(readComponent(parser, new SoftwareComponent()));
+                    break;
+                case "id":
+                    entity.setEntityId(parser.getText());
+                    break;
+                case "version":
+                    entity.setVersion(readComponent(parser, new SoftwareComponent()));
+                    break;
+                case "publisher":
+                    entity.setCreator(readComponent(parser, new SoftwareComponent()));
+                    break;
+                case "url":
+                    entity.setSoftwareURL(readComponent(parser, new SoftwareComponent()));
+                    break;
+                case "language":
+                    entity.setLanguage(readComponent(parser, new SoftwareComponent()));
+                    break;
+                case "inDataAvailabilitySection":
+                    entity.setInDataAvailabilitySection(parser.getBooleanValue());
+                    break;
+                case "context":
+                    entity.setContext(parser.getText());
+                    break;
+                case "contextOffset":
+                    entity.setParagraphContextOffset(parser.getIntValue());
+                    break;
+                case "paragraph":
+                    entity.setParagraph(parser.getText());
+                    break;
+                case "mentionContextAttributes":
+                    entity.setMentionContextAttributes(readContextAttributes(parser));
+                    break;
+                case "documentContextAttributes":
+                    entity.mergeDocumentContextAttributes(readContextAttributes(parser));
+                    break;
+                case "references":
+                    List<BiblioComponent> bibRefs = new ArrayList<>();
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        BiblioComponent bibRef = new BiblioComponent(new BiblioItem(), -1);
+                        bibRefs.add((BiblioComponent) readComponent(parser, bibRef));
+                    }
+                    entity.setBibRefs(bibRefs);
+                    break;
+                default:
+                    // the knowledge information at entity level is a copy of the software name one
+                    parser.skipChildren();
+            }
+        }
+        return entity;
+    }
+
+    private static SoftwareComponent readComponent(JsonParser parser, SoftwareComponent component) throws IOException {
+        String normalizedForm = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "rawForm":
+                case "label":
+                    component.setRawForm(parser.getText());
+                    break;
+                case "normalizedForm":
+                    normalizedForm = parser.getText();
+                    break;
+                case "refKey":
+                    ((BiblioComponent) component).setRefKey(parser.getIntValue());
+                    break;
+                case "wikidataId":
+                    component.setWikidataId(parser.getText());
+                    break;
+                case "wikipediaExternalRef":
+                    component.setWikipediaExternalRef(parser.getIntValue());
+                    break;
+                case "lang":
+                    component.setLang(parser.getText());
+                    break;
+                case "confidence":
+                    component.setDisambiguationScore(parser.getDoubleValue());
+                    break;
+                case "offsetStart":
+                    component.setOffsetStart(parser.getIntValue());
+                    break;
+                case "offsetEnd":
+                    component.setOffsetEnd(parser.getIntValue());
+                    break;
+                case "boundingBoxes":
+                    List<BoundingBox> boxes = new ArrayList<>();
+                    while (parser.nextToken() == JsonToken.START_OBJECT)
+                        boxes.add(readBoundingBox(parser));
+                    component.setBoundingBoxes(boxes);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        // set after the raw form, which also sets a normalized form
+        if (normalizedForm != null)
+            component.setNormalizedForm(normalizedForm);
+        return component;
+    }
+
+    private static BoundingBox readBoundingBox(JsonParser parser) throws IOException {
+        int page = -1;
+        double x = 0.0, y = 0.0, width = 0.0, height = 0.0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "p":
+                    page = parser.getIntValue();
+                    break;
+                case "x":
+                    x = parser.getDoubleValue();
+                    break;
+                case "y":
+                    y = parser.getDoubleValue();
+                    break;
+                case "w":
+                    width = parser.getDoubleValue();
+                    break;
+                case "h":
+                    height = parser.getDoubleValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return BoundingBox.fromPointAndDimensions(page, x, y, width, height);
+    }
+
+    private static SoftwareContextAttributes readContextAttributes(JsonParser parser) throws IOException {
+        SoftwareContextAttributes attributes = new SoftwareContextAttributes();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            Boolean value = null;
+            Double score = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String subField = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (subField.equals("value") && token != JsonToken.VALUE_NULL)
+                    value = parser.getBooleanValue();
+                else if (subField.equals("score") && token != JsonToken.VALUE_NULL)
+                    score = parser.getDoubleValue();
+                else
+                    parser.skipChildren();
+            }
+            switch (field) {
+                case "used":
+                    attributes.setUsed(value);
+                    attributes.setUsedScore(score);
+                    break;
+                case "created":
+                    attributes.setCreated(value);
+                    attributes.setCreatedScore(score);
+                    break;
+                case "shared":
+                    attributes.setShared(value);
+                    attributes.setSharedScore(score);
+                    break;
+            }
+        }
+        return attributes;
+    }
+}
@@ -0,0 +1,388 @@
+package org.grobid.core.utilities;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import org.grobid.core.data.ArticleBiblio;
+import org.grobid.core.data.BibDataSet;
+import org.grobid.core.data.BiblioComponent;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.document.Document;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.layout.Page;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * JSON and CBOR serialization of the software mention extraction results for a complete
+ * document, shared by the web service and the batch processing.
+ *
+ * The results are written with a streaming Jackson generator, directly to the response
+ * output stream for the web service, so that large results are not built in memory.
+ */
+public class SoftwareResultSerializer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftwareResultSerializer.class);
+
+    /**
+     * Serialization of an object with a JSON generator
+     */
+    public interface JsonWritable {
+        void writeJson(JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * Output formats of the results. The binary CBOR format has exactly the same structure
+     * as the JSON format (same fields, same order, same nesting), see SoftwareResultReader
+     * for reading back both formats.
+     */
+    public enum Format {
+        JSON    ("application/json", ".software.json"),
+        CBOR    ("application/cbor", ".software.cbor");
+
+        private final String mediaType;
+        private final String extension;
+
+        private Format(String mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Format from its name as given in a command line option (json or cbor)
+         */
+        public static Format fromName(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name))
+                    return format;
+            }
+            throw new GrobidException("Unknown output format: " + name);
+        }
+    }
+
+    // the generators do not close the response or file streams they write to
+    private static final JsonFactory jsonFactory = JsonFactory.builder()
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+        .build();
+
+    // binary results start with the self-describe CBOR tag, so that they can be identified
+    private static final CBORFactory cborFactory = CBORFactory.builder()
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+        .enable(CBORGenerator.Feature.WRITE_TYPE_HEADER)
+        .build();
+
+    /**
+     * Give application information to be added in a JSON result
+     */
+    public static String applicationDetails(String version, String gitRevision) {
+        StringBuilder sb = new StringBuilder();
+
+        TimeZone tz = TimeZone.getTimeZone("UTC");
+        DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mmZ");
+        df.setTimeZone(tz);
+        String dateISOString = df.format(new java.util.Date());
+
+        sb.append("\"application\": \"software-mentions\", ");
+        if (version !=null) {
+            sb.append("\"version\": \"" + version + "\", ");
+        }
+        if (gitRevision != null) {
+            sb.append("\"revision\": \"" + gitRevision + "\", ");
+        }
+        sb.append("\"date\": \"" + dateISOString + "\"");
+
+        return sb.toString();
+    }
+
+    /**
+     * Write the application information fields in the current JSON object
+     */
+    public static void writeApplicationDetails(JsonGenerator gen, String version, String gitRevision) throws IOException {
+        TimeZone tz = TimeZone.getTimeZone("UTC");
+        DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mmZ");
+        df.setTimeZone(tz);
+
+        gen.writeStringField("application", "software-mentions");
+        if (version != null)
+            gen.writeStringField("version", version);
+        if (gitRevision != null)
+            gen.writeStringField("revision", gitRevision);
+        gen.writeStringField("date", df.format(new java.util.Date()));
+    }
+
+    /**
+     * Create a generator writing to the given stream in the given format (UTF-8 for JSON),
+     * the stream is not closed with the generator
+     */
+    public static JsonGenerator createGenerator(OutputStream output, Format format) throws IOException {
+        if (format == Format.CBOR)
+            return cborFactory.createGenerator(output);
+        return jsonFactory.createGenerator(output, JsonEncoding.UTF8);
+    }
+
+    /**
+     * Serialize an object providing a streaming JSON serialization as a string, for the
+     * non-streaming usages (batch processing, command line, tests)
+     */
+    public static String toJsonString(JsonWritable writable) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+            writable.writeJson(gen);
+        } catch (IOException e) {
+            throw new GrobidException("JSON serialization failed", e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Serialize the bibliographical references present in a list of entities as elements
+     * of the current JSON array
+     */
+    public static void writeReferences(JsonGenerator gen,
+                                       List<BibDataSet> bibDataSet,
+                                       List<SoftwareEntity> entities) throws IOException {
+        Set<Integer> serializedKeys = new HashSet<>();
+        for(SoftwareEntity entity : entities) {
+            List<BiblioComponent> bibRefs = entity.getBibRefs();
+            if (bibRefs != null) {
+                for(BiblioComponent bibComponent : bibRefs) {
+                    int refKey = bibComponent.getRefKey();
+                    if (serializedKeys.add(refKey) && bibComponent.getBiblio() != null) {
+                        gen.writeStartObject();
+                        gen.writeNumberField("refKey", refKey);
+                        gen.writeStringField("tei", bibComponent.getBiblio().toTEI(refKey));
+                        gen.writeEndObject();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Serialize the bibliographical references present in a list of entities
+     */
+    public static void serializeReferences(StringBuilder json,
+                                           List<BibDataSet> bibDataSet,
+                                           List<SoftwareEntity> entities) {
+        String references = toJsonString(gen -> {
+            gen.writeStartArray();
+            writeReferences(gen, bibDataSet, entities);
+            gen.writeEndArray();
+        });
+        // only the elements of the array are appended
+        json.append(references, 1, references.length() - 1);
+    }
+
+    /**
+     * Result for a processed PDF document, with page dimensions for the bounding boxes
+     *
+     * @param md5 hexadecimal MD5 of the input file, not added if null
+     * @param runtime processing time in milliseconds
+     */
+    public static void write(OutputStream output,
+                             Format format,
+                             List<SoftwareEntity> entities,
+                             Document doc,
+                             String md5,
+                             long runtime) throws IOException {
+        write(output, format, entities, doc, md5, null, runtime);
+    }
+
+    /**
+     * @param processing breakdown of the processing, see ProcessingStages, not added if null
+     */
+    public static void write(OutputStream output,
+                             Format format,
+                             List<SoftwareEntity> entities,
+                             Document doc,
+                             String md5,
+                             JsonWritable processing,
+                             long runtime) throws IOException {
+        try (JsonGenerator gen = createGenerator(output, format)) {
+            writeResult(gen, entities, doc, md5, processing, runtime);
+        }
+    }
+
+    public static String toJson(List<SoftwareEntity> entities, Document doc, String md5, long runtime) {
+        return toJsonString(gen -> writeResult(gen, entities, doc, md5, null, runtime));
+    }
+
+    private static void writeResult(JsonGenerator gen,
+                                    List<SoftwareEntity> entities,
+                                    Document doc,
+                                    String md5,
+                                    JsonWritable processing,
+                                    long runtime) throws IOException {
+        gen.writeStartObject();
+        writeApplicationDetails(gen, Versioner.getVersion(), Versioner.getRevision());
+
+        if (md5 != null)
+            gen.writeStringField("md5", md5);
+
+        // Add article metadata (biblio) from document header
+        Optional<ArticleBiblio> metadata = ArticleBiblio.fromBiblioItem(doc.getResHeader());
+        if (metadata.isPresent()) {
+            gen.writeFieldName("biblio");
+            metadata.get().writeJson(gen);
+        }
+
+        // page height and width
+        gen.writeArrayFieldStart("pages");
+        for (Page page : doc.getPages()) {
+            gen.writeStartObject();
+            gen.writeNumberField("page_height", page.getHeight());
+            gen.writeNumberField("page_width", page.getWidth());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+
+        writeMentionsAndReferences(gen, entities, doc.getBibDataSets());
+
+        writeProcessing(gen, processing);
+        gen.writeNumberField("runtime", runtime);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Result for a processed XML or TEI document
+     *
+     * @param md5 hexadecimal MD5 of the input file, not added if null
+     * @param runtime processing time in milliseconds
+     */
+    public static void write(OutputStream output,
+                             Format format,
+                             Optional<ArticleBiblio> metadata,
+                             List<SoftwareEntity> entities,
+                             List<BibDataSet> bibDataSet,
+                             String md5,
+                             long runtime) throws IOException {
+        write(output, format, metadata, entities, bibDataSet, md5, null, runtime);
+    }
+
+    /**
+     * @param processing breakdown of the processing, see ProcessingStages, not added if null
+     */
+    public static void write(OutputStream output,
+                             Format format,
+                             Optional<ArticleBiblio> metadata,
+                             List<SoftwareEntity> entities,
+                             List<BibDataSet> bibDataSet,
+                             String md5,
+                             JsonWritable processing,
+                             long runtime) throws IOException {
+        try (JsonGenerator gen = createGenerator(output, format)) {
+            writeResult(gen, metadata, entities, bibDataSet, md5, processing, runtime);
+        }
+    }
+
+    public static String toJson(Optional<ArticleBiblio> metadata,
+                                List<SoftwareEntity> entities,
+                                List<BibDataSet> bibDataSet,
+                                String md5,
+                                long runtime) {
+        return toJsonString(gen -> writeResult(gen, metadata, entities, bibDataSet, md5, null, runtime));
+    }
+
+    private static void writeResult(JsonGenerator gen,
+                                    Optional<ArticleBiblio> metadata,
+                                    List<SoftwareEntity> entities,
+                                    List<BibDataSet> bibDataSet,
+                                    String md5,
+                                    JsonWritable processing,
+                                    long runtime) throws IOException {
+        gen.writeStartObject();
+        writeApplicationDetails(gen, Versioner.getVersion(), Versioner.getRevision());
+
+        if (md5 != null)
+            gen.writeStringField("md5", md5);
+
+        if (metadata != null && metadata.isPresent()) {
+            gen.writeFieldName("biblio");
+            metadata.get().writeJson(gen);
+        }
+
+        writeMentionsAndReferences(gen, entities, bibDataSet);
+
+        writeProcessing(gen, processing);
+        gen.writeNumberField("runtime", runtime);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Result for a processed raw text, without references
+     *
+     * @param runtime processing time in milliseconds
+     */
+    public static void write(OutputStream output,
+                             Format format,
+                             List<SoftwareEntity> entities,
+                             long runtime) throws IOException {
+        write(output, format, entities, null, runtime);
+    }
+
+    /**
+     * @param processing breakdown of the processing, see ProcessingStages, not added if null
+     */
+    public static void write(OutputStream output,
+                             Format format,
+                             List<SoftwareEntity> entities,
+                             JsonWritable processing,
+                             long runtime) throws IOException {
+        try (JsonGenerator gen = createGenerator(output, format)) {
+            gen.writeStartObject();
+            writeApplicationDetails(gen, Versioner.getVersion(), Versioner.getRevision());
+            gen.writeArrayFieldStart("mentions");
+            for (SoftwareEntity entity : entities)
+                entity.writeJson(gen);
+            gen.writeEndArray();
+            writeProcessing(gen, processing);
+            gen.writeNumberField("runtime", runtime);
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeProcessing(JsonGenerator gen, JsonWritable processing) throws IOException {
+        if (processing != null) {
+            gen.writeFieldName("processing");
+            processing.writeJson(gen);
+        }
+    }
+
+    private static void writeMentionsAndReferences(JsonGenerator gen,
+                                                   List<SoftwareEntity> entities,
+                                                   List<BibDataSet> bibDataSet) throws IOException {
+        gen.writeArrayFieldStart("mentions");
+        if (entities != null) {
+            for (SoftwareEntity entity : entities)
+                entity.writeJson(gen);
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("references");
+        if (entities != null && bibDataSet != null && bibDataSet.size() > 0) {
+            writeReferences(gen, bibDataSet, entities);
+        }
+        gen.writeEndArray();
+    }
+}
@@ -0,0 +1,508 @@
+package org.grobid.core.utilities;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.grobid.core.data.ArticleBiblio;
+import org.grobid.core.data.BiblioItem;
+import org.grobid.core.data.Person;
+import org.grobid.core.sax.BiblStructSaxHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Streaming reader of TEI documents based on StAX, which never builds the DOM of the document.
+ *
+ * The paragraphs (all the <p> elements) are passed to the handler as soon as they are read, with
+ * their text without reference markers and the positions of the markers, as given by
+ * XMLUtilities.getTextNoRefMarkersAndMarkerPositions(), and their complete text content. The
+ * bibliographical references (all the <biblStruct> elements) are passed as parsed by the
+ * BiblStructSaxHandler, as with XMLUtilities.parseTEIBiblioItem(). Paragraphs and references are
+ * passed in document order, nested elements after the element containing them. The article
+ * metadata of the TEI header are available once the document has been read, as given by
+ * ArticleBiblio.fromTeiDocument().
+ *
+ * Only the elements being read are kept in memory. A reader instance is not thread-safe and
+ * reads a single document.
+ */
+public class TEIStreamReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TEIStreamReader.class);
+
+    private static final String TEI_NAMESPACE = "http://www.tei-c.org/ns/1.0";
+
+    private static final String REPORT_CDATA_EVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private static final String[] TITLE_PATH = {"teiHeader", "fileDesc", "titleStmt", "title"};
+    private static final String[] DOI_PATH = {"teiHeader", "fileDesc", "sourceDesc", "biblStruct", "idno"};
+    private static final String[] AUTHOR_PATH =
+        {"teiHeader", "fileDesc", "sourceDesc", "biblStruct", "analytic", "author", "persName"};
+
+    /**
+     * Receives the content of the TEI document while it is read
+     */
+    public interface TEIContentHandler {
+        void paragraph(Paragraph paragraph);
+
+        /**
+         * A bibliographical reference, with the value of its xml:id attribute (empty if absent)
+         */
+        void bibliographicalReference(String xmlId, BiblioItem biblio);
+    }
+
+    /**
+     * Text content of a TEI paragraph
+     */
+    public static class Paragraph {
+        private final String text;
+        private final Map<String, Pair<OffsetPosition, String>> refMarkers;
+        private final String fullText;
+
+        private Paragraph(String text, Map<String, Pair<OffsetPosition, String>> refMarkers, String fullText) {
+            this.text = text;
+            this.refMarkers = refMarkers;
+            this.fullText = fullText;
+        }
+
+        /**
+         * Text of the paragraph where the reference markers (except URL) are replaced by spaces,
+         * null if the paragraph has no text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Map of the bibliographical reference markers with their position and the reference key,
+         * positions being shifted by the offset of the paragraph text in the document
+         */
+        public Map<String, Pair<OffsetPosition, String>> getRefMarkers(int offset) {
+            Map<String, Pair<OffsetPosition, String>> result = new TreeMap<>();
+            for (Map.Entry<String, Pair<OffsetPosition, String>> refMarker : refMarkers.entrySet()) {
+                OffsetPosition position = refMarker.getValue().getLeft();
+                result.put(refMarker.getKey(), Pair.of(new OffsetPosition(position.start + offset,
+                    position.end + offset), refMarker.getValue().getRight()));
+            }
+            return result;
+        }
+
+        /**
+         * Complete text content of the paragraph, as Element.getTextContent()
+         */
+        public String getFullText() {
+            return fullText;
+        }
+    }
+
+    private final TEIContentHandler handler;
+
+    // names of the open elements, local name for the TEI elements, null otherwise
+    private final List<String> teiNames = new ArrayList<>();
+
+    // text node being read, as the text of an element can be reported in several events
+    private final StringBuilder textNode = new StringBuilder();
+    private boolean textNodeCData = false;
+
+    // open elements, and elements read but not yet passed to the handler because they are nested
+    private final List<ParagraphBuilder> openParagraphs = new ArrayList<>();
+    private final List<ParagraphBuilder> pendingParagraphs = new ArrayList<>();
+    private final List<BiblStructBuilder> openBiblStructs = new ArrayList<>();
+    private final List<BiblStructBuilder> pendingBiblStructs = new ArrayList<>();
+
+    // header metadata
+    private String titleLevelAMain = null;
+    private String titleMain = null;
+    private int titleDepth = -1;
+    private boolean titleIsLevelAMain = false;
+    private String doi = null;
+    private int doiDepth = -1;
+    private final List<Person> authors = new ArrayList<>();
+    private PersonBuilder currentAuthor = null;
+
+    public TEIStreamReader(TEIContentHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Read a TEI document, the source being a StreamSource or a StAXSource
+     */
+    public void read(Source source) throws XMLStreamException {
+        XMLStreamReader reader = createXMLInputFactory().createXMLStreamReader(source);
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        flushTextNode();
+                        startElement(reader);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        flushTextNode();
+                        endElement(reader);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        appendText(reader, false);
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        appendText(reader, true);
+                        break;
+                    default:
+                        // comments and processing instructions separate text nodes
+                        flushTextNode();
+                }
+            }
+            flushTextNode();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The article metadata of the TEI header, available once the document has been read
+     */
+    public Optional<ArticleBiblio> getArticleBiblio() {
+        String title = (titleLevelAMain != null) ? titleLevelAMain : (titleMain != null ? titleMain : "");
+        String validDoi = (doi != null && (doi.startsWith("10.") || doi.contains("doi.org"))) ? doi : "";
+        return ArticleBiblio.fromTeiHeader(title, validDoi, authors);
+    }
+
+    /**
+     * Input factory never loading external DTD or entities, any external entity is resolved as empty
+     */
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        // CDATA sections are reported as characters by default with the JDK parser
+        if (factory.isPropertySupported(REPORT_CDATA_EVENT))
+            factory.setProperty(REPORT_CDATA_EVENT, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setXMLResolver((publicId, systemId, baseURI, namespace) -> new ByteArrayInputStream(new byte[0]));
+        return factory;
+    }
+
+    private void appendText(XMLStreamReader reader, boolean cdata) {
+        if (textNode.length() > 0 && textNodeCData != cdata)
+            flushTextNode();
+        textNodeCData = cdata;
+        textNode.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+    }
+
+    private void startElement(XMLStreamReader reader) {
+        String qName = qualifiedName(reader.getPrefix(), reader.getLocalName());
+        teiNames.add(TEI_NAMESPACE.equals(reader.getNamespaceURI()) ? reader.getLocalName() : null);
+        int depth = teiNames.size();
+
+        for (ParagraphBuilder paragraph : openParagraphs) {
+            if (paragraph.depth == depth - 1)
+                paragraph.startChild(qName, reader);
+        }
+        if ("p".equals(qName)) {
+            ParagraphBuilder paragraph = new ParagraphBuilder(depth);
+            openParagraphs.add(paragraph);
+            pendingParagraphs.add(paragraph);
+        }
+
+        if ("biblStruct".equals(qName)) {
+            BiblStructBuilder biblStruct = new BiblStructBuilder(depth, attribute(reader, "xml:id"));
+            openBiblStructs.add(biblStruct);
+            pendingBiblStructs.add(biblStruct);
+        }
+        if (!openBiblStructs.isEmpty()) {
+            AttributesImpl attributes = new AttributesImpl();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                attributes.addAttribute("", "", qualifiedName(reader.getAttributePrefix(i),
+                    reader.getAttributeLocalName(i)), "CDATA", reader.getAttributeValue(i));
+            }
+            for (BiblStructBuilder biblStruct : openBiblStructs)
+                biblStruct.startElement(qName, attributes);
+        }
+
+        if (isTeiPath(TITLE_PATH) && "main".equals(attribute(reader, "type"))) {
+            titleDepth = depth;
+            titleIsLevelAMain = "a".equals(attribute(reader, "level"));
+        } else if (isTeiPath(DOI_PATH) && "DOI".equals(attribute(reader, "type"))) {
+            doiDepth = depth;
+        } else if (isTeiPath(AUTHOR_PATH)) {
+            currentAuthor = new PersonBuilder(depth, !"persName".equals(qName));
+        } else if (currentAuthor != null && currentAuthor.depth == depth - 1) {
+            currentAuthor.startChild(qName);
+        }
+    }
+
+    private void endElement(XMLStreamReader reader) {
+        String qName = qualifiedName(reader.getPrefix(), reader.getLocalName());
+        int depth = teiNames.size();
+
+        for (BiblStructBuilder biblStruct : openBiblStructs)
+            biblStruct.endElement(qName);
+        if (!openBiblStructs.isEmpty() && openBiblStructs.get(openBiblStructs.size() - 1).depth == depth)
+            openBiblStructs.remove(openBiblStructs.size() - 1).complete = true;
+        while (!pendingBiblStructs.isEmpty() && pendingBiblStructs.get(0).complete) {
+            BiblStructBuilder biblStruct = pendingBiblStructs.remove(0);
+            handler.bibliographicalReference(biblStruct.xmlId, biblStruct.getBiblioItem());
+        }
+
+        if (!openParagraphs.isEmpty() && openParagraphs.get(openParagraphs.size() - 1).depth == depth)
+            openParagraphs.remove(openParagraphs.size() - 1).complete = true;
+        while (!pendingParagraphs.isEmpty() && pendingParagraphs.get(0).complete)
+            handler.paragraph(pendingParagraphs.remove(0).build());
+
+        if (titleDepth == depth) {
+            titleDepth = -1;
+        } else if (doiDepth == depth) {
+            doiDepth = -1;
+        } else if (currentAuthor != null && currentAuthor.depth == depth) {
+            Person person = currentAuthor.build();
+            if (person != null)
+                authors.add(person);
+            currentAuthor = null;
+        } else if (currentAuthor != null && currentAuthor.depth == depth - 1) {
+            currentAuthor.endChild();
+        }
+
+        teiNames.remove(teiNames.size() - 1);
+    }
+
+    private void flushTextNode() {
+        if (textNode.length() == 0)
+            return;
+        String text = textNode.toString();
+        textNode.setLength(0);
+        int depth = teiNames.size();
+
+        for (ParagraphBuilder paragraph : openParagraphs)
+            paragraph.text(text, textNodeCData, depth);
+
+        // as XMLUtilities.parseTEIBiblioItem(), the blank text nodes are ignored
+        boolean blank = StringUtils.isBlank(text);
+        if (!blank) {
+            for (BiblStructBuilder biblStruct : openBiblStructs)
+                biblStruct.characters(text);
+        }
+
+        // the first text node of the title and DOI elements is used
+        if (!blank && titleDepth == depth) {
+            if (titleIsLevelAMain && titleLevelAMain == null)
+                titleLevelAMain = text.trim();
+            if (titleMain == null)
+                titleMain = text.trim();
+        }
+        if (!blank && doiDepth == depth && doi == null)
+            doi = text.trim();
+        if (currentAuthor != null)
+            currentAuthor.text(text);
+    }
+
+    /**
+     * Check if the open elements end with the given TEI elements
+     */
+    private boolean isTeiPath(String[] path) {
+        int offset = teiNames.size() - path.length;
+        if (offset < 0)
+            return false;
+        for (int i = 0; i < path.length; i++) {
+            if (!path[i].equals(teiNames.get(offset + i)))
+                return false;
+        }
+        return true;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Value of an attribute of the current element by qualified name, empty if absent as with
+     * Element.getAttribute()
+     */
+    private static String attribute(XMLStreamReader reader, String qName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (qName.equals(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i))))
+                return reader.getAttributeValue(i);
+        }
+        return "";
+    }
+
+    /**
+     * Text of a <p> element, following XMLUtilities.getTextNoRefMarkersAndMarkerPositions(): only
+     * the text of the paragraph and of its child elements is considered
+     */
+    private static class ParagraphBuilder {
+        private final int depth;
+        private boolean complete = false;
+
+        private final StringBuilder text = new StringBuilder();
+        private boolean found = false;
+        private int indexPos = 0;
+        private final Map<String, Pair<OffsetPosition, String>> refMarkers = new TreeMap<>();
+        private String bibId = null;
+
+        // current child element
+        private boolean childIsRef = false;
+        private String childType = "";
+
+        private final StringBuilder fullText = new StringBuilder();
+
+        ParagraphBuilder(int depth) {
+            this.depth = depth;
+        }
+
+        void startChild(String qName, XMLStreamReader reader) {
+            childIsRef = "ref".equals(qName);
+            childType = childIsRef ? attribute(reader, "type") : "";
+            if (childIsRef && "bibr".equals(childType)) {
+                bibId = attribute(reader, "target");
+                if (bibId.startsWith("#"))
+                    bibId = bibId.substring(1);
+            }
+        }
+
+        void text(String chunk, boolean cdata, int parentDepth) {
+            fullText.append(chunk);
+            // CDATA sections are not text nodes for the marker extraction
+            if (cdata || (parentDepth != depth && parentDepth != depth + 1))
+                return;
+            if (parentDepth == depth + 1 && childIsRef) {
+                if ("bibr".equals(childType)) {
+                    refMarkers.put(chunk, Pair.of(new OffsetPosition(indexPos, indexPos + chunk.length()), bibId));
+                    text.append(StringUtils.repeat(" ", chunk.length()));
+                } else if ("uri".equals(childType) || "url".equals(childType)) {
+                    // added like normal text
+                    text.append(chunk);
+                    found = true;
+                } else {
+                    // other ref are filtered out
+                    text.append(StringUtils.repeat(" ", chunk.length()));
+                }
+            } else {
+                text.append(chunk);
+                found = true;
+            }
+            indexPos += chunk.length();
+        }
+
+        Paragraph build() {
+            return new Paragraph(found ? text.toString() : null, refMarkers, fullText.toString());
+        }
+    }
+
+    /**
+     * A <biblStruct> element parsed with the SAX handler used for the TEI bibliographical references
+     */
+    private static class BiblStructBuilder {
+        private final int depth;
+        private final String xmlId;
+        private boolean complete = false;
+
+        private final BiblStructSaxHandler saxHandler = new BiblStructSaxHandler();
+        private boolean failed = false;
+
+        BiblStructBuilder(int depth, String xmlId) {
+            this.depth = depth;
+            this.xmlId = xmlId;
+        }
+
+        void startElement(String qName, AttributesImpl attributes) {
+            try {
+                if (!failed)
+                    saxHandler.startElement("", "", qName, attributes);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        void endElement(String qName) {
+            try {
+                if (!failed)
+                    saxHandler.endElement("", "", qName);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        void characters(String text) {
+            if (!failed)
+                saxHandler.characters(text.toCharArray(), 0, text.length());
+        }
+
+        private void fail(Exception e) {
+            LOGGER.warn("The parsing of the biblStruct from TEI document failed for: " + xmlId, e);
+            failed = true;
+        }
+
+        BiblioItem getBiblioItem() {
+            return saxHandler.getBiblioItem();
+        }
+    }
+
+    /**
+     * Author name of the TEI header, following ArticleBiblio.fromTeiDocument()
+     */
+    private static class PersonBuilder {
+        private final int depth;
+        // a persName element with a prefixed name gives its full text as last name
+        private final boolean fullName;
+        private final StringBuilder fullText = new StringBuilder();
+
+        private String childName = null;
+        private final StringBuilder childText = new StringBuilder();
+
+        private String lastName = null;
+        private String firstName = null;
+        private String middleName = null;
+
+        PersonBuilder(int depth, boolean fullName) {
+            this.depth = depth;
+            this.fullName = fullName;
+        }
+
+        void startChild(String qName) {
+            childName = qName;
+            childText.setLength(0);
+        }
+
+        void text(String text) {
+            fullText.append(text);
+            if (childName != null)
+                childText.append(text);
+        }
+
+        void endChild() {
+            if ("surname".equals(childName))
+                lastName = childText.toString().trim();
+            else if ("forename".equals(childName))
+                firstName = childText.toString().trim();
+            else if ("middlename".equals(childName))
+                middleName = childText.toString().trim();
+            childName = null;
+        }
+
+        Person build() {
+            Person person = new Person();
+            if (fullName) {
+                String name = fullText.toString().trim();
+                if (!name.isEmpty())
+                    person.setLastName(name);
+            } else {
+                person.setLastName(lastName);
+                person.setFirstName(firstName);
+                person.setMiddleName(middleName);
+            }
+            return (StringUtils.isNotBlank(person.getLastName()) ||
+                StringUtils.isNotBlank(person.getFirstName()) ||
+                StringUtils.isNotBlank(person.getMiddleName())) ? person : null;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.grobid.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit of a class of requests, adapted to the measured latency with an AIMD
+ * algorithm (additive increase, multiplicative decrease).
+ *
+ * As the processing time of a request mostly depends on the size of the submitted content,
+ * the latency of a request is measured per KB of content. Two moving averages of this latency
+ * are kept: a short-term one following the current load, and a long-term one giving the
+ * reference latency. When the short-term latency exceeds the long-term one by the tolerance
+ * factor, or when a request fails with a server error, the server is considered saturated and the
+ * limit is decreased by 10%, at most once per limit of completed requests. Otherwise the limit
+ * grows by one for a limit of completed requests, as long as it is actually reached.
+ *
+ * A request above the limit waits for a free slot, in arrival order, at most the queue timeout.
+ * It is rejected immediately when its estimated wait, from the number of waiting requests and
+ * the average processing time, exceeds the queue timeout.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_TERM_WEIGHT = 0.1;
+    private static final double LONG_TERM_WEIGHT = 0.01;
+    private static final double DECREASE_FACTOR = 0.9;
+    // latency of very small requests are normalized as requests of 1 KB
+    private static final long MIN_SIZE = 1024;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long queueTimeout;
+    private final double latencyTolerance;
+    // time source in ns of the latencies
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotFreed = lock.newCondition();
+
+    // read without lock by the metrics
+    private volatile double limit;
+    private volatile int inFlight = 0;
+    private volatile int waiting = 0;
+    private double shortTermLatency = -1;
+    private double longTermLatency = -1;
+    private double averageTime = -1;
+    private int completedSinceDecrease = 0;
+
+    private final Meter accepted;
+    private final Meter rejected;
+    private final Meter decreases;
+    private final Histogram queueTimes;
+    private final Histogram latencies;
+
+    /**
+     * Admission of a request: when accepted, it must be released once the request is processed
+     */
+    public class Permit {
+        private final long admitted = clock.getAsLong();
+        private final int inFlightAtAdmission;
+
+        private Permit(int inFlightAtAdmission) {
+            this.inFlightAtAdmission = inFlightAtAdmission;
+        }
+
+        /**
+         * Release the slot of the request, with its content size in bytes and whether the
+         * processing failed because of the server
+         */
+        public void release(long size, boolean failed) {
+            completed(this, clock.getAsLong() - admitted, size, failed);
+        }
+    }
+
+    /**
+     * @param name name of the class of requests in the metrics
+     * @param maxLimit maximum concurrency limit
+     * @param queueTimeout maximum wait in ms of a request for a free slot
+     * @param latencyTolerance ratio of the short-term to long-term latency per KB beyond which the
+     *                         limit is decreased
+     */
+    public AdaptiveConcurrencyLimiter(String name, int maxLimit, long queueTimeout, double latencyTolerance,
+                                      MetricRegistry metrics) {
+        this(name, maxLimit, queueTimeout, latencyTolerance, metrics, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(String name, int maxLimit, long queueTimeout, double latencyTolerance,
+                               MetricRegistry metrics, LongSupplier clock) {
+        this.minLimit = 1;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.queueTimeout = queueTimeout;
+        this.latencyTolerance = latencyTolerance;
+        this.clock = clock;
+        this.limit = Math.max(minLimit, this.maxLimit / 2.0);
+
+        String prefix = MetricRegistry.name("admission", name);
+        accepted = metrics.meter(MetricRegistry.name(prefix, "accepted"));
+        rejected = metrics.meter(MetricRegistry.name(prefix, "rejected"));
+        decreases = metrics.meter(MetricRegistry.name(prefix, "limit-decreases"));
+        queueTimes = metrics.histogram(MetricRegistry.name(prefix, "queue-time"));
+        latencies = metrics.histogram(MetricRegistry.name(prefix, "latency"));
+        metrics.gauge(MetricRegistry.name(prefix, "limit"), () -> (Gauge<Integer>) this::getLimit);
+        metrics.gauge(MetricRegistry.name(prefix, "in-flight"), () -> (Gauge<Integer>) this::getInFlight);
+        metrics.gauge(MetricRegistry.name(prefix, "waiting"), () -> (Gauge<Integer>) this::getWaiting);
+    }
+
+    /**
+     * Admit a request, waiting at most the queue timeout for a free slot. Returns null if the
+     * request is rejected.
+     */
+    public Permit acquire() throws InterruptedException {
+        long start = clock.getAsLong();
+        lock.lock();
+        try {
+            if (inFlight >= getLimit()) {
+                if (estimatedWait() > queueTimeout) {
+                    rejected.mark();
+                    return null;
+                }
+                long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+                waiting++;
+                try {
+                    while (inFlight >= getLimit()) {
+                        if (remaining <= 0) {
+                            rejected.mark();
+                            return null;
+                        }
+                        remaining = slotFreed.awaitNanos(remaining);
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+            inFlight++;
+            accepted.mark();
+            queueTimes.update(TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - start));
+            return new Permit(inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void completed(Permit permit, long time, long size, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            long timeMs = TimeUnit.NANOSECONDS.toMillis(time);
+            latencies.update(timeMs);
+            averageTime = (averageTime < 0) ? timeMs : averageTime + SHORT_TERM_WEIGHT * (timeMs - averageTime);
+
+            double latency = (double) time / Math.max(size, MIN_SIZE) * 1024;
+            if (shortTermLatency < 0) {
+                shortTermLatency = latency;
+                longTermLatency = latency;
+            } else {
+                shortTermLatency += SHORT_TERM_WEIGHT * (latency - shortTermLatency);
+                longTermLatency += LONG_TERM_WEIGHT * (latency - longTermLatency);
+            }
+
+            completedSinceDecrease++;
+            if (failed || shortTermLatency > latencyTolerance * longTermLatency) {
+                if (completedSinceDecrease >= limit) {
+                    limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                    completedSinceDecrease = 0;
+                    decreases.mark();
+                }
+            } else if (permit.inFlightAtAdmission >= getLimit()) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimated wait in ms of a new request for a free slot
+     */
+    private double estimatedWait() {
+        if (averageTime < 0)
+            return 0;
+        return (waiting + 1) * averageTime / getLimit();
+    }
+
+    /**
+     * Estimated wait in seconds for a free slot, as suggested retry delay to the rejected clients
+     */
+    public long getRetryAfter() {
+        lock.lock();
+        try {
+            return Math.max(1, (long) Math.ceil(estimatedWait() / 1000));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+}
@@ -0,0 +1,132 @@
+package org.grobid.service;
+
+import com.codahale.metrics.MetricRegistry;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.grobid.service.controller.SoftwarePaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control of the processing services, with an adaptive concurrency limit for each
+ * class of service (text, PDF, XML/TEI), see AdaptiveConcurrencyLimiter. A request beyond the
+ * limit of its class waits for a free slot or is rejected with a 503 and a Retry-After header.
+ * The other services (status, version, jobs, etc.) are not limited.
+ */
+public class AdmissionControlFilter implements Filter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    public enum RequestClass {
+        TEXT, PDF, TEI
+    }
+
+    private final Map<RequestClass, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(RequestClass.class);
+
+    /**
+     * @param maxLimit maximum number of concurrent requests of each class
+     * @param queueTimeout maximum wait in ms of a request for a free slot
+     * @param latencyTolerance ratio of the current to reference latency beyond which the limits decrease
+     */
+    public AdmissionControlFilter(int maxLimit, long queueTimeout, double latencyTolerance, MetricRegistry metrics) {
+        this(maxLimit, queueTimeout, latencyTolerance, metrics, System::nanoTime);
+    }
+
+    AdmissionControlFilter(int maxLimit, long queueTimeout, double latencyTolerance, MetricRegistry metrics,
+                           LongSupplier clock) {
+        for (RequestClass requestClass : RequestClass.values()) {
+            limiters.put(requestClass, new AdaptiveConcurrencyLimiter(requestClass.name().toLowerCase(),
+                maxLimit, queueTimeout, latencyTolerance, metrics, clock));
+        }
+    }
+
+    AdaptiveConcurrencyLimiter getLimiter(RequestClass requestClass) {
+        return limiters.get(requestClass);
+    }
+
+    /**
+     * Class of a request from its service path, null for the services without admission control
+     */
+    public static RequestClass classify(String path) {
+        if (path == null)
+            return null;
+        String service = path.substring(path.lastIndexOf('/') + 1);
+        switch (service) {
+            case SoftwarePaths.PATH_SOFTWARE_TEXT:
+            case SoftwarePaths.PATH_SOFTWARE_CONTEXT:
+                return RequestClass.TEXT;
+            case SoftwarePaths.PATH_ANNOTATE_SOFTWARE_PDF:
+                return RequestClass.PDF;
+            case SoftwarePaths.PATH_EXTRACT_SOFTWARE_XML:
+            case SoftwarePaths.PATH_EXTRACT_SOFTWARE_TEI:
+                return RequestClass.TEI;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        RequestClass requestClass = classify(httpRequest.getRequestURI());
+        if (requestClass == null || "OPTIONS".equals(httpRequest.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AdaptiveConcurrencyLimiter limiter = limiters.get(requestClass);
+        AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        if (permit == null) {
+            LOGGER.debug("Request rejected for the " + requestClass + " services, limit " + limiter.getLimit());
+            httpResponse.setHeader("Retry-After", String.valueOf(limiter.getRetryAfter()));
+            httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = httpResponse.getStatus() >= 500;
+        } finally {
+            permit.release(contentSize(httpRequest), failed);
+        }
+    }
+
+    /**
+     * Size of the processed content: the request body, or the query string for a GET request
+     */
+    private static long contentSize(HttpServletRequest request) {
+        long size = request.getContentLengthLong();
+        if (size < 0 && request.getQueryString() != null)
+            size = request.getQueryString().length();
+        return size;
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -9,6 +9,7 @@ import org.grobid.core.utilities.GrobidProperties;
 import org.grobid.core.engines.tagging.GrobidCRFEngine;
 import org.grobid.core.lexicon.SoftwareLexicon;
 import org.grobid.service.configuration.SoftwareServiceConfiguration;
+import org.grobid.service.controller.SoftwareJobManager;
 import org.grobid.core.utilities.SoftwareConfiguration;
 import org.grobid.core.utilities.GrobidConfig.ModelParameters;
 
@@ -30,7 +31,6 @@ public class GrobidEngineInitialiser {
         LOGGER.info("Initialising Grobid");
         GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(ImmutableList.of(configuration.getGrobidHome()));
         GrobidProperties.getInstance(grobidHomeFinder);
-        SoftwareLexicon.getInstance();
 
         SoftwareConfiguration softwareConfiguration = null;
         try {
@@ -43,11 +43,19 @@ public class GrobidEngineInitialiser {
         }
 
         configuration.setSoftwareConfiguration(softwareConfiguration);
+        SoftwareLexicon.getInstance(softwareConfiguration);
 
         if (softwareConfiguration != null && softwareConfiguration.getModels() != null) {
             for (ModelParameters model : softwareConfiguration.getModels()) 
                 GrobidProperties.getInstance().addModel(model);
         }
         LibraryLoader.load();
+
+        // the unfinished asynchronous jobs of a previous run are queued again
+        if (softwareConfiguration != null)
+            SoftwareJobManager.getInstance(softwareConfiguration);
+
+        // the models are loaded and warmed up in the background, the service being ready once done
+        SoftwareWarmUp.getInstance().start(softwareConfiguration);
     }
 }
@@ -6,10 +6,12 @@ import io.dropwizard.core.Application;
 import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.forms.MultiPartBundle;
+import io.dropwizard.lifecycle.Managed;
 import jakarta.servlet.DispatcherType;
 import jakarta.servlet.FilterRegistration;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
-import org.eclipse.jetty.servlets.QoSFilter;
+import org.grobid.core.engines.SoftwareDisambiguator;
+import org.grobid.core.utilities.SoftwareMetrics;
 import org.grobid.service.configuration.SoftwareServiceConfiguration;
 import org.grobid.service.controller.HealthCheck;
 import ru.vyarus.dropwizard.guice.GuiceBundle;
@@ -43,8 +45,23 @@ public class SoftwareApplication extends Application<SoftwareServiceConfiguratio
     public void run(SoftwareServiceConfiguration configuration, Environment environment) {
         environment.healthChecks().register("health-check", new HealthCheck(configuration));
 
+        // metrics of the extraction engines, exposed on the admin port
+        environment.metrics().register(SoftwareMetrics.REGISTRY_NAME, SoftwareMetrics.getRegistry());
+
         environment.jersey().setUrlPattern(RESOURCES + "/*");
 
+        // the on-disk disambiguation cache is closed once the server has stopped processing requests
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+                SoftwareDisambiguator.shutdown();
+            }
+        });
+
         String allowedOrigins = configuration.getCorsAllowedOrigins();
         String allowedMethods = configuration.getCorsAllowedMethods();
         String allowedHeaders = configuration.getCorsAllowedHeaders();
@@ -61,10 +78,12 @@ public class SoftwareApplication extends Application<SoftwareServiceConfiguratio
         // Add URL mapping
         cors.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), true, "/*");
 
-        // Enable QoS filter
-        final FilterRegistration.Dynamic qos = environment.servlets().addFilter("QOS", QoSFilter.class);
-        qos.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), true, "/*");
-        qos.setInitParameter("maxRequests", String.valueOf(configuration.getMaxParallelRequests()));
+        // Enable adaptive admission control of the processing services
+        final AdmissionControlFilter admissionControl = new AdmissionControlFilter(configuration.getMaxParallelRequests(),
+            configuration.getAdmissionQueueTimeout(), configuration.getAdmissionLatencyTolerance(),
+            SoftwareMetrics.getRegistry());
+        final FilterRegistration.Dynamic admission = environment.servlets().addFilter("admission-control", admissionControl);
+        admission.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, RESOURCES + "/*");
     }
 
     public static void main(String[] args) throws Exception {
@@ -0,0 +1,186 @@
+package org.grobid.service;
+
+import org.grobid.core.engines.SoftwareContextClassifier;
+import org.grobid.core.engines.SoftwareDisambiguator;
+import org.grobid.core.engines.SoftwareParser;
+import org.grobid.core.engines.SoftwareTypeParser;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Initialization of the models at service startup, run in the background so that the service
+ * starts listening immediately. All the extraction engines are built in parallel, loading their
+ * models, then a synthetic warm-up text goes through the software mention, software type and
+ * context classification models a few times, so that the first requests do not pay for the
+ * loading of the models, the JIT compilation and the building of the TensorFlow graphs.
+ *
+ * The service is ready once the warm-up is finished, see the readiness service. The time spent
+ * in each part of the initialization is kept in milliseconds.
+ */
+public class SoftwareWarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftwareWarmUp.class);
+
+    public enum Status {
+        WARMING_UP, READY, FAILED
+    }
+
+    private static final String WARM_UP_TEXT = "The statistical analysis was performed with SPSS Statistics " +
+        "version 22 (IBM Corp., Armonk, NY) and the figures were made with the ggplot2 package of R 4.0.2. " +
+        "The source code of our tool, DeepTrace, is freely available on GitHub under the MIT license.";
+
+    private static volatile SoftwareWarmUp instance;
+
+    private volatile Status status = Status.WARMING_UP;
+    private volatile String error = null;
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public static SoftwareWarmUp getInstance() {
+        if (instance == null) {
+            getNewInstance();
+        }
+        return instance;
+    }
+
+    /**
+     * Create a new instance.
+     */
+    private static synchronized void getNewInstance() {
+        if (instance == null)
+            instance = new SoftwareWarmUp();
+    }
+
+    private SoftwareWarmUp() {
+    }
+
+    /**
+     * Start the initialization of the models in a background thread
+     */
+    public void start(SoftwareConfiguration configuration) {
+        Thread thread = new Thread(() -> run(configuration), "software-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(SoftwareConfiguration configuration) {
+        long start = System.nanoTime();
+        try {
+            if (configuration == null)
+                throw new GrobidException("No valid configuration, see resources/config/config.yml");
+            loadModels(configuration);
+            warmUp(configuration);
+            timings.put("total", elapsed(start));
+            status = Status.READY;
+            LOGGER.info("Models loaded and warmed up in " + timings.get("total") + " ms: " + timings);
+        } catch (Throwable e) {
+            LOGGER.error("The initialization of the models failed", e);
+            error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+            status = Status.FAILED;
+        }
+    }
+
+    /**
+     * Build the extraction engines in parallel, one thread for each engine
+     */
+    private void loadModels(SoftwareConfiguration configuration) throws Exception {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(5, runnable -> {
+            Thread thread = new Thread(runnable, "software-warm-up-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> loadings = new ArrayList<>();
+            loadings.add(executor.submit(() -> timed("software-type-model",
+                () -> SoftwareTypeParser.getInstance(configuration))));
+            loadings.add(executor.submit(() -> timed("context-models",
+                () -> SoftwareContextClassifier.getInstance(configuration))));
+            loadings.add(executor.submit(() -> timed("disambiguator",
+                () -> SoftwareDisambiguator.getInstance(configuration))));
+            loadings.add(executor.submit(() -> timed("software-model",
+                () -> SoftwareParser.getInstance(configuration))));
+            // the GROBID models are loaded by the parsers of the software parser, once built
+            loadings.add(executor.submit(() -> {
+                SoftwareParser parser = SoftwareParser.getInstance(configuration);
+                timed("grobid-models", parser::loadGrobidModels);
+            }));
+            for (Future<?> loading : loadings)
+                loading.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Process the warm-up text with each model, the given number of times
+     */
+    private void warmUp(SoftwareConfiguration configuration) throws Exception {
+        SoftwareParser parser = SoftwareParser.getInstance(configuration);
+        SoftwareTypeParser typeParser = SoftwareTypeParser.getInstance(configuration);
+        SoftwareContextClassifier classifier = SoftwareContextClassifier.getInstance(configuration);
+        for (int i = 1; i <= configuration.getWarmUpIterations(); i++) {
+            long start = System.nanoTime();
+            // the types and contexts are only processed for the found mentions, so the
+            // corresponding models are also called directly
+            parser.processText(WARM_UP_TEXT, false);
+            typeParser.processSentence(WARM_UP_TEXT);
+            classifier.classifyContexts(Collections.singletonList(WARM_UP_TEXT));
+            timings.put("warm-up-" + i, elapsed(start));
+        }
+    }
+
+    private void timed(String name, Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        timings.put(name, elapsed(start));
+    }
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isReady() {
+        return status == Status.READY;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Time in milliseconds spent in each ended part of the initialization
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    /**
+     * Status, error and timings of the initialization, as returned by the readiness service
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("status", status);
+        if (error != null)
+            map.put("error", error);
+        map.put("timings", getTimings());
+        return map;
+    }
+}
@@ -13,13 +13,38 @@ public class SoftwareServiceConfiguration extends Configuration {
     private String grobidHome;
     private SoftwareConfiguration softwareConfiguration;
     private int maxParallelRequests;
+    private int admissionQueueTimeout = 10000;
+    private double admissionLatencyTolerance = 2.0;
     private String version;
 
     private String entityFishingHost;
     private String entityFishingPort;
+    private int entityFishingMaxConnections;
+    private int entityFishingConnectTimeout;
+    private int entityFishingReadTimeout;
+    private int entityFishingMaxBatchLength;
+    private int entityFishingCacheSize;
+    private int entityFishingCacheTTL;
+    private String entityFishingCachePath;
+    private int entityFishingCacheDiskSize;
+    private int schedulerBatchSize;
+    private int schedulerBatchDelay;
+    private int schedulerParallelBatches;
+    private int segmentParallelism;
+    private int segmentChunkSize;
+    private int resultCacheSize;
+    private String resultCachePath;
+    private int resultCacheDiskSize;
+    private int resultCacheMaxEntrySize;
+    private int jobWorkers;
+    private int jobQueueSize;
+    private String jobPath;
+    private int jobResultTTL;
+    private int warmUpIterations;
 
     private String corpusPath;
     private String tmpPath;
+    private String lexiconBundlePath;
 
     private String pub2teiPath;
     private Boolean useBinaryContextClassifiers;
@@ -58,6 +83,22 @@ public class SoftwareServiceConfiguration extends Configuration {
         return this.maxParallelRequests;
     }
 
+    public int getAdmissionQueueTimeout() {
+        return admissionQueueTimeout;
+    }
+
+    public void setAdmissionQueueTimeout(int admissionQueueTimeout) {
+        this.admissionQueueTimeout = admissionQueueTimeout;
+    }
+
+    public double getAdmissionLatencyTolerance() {
+        return admissionLatencyTolerance;
+    }
+
+    public void setAdmissionLatencyTolerance(double admissionLatencyTolerance) {
+        this.admissionLatencyTolerance = admissionLatencyTolerance;
+    }
+
     public String getCorsAllowedOrigins() {
         return corsAllowedOrigins;
     }
@@ -102,6 +143,182 @@ public class SoftwareServiceConfiguration extends Configuration {
         this.entityFishingPort = entityFishingPort;
     }
 
+    public int getEntityFishingMaxConnections() {
+        return entityFishingMaxConnections;
+    }
+
+    public void setEntityFishingMaxConnections(int entityFishingMaxConnections) {
+        this.entityFishingMaxConnections = entityFishingMaxConnections;
+    }
+
+    public int getEntityFishingConnectTimeout() {
+        return entityFishingConnectTimeout;
+    }
+
+    public void setEntityFishingConnectTimeout(int entityFishingConnectTimeout) {
+        this.entityFishingConnectTimeout = entityFishingConnectTimeout;
+    }
+
+    public int getEntityFishingReadTimeout() {
+        return entityFishingReadTimeout;
+    }
+
+    public void setEntityFishingReadTimeout(int entityFishingReadTimeout) {
+        this.entityFishingReadTimeout = entityFishingReadTimeout;
+    }
+
+    public int getEntityFishingMaxBatchLength() {
+        return entityFishingMaxBatchLength;
+    }
+
+    public void setEntityFishingMaxBatchLength(int entityFishingMaxBatchLength) {
+        this.entityFishingMaxBatchLength = entityFishingMaxBatchLength;
+    }
+
+    public int getEntityFishingCacheSize() {
+        return entityFishingCacheSize;
+    }
+
+    public void setEntityFishingCacheSize(int entityFishingCacheSize) {
+        this.entityFishingCacheSize = entityFishingCacheSize;
+    }
+
+    public int getEntityFishingCacheTTL() {
+        return entityFishingCacheTTL;
+    }
+
+    public void setEntityFishingCacheTTL(int entityFishingCacheTTL) {
+        this.entityFishingCacheTTL = entityFishingCacheTTL;
+    }
+
+    public String getEntityFishingCachePath() {
+        return entityFishingCachePath;
+    }
+
+    public void setEntityFishingCachePath(String entityFishingCachePath) {
+        this.entityFishingCachePath = entityFishingCachePath;
+    }
+
+    public int getEntityFishingCacheDiskSize() {
+        return entityFishingCacheDiskSize;
+    }
+
+    public void setEntityFishingCacheDiskSize(int entityFishingCacheDiskSize) {
+        this.entityFishingCacheDiskSize = entityFishingCacheDiskSize;
+    }
+
+    public int getSchedulerBatchSize() {
+        return schedulerBatchSize;
+    }
+
+    public void setSchedulerBatchSize(int schedulerBatchSize) {
+        this.schedulerBatchSize = schedulerBatchSize;
+    }
+
+    public int getSchedulerBatchDelay() {
+        return schedulerBatchDelay;
+    }
+
+    public void setSchedulerBatchDelay(int schedulerBatchDelay) {
+        this.schedulerBatchDelay = schedulerBatchDelay;
+    }
+
+    public int getSchedulerParallelBatches() {
+        return schedulerParallelBatches;
+    }
+
+    public void setSchedulerParallelBatches(int schedulerParallelBatches) {
+        this.schedulerParallelBatches = schedulerParallelBatches;
+    }
+
+    public int getSegmentParallelism() {
+        return segmentParallelism;
+    }
+
+    public void setSegmentParallelism(int segmentParallelism) {
+        this.segmentParallelism = segmentParallelism;
+    }
+
+    public int getSegmentChunkSize() {
+        return segmentChunkSize;
+    }
+
+    public void setSegmentChunkSize(int segmentChunkSize) {
+        this.segmentChunkSize = segmentChunkSize;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public String getResultCachePath() {
+        return resultCachePath;
+    }
+
+    public void setResultCachePath(String resultCachePath) {
+        this.resultCachePath = resultCachePath;
+    }
+
+    public int getResultCacheDiskSize() {
+        return resultCacheDiskSize;
+    }
+
+    public void setResultCacheDiskSize(int resultCacheDiskSize) {
+        this.resultCacheDiskSize = resultCacheDiskSize;
+    }
+
+    public int getResultCacheMaxEntrySize() {
+        return resultCacheMaxEntrySize;
+    }
+
+    public void setResultCacheMaxEntrySize(int resultCacheMaxEntrySize) {
+        this.resultCacheMaxEntrySize = resultCacheMaxEntrySize;
+    }
+
+    public int getJobWorkers() {
+        return jobWorkers;
+    }
+
+    public void setJobWorkers(int jobWorkers) {
+        this.jobWorkers = jobWorkers;
+    }
+
+    public int getJobQueueSize() {
+        return jobQueueSize;
+    }
+
+    public void setJobQueueSize(int jobQueueSize) {
+        this.jobQueueSize = jobQueueSize;
+    }
+
+    public String getJobPath() {
+        return jobPath;
+    }
+
+    public void setJobPath(String jobPath) {
+        this.jobPath = jobPath;
+    }
+
+    public int getJobResultTTL() {
+        return jobResultTTL;
+    }
+
+    public void setJobResultTTL(int jobResultTTL) {
+        this.jobResultTTL = jobResultTTL;
+    }
+
+    public int getWarmUpIterations() {
+        return warmUpIterations;
+    }
+
+    public void setWarmUpIterations(int warmUpIterations) {
+        this.warmUpIterations = warmUpIterations;
+    }
+
     public String getCorpusPath() {
         return corpusPath;
     }
@@ -118,6 +335,14 @@ public class SoftwareServiceConfiguration extends Configuration {
         this.tmpPath = tmpPath;
     }
 
+    public String getLexiconBundlePath() {
+        return lexiconBundlePath;
+    }
+
+    public void setLexiconBundlePath(String lexiconBundlePath) {
+        this.lexiconBundlePath = lexiconBundlePath;
+    }
+
     public String getPub2teiPath() {
         return pub2teiPath;
     }
@@ -1,5 +1,6 @@
 package org.grobid.service.controller;
 
+import org.grobid.service.SoftwareWarmUp;
 import org.grobid.service.configuration.SoftwareServiceConfiguration;
 
 import com.google.inject.Inject;
@@ -31,8 +32,13 @@ public class HealthCheck extends com.codahale.metrics.health.HealthCheck {
 
     @Override
     protected Result check() throws Exception {
-        return configuration.getGrobidHome() != null ? Result.healthy() :
-                Result.unhealthy("Grobid home is null in the configuration");
+        if (configuration.getGrobidHome() == null)
+            return Result.unhealthy("Grobid home is null in the configuration");
+        // still healthy while the models are warming up, see the readiness service
+        SoftwareWarmUp warmUp = SoftwareWarmUp.getInstance();
+        if (warmUp.getStatus() == SoftwareWarmUp.Status.FAILED)
+            return Result.unhealthy("The initialization of the models failed: " + warmUp.getError());
+        return Result.healthy();
     }
 }
 
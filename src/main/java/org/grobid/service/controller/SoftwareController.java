@@ -4,11 +4,14 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 import org.grobid.core.utilities.SoftwareConfiguration;
 import org.grobid.core.utilities.Versioner;
+import org.grobid.service.SoftwareWarmUp;
 import org.grobid.service.configuration.SoftwareServiceConfiguration;
 import org.grobid.service.data.ServiceInfo;
 import org.slf4j.Logger;
@@ -35,6 +38,10 @@ public class SoftwareController implements SoftwarePaths {
     private static final String XML = "xml";
     private static final String PDF = "pdf";
     private static final String INPUT = "input";
+    private static final String TYPE = "type";
+    private static final String PRIORITY = "priority";
+    private static final String STAGES = "stages";
+    private static final String APPLICATION_CBOR = "application/cbor";
 
     private SoftwareConfiguration configuration;
     private final SoftwareServiceConfiguration serviceConfiguration;
@@ -61,37 +68,58 @@ public class SoftwareController implements SoftwarePaths {
         return Response.status(Response.Status.OK).entity(SoftwareProcessString.isAlive()).build();
     }
 
+    @Path(PATH_READY)
+    @Produces(MediaType.APPLICATION_JSON)
+    @GET
+    public Response isReady() {
+        SoftwareWarmUp warmUp = SoftwareWarmUp.getInstance();
+        Response.Status status = warmUp.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE;
+        return Response.status(status).entity(warmUp.toMap()).build();
+    }
+
     @Path(PATH_SOFTWARE_TEXT)
-    @Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+    @Produces({MediaType.APPLICATION_JSON + ";charset=utf-8", APPLICATION_CBOR})
     @POST
     public Response processText_post(@FormParam(TEXT) String text, 
-                                     @DefaultValue("0") @FormParam(DISAMBIGUATE) String disambiguate) {
+                                     @DefaultValue("0") @FormParam(DISAMBIGUATE) String disambiguate,
+                                     @DefaultValue("0") @FormParam(STAGES) String stages,
+                                     @Context HttpHeaders headers) {
         //LOGGER.debug(text); 
         boolean disambiguateBoolean = SoftwareServiceUtil.validateBooleanRawParam(disambiguate);
+        boolean stagesBoolean = SoftwareServiceUtil.validateBooleanRawParam(stages);
 
-        return SoftwareProcessString.processText(text, disambiguateBoolean, this.configuration);
+        return SoftwareProcessString.processText(text, disambiguateBoolean, SoftwareServiceUtil.outputFormat(headers),
+            stagesBoolean, this.configuration);
     }
 
     @Path(PATH_SOFTWARE_TEXT)
-    @Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+    @Produces({MediaType.APPLICATION_JSON + ";charset=utf-8", APPLICATION_CBOR})
     @GET
     public Response processText_get(@QueryParam(TEXT) String text, 
-                                    @DefaultValue("0") @QueryParam(DISAMBIGUATE) String disambiguate) {
+                                    @DefaultValue("0") @QueryParam(DISAMBIGUATE) String disambiguate,
+                                    @DefaultValue("0") @QueryParam(STAGES) String stages,
+                                    @Context HttpHeaders headers) {
         //LOGGER.info(text);
         boolean disambiguateBoolean = SoftwareServiceUtil.validateBooleanRawParam(disambiguate);
-        return SoftwareProcessString.processText(text, disambiguateBoolean, this.configuration);
+        boolean stagesBoolean = SoftwareServiceUtil.validateBooleanRawParam(stages);
+        return SoftwareProcessString.processText(text, disambiguateBoolean, SoftwareServiceUtil.outputFormat(headers),
+            stagesBoolean, this.configuration);
     }
     
     @Path(PATH_ANNOTATE_SOFTWARE_PDF)
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    @Produces("application/json")
+    @Produces({"application/json", APPLICATION_CBOR})
     @POST
     public Response processPDFAnnotation(@FormDataParam(INPUT) InputStream inputStream, 
                                          @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
-                                         @DefaultValue("0") @FormDataParam(ADD_PARAGRAPH_CONTEXT) String addParagraphContext) {
+                                         @DefaultValue("0") @FormDataParam(ADD_PARAGRAPH_CONTEXT) String addParagraphContext,
+                                         @DefaultValue("0") @FormDataParam(STAGES) String stages,
+                                         @Context HttpHeaders headers) {
         boolean disambiguateBoolean = SoftwareServiceUtil.validateBooleanRawParam(disambiguate);
         boolean addParagraphContextBoolean = SoftwareServiceUtil.validateBooleanRawParam(addParagraphContext);
-        return SoftwareProcessFile.processPDFAnnotation(inputStream, disambiguateBoolean, addParagraphContextBoolean, this.configuration);
+        boolean stagesBoolean = SoftwareServiceUtil.validateBooleanRawParam(stages);
+        return SoftwareProcessFile.processPDFAnnotation(inputStream, disambiguateBoolean, addParagraphContextBoolean,
+            SoftwareServiceUtil.outputFormat(headers), stagesBoolean, this.configuration);
     }
 
     /*@Path(PATH_ANNOTATE_SOFTWARE_PDF_URL)
@@ -107,14 +135,18 @@ public class SoftwareController implements SoftwarePaths {
 
     @Path(PATH_EXTRACT_SOFTWARE_XML)
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    @Produces("application/json")
+    @Produces({"application/json", APPLICATION_CBOR})
     @POST
     public Response processXML(@FormDataParam(INPUT) InputStream inputStream, 
                                 @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
-                                @DefaultValue("0") @FormDataParam(ADD_PARAGRAPH_CONTEXT) String addParagraphContext) {
+                                @DefaultValue("0") @FormDataParam(ADD_PARAGRAPH_CONTEXT) String addParagraphContext,
+                                @DefaultValue("0") @FormDataParam(STAGES) String stages,
+                                @Context HttpHeaders headers) {
         boolean disambiguateBoolean = SoftwareServiceUtil.validateBooleanRawParam(disambiguate);
         boolean addParagraphContextBoolean = SoftwareServiceUtil.validateBooleanRawParam(addParagraphContext);
-        return SoftwareProcessFile.extractXML(inputStream, disambiguateBoolean, addParagraphContextBoolean, this.configuration);
+        boolean stagesBoolean = SoftwareServiceUtil.validateBooleanRawParam(stages);
+        return SoftwareProcessFile.extractXML(inputStream, disambiguateBoolean, addParagraphContextBoolean,
+            SoftwareServiceUtil.outputFormat(headers), stagesBoolean, this.configuration);
     }
 
     @Path(PATH_SOFTWARE_CONTEXT)
@@ -127,14 +159,54 @@ public class SoftwareController implements SoftwarePaths {
 
     @Path(PATH_EXTRACT_SOFTWARE_TEI)
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    @Produces("application/json")
+    @Produces({"application/json", APPLICATION_CBOR})
     @POST
     public Response processTEI(@FormDataParam(INPUT) InputStream inputStream, 
                                 @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
-                                @DefaultValue("0") @FormDataParam(ADD_PARAGRAPH_CONTEXT) String addParagraphContext) {
+                                @DefaultValue("0") @FormDataParam(ADD_PARAGRAPH_CONTEXT) String addParagraphContext,
+                                @DefaultValue("0") @FormDataParam(STAGES) String stages,
+                                @Context HttpHeaders headers) {
+        boolean disambiguateBoolean = SoftwareServiceUtil.validateBooleanRawParam(disambiguate);
+        boolean addParagraphContextBoolean = SoftwareServiceUtil.validateBooleanRawParam(addParagraphContext);
+        boolean stagesBoolean = SoftwareServiceUtil.validateBooleanRawParam(stages);
+        return SoftwareProcessFile.extractTEI(inputStream, disambiguateBoolean, addParagraphContextBoolean,
+            SoftwareServiceUtil.outputFormat(headers), stagesBoolean, this.configuration);
+    }
+
+    @Path(PATH_JOBS)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    @POST
+    public Response submitJob(@FormDataParam(INPUT) InputStream inputStream,
+                              @DefaultValue(PDF) @FormDataParam(TYPE) String type,
+                              @DefaultValue("0") @FormDataParam(PRIORITY) String priority,
+                              @DefaultValue("0") @FormDataParam(DISAMBIGUATE) String disambiguate,
+                              @DefaultValue("0") @FormDataParam(ADD_PARAGRAPH_CONTEXT) String addParagraphContext,
+                              @Context HttpHeaders headers) {
         boolean disambiguateBoolean = SoftwareServiceUtil.validateBooleanRawParam(disambiguate);
         boolean addParagraphContextBoolean = SoftwareServiceUtil.validateBooleanRawParam(addParagraphContext);
-        return SoftwareProcessFile.extractTEI(inputStream, disambiguateBoolean, addParagraphContextBoolean, this.configuration);
+        return SoftwareProcessJob.submit(inputStream, type, priority, disambiguateBoolean, addParagraphContextBoolean,
+            SoftwareServiceUtil.outputFormat(headers), this.configuration);
+    }
+
+    @Path(PATH_JOB)
+    @Produces(MediaType.APPLICATION_JSON)
+    @GET
+    public Response getJob(@PathParam("id") String id) {
+        return SoftwareProcessJob.status(id, this.configuration);
+    }
+
+    @Path(PATH_JOB)
+    @DELETE
+    public Response deleteJob(@PathParam("id") String id) {
+        return SoftwareProcessJob.delete(id, this.configuration);
+    }
+
+    @Path(PATH_JOB_RESULT)
+    @Produces({"application/json", APPLICATION_CBOR})
+    @GET
+    public Response getJobResult(@PathParam("id") String id) {
+        return SoftwareProcessJob.result(id, this.configuration);
     }
 
     @Path(PATH_VERSION)
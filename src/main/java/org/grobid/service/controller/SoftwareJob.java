@@ -0,0 +1,201 @@
+package org.grobid.service.controller;
+
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Asynchronous processing of a submitted document, as persisted in the job directory and
+ * reported by the job status service. Times are in milliseconds since the epoch, stage
+ * durations in milliseconds.
+ */
+public class SoftwareJob {
+
+    public enum Type {
+        PDF, XML, TEI
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private String id;
+    private Type type;
+    private Format format;
+    private boolean disambiguate;
+    private boolean addParagraphContext;
+    private int priority;
+    private String md5;
+
+    private Status status;
+    private String stage;
+    private Map<String, Long> stageDurations = new LinkedHashMap<>();
+    private Map<String, Long> stepDurations = new LinkedHashMap<>();
+    private Map<String, Long> counts = new LinkedHashMap<>();
+    private String error;
+
+    private long submitted;
+    private Long started;
+    private Long finished;
+    private Long runtime;
+
+    public SoftwareJob() {
+    }
+
+    public SoftwareJob(SoftwareJob job) {
+        this.id = job.id;
+        this.type = job.type;
+        this.format = job.format;
+        this.disambiguate = job.disambiguate;
+        this.addParagraphContext = job.addParagraphContext;
+        this.priority = job.priority;
+        this.md5 = job.md5;
+        this.status = job.status;
+        this.stage = job.stage;
+        this.stageDurations = new LinkedHashMap<>(job.stageDurations);
+        this.stepDurations = new LinkedHashMap<>(job.stepDurations);
+        this.counts = new LinkedHashMap<>(job.counts);
+        this.error = job.error;
+        this.submitted = job.submitted;
+        this.started = job.started;
+        this.finished = job.finished;
+        this.runtime = job.runtime;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public boolean isDisambiguate() {
+        return disambiguate;
+    }
+
+    public void setDisambiguate(boolean disambiguate) {
+        this.disambiguate = disambiguate;
+    }
+
+    public boolean isAddParagraphContext() {
+        return addParagraphContext;
+    }
+
+    public void setAddParagraphContext(boolean addParagraphContext) {
+        this.addParagraphContext = addParagraphContext;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public String getMd5() {
+        return md5;
+    }
+
+    public void setMd5(String md5) {
+        this.md5 = md5;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public Map<String, Long> getStageDurations() {
+        return stageDurations;
+    }
+
+    public void setStageDurations(Map<String, Long> stageDurations) {
+        this.stageDurations = stageDurations;
+    }
+
+    public Map<String, Long> getStepDurations() {
+        return stepDurations;
+    }
+
+    public void setStepDurations(Map<String, Long> stepDurations) {
+        this.stepDurations = stepDurations;
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(Map<String, Long> counts) {
+        this.counts = counts;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public void setSubmitted(long submitted) {
+        this.submitted = submitted;
+    }
+
+    public Long getStarted() {
+        return started;
+    }
+
+    public void setStarted(Long started) {
+        this.started = started;
+    }
+
+    public Long getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Long finished) {
+        this.finished = finished;
+    }
+
+    public Long getRuntime() {
+        return runtime;
+    }
+
+    public void setRuntime(Long runtime) {
+        this.runtime = runtime;
+    }
+}
@@ -0,0 +1,504 @@
+package org.grobid.service.controller;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.tuple.Triple;
+import org.grobid.core.data.ArticleBiblio;
+import org.grobid.core.data.BibDataSet;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.document.Document;
+import org.grobid.core.engines.SoftwareParser;
+import org.grobid.core.utilities.ProcessingStages;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareMetrics;
+import org.grobid.core.utilities.SoftwareResultCache;
+import org.grobid.core.utilities.SoftwareResultSerializer;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Asynchronous processing of the PDF, XML and TEI documents, for large documents which would
+ * otherwise hold a connection and a server thread for minutes.
+ *
+ * A submitted document is stored in the job directory and queued for a fixed number of worker
+ * threads, by decreasing priority then in submission order. The number of queued jobs is bounded,
+ * a submission being rejected when the queue is full. The result of a job is written directly to
+ * its result file, and cached from this file. The state of each job is persisted as a
+ * JSON file next to its input and result files, so that the jobs survive a restart: the
+ * unfinished jobs are queued again when the service starts. The finished jobs are removed after
+ * the result time to live.
+ *
+ * While a job is running, its status gives the current pipeline stage and the time spent in each
+ * ended stage, see ProcessingStages.
+ */
+public class SoftwareJobManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftwareJobManager.class);
+
+    private static final String JOB_EXTENSION = ".json";
+    private static final String INPUT_EXTENSION = ".input";
+    private static final String RESULT_EXTENSION = ".result";
+    private static final String RESULT_TMP_EXTENSION = ".result.tmp";
+
+    private static volatile SoftwareJobManager instance;
+    private static volatile boolean initialized = false;
+
+    private final File directory;
+    private final int maxQueuedJobs;
+    private final long resultTimeToLive;
+    private final SoftwareResultCache cache;
+    private final JobProcessor processor;
+    private final LongSupplier clock;
+
+    // number of queued jobs, a place being reserved before a job is queued
+    private final AtomicInteger queuedJobs = new AtomicInteger();
+
+    private final Map<String, SoftwareJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService cleaner;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Meter submittedJobs;
+    private final Meter rejectedJobs;
+    private final Meter completedJobs;
+    private final Meter failedJobs;
+
+    /**
+     * Return the job manager as set in the configuration, or null if the asynchronous
+     * processing is disabled (jobWorkers set to 0)
+     */
+    public static SoftwareJobManager getInstance(SoftwareConfiguration configuration) {
+        if (!initialized) {
+            getNewInstance(configuration);
+        }
+        return instance;
+    }
+
+    /**
+     * Create a new instance.
+     */
+    private static synchronized void getNewInstance(SoftwareConfiguration configuration) {
+        if (initialized)
+            return;
+        if (configuration.getJobWorkers() > 0) {
+            String path = configuration.getJobPath();
+            if (path == null || path.trim().length() == 0)
+                path = configuration.getTmpPath() + File.separator + "jobs";
+            try {
+                instance = new SoftwareJobManager(configuration, new File(path.trim()),
+                    SoftwareResultCache.getInstance(configuration),
+                    (job, inputFile, output) -> processInput(configuration, job, inputFile, output),
+                    System::currentTimeMillis);
+            } catch (IOException e) {
+                LOGGER.error("Cannot open the job directory " + path + ", asynchronous processing disabled", e);
+            }
+        }
+        initialized = true;
+    }
+
+    /**
+     * Processing of the input file of a job, writing its serialized result
+     */
+    interface JobProcessor {
+        /**
+         * @return the processing time in milliseconds, serialization excluded
+         */
+        long process(SoftwareJob job, File inputFile, OutputStream output) throws Exception;
+    }
+
+    /**
+     * @param cache cache of the results, null for no cache
+     * @param processor processing of the job inputs
+     * @param clock current time in milliseconds, for the job times and the result time to live
+     */
+    SoftwareJobManager(SoftwareConfiguration configuration, File directory, SoftwareResultCache cache,
+                       JobProcessor processor, LongSupplier clock) throws IOException {
+        this.directory = directory;
+        this.maxQueuedJobs = configuration.getJobQueueSize();
+        this.resultTimeToLive = TimeUnit.HOURS.toMillis(configuration.getJobResultTTL());
+        this.cache = cache;
+        this.processor = processor;
+        this.clock = clock;
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Cannot create the directory " + directory.getPath());
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(configuration.getJobWorkers(), configuration.getJobWorkers(),
+            0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "software-jobs-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "software-jobs-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        MetricRegistry metrics = SoftwareMetrics.getRegistry();
+        submittedJobs = metrics.meter("jobs.submitted");
+        rejectedJobs = metrics.meter("jobs.rejected");
+        completedJobs = metrics.meter("jobs.completed");
+        failedJobs = metrics.meter("jobs.failed");
+        metrics.gauge("jobs.queued", () -> (Gauge<Integer>) queuedJobs::get);
+        metrics.gauge("jobs.running", () -> (Gauge<Integer>) executor::getActiveCount);
+
+        restoreJobs();
+        cleaner.scheduleWithFixedDelay(this::removeExpiredJobs, 10, 10, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Queued job, ordered by decreasing priority then submission order
+     */
+    private class JobTask implements Runnable, Comparable<JobTask> {
+        private final String id;
+        private final int priority;
+        private final long rank;
+
+        JobTask(SoftwareJob job) {
+            this.id = job.getId();
+            this.priority = job.getPriority();
+            this.rank = sequence.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            queuedJobs.decrementAndGet();
+            SoftwareJob job = jobs.get(id);
+            // the job can have been deleted while queued
+            if (job != null)
+                process(job);
+        }
+
+        @Override
+        public int compareTo(JobTask other) {
+            if (priority != other.priority)
+                return Integer.compare(other.priority, priority);
+            return Long.compare(rank, other.rank);
+        }
+    }
+
+    /**
+     * Store a submitted document and queue its processing. Returns the status of the new job, or
+     * null if the queue is full.
+     */
+    public SoftwareJob submit(InputStream inputStream,
+                              SoftwareJob.Type type,
+                              boolean disambiguate,
+                              boolean addParagraphContext,
+                              Format format,
+                              int priority) throws IOException {
+        if (!reservePlace()) {
+            rejectedJobs.mark();
+            return null;
+        }
+
+        SoftwareJob job = new SoftwareJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setType(type);
+        job.setFormat(format);
+        job.setDisambiguate(disambiguate);
+        job.setAddParagraphContext(addParagraphContext);
+        job.setPriority(priority);
+        job.setStatus(SoftwareJob.Status.QUEUED);
+        job.setSubmitted(clock.getAsLong());
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        File inputFile = file(job.getId(), INPUT_EXTENSION);
+        try {
+            Files.copy(new DigestInputStream(inputStream, md), inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            job.setMd5(DatatypeConverter.printHexBinary(md.digest()).toUpperCase());
+            save(job);
+        } catch (IOException e) {
+            deleteFiles(job.getId());
+            queuedJobs.decrementAndGet();
+            throw e;
+        }
+
+        // the job status as submitted, the job can start before this method returns
+        SoftwareJob submitted = snapshot(job);
+        jobs.put(job.getId(), job);
+        executor.execute(new JobTask(job));
+        submittedJobs.mark();
+        return submitted;
+    }
+
+    /**
+     * Reserve a place in the queue for a new job, false if the queue is full
+     */
+    private boolean reservePlace() {
+        while (true) {
+            int queued = queuedJobs.get();
+            if (queued >= maxQueuedJobs)
+                return false;
+            if (queuedJobs.compareAndSet(queued, queued + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Status of a job, or null if the job does not exist or has expired
+     */
+    public SoftwareJob getJob(String id) {
+        SoftwareJob job = jobs.get(id);
+        return job == null ? null : snapshot(job);
+    }
+
+    /**
+     * Result file of a finished job, or null if the job is not done
+     */
+    public File getResult(String id) {
+        SoftwareJob job = jobs.get(id);
+        if (job == null)
+            return null;
+        synchronized (job) {
+            if (job.getStatus() != SoftwareJob.Status.DONE)
+                return null;
+        }
+        return file(id, RESULT_EXTENSION);
+    }
+
+    /**
+     * Remove a job with its files, a running job being removed once its processing ends.
+     * Returns false if the job does not exist.
+     */
+    public boolean delete(String id) {
+        SoftwareJob job = jobs.remove(id);
+        if (job == null)
+            return false;
+        synchronized (job) {
+            if (job.getStatus() != SoftwareJob.Status.RUNNING)
+                deleteFiles(id);
+        }
+        return true;
+    }
+
+    private void process(SoftwareJob job) {
+        long started = clock.getAsLong();
+        synchronized (job) {
+            job.setStatus(SoftwareJob.Status.RUNNING);
+            job.setStarted(started);
+        }
+        saveQuietly(job);
+
+        ProcessingStages stages = new ProcessingStages((stage, durations) -> {
+            synchronized (job) {
+                job.setStage(stage);
+                job.setStageDurations(durations);
+            }
+            saveQuietly(job);
+        });
+
+        String error = null;
+        Long runtime = null;
+        File tmpFile = file(job.getId(), RESULT_TMP_EXTENSION);
+        ProcessingStages.attach(stages);
+        try {
+            String cacheKey = cache == null ? null : cache.key(job.getType().name().toLowerCase(), job.getMd5(),
+                job.isDisambiguate(), job.isAddParagraphContext(), job.getFormat());
+            byte[] cachedResult = cache == null ? null : cache.get(cacheKey);
+            if (cachedResult != null) {
+                Files.write(tmpFile.toPath(), cachedResult);
+            } else {
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+                    runtime = processor.process(job, file(job.getId(), INPUT_EXTENSION), output);
+                }
+                if (cache != null)
+                    cache.put(cacheKey, tmpFile);
+            }
+
+            Files.move(tmpFile.toPath(), file(job.getId(), RESULT_EXTENSION).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Throwable e) {
+            LOGGER.error("Processing of the job " + job.getId() + " failed", e);
+            error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+            tmpFile.delete();
+        } finally {
+            ProcessingStages.detach();
+        }
+
+        synchronized (job) {
+            job.setStatus(error == null ? SoftwareJob.Status.DONE : SoftwareJob.Status.FAILED);
+            job.setError(error);
+            job.setStage(null);
+            job.setStageDurations(stages.getDurations());
+            job.setStepDurations(stages.getStepDurations());
+            job.setCounts(stages.getCounts());
+            job.setFinished(clock.getAsLong());
+            job.setRuntime(runtime);
+        }
+        if (error == null)
+            completedJobs.mark();
+        else
+            failedJobs.mark();
+
+        file(job.getId(), INPUT_EXTENSION).delete();
+        synchronized (job) {
+            if (jobs.containsKey(job.getId()))
+                saveQuietly(job);
+            else
+                deleteFiles(job.getId());
+        }
+    }
+
+    /**
+     * Process the input of a job and serialize its result to the given output, returns the
+     * processing time in milliseconds, serialization excluded
+     */
+    private static long processInput(SoftwareConfiguration configuration,
+                                     SoftwareJob job,
+                                     File inputFile,
+                                     OutputStream output) throws Exception {
+        SoftwareParser parser = SoftwareParser.getInstance(configuration);
+        long start = System.currentTimeMillis();
+        long runtime;
+        if (job.getType() == SoftwareJob.Type.PDF) {
+            Pair<List<SoftwareEntity>, Document> extractedEntities =
+                parser.processPDF(inputFile, job.isDisambiguate(), job.isAddParagraphContext());
+            runtime = System.currentTimeMillis() - start;
+            ProcessingStages.begin(ProcessingStages.SERIALIZATION);
+            SoftwareResultSerializer.write(output, job.getFormat(), extractedEntities.getLeft(),
+                extractedEntities.getRight(), job.getMd5(), runtime);
+        } else {
+            Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> extractionResult =
+                (job.getType() == SoftwareJob.Type.XML) ?
+                    parser.processXML(inputFile, job.isDisambiguate(), job.isAddParagraphContext()) :
+                    parser.processTEI(inputFile, job.isDisambiguate(), job.isAddParagraphContext());
+            if (extractionResult == null)
+                throw new IOException("The " + job.getType() + " document could not be processed");
+            runtime = System.currentTimeMillis() - start;
+            ProcessingStages.begin(ProcessingStages.SERIALIZATION);
+            SoftwareResultSerializer.write(output, job.getFormat(), extractionResult.getLeft(),
+                extractionResult.getMiddle(), extractionResult.getRight(), job.getMd5(), runtime);
+        }
+        return runtime;
+    }
+
+    /**
+     * Load the jobs of the job directory, queue again the unfinished ones in submission order
+     */
+    private void restoreJobs() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(JOB_EXTENSION));
+        if (files == null)
+            return;
+        List<SoftwareJob> unfinished = new ArrayList<>();
+        for (File file : files) {
+            SoftwareJob job;
+            try {
+                job = mapper.readValue(file, SoftwareJob.class);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot read the job file " + file.getPath() + ", ignored", e);
+                continue;
+            }
+            if (job.getStatus() == SoftwareJob.Status.QUEUED || job.getStatus() == SoftwareJob.Status.RUNNING) {
+                if (file(job.getId(), INPUT_EXTENSION).exists()) {
+                    job.setStatus(SoftwareJob.Status.QUEUED);
+                    job.setStage(null);
+                    job.setStarted(null);
+                    unfinished.add(job);
+                } else {
+                    job.setStatus(SoftwareJob.Status.FAILED);
+                    job.setError("The input of the job has been lost");
+                    job.setFinished(clock.getAsLong());
+                    saveQuietly(job);
+                }
+            }
+            jobs.put(job.getId(), job);
+        }
+
+        unfinished.sort(Comparator.comparingLong(SoftwareJob::getSubmitted));
+        queuedJobs.addAndGet(unfinished.size());
+        for (SoftwareJob job : unfinished)
+            executor.execute(new JobTask(job));
+        removeExpiredJobs();
+        LOGGER.info(jobs.size() + " jobs restored from " + directory.getPath() + ", " +
+            unfinished.size() + " jobs queued again");
+    }
+
+    /**
+     * Remove the jobs finished for longer than the result time to live
+     */
+    void removeExpiredJobs() {
+        long now = clock.getAsLong();
+        for (SoftwareJob job : jobs.values()) {
+            Long finished;
+            synchronized (job) {
+                finished = job.getFinished();
+            }
+            if (finished != null && finished + resultTimeToLive < now)
+                delete(job.getId());
+        }
+    }
+
+    private SoftwareJob snapshot(SoftwareJob job) {
+        synchronized (job) {
+            return new SoftwareJob(job);
+        }
+    }
+
+    private void save(SoftwareJob job) throws IOException {
+        SoftwareJob state = snapshot(job);
+        File tmpFile = file(job.getId(), JOB_EXTENSION + ".tmp" + Thread.currentThread().getId());
+        mapper.writeValue(tmpFile, state);
+        Files.move(tmpFile.toPath(), file(job.getId(), JOB_EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void saveQuietly(SoftwareJob job) {
+        try {
+            save(job);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot save the state of the job " + job.getId(), e);
+        }
+    }
+
+    private void deleteFiles(String id) {
+        file(id, JOB_EXTENSION).delete();
+        file(id, INPUT_EXTENSION).delete();
+        file(id, RESULT_EXTENSION).delete();
+        file(id, RESULT_TMP_EXTENSION).delete();
+    }
+
+    private File file(String id, String extension) {
+        return new File(directory, id + extension);
+    }
+}
@@ -17,6 +17,11 @@ public interface SoftwarePaths {
      */
     String PATH_IS_ALIVE = "isalive";
 
+    /**
+     * path extension for the readiness request, ready once the models are loaded and warmed up
+     */
+    String PATH_READY = "ready";
+
     /**
      * path extension for extracting software entities from a text
      */
@@ -53,6 +58,21 @@ public interface SoftwarePaths {
      */
     public static final String PATH_SOFTWARE_CONTEXT = "characterizeSoftwareContext";
 
+    /**
+     * path extension for submitting a document for asynchronous processing
+     */
+    public static final String PATH_JOBS = "jobs";
+
+    /**
+     * path extension for the status of an asynchronous processing
+     */
+    public static final String PATH_JOB = "jobs/{id}";
+
+    /**
+     * path extension for the result of an asynchronous processing
+     */
+    public static final String PATH_JOB_RESULT = "jobs/{id}/result";
+
     public static final String PATH_VERSION = "version";
 
     // New path to expose concept service base URL from configuration
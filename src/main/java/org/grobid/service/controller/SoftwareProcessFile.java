@@ -4,6 +4,8 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
@@ -18,7 +20,11 @@ import org.grobid.core.engines.config.GrobidAnalysisConfig;
 import org.grobid.core.factory.GrobidFactory;
 import org.grobid.core.layout.Page;
 import org.grobid.core.utilities.IOUtilities;
+import org.grobid.core.utilities.ProcessingStages;
 import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareResultCache;
+import org.grobid.core.utilities.SoftwareResultSerializer;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
 import org.grobid.core.utilities.Versioner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,11 +60,15 @@ public class SoftwareProcessFile {
      * @param inputStream the data of origin PDF
      * @param disambiguate if true, the extracted mention will be disambiguated
      * @param addParagraphContext if true, the full paragraph where an annotation takes place is added
+     * @param format output format, JSON or CBOR
+     * @param includeStages if true, the time breakdown of the processing is added to the result
      * @return a response object containing the JSON annotations
      */
     public static Response processPDFAnnotation(final InputStream inputStream,
                                                 boolean disambiguate,
                                                 boolean addParagraphContext,
+                                                Format format,
+                                                boolean includeStages,
                                                 SoftwareConfiguration configuration) {
         LOGGER.debug(methodLogIn());
         Response response = null;
@@ -66,6 +76,8 @@ public class SoftwareProcessFile {
         SoftwareParser parser = SoftwareParser.getInstance(configuration);
         Engine engine = null;
 
+        ProcessingStages stages = new ProcessingStages();
+        ProcessingStages.attach(stages);
         try {
             engine = GrobidFactory.getInstance().getEngine();
             MessageDigest md = MessageDigest.getInstance("MD5");
@@ -76,9 +88,13 @@ public class SoftwareProcessFile {
 
             GrobidAnalysisConfig config = new GrobidAnalysisConfig.GrobidAnalysisConfigBuilder().build();
 
+            String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
+            SoftwareResultCache cache = resultCache(includeStages, configuration);
+            String cacheKey = cache == null ? null : cache.key("pdf", md5Str, disambiguate, addParagraphContext, format);
+
             if (originFile == null) {
                 response = Response.status(Status.INTERNAL_SERVER_ERROR).build();
-            } else {
+            } else if ((response = cachedResponse(cache, cacheKey, format)) == null) {
                 long start = System.currentTimeMillis();
                 Pair<List<SoftwareEntity>, Document> extractedEntities =
                     parser.processPDF(originFile, disambiguate, addParagraphContext);
@@ -86,60 +102,17 @@ public class SoftwareProcessFile {
 
                 Document doc = extractedEntities.getRight();
                 List<SoftwareEntity> entities = extractedEntities.getLeft();
-                StringBuilder json = new StringBuilder();
-                json.append("{ ");
-                json.append(SoftwareServiceUtil.applicationDetails(Versioner.getVersion(), Versioner.getRevision()));
-
-                String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
-                json.append(", \"md5\": \"" + md5Str + "\"");
-
-                // Add article metadata (biblio) from document header
-                BiblioItem resHeader = doc.getResHeader();
-                Optional<ArticleBiblio> metadata = ArticleBiblio.fromBiblioItem(resHeader);
 
-                metadata.ifPresent(articleBiblio -> json.append(", " + articleBiblio.toJson()));
+                ProcessingStages processing = includeStages ? stages : null;
+                StreamingOutput result = output ->
+                    SoftwareResultSerializer.write(output, format, entities, doc, md5Str, processing, end - start);
+                result = caching(SoftwareServiceUtil.timeSerialization(result, stages), cache, cacheKey);
 
-				// page height and width
-                json.append(", \"pages\":[");
-                List<Page> pages = doc.getPages();
-                boolean first = true;
-                for (Page page : pages) {
-                    if (first)
-                        first = false;
-                    else
-                        json.append(", ");
-                    json.append("{\"page_height\":" + page.getHeight());
-                    json.append(", \"page_width\":" + page.getWidth() + "}");
-                }
-
-                json.append("], \"mentions\":[");
-                first = true;
-                for (SoftwareEntity entity : entities) {
-                    if (!first)
-                        json.append(", ");
-                    else
-                        first = false;
-                    json.append(entity.toJson());
-                }
-                json.append("], \"references\":[");
-
-                List<BibDataSet> bibDataSet = doc.getBibDataSets();
-                if (bibDataSet != null && bibDataSet.size() > 0) {
-                    SoftwareServiceUtil.serializeReferences(json, bibDataSet, entities);
-                }
-
-                json.append("], \"runtime\" :" + (end - start));
-                json.append("}");
-
-                if (json != null) {
-                    response = Response
-                        .ok()
-                        .type("application/json")
-                        .entity(json.toString())
-                        .build();
-                } else {
-                    response = Response.status(Status.NO_CONTENT).build();
-                }
+                response = Response
+                    .ok()
+                    .type(format.getMediaType())
+                    .entity(result)
+                    .build();
             }
         } catch (NoSuchElementException nseExp) {
             LOGGER.error("Could not get an instance of SoftwareParser. Sending service unavailable.");
@@ -148,6 +121,7 @@ public class SoftwareProcessFile {
             LOGGER.error("An unexpected exception occurs. ", exp);
             response = Response.status(Status.INTERNAL_SERVER_ERROR).entity(exp.getMessage()).build();
         } finally {
+            ProcessingStages.detach();
             IOUtilities.removeTempFile(originFile);
         }
         LOGGER.debug(methodLogOut());
@@ -235,7 +209,7 @@ public class SoftwareProcessFile {
                     response = Response
                             .ok()
                             .type("application/json")
-                            .entity(json.toString())
+                            .entity(json)
                             .build();
                 }
                 else {
@@ -261,16 +235,22 @@ public class SoftwareProcessFile {
      * @param inputStream the data of origin XML
      * @param disambiguate if true, the extracted mention will be disambiguated
      * @param addParagraphContext if true, the full paragraph where an annotation takes place is added
+     * @param format output format, JSON or CBOR
+     * @param includeStages if true, the time breakdown of the processing is added to the result
      * @return a response object containing the JSON annotations
      */
     public static Response extractXML(final InputStream inputStream,
                                       boolean disambiguate,
                                       boolean addParagraphContext,
+                                      Format format,
+                                      boolean includeStages,
                                       SoftwareConfiguration configuration) {
         LOGGER.debug(methodLogIn());
         Response response = null;
         File originFile = null;
         SoftwareParser parser = SoftwareParser.getInstance(configuration);
+        ProcessingStages stages = new ProcessingStages();
+        ProcessingStages.attach(stages);
 
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
@@ -279,9 +259,13 @@ public class SoftwareProcessFile {
             originFile = IOUtilities.writeInputFile(dis);
             byte[] digest = md.digest();
 
+            String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
+            SoftwareResultCache cache = resultCache(includeStages, configuration);
+            String cacheKey = cache == null ? null : cache.key("xml", md5Str, disambiguate, addParagraphContext, format);
+
             if (originFile == null) {
                 response = Response.status(Status.INTERNAL_SERVER_ERROR).build();
-            } else {
+            } else if ((response = cachedResponse(cache, cacheKey, format)) == null) {
                 long start = System.currentTimeMillis();
                 Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> extractionResult =
                     parser.processXML(originFile, disambiguate, addParagraphContext);
@@ -290,45 +274,15 @@ public class SoftwareProcessFile {
                 List<SoftwareEntity> extractedEntities = extractionResult.getMiddle();
                 Optional<ArticleBiblio> metadata = extractionResult.getLeft();
 
-                StringBuilder json = new StringBuilder();
-                json.append("{ ");
-                json.append(SoftwareServiceUtil.applicationDetails(Versioner.getVersion(), Versioner.getRevision()));
-
-                String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
-                json.append(", \"md5\": \"" + md5Str + "\"");
-
-                metadata.ifPresent(articleBiblio -> json.append(", " + articleBiblio.toJson()));
-
-                json.append(", \"mentions\":[");
-                boolean first = true;
-                if (extractedEntities != null) {
-                    for (SoftwareEntity entity : extractedEntities) {
-                        if (!first)
-                            json.append(", ");
-                        else
-                            first = false;
-                        json.append(entity.toJson());
-                    }
-                }
-                json.append("], \"references\":[");
-
-                List<BibDataSet> bibDataSet = extractionResult.getRight();
-                if (bibDataSet != null && bibDataSet.size() > 0) {
-                    SoftwareServiceUtil.serializeReferences(json, bibDataSet, extractedEntities);
-                }
-
-                json.append("], \"runtime\" :" + (end - start));
-                json.append("}");
+                StreamingOutput result = write(format, metadata, extractedEntities,
+                    extractionResult.getRight(), md5Str, includeStages ? stages : null, end - start);
+                result = caching(SoftwareServiceUtil.timeSerialization(result, stages), cache, cacheKey);
 
-                if (json != null) {
-                    response = Response
-                        .ok()
-                        .type("application/json")
-                        .entity(json.toString())
-                        .build();
-                } else {
-                    response = Response.status(Status.NO_CONTENT).build();
-                }
+                response = Response
+                    .ok()
+                    .type(format.getMediaType())
+                    .entity(result)
+                    .build();
             }
 
         } catch (NoSuchElementException nseExp) {
@@ -338,6 +292,7 @@ public class SoftwareProcessFile {
             LOGGER.error("An unexpected exception occurs. ", exp);
             response = Response.status(Status.INTERNAL_SERVER_ERROR).entity(exp.getMessage()).build();
         } finally {
+            ProcessingStages.detach();
             IOUtilities.removeTempFile(originFile);
         }
         LOGGER.debug(methodLogOut());
@@ -350,18 +305,24 @@ public class SoftwareProcessFile {
      * @param inputStream the data of origin TEI
      * @param disambiguate if true, the extracted mention will be disambiguated
      * @param addParagraphContext if true, the full paragraph where an annotation takes place is added
+     * @param format output format, JSON or CBOR
+     * @param includeStages if true, the time breakdown of the processing is added to the result
      * @return a response object containing the JSON annotations
      */
     public static Response extractTEI(
         final InputStream inputStream,
         boolean disambiguate,
         boolean addParagraphContext,
+        Format format,
+        boolean includeStages,
         SoftwareConfiguration configuration
     ) {
         LOGGER.debug(methodLogIn());
         Response response = null;
         File originFile = null;
         SoftwareParser parser = SoftwareParser.getInstance(configuration);
+        ProcessingStages stages = new ProcessingStages();
+        ProcessingStages.attach(stages);
 
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
@@ -370,61 +331,38 @@ public class SoftwareProcessFile {
             originFile = IOUtilities.writeInputFile(dis);
             byte[] digest = md.digest();
 
+            String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
+            SoftwareResultCache cache = resultCache(includeStages, configuration);
+            String cacheKey = cache == null ? null : cache.key("tei", md5Str, disambiguate, addParagraphContext, format);
+
             if (originFile == null) {
                 response = Response.status(Status.INTERNAL_SERVER_ERROR).build();
-            } else {
+            } else if ((response = cachedResponse(cache, cacheKey, format)) == null) {
                 long start = System.currentTimeMillis();
                 Triple<Optional<ArticleBiblio>, List<SoftwareEntity>, List<BibDataSet>> extractionResult = parser.processTEI(originFile, disambiguate, addParagraphContext);
                 long end = System.currentTimeMillis();
 
                 List<SoftwareEntity> extractedEntities = null;
                 Optional<ArticleBiblio> metadata = Optional.empty();
+                List<BibDataSet> bibDataSet = null;
                 if (extractionResult != null) {
                     extractedEntities = extractionResult.getMiddle();
                     metadata = extractionResult.getLeft();
+                    bibDataSet = extractionResult.getRight();
                 }
 
-                StringBuilder json = new StringBuilder();
-                json.append("{ ");
-                json.append(SoftwareServiceUtil.applicationDetails(Versioner.getVersion(), Versioner.getRevision()));
-
-                String md5Str = DatatypeConverter.printHexBinary(digest).toUpperCase();
-                json.append(", \"md5\": \"" + md5Str + "\"");
-
-                metadata.ifPresent(articleBiblio -> json.append(", " + articleBiblio.toJson()));
-
-                json.append(", \"mentions\":[");
-                boolean first = true;
-                if (extractedEntities != null) {
-                    for (SoftwareEntity entity : extractedEntities) {
-                        if (!first)
-                            json.append(", ");
-                        else
-                            first = false;
-                        json.append(entity.toJson());
-                    }
-                }
-                json.append("], \"references\":[");
-
-                if (extractionResult != null) {
-                    List<BibDataSet> bibDataSet = extractionResult.getRight();
-                    if (bibDataSet != null && bibDataSet.size() > 0) {
-                        SoftwareServiceUtil.serializeReferences(json, bibDataSet, extractedEntities);
-                    }
-                }
-
-                json.append("], \"runtime\" :" + (end - start));
-                json.append("}");
-
-                if (json != null) {
-                    response = Response
-                        .ok()
-                        .type("application/json")
-                        .entity(json.toString())
-                        .build();
-                } else {
-                    response = Response.status(Status.NO_CONTENT).build();
-                }
+                StreamingOutput result = write(format, metadata, extractedEntities, bibDataSet, md5Str,
+                    includeStages ? stages : null, end - start);
+                result = SoftwareServiceUtil.timeSerialization(result, stages);
+                // a failed processing is not cached
+                if (extractionResult != null)
+                    result = caching(result, cache, cacheKey);
+
+                response = Response
+                    .ok()
+                    .type(format.getMediaType())
+                    .entity(result)
+                    .build();
             }
 
         } catch (NoSuchElementException nseExp) {
@@ -434,12 +372,68 @@ public class SoftwareProcessFile {
             LOGGER.error("An unexpected exception occurs. ", exp);
             response = Response.status(Status.INTERNAL_SERVER_ERROR).entity(exp.getMessage()).build();
         } finally {
+            ProcessingStages.detach();
             IOUtilities.removeTempFile(originFile);
         }
         LOGGER.debug(methodLogOut());
         return response;
     }
 
+    /**
+     * Response entity writing the result of a processed XML or TEI document directly to
+     * the response output stream
+     */
+    private static StreamingOutput write(Format format,
+                                         Optional<ArticleBiblio> metadata,
+                                         List<SoftwareEntity> entities,
+                                         List<BibDataSet> bibDataSet,
+                                         String md5,
+                                         ProcessingStages processing,
+                                         long runtime) {
+        return output -> SoftwareResultSerializer.write(output, format, metadata, entities, bibDataSet, md5,
+            processing, runtime);
+    }
+
+    /**
+     * Result cache of the services, null if disabled or if the result includes the time breakdown
+     * of the processing, which is specific to each processing
+     */
+    private static SoftwareResultCache resultCache(boolean includeStages, SoftwareConfiguration configuration) {
+        return includeStages ? null : SoftwareResultCache.getInstance(configuration);
+    }
+
+    /**
+     * Response with the cached result of a submitted file, or null if the result is not cached.
+     * The result is returned as it was written, so its runtime is the one of the processing that
+     * produced it.
+     */
+    private static Response cachedResponse(SoftwareResultCache cache, String cacheKey, Format format) {
+        if (cache == null)
+            return null;
+        byte[] cachedResult = cache.get(cacheKey);
+        if (cachedResult == null)
+            return null;
+        return Response
+            .ok()
+            .type(format.getMediaType())
+            .entity(cachedResult)
+            .build();
+    }
+
+    /**
+     * Response entity also keeping a copy of the written result, cached once fully written. The copy
+     * of a result larger than the maximum size of a cached result is dropped while it is written.
+     */
+    private static StreamingOutput caching(StreamingOutput result, SoftwareResultCache cache, String cacheKey) {
+        if (cache == null)
+            return result;
+        return output -> {
+            SoftwareResultCache.ResultCopy copy = cache.copy(cacheKey);
+            result.write(new TeeOutputStream(output, copy));
+            copy.commit();
+        };
+    }
+
     /**
      * Check whether the result is null or empty.
      */
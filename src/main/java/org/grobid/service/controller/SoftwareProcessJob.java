@@ -0,0 +1,127 @@
+package org.grobid.service.controller;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+
+/**
+ * Asynchronous processing of PDF, XML and TEI documents: submission of a document, status and
+ * result of the processing, see SoftwareJobManager.
+ */
+public class SoftwareProcessJob {
+
+    /**
+     * The class Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftwareProcessJob.class);
+
+    // suggested wait in seconds before submitting again when the job queue is full
+    private static final String RETRY_AFTER = "30";
+
+    /**
+     * Store a document and queue its processing.
+     *
+     * @param inputStream the data of the document
+     * @param type type of document, pdf, xml or tei
+     * @param priority jobs with a higher priority are processed first
+     * @param disambiguate if true, the extracted mention will be disambiguated
+     * @param addParagraphContext if true, the full paragraph where an annotation takes place is added
+     * @param format output format of the result, JSON or CBOR
+     * @return a response object containing the status of the created job
+     */
+    public static Response submit(final InputStream inputStream,
+                                  String type,
+                                  String priority,
+                                  boolean disambiguate,
+                                  boolean addParagraphContext,
+                                  Format format,
+                                  SoftwareConfiguration configuration) {
+        SoftwareJobManager manager = SoftwareJobManager.getInstance(configuration);
+        if (manager == null)
+            return Response.status(Status.NOT_IMPLEMENTED).entity("The asynchronous processing is disabled").build();
+
+        SoftwareJob.Type jobType;
+        int jobPriority;
+        try {
+            jobType = SoftwareJob.Type.valueOf(type.trim().toUpperCase());
+            jobPriority = Integer.parseInt(priority.trim());
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity("Invalid job type or priority").build();
+        }
+        if (inputStream == null)
+            return Response.status(Status.BAD_REQUEST).entity("Missing input document").build();
+
+        try {
+            SoftwareJob job = manager.submit(inputStream, jobType, disambiguate, addParagraphContext, format, jobPriority);
+            if (job == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER)
+                    .entity("Too many queued jobs")
+                    .build();
+            }
+            return Response.accepted(job).location(URI.create(SoftwarePaths.PATH_JOBS + "/" + job.getId())).build();
+        } catch (Exception exp) {
+            LOGGER.error("An unexpected exception occurs. ", exp);
+            return Response.status(Status.INTERNAL_SERVER_ERROR).entity(exp.getMessage()).build();
+        }
+    }
+
+    /**
+     * Status of a job, with its current stage and the time spent in each ended stage.
+     */
+    public static Response status(String id, SoftwareConfiguration configuration) {
+        SoftwareJobManager manager = SoftwareJobManager.getInstance(configuration);
+        SoftwareJob job = (manager == null) ? null : manager.getJob(id);
+        if (job == null)
+            return Response.status(Status.NOT_FOUND).build();
+        return Response.ok(job).build();
+    }
+
+    /**
+     * Result of a job: 200 with the result when the job is done, 202 with the job status while the
+     * job is queued or running, 500 with the error if the job failed.
+     */
+    public static Response result(String id, SoftwareConfiguration configuration) {
+        SoftwareJobManager manager = SoftwareJobManager.getInstance(configuration);
+        SoftwareJob job = (manager == null) ? null : manager.getJob(id);
+        if (job == null)
+            return Response.status(Status.NOT_FOUND).build();
+
+        switch (job.getStatus()) {
+            case DONE:
+                File resultFile = manager.getResult(id);
+                if (resultFile == null || !resultFile.exists())
+                    return Response.status(Status.NOT_FOUND).build();
+                StreamingOutput result = output -> Files.copy(resultFile.toPath(), output);
+                return Response.ok()
+                    .type(job.getFormat().getMediaType())
+                    .entity(result)
+                    .build();
+            case FAILED:
+                return Response.status(Status.INTERNAL_SERVER_ERROR).entity(job.getError()).build();
+            default:
+                return Response.accepted(job).type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * Remove a job and its result.
+     */
+    public static Response delete(String id, SoftwareConfiguration configuration) {
+        SoftwareJobManager manager = SoftwareJobManager.getInstance(configuration);
+        if (manager == null || !manager.delete(id))
+            return Response.status(Status.NOT_FOUND).build();
+        return Response.noContent().build();
+    }
+}
@@ -10,6 +10,7 @@ import java.util.NoSuchElementException;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import org.grobid.core.data.SoftwareComponent;
 import org.grobid.core.data.SoftwareEntity;
@@ -18,7 +19,10 @@ import org.grobid.core.engines.SoftwareContextClassifier;
 import org.grobid.core.engines.SoftwareContextClassifier.MODEL_TYPE;
 import org.grobid.core.factory.GrobidPoolingFactory;
 import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.ProcessingStages;
 import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareResultSerializer;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
 
 import org.grobid.core.utilities.Versioner;
 import org.slf4j.Logger;
@@ -48,13 +52,20 @@ public class SoftwareProcessString {
 	 * 
 	 * @param text the raw string to process
 	 * @param disambiguate if true, the extracted mention will be disambiguated against wikidata
+	 * @param format output format, JSON or CBOR
+	 * @param includeStages if true, the time breakdown of the processing is added to the result
 	 * @return a response object containing the structured xml representation of
 	 *         the extracted software mentions
 	 */
-	public static Response processText(String text, boolean disambiguate, SoftwareConfiguration configuration) {
+	public static Response processText(String text,
+									   boolean disambiguate,
+									   Format format,
+									   boolean includeStages,
+									   SoftwareConfiguration configuration) {
 		Response response = null;
-		StringBuilder retVal = new StringBuilder();
 		SoftwareParser parser = SoftwareParser.getInstance(configuration);
+		ProcessingStages stages = new ProcessingStages();
+		ProcessingStages.attach(stages);
 		try {
             if (text == null) {
                 return Response.status(Status.BAD_REQUEST).build();
@@ -66,32 +77,16 @@ public class SoftwareProcessString {
 			entities = parser.processText(text, disambiguate);
 			long end = System.currentTimeMillis();
 
-			if (entities != null) {
-				retVal.append("{ ");
-				retVal.append(SoftwareServiceUtil.applicationDetails(Versioner.getVersion(), Versioner.getRevision()));
-				if (entities.size() == 0) {
-                    retVal.append(", \"mentions\": []");
-                } else {
-					boolean first = true;
-					for(SoftwareEntity entity : entities)	{
-						if (first) {
-							retVal.append(", \"mentions\": [ ");
-							first = false;
-						} else {	
-							retVal.append(", ");
-						}
-						retVal.append(entity.toJson());
-					}
-					retVal.append("]");
-				}
-				retVal.append(", \"runtime\": " + (end-start));
-				retVal.append("}");
-			}
-			String retValString = retVal.toString();
-			if (!isResultOK(retValString)) {
+			if (entities == null) {
 				response = Response.status(Status.NO_CONTENT).build();
 			} else {
-				response = Response.status(Status.OK).entity(retValString).type(MediaType.TEXT_PLAIN).build();
+				final List<SoftwareEntity> mentions = entities;
+				final long runtime = end - start;
+				final ProcessingStages processing = includeStages ? stages : null;
+				StreamingOutput result = output -> SoftwareResultSerializer.write(output, format, mentions, processing, runtime);
+				result = SoftwareServiceUtil.timeSerialization(result, stages);
+				String mediaType = (format == Format.JSON) ? MediaType.TEXT_PLAIN : format.getMediaType();
+				response = Response.status(Status.OK).entity(result).type(mediaType).build();
 			}
 		} catch (NoSuchElementException nseExp) {
 			LOGGER.error("Could not get an instance of SoftwareParser. Sending service unavailable.");
@@ -99,6 +94,8 @@ public class SoftwareProcessString {
 		} catch (Exception e) {
 			LOGGER.error("An unexpected exception occurs. ", e);
 			response = Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		} finally {
+			ProcessingStages.detach();
 		}
 		return response;
 	}
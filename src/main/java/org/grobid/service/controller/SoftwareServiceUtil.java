@@ -1,18 +1,19 @@
 package org.grobid.service.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.grobid.core.data.BibDataSet;
-import org.grobid.core.data.BiblioComponent;
 import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.utilities.ProcessingStages;
+import org.grobid.core.utilities.SoftwareResultSerializer;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.TimeZone;
+import java.util.Set;
 
 /**
  * Utility methods for GROBID Software service.
@@ -26,23 +27,46 @@ public class SoftwareServiceUtil {
      * Give application information to be added in a JSON result
      */
     public static String applicationDetails(String version, String gitRevision) {
-        StringBuilder sb = new StringBuilder();
-
-        TimeZone tz = TimeZone.getTimeZone("UTC");
-        DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mmZ");
-        df.setTimeZone(tz);
-        String dateISOString = df.format(new java.util.Date());
+        return SoftwareResultSerializer.applicationDetails(version, gitRevision);
+    }
 
-        sb.append("\"application\": \"software-mentions\", ");
-        if (version !=null) {
-            sb.append("\"version\": \"" + version + "\", ");
+    /**
+     * Select the output format from the media types accepted by the client, taken in the order
+     * of preference given by their quality factors: the first accepted media type matching a
+     * format gives the format, JSON being the default and preferred for the wildcards. A format
+     * refused explicitly with a quality factor of 0 is never selected.
+     */
+    public static Format outputFormat(HttpHeaders headers) {
+        List<MediaType> acceptableMediaTypes = headers.getAcceptableMediaTypes();
+        Set<Format> refused = EnumSet.noneOf(Format.class);
+        for (MediaType mediaType : acceptableMediaTypes) {
+            if (quality(mediaType) > 0 || mediaType.isWildcardType() || mediaType.isWildcardSubtype())
+                continue;
+            for (Format format : Format.values()) {
+                if (mediaType.isCompatible(MediaType.valueOf(format.getMediaType())))
+                    refused.add(format);
+            }
         }
-        if (gitRevision != null) {
-            sb.append("\"revision\": \"" + gitRevision + "\", ");
+        for (MediaType mediaType : acceptableMediaTypes) {
+            if (quality(mediaType) <= 0)
+                continue;
+            for (Format format : Format.values()) {
+                if (!refused.contains(format) && mediaType.isCompatible(MediaType.valueOf(format.getMediaType())))
+                    return format;
+            }
         }
-        sb.append("\"date\": \"" + dateISOString + "\"");
+        return Format.JSON;
+    }
 
-        return sb.toString();
+    private static double quality(MediaType mediaType) {
+        String quality = mediaType.getParameters().get("q");
+        if (quality == null)
+            return 1.0;
+        try {
+            return Double.parseDouble(quality);
+        } catch (NumberFormatException e) {
+            return 1.0;
+        }
     }
 
     /**
@@ -63,30 +87,20 @@ public class SoftwareServiceUtil {
     public static void serializeReferences(StringBuilder json, 
                                            List<BibDataSet> bibDataSet, 
                                            List<SoftwareEntity> entities) {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Integer> serializedKeys = new ArrayList<Integer>();
-        for(SoftwareEntity entity : entities) {
-            List<BiblioComponent> bibRefs = entity.getBibRefs();
-            if (bibRefs != null) {
-                for(BiblioComponent bibComponent : bibRefs) {
-                    int refKey = bibComponent.getRefKey();
-                    if (!serializedKeys.contains(refKey)) {
-                        if (serializedKeys.size()>0)
-                            json.append(", ");
-                        if (bibComponent.getBiblio() != null) {
-                            json.append("{ \"refKey\": " + refKey);
-                            try {
-                                json.append(", \"tei\": " + mapper.writeValueAsString(bibComponent.getBiblio().toTEI(refKey)));
-                            } catch (JsonProcessingException e) {
-                                LOGGER.warn("tei for biblio cannot be encoded", e);
-                            }
-                            json.append("}");
-                        }
-                        serializedKeys.add(Integer.valueOf(refKey));
-                    }
-                }
-            }
-        }
+        SoftwareResultSerializer.serializeReferences(json, bibDataSet, entities);
+    }
 
+    /**
+     * Response entity recording its writing as the serialization stage of the processing
+     */
+    public static StreamingOutput timeSerialization(StreamingOutput result, ProcessingStages stages) {
+        return output -> {
+            stages.beginStage(ProcessingStages.SERIALIZATION);
+            try {
+                result.write(output);
+            } finally {
+                stages.end();
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -14,6 +14,7 @@ import org.grobid.core.lexicon.SoftwareLexicon;
 import org.grobid.core.main.GrobidHomeFinder;
 import org.grobid.core.utilities.GrobidProperties;
 import org.grobid.core.utilities.OffsetPosition;
+import org.grobid.core.utilities.OffsetPositionIndex;
 import org.grobid.core.utilities.Pair;
 import org.grobid.core.utilities.SoftwareConfiguration;
 import org.grobid.trainer.evaluation.*;
@@ -22,7 +23,7 @@ import org.grobid.core.engines.SoftwareParser;
 import org.grobid.core.data.SoftwareEntity;
 import org.grobid.core.data.SoftwareComponent;
 import org.grobid.core.analyzers.SoftwareAnalyzer;
-import org.grobid.core.lexicon.FastMatcher;
+import org.grobid.core.lexicon.DocumentTermMatcher;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
@@ -320,15 +321,13 @@ public class SoftwareExtendedEval extends SoftwareTrainer {
 
                 if (this.docLevel) {
                     // doc level evaluation
-                    // we prepare a matcher for all the identified software names 
-                    FastMatcher termPattern = softwareParser.prepareTermPattern(entities);
-                    // we prepare the frequencies for each software name in the whole document
-                    Map<String, Integer> frequencies = softwareParser.prepareFrequencies(entities, tokens);
+                    // we prepare a matcher for all the identified software names, with their frequencies in the whole document
+                    DocumentTermMatcher termMatcher = softwareParser.prepareTermMatcher(entities, tokens);
                     // we prepare a map for mapping a software name with its positions of annotation in the document and its IDF
                     Map<String, Double> termProfiles = softwareParser.prepareTermProfiles(entities);
                     // and call the propagation method
-                    List<OffsetPosition> placeTaken = softwareParser.preparePlaceTaken(entities);
-                    entities = softwareParser.propagateLayoutTokenSequence(tokens, entities, termProfiles, termPattern, placeTaken, frequencies, false, false, false);
+                    OffsetPositionIndex placeTaken = softwareParser.preparePlaceTaken(entities);
+                    entities = softwareParser.propagateLayoutTokenSequence(tokens, entities, termProfiles, termMatcher, placeTaken, false, false, false);
                     Collections.sort(entities);
                 }          
 
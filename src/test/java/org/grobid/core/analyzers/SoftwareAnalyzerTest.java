@@ -0,0 +1,83 @@
+package org.grobid.core.analyzers;
+
+import org.grobid.core.layout.LayoutToken;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Differential test of the SoftwareAnalyzer tokenizer against the former StringTokenizer and
+ * regex based segmentation, over the training corpus and the software lexicon.
+ */
+public class SoftwareAnalyzerTest {
+
+    private static final String REGEX = "(?<=[a-zA-Z])(?=\\d)|(?<=\\d)(?=\\D)";
+
+    private static final String[] SOURCES = {
+        "resources/dataset/software/corpus/all_clean_post_processed-full.holdout.tei.xml",
+        "resources/dataset/software/corpus/all_clean.tei.xml.bak",
+        "resources/lexicon/wikidata-software.txt"
+    };
+
+    private static List<String> referenceTokenize(String text) {
+        List<String> result = new ArrayList<>();
+        StringTokenizer st = new StringTokenizer(text, SoftwareAnalyzer.DELIMITERS, true);
+        while (st.hasMoreTokens()) {
+            String token = st.nextToken();
+            result.addAll(Arrays.asList(token.split(REGEX)));
+        }
+        return result;
+    }
+
+    private static void check(String text) {
+        SoftwareAnalyzer analyzer = SoftwareAnalyzer.getInstance();
+        List<String> expected = referenceTokenize(text);
+        assertEquals(text, expected, analyzer.tokenize(text));
+
+        List<LayoutToken> layoutTokens = analyzer.tokenizeWithLayoutToken(text);
+        assertEquals(text, expected.size(), layoutTokens.size());
+        int offset = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(text, expected.get(i), layoutTokens.get(i).getText());
+            assertEquals(text, offset, layoutTokens.get(i).getOffset());
+            offset += expected.get(i).length();
+        }
+
+        LayoutToken chunk = new LayoutToken(text);
+        chunk.setOffset(100);
+        List<LayoutToken> subTokens = analyzer.tokenize(chunk);
+        assertEquals(text, expected.size(), subTokens.size());
+        offset = 100;
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(text, expected.get(i), subTokens.get(i).getText());
+            assertEquals(text, offset, subTokens.get(i).getOffset());
+            offset += expected.get(i).length();
+        }
+    }
+
+    @Test
+    public void testTokenizeEdgeCases() {
+        for (String text : Arrays.asList("", " ", "GROBID", "v0.5.4", "ab12cd", "12ab", "é1", "1é", "a1b2c3",
+            "x² 10%", "R-3.6.1", " SPSS♦", "emoji 😀 9😀", "（ImageJ）"))
+            check(text);
+    }
+
+    @Test
+    public void testTokenizeCorpus() throws Exception {
+        for (String source : SOURCES) {
+            File file = new File(source);
+            if (!file.exists())
+                continue;
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8))
+                check(line);
+        }
+    }
+}
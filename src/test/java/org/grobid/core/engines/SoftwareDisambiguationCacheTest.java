@@ -0,0 +1,142 @@
+package org.grobid.core.engines;
+
+import org.grobid.core.data.SoftwareComponent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.DataOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SoftwareDisambiguationCacheTest {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SoftwareDisambiguationCache.Result result(String wikidataId, long time) {
+        return new SoftwareDisambiguationCache.Result(wikidataId, 42, 0.75, "en", false, time);
+    }
+
+    private static String wikidataId(SoftwareDisambiguationCache.Result result) {
+        SoftwareComponent component = new SoftwareComponent("SPSS");
+        result.applyTo(component);
+        return component.getWikidataId();
+    }
+
+    @Test
+    public void testMemoryCache() {
+        SoftwareDisambiguationCache cache = new SoftwareDisambiguationCache(10, TTL, null, 0);
+        assertThat(cache.get("s\tSPSS\tctx"), is(nullValue()));
+
+        cache.put("s\tSPSS\tctx", new SoftwareDisambiguationCache.Result("Q1053133", 42, 0.75, "en", true,
+            System.currentTimeMillis()));
+        SoftwareComponent component = new SoftwareComponent("SPSS");
+        cache.get("s\tSPSS\tctx").applyTo(component);
+        assertThat(component.getWikidataId(), is("Q1053133"));
+        assertThat(component.getWikipediaExternalRef(), is(42));
+        assertThat(component.getDisambiguationScore(), is(0.75));
+        assertThat(component.getLang(), is("en"));
+        assertThat(component.isFiltered(), is(true));
+
+        // same mention in another context
+        assertThat(cache.get("s\tSPSS\tother"), is(nullValue()));
+
+        // an expired result is not returned
+        cache.put("s\tR\tctx", result("Q206904", System.currentTimeMillis() - 2 * TTL));
+        assertThat(cache.get("s\tR\tctx"), is(nullValue()));
+    }
+
+    @Test
+    public void testAbsenceOfResultCached() {
+        SoftwareDisambiguationCache cache = new SoftwareDisambiguationCache(10, TTL, null, 0);
+        cache.put("s\tDeepTrace\tctx", SoftwareDisambiguationCache.Result.fromComponent(new SoftwareComponent("DeepTrace")));
+
+        SoftwareDisambiguationCache.Result cached = cache.get("s\tDeepTrace\tctx");
+        assertThat(cached, is(notNullValue()));
+        SoftwareComponent component = new SoftwareComponent("DeepTrace");
+        cached.applyTo(component);
+        assertThat(component.getWikidataId(), is(nullValue()));
+        assertThat(component.getWikipediaExternalRef(), is(-1));
+        assertThat(component.getDisambiguationScore(), is(nullValue()));
+    }
+
+    @Test
+    public void testDiskStorePersistedBetweenRuns() throws Exception {
+        File file = new File(folder.getRoot(), "cache/disambiguation.bin");
+        long now = System.currentTimeMillis();
+        SoftwareDisambiguationCache cache = new SoftwareDisambiguationCache(10, TTL, file, 100);
+        cache.put("s\tSPSS\tctx", result("Q1", now));
+        cache.put("s\tSPSS\tctx", result("Q2", now + 1));
+        cache.put("c\tIBM\tctx", result("Q37156", now));
+        cache.put("s\tR\tctx", result("Q206904", now - 2 * TTL));
+        cache.close();
+        // closing again, or using the cache once closed, has no effect on the file
+        cache.close();
+        cache.put("s\tImageJ\tctx", result("Q1659584", now));
+        assertThat(wikidataId(cache.get("s\tSPSS\tctx")), is("Q2"));
+
+        SoftwareDisambiguationCache reopened = new SoftwareDisambiguationCache(10, TTL, file, 100);
+        assertThat(wikidataId(reopened.get("s\tSPSS\tctx")), is("Q2"));
+        assertThat(wikidataId(reopened.get("c\tIBM\tctx")), is("Q37156"));
+        assertThat(reopened.get("s\tR\tctx"), is(nullValue()));
+        assertThat(reopened.get("s\tImageJ\tctx"), is(nullValue()));
+        reopened.close();
+    }
+
+    @Test
+    public void testDiskStoreCompaction() throws Exception {
+        File file = new File(folder.getRoot(), "disambiguation.bin");
+        long now = System.currentTimeMillis();
+        SoftwareDisambiguationCache cache = new SoftwareDisambiguationCache(100, TTL, file, 3);
+        // compacted at the 7th record, to the 3 most recent entries, then 3 records appended
+        for (int i = 1; i <= 10; i++)
+            cache.put("s\tsoftware" + i + "\tctx", result("Q" + i, now + i));
+        long sizeBeforeReopening = file.length();
+        cache.close();
+
+        // compacted again when opened, as there are more entries than the maximum
+        SoftwareDisambiguationCache reopened = new SoftwareDisambiguationCache(100, TTL, file, 3);
+        assertThat(file.length() < sizeBeforeReopening, is(true));
+        for (int i = 1; i <= 7; i++)
+            assertThat(reopened.get("s\tsoftware" + i + "\tctx"), is(nullValue()));
+        for (int i = 8; i <= 10; i++)
+            assertThat(wikidataId(reopened.get("s\tsoftware" + i + "\tctx")), is("Q" + i));
+        reopened.close();
+    }
+
+    @Test
+    public void testTruncatedLastRecordIgnored() throws Exception {
+        File file = new File(folder.getRoot(), "disambiguation.bin");
+        long now = System.currentTimeMillis();
+        SoftwareDisambiguationCache cache = new SoftwareDisambiguationCache(10, TTL, file, 100);
+        cache.put("s\tSPSS\tctx", result("Q1053133", now));
+        cache.close();
+        long size = file.length();
+
+        // interrupted write: a record length followed by fewer bytes
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(100);
+            out.write(new byte[] {1, 2, 3});
+        }
+
+        SoftwareDisambiguationCache reopened = new SoftwareDisambiguationCache(10, TTL, file, 100);
+        assertThat(file.length(), is(size));
+        assertThat(wikidataId(reopened.get("s\tSPSS\tctx")), is("Q1053133"));
+        reopened.put("s\tR\tctx", result("Q206904", now));
+        reopened.close();
+
+        SoftwareDisambiguationCache again = new SoftwareDisambiguationCache(10, TTL, file, 100);
+        assertThat(wikidataId(again.get("s\tSPSS\tctx")), is("Q1053133"));
+        assertThat(wikidataId(again.get("s\tR\tctx")), is("Q206904"));
+        again.close();
+    }
+}
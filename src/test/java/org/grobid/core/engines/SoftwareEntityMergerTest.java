@@ -0,0 +1,257 @@
+package org.grobid.core.engines;
+
+import org.grobid.core.data.BiblioComponent;
+import org.grobid.core.data.SoftwareComponent;
+import org.grobid.core.data.SoftwareEntity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Document-level merge of the entities compared with the pairwise loops it replaces, on random
+ * entities sharing software names
+ */
+public class SoftwareEntityMergerTest {
+
+    // raw forms, some of them having the same normalized form
+    private static final String[] NAMES = {"SPSS", "spss", "ImageJ", "Image J", "Image  J", "R", "GNU Octave",
+        "GNU\nOctave", "Octave"};
+
+    /**
+     * Previous propagation of the disambiguation by software name raw form
+     */
+    private static void propagateDisambiguation(List<SoftwareEntity> entities) {
+        for (SoftwareEntity entity1 : entities) {
+            if (entity1.getSoftwareName() != null && entity1.getSoftwareName().getWikidataId() != null) {
+                for (SoftwareEntity entity2 : entities) {
+                    if (entity2.getSoftwareName() != null && entity2.getSoftwareName().getWikidataId() != null) {
+                        // if the entity is already disambiguated, nothing possible
+                        continue;
+                    }
+                    if (entity2.getSoftwareName() != null &&
+                        entity2.getSoftwareName().getRawForm().equals(entity1.getSoftwareName().getRawForm())) {
+                        entity1.getSoftwareName().copyKnowledgeInformationTo(entity2.getSoftwareName());
+                        entity2.getSoftwareName().setLang(entity1.getSoftwareName().getLang());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Previous propagation of the bibliographical references by software name raw form
+     */
+    private static void propagateBibRefs(List<SoftwareEntity> entities) {
+        for (SoftwareEntity entity1 : entities) {
+            if (entity1.getBibRefs() != null && entity1.getBibRefs().size() > 0) {
+                for (SoftwareEntity entity2 : entities) {
+                    if (entity2.getBibRefs() != null) {
+                        continue;
+                    }
+                    if (entity2.getSoftwareName() != null &&
+                        entity2.getSoftwareName().getRawForm().equals(entity1.getSoftwareName().getRawForm())) {
+                        List<BiblioComponent> newBibRefs = new ArrayList<>();
+                        for (BiblioComponent bibComponent : entity1.getBibRefs()) {
+                            newBibRefs.add(new BiblioComponent(bibComponent));
+                        }
+                        entity2.setBibRefs(newBibRefs);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Previous merge of the attributes by software name normalized form
+     */
+    private static void mergeAttributes(List<SoftwareEntity> entities) {
+        for (SoftwareEntity entity1 : entities) {
+            if (entity1.getSoftwareName() != null) {
+                for (SoftwareEntity entity2 : entities) {
+                    if (entity2.getSoftwareName() != null &&
+                        entity2.getSoftwareName().getNormalizedForm().equals(entity1.getSoftwareName().getNormalizedForm())) {
+                        SoftwareEntity.mergeWithCopy(entity1, entity2);
+                        if (entity1.getSoftwareName().getWikidataId() != null && entity2.getSoftwareName().getWikidataId() == null) {
+                            entity1.getSoftwareName().copyKnowledgeInformationTo(entity2.getSoftwareName());
+                            entity2.getSoftwareName().setLang(entity1.getSoftwareName().getLang());
+                        } else if (entity2.getSoftwareName().getWikidataId() != null && entity1.getSoftwareName().getWikidataId() == null) {
+                            entity2.getSoftwareName().copyKnowledgeInformationTo(entity1.getSoftwareName());
+                            entity1.getSoftwareName().setLang(entity2.getSoftwareName().getLang());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static SoftwareComponent component(Random random, String rawForm) {
+        SoftwareComponent component = new SoftwareComponent(rawForm);
+        component.setRawForm(rawForm);
+        int start = random.nextInt(1000);
+        component.setOffsetStart(start);
+        component.setOffsetEnd(start + rawForm.length());
+        if (random.nextBoolean())
+            component.setLang(random.nextBoolean() ? "en" : "de");
+        return component;
+    }
+
+    private static List<BiblioComponent> bibRefs(Random random) {
+        List<BiblioComponent> bibRefs = new ArrayList<>();
+        int size = random.nextInt(3);
+        for (int i = 0; i < size; i++) {
+            BiblioComponent bibRef = new BiblioComponent(null, random.nextInt(20));
+            bibRef.setRawForm("[" + bibRef.getRefKey() + "]");
+            int start = random.nextInt(1000);
+            bibRef.setOffsetStart(start);
+            bibRef.setOffsetEnd(start + 4);
+            bibRefs.add(bibRef);
+        }
+        return bibRefs;
+    }
+
+    /**
+     * Random entities, identical for the same seed
+     */
+    private static List<SoftwareEntity> entities(long seed) {
+        Random random = new Random(seed);
+        List<SoftwareEntity> entities = new ArrayList<>();
+        int size = random.nextInt(12);
+        for (int i = 0; i < size; i++) {
+            SoftwareEntity entity = new SoftwareEntity();
+            entities.add(entity);
+            if (random.nextInt(15) == 0) {
+                // no software name, and then no reference as for the previous loops
+                entity.setVersion(component(random, "2." + i));
+                continue;
+            }
+
+            SoftwareComponent name = component(random, NAMES[random.nextInt(NAMES.length)]);
+            if (random.nextInt(3) == 0) {
+                name.setWikidataId("Q" + random.nextInt(5));
+                name.setWikipediaExternalRef(random.nextInt(1000));
+                name.setDisambiguationScore(random.nextDouble());
+            }
+            entity.setSoftwareName(name);
+            if (random.nextInt(3) == 0)
+                entity.setVersion(component(random, "v" + random.nextInt(10)));
+            if (random.nextInt(3) == 0)
+                entity.setCreator(component(random, "IBM " + random.nextInt(10)));
+            if (random.nextInt(4) == 0)
+                entity.setSoftwareURL(component(random, "https://example.org/" + random.nextInt(10)));
+            if (random.nextInt(4) == 0)
+                entity.setLanguage(component(random, random.nextBoolean() ? "Python" : "Java"));
+            if (random.nextInt(3) == 0)
+                entity.setBibRefs(bibRefs(random));
+        }
+        return entities;
+    }
+
+    private static void describe(StringBuilder result, String field, SoftwareComponent component) {
+        result.append(" ").append(field).append("=");
+        if (component == null) {
+            result.append("-");
+            return;
+        }
+        result.append(component.getRawForm()).append("|").append(component.getNormalizedForm())
+            .append("|").append(component.getLang());
+        if (component.getOffsets() != null)
+            result.append("|").append(component.getOffsetStart()).append("-").append(component.getOffsetEnd());
+        result.append("|").append(component.getWikidataId()).append("|").append(component.getWikipediaExternalRef())
+            .append("|").append(component.getDisambiguationScore());
+    }
+
+    private static String describe(List<SoftwareEntity> entities) {
+        StringBuilder result = new StringBuilder();
+        for (SoftwareEntity entity : entities) {
+            describe(result, "name", entity.getSoftwareName());
+            describe(result, "version", entity.getVersion());
+            describe(result, "creator", entity.getCreator());
+            describe(result, "url", entity.getSoftwareURL());
+            describe(result, "language", entity.getLanguage());
+            result.append(" refs=");
+            if (entity.getBibRefs() == null) {
+                result.append("-");
+            } else {
+                for (BiblioComponent bibRef : entity.getBibRefs()) {
+                    describe(result, "ref" + bibRef.getRefKey(), bibRef);
+                }
+            }
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
+    private static void assertDistinctBibRefLists(List<SoftwareEntity> entities) {
+        Map<List<BiblioComponent>, Boolean> lists = new IdentityHashMap<>();
+        for (SoftwareEntity entity : entities) {
+            if (entity.getBibRefs() != null)
+                assertThat(lists.put(entity.getBibRefs(), true) == null, is(true));
+        }
+    }
+
+    @Test
+    public void testPropagateDisambiguationAsPairwiseLoop() {
+        Random random = new Random(53);
+        for (int i = 0; i < 3000; i++) {
+            long seed = random.nextLong();
+            List<SoftwareEntity> expected = entities(seed);
+            propagateDisambiguation(expected);
+            List<SoftwareEntity> actual = entities(seed);
+            SoftwareEntityMerger.propagateDisambiguation(actual);
+            assertThat(describe(actual), is(describe(expected)));
+        }
+    }
+
+    @Test
+    public void testPropagateBibRefsAsPairwiseLoop() {
+        Random random = new Random(59);
+        for (int i = 0; i < 3000; i++) {
+            long seed = random.nextLong();
+            List<SoftwareEntity> expected = entities(seed);
+            propagateBibRefs(expected);
+            List<SoftwareEntity> actual = entities(seed);
+            SoftwareEntityMerger.propagateBibRefs(actual);
+            assertThat(describe(actual), is(describe(expected)));
+            assertDistinctBibRefLists(actual);
+        }
+    }
+
+    @Test
+    public void testMergeAttributesAsPairwiseLoop() {
+        Random random = new Random(61);
+        for (int i = 0; i < 3000; i++) {
+            long seed = random.nextLong();
+            List<SoftwareEntity> expected = entities(seed);
+            mergeAttributes(expected);
+            List<SoftwareEntity> actual = entities(seed);
+            SoftwareEntityMerger.mergeAttributes(actual);
+            assertThat(describe(actual), is(describe(expected)));
+            assertDistinctBibRefLists(actual);
+        }
+    }
+
+    @Test
+    public void testMergeSequenceAsPairwiseLoops() {
+        // the order of the end of the PDF processing
+        Random random = new Random(67);
+        for (int i = 0; i < 3000; i++) {
+            long seed = random.nextLong();
+            List<SoftwareEntity> expected = entities(seed);
+            propagateDisambiguation(expected);
+            propagateBibRefs(expected);
+            mergeAttributes(expected);
+            List<SoftwareEntity> actual = entities(seed);
+            SoftwareEntityMerger.propagateDisambiguation(actual);
+            SoftwareEntityMerger.propagateBibRefs(actual);
+            SoftwareEntityMerger.mergeAttributes(actual);
+            assertThat(describe(actual), is(describe(expected)));
+        }
+    }
+}
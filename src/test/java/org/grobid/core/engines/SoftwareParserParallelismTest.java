@@ -0,0 +1,84 @@
+package org.grobid.core.engines;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.main.LibraryLoader;
+import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Entities of a document processed with its chunks of segments in the request thread only, then
+ * concurrently
+ */
+public class SoftwareParserParallelismTest {
+    private static final File TEI_FILE = new File("src/test/resources/journal.pone.0278912.xml");
+
+    private static SoftwareConfiguration configuration;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        File yamlFile = new File("resources/config/config.yml");
+        yamlFile = new File(yamlFile.getAbsolutePath());
+        configuration = mapper.readValue(yamlFile, SoftwareConfiguration.class);
+
+        GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(configuration.getGrobidHome()));
+        GrobidProperties.getInstance(grobidHomeFinder);
+        if (configuration.getModels() != null) {
+            for (ModelParameters model : configuration.getModels())
+                GrobidProperties.getInstance().addModel(model);
+        }
+        LibraryLoader.load();
+    }
+
+    /**
+     * Entities of the document in their order, with their components and offsets
+     */
+    private static List<String> processTEI(SoftwareParser parser, File file) throws Exception {
+        List<String> result = new ArrayList<>();
+        for (SoftwareEntity entity : parser.processTEI(file, false, false).getMiddle())
+            result.add(entity.toJson());
+        return result;
+    }
+
+    @Test
+    public void testSameEntitiesWithAnySegmentParallelism() throws Exception {
+        SoftwareParser parser = SoftwareParser.getInstance(configuration);
+
+        // the configuration of the instance is the one of the first created parser
+        SoftwareConfiguration parserConfiguration = parser.getSoftwareConfiguration();
+        assumeTrue("segment executor created", parserConfiguration.getSegmentParallelism() > 1);
+        int segmentParallelism = parserConfiguration.getSegmentParallelism();
+        int segmentChunkSize = parserConfiguration.getSegmentChunkSize();
+        try {
+            // many small chunks, so that they are spread over the workers
+            parserConfiguration.setSegmentChunkSize(200);
+
+            parserConfiguration.setSegmentParallelism(1);
+            List<String> expected = processTEI(parser, TEI_FILE);
+            assertThat(expected.isEmpty(), is(false));
+
+            for (int parallelism : new int[] {2, 4, 8}) {
+                parserConfiguration.setSegmentParallelism(parallelism);
+                assertThat("segment parallelism " + parallelism, processTEI(parser, TEI_FILE), is(expected));
+            }
+        } finally {
+            parserConfiguration.setSegmentParallelism(segmentParallelism);
+            parserConfiguration.setSegmentChunkSize(segmentChunkSize);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.grobid.core.engines;
+
+import org.grobid.core.data.BiblioComponent;
+import org.grobid.core.data.SoftwareComponent;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.utilities.OffsetPosition;
+import org.grobid.core.utilities.OffsetPositionIndex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Position checks of the parser based on OffsetPositionIndex, compared with the pairwise loops they
+ * replace on random mentions and reference callouts
+ */
+public class SoftwareParserPositionsTest {
+
+    /**
+     * Previous overlap check of the propagation, against the list of taken places
+     */
+    private static boolean overlapsPosition(final List<OffsetPosition> list, final OffsetPosition position,
+                                            int offsetShift) {
+        for (OffsetPosition pos : list) {
+            if (pos.start == position.start || pos.start - offsetShift == position.start)
+                return true;
+            if (pos.end == position.end || pos.end - offsetShift == position.end)
+                return true;
+            if (position.start <= pos.start && pos.start <= position.end)
+                return true;
+            if (position.start <= pos.start - offsetShift && pos.start - offsetShift <= position.end)
+                return true;
+            if (pos.start - offsetShift <= position.start && position.start <= pos.end - offsetShift)
+                return true;
+            if (pos.start - offsetShift <= position.start && position.start <= pos.end - offsetShift)
+                return true;
+            if (pos.start <= position.start && position.start < pos.end)
+                return true;
+            if (position.start < pos.end && pos.end <= position.end)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Previous attachment of the reference callouts, scanning all the callouts for each entity
+     */
+    private static void attachRefBib(List<SoftwareEntity> entities, List<BiblioComponent> refBibComponents,
+                                     int intervalMax) {
+        for (SoftwareEntity entity : entities) {
+            int shiftOffset = 0;
+            if (entity.getGlobalContextOffset() != -1) {
+                shiftOffset = entity.getGlobalContextOffset();
+            }
+
+            SoftwareComponent nameComponent = entity.getSoftwareName();
+            int pos = nameComponent.getOffsetEnd() + shiftOffset;
+
+            int endPos = pos;
+            List<SoftwareComponent> theComps = new ArrayList<SoftwareComponent>();
+            SoftwareComponent comp = entity.getVersion();
+            if (comp != null)
+                theComps.add(comp);
+            comp = entity.getCreator();
+            if (comp != null)
+                theComps.add(comp);
+            comp = entity.getSoftwareURL();
+            if (comp != null)
+                theComps.add(comp);
+
+            for (SoftwareComponent theComp : theComps) {
+                if (theComp.getOffsets() == null)
+                    continue;
+                int localPos = theComp.getOffsetEnd() + shiftOffset;
+                if (localPos > endPos)
+                    endPos = localPos;
+            }
+
+            for (BiblioComponent refBib : refBibComponents) {
+                if ((refBib.getOffsetStart() >= pos) &&
+                    (refBib.getOffsetStart() <= endPos + intervalMax)) {
+                    entity.addBibRef(refBib);
+                    endPos = refBib.getOffsetEnd();
+                }
+            }
+        }
+    }
+
+    /**
+     * Previous filter of the versions including a reference callout
+     */
+    private static void filterByRefCallout(List<SoftwareEntity> entities, List<BiblioComponent> refBibComponents) {
+        for (BiblioComponent refBib : refBibComponents) {
+            for (SoftwareEntity entity : entities) {
+                if (entity.getVersion() == null)
+                    continue;
+                SoftwareComponent version = entity.getVersion();
+                if ((refBib.getOffsetStart() >= version.getOffsetStart()) &&
+                    (refBib.getOffsetEnd() <= version.getOffsetEnd())) {
+                    entity.setVersion(null);
+                }
+            }
+        }
+    }
+
+    private static OffsetPosition randomPosition(Random random) {
+        int start = random.nextInt(300);
+        // a few ill-formed positions
+        int length = random.nextInt(20) == 0 ? -1 - random.nextInt(5) : random.nextInt(15);
+        return new OffsetPosition(start, start + length);
+    }
+
+    private static SoftwareComponent component(OffsetPosition position) {
+        SoftwareComponent component = new SoftwareComponent();
+        component.setOffsetStart(position.start);
+        component.setOffsetEnd(position.end);
+        return component;
+    }
+
+    /**
+     * Random entities, identical for the same seed
+     */
+    private static List<SoftwareEntity> entities(long seed) {
+        Random random = new Random(seed);
+        List<SoftwareEntity> entities = new ArrayList<>();
+        int size = random.nextInt(10);
+        for (int i = 0; i < size; i++) {
+            SoftwareEntity entity = new SoftwareEntity();
+            entity.setSoftwareName(component(randomPosition(random)));
+            if (random.nextBoolean())
+                entity.setVersion(component(randomPosition(random)));
+            if (random.nextInt(3) == 0)
+                entity.setCreator(component(randomPosition(random)));
+            if (random.nextInt(3) == 0)
+                entity.setSoftwareURL(component(randomPosition(random)));
+            if (random.nextInt(4) == 0)
+                entity.setGlobalContextOffset(random.nextInt(50));
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private static List<BiblioComponent> refBibs(Random random, boolean sorted) {
+        List<BiblioComponent> refBibs = new ArrayList<>();
+        int size = random.nextInt(15);
+        for (int i = 0; i < size; i++) {
+            BiblioComponent refBib = new BiblioComponent(null, i);
+            OffsetPosition position = randomPosition(random);
+            refBib.setOffsetStart(position.start);
+            refBib.setOffsetEnd(position.end);
+            refBibs.add(refBib);
+        }
+        if (sorted)
+            refBibs.sort(Comparator.comparingInt(BiblioComponent::getOffsetStart));
+        return refBibs;
+    }
+
+    private static String attached(List<SoftwareEntity> entities) {
+        StringBuilder result = new StringBuilder();
+        for (SoftwareEntity entity : entities) {
+            result.append(entity.getVersion() == null ? "-" : "v");
+            if (entity.getBibRefs() != null) {
+                for (BiblioComponent refBib : entity.getBibRefs())
+                    result.append(" ").append(refBib.getRefKey());
+            }
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testOverlapsAsPairwiseLoop() {
+        Random random = new Random(31);
+        for (int i = 0; i < 2000; i++) {
+            List<OffsetPosition> placeTaken = new ArrayList<>();
+            OffsetPositionIndex index = new OffsetPositionIndex();
+            int size = random.nextInt(30);
+            for (int j = 0; j < size; j++) {
+                OffsetPosition position = randomPosition(random);
+                placeTaken.add(position);
+                index.add(position);
+            }
+            for (int j = 0; j < 20; j++) {
+                OffsetPosition candidate = randomPosition(random);
+                int offsetShift = random.nextBoolean() ? 0 : random.nextInt(100) - 20;
+                assertThat(placeTaken + " " + candidate + " " + offsetShift,
+                    SoftwareParser.overlapsPosition(index, candidate, offsetShift),
+                    is(overlapsPosition(placeTaken, candidate, offsetShift)));
+
+                // as in the propagation, the accepted candidates take their place
+                if (random.nextBoolean()) {
+                    placeTaken.add(candidate);
+                    index.add(candidate);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRefBibAttachmentAsPairwiseLoop() {
+        Random random = new Random(37);
+        for (int i = 0; i < 2000; i++) {
+            long seed = random.nextLong();
+            // callouts are normally sorted by start, the other order takes the previous loop
+            List<BiblioComponent> refBibs = refBibs(random, random.nextInt(4) != 0);
+            int intervalMax = random.nextInt(10);
+
+            List<SoftwareEntity> expected = entities(seed);
+            attachRefBib(expected, refBibs, intervalMax);
+            List<SoftwareEntity> actual = SoftwareParser.attachRefBib(entities(seed), refBibs, intervalMax);
+            assertThat(attached(actual), is(attached(expected)));
+        }
+    }
+
+    @Test
+    public void testRefCalloutFilterAsPairwiseLoop() {
+        Random random = new Random(41);
+        for (int i = 0; i < 2000; i++) {
+            long seed = random.nextLong();
+            List<BiblioComponent> refBibs = refBibs(random, random.nextBoolean());
+
+            List<SoftwareEntity> expected = entities(seed);
+            filterByRefCallout(expected, refBibs);
+            List<SoftwareEntity> actual = SoftwareParser.filterByRefCallout(entities(seed), refBibs);
+            assertThat(attached(actual), is(attached(expected)));
+        }
+    }
+}
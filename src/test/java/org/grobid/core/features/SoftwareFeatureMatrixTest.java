@@ -0,0 +1,93 @@
+package org.grobid.core.features;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.grobid.core.analyzers.SoftwareAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.lexicon.Lexicon;
+import org.grobid.core.lexicon.SoftwareLexicon;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.OffsetPosition;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.UnicodeUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SoftwareFeatureMatrixTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        File yamlFile = new File(new File("resources/config/config.yml").getAbsolutePath());
+        SoftwareConfiguration softwareConfiguration = mapper.readValue(yamlFile, SoftwareConfiguration.class);
+        GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(softwareConfiguration.getGrobidHome()));
+        GrobidProperties.getInstance(grobidHomeFinder);
+    }
+
+    /**
+     * Reference rendering: one FeaturesVectorSoftware line per token
+     */
+    private static String printVectors(SoftwareFeatureMatrix matrix) {
+        StringBuilder expected = new StringBuilder();
+        for (int row = 0; row < matrix.size(); row++) {
+            if (matrix.isLineBreak(row)) {
+                expected.append('\n');
+                continue;
+            }
+            FeaturesVectorSoftware vector = FeaturesVectorSoftware.addFeaturesSoftware(matrix.getWord(row),
+                matrix.getLabel(row), matrix.isSoftwareName(row), matrix.isSoftwareToken(row), matrix.isUrl(row));
+            expected.append(vector.printVector()).append('\n');
+        }
+        return expected.toString();
+    }
+
+    @Test
+    public void testRenderingIdenticalToFeatureVectors() {
+        List<String> words = Arrays.asList("We", "used", "SPSS", "v22.0.1", "(", "IBM", ")", ",", "a", "R",
+            "1984", "-", "\"", "'", "`", "[", "]", ".", "ÉCOLE", "naïve", "x86_64", "https://github.com/kermitt2/grobid",
+            "ImageJ", "iOS", "3D", "α", "SPSS");
+        SoftwareFeatureMatrix matrix = new SoftwareFeatureMatrix(4);
+        for (int i = 0; i < words.size(); i++) {
+            matrix.addToken(i, words.get(i), i % 3 == 0, i % 4 == 1, i % 5 == 2);
+            if (i == 10)
+                matrix.addLineBreak(i);
+        }
+        matrix.setLabel(2, "<software>");
+
+        assertThat(matrix.toString(), is(printVectors(matrix)));
+        assertThat(SoftwareFeatureMatrix.render(Arrays.asList(matrix, matrix)),
+            is(printVectors(matrix) + "\n\n" + printVectors(matrix) + "\n\n"));
+    }
+
+    @Test
+    public void testBuiltMatrixIdenticalToFeatureVectors() {
+        String text = "The analysis was done with SPSS Statistics version 25 (https://www.ibm.com/spss) and " +
+            "the ImageJ/Fiji plugin v1.52p; all scripts were written in Python 3.8.";
+        List<LayoutToken> tokens = SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+        List<OffsetPosition> softwarePositions = SoftwareLexicon.getInstance().tokenPositionsSoftwareNames(tokens);
+        List<OffsetPosition> urlPositions = Lexicon.getInstance().tokenPositionsUrlPattern(tokens);
+
+        SoftwareFeatureMatrix matrix = SoftwareFeatureMatrixBuilder.build(tokens, softwarePositions, urlPositions);
+
+        // every non-space token has a row, with its index in the token list
+        int rows = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            String word = UnicodeUtil.normaliseTextAndRemoveSpaces(tokens.get(i).getText());
+            if (word.trim().length() == 0)
+                continue;
+            assertThat(matrix.getTokenIndex(rows), is(i));
+            assertThat(matrix.getWord(rows), is(word));
+            rows++;
+        }
+        assertThat(matrix.getTokenRowCount(), is(rows));
+        assertThat(matrix.toString(), is(printVectors(matrix)));
+    }
+}
@@ -0,0 +1,224 @@
+package org.grobid.core.lexicon;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.grobid.core.analyzers.SoftwareAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.OffsetPosition;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Parity of the document term matcher with the former propagation matching, with one FastMatcher
+ * per counted term over the whole document for the frequencies and one FastMatcher of the
+ * propagated terms per segment for the positions
+ */
+public class DocumentTermMatcherTest {
+
+    private static final File CORPUS = new File("resources/dataset/software/corpus/all_clean_post_processed-full.holdout.tei.xml");
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        File yamlFile = new File(new File("resources/config/config.yml").getAbsolutePath());
+        SoftwareConfiguration softwareConfiguration = mapper.readValue(yamlFile, SoftwareConfiguration.class);
+        GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(softwareConfiguration.getGrobidHome()));
+        GrobidProperties.getInstance(grobidHomeFinder);
+    }
+
+    /**
+     * Former frequencies: delimiters ignored in the terms and the text, case sensitive
+     */
+    private static Map<String, Integer> referenceFrequencies(List<String> countedTerms, List<LayoutToken> documentTokens) {
+        Map<String, Integer> frequencies = new TreeMap<>();
+        for (String term : countedTerms) {
+            FastMatcher localTermPattern = new FastMatcher();
+            localTermPattern.loadTerm(term, SoftwareAnalyzer.getInstance());
+            List<OffsetPosition> results = localTermPattern.matchLayoutToken(documentTokens, true, true);
+            frequencies.put(term, (results == null) ? 0 : results.size());
+        }
+        return frequencies;
+    }
+
+    /**
+     * Former matcher of the propagated terms, delimiters not ignored in the terms
+     */
+    private static FastMatcher referenceTermPattern(List<String> propagatedTerms) {
+        FastMatcher termPattern = new FastMatcher();
+        for (String term : propagatedTerms)
+            termPattern.loadTerm(term, SoftwareAnalyzer.getInstance(), false);
+        return termPattern;
+    }
+
+    private static String sorted(List<OffsetPosition> positions) {
+        List<OffsetPosition> result = new ArrayList<>();
+        if (positions != null)
+            result.addAll(positions);
+        result.sort(SoftwareNameMatcher.POSITION_ORDER);
+        return result.toString();
+    }
+
+    /**
+     * Document tokens of the paragraphs separated by line breaks
+     */
+    private static List<LayoutToken> documentTokens(List<String> paragraphs) {
+        return SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(String.join("\n", paragraphs));
+    }
+
+    /**
+     * Segments of the document tokens between the line breaks, with the same token objects
+     */
+    private static List<List<LayoutToken>> segments(List<LayoutToken> documentTokens) {
+        List<List<LayoutToken>> segments = new ArrayList<>();
+        List<LayoutToken> segment = new ArrayList<>();
+        for (LayoutToken token : documentTokens) {
+            if (token.getText().equals("\n")) {
+                segments.add(segment);
+                segment = new ArrayList<>();
+            } else {
+                segment.add(token);
+            }
+        }
+        segments.add(segment);
+        return segments;
+    }
+
+    /**
+     * Segments tokenized again, with the offsets of the document but other token objects
+     */
+    private static List<List<LayoutToken>> copiedSegments(List<String> paragraphs) {
+        List<List<LayoutToken>> segments = new ArrayList<>();
+        int offset = 0;
+        for (String paragraph : paragraphs) {
+            List<LayoutToken> segment = SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(paragraph);
+            for (LayoutToken token : segment)
+                token.setOffset(token.getOffset() + offset);
+            segments.add(segment);
+            offset += paragraph.length() + 1;
+        }
+        return segments;
+    }
+
+    /**
+     * Position of the single occurrence of a token sequence in a segment
+     */
+    private static String termMatches(List<LayoutToken> segment, String... terms) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < segment.size(); i++) {
+            if (indexes.size() < terms.length && segment.get(i).getText().equals(terms[indexes.size()]))
+                indexes.add(i);
+        }
+        return Collections.singletonList(new OffsetPosition(indexes.get(0), indexes.get(indexes.size() - 1))).toString();
+    }
+
+    private static void assertParity(List<String> paragraphs, List<String> names) {
+        List<LayoutToken> documentTokens = documentTokens(paragraphs);
+        String context = String.join("\n", paragraphs) + " / " + names;
+
+        DocumentTermMatcher matcher = new DocumentTermMatcher(names, names, documentTokens);
+        assertThat(context, new TreeMap<>(matcher.getFrequencies()), is(referenceFrequencies(names, documentTokens)));
+
+        FastMatcher termPattern = referenceTermPattern(names);
+        List<List<LayoutToken>> segments = segments(documentTokens);
+
+        // segments in document order, found with the cursor
+        for (List<LayoutToken> segment : segments)
+            assertThat(context, sorted(matcher.matchLayoutTokens(segment)), is(sorted(termPattern.matchLayoutToken(segment, true, true))));
+
+        // segments in reverse order, found by offset
+        matcher = new DocumentTermMatcher(names, names, documentTokens);
+        List<List<LayoutToken>> reversed = new ArrayList<>(segments);
+        Collections.reverse(reversed);
+        for (List<LayoutToken> segment : reversed)
+            assertThat(context, sorted(matcher.matchLayoutTokens(segment)), is(sorted(termPattern.matchLayoutToken(segment, true, true))));
+
+        // segments not part of the document tokens, matched again
+        for (List<LayoutToken> segment : copiedSegments(paragraphs))
+            assertThat(context, sorted(matcher.matchLayoutTokens(segment)), is(sorted(termPattern.matchLayoutToken(segment, true, true))));
+    }
+
+    @Test
+    public void testTermsAcrossSegments() {
+        List<String> paragraphs = Arrays.asList("We used GNU", "Octave and Image", "J, then SPSS.", "GNU Octave again");
+        List<String> names = Arrays.asList("GNU Octave", "Image J", "SPSS", "Image J, then");
+        assertParity(paragraphs, names);
+
+        // counted in the document, but never matched in a segment
+        List<LayoutToken> documentTokens = documentTokens(paragraphs);
+        DocumentTermMatcher matcher = new DocumentTermMatcher(names, names, documentTokens);
+        assertThat(matcher.getFrequencies().get("GNU Octave"), is(2));
+        assertThat(matcher.getFrequencies().get("Image J"), is(1));
+        List<List<LayoutToken>> segments = segments(documentTokens);
+        assertThat(matcher.matchLayoutTokens(segments.get(0)).size(), is(0));
+        assertThat(matcher.matchLayoutTokens(segments.get(1)).size(), is(0));
+        assertThat(matcher.matchLayoutTokens(segments.get(2)).toString(),
+            is(termMatches(segments.get(2), "SPSS")));
+        assertThat(matcher.matchLayoutTokens(segments.get(3)).toString(),
+            is(termMatches(segments.get(3), "GNU", "Octave")));
+    }
+
+    @Test
+    public void testRepeatedIdenticalTokens() {
+        List<String> paragraphs = Arrays.asList("SPSS SPSS SPSS", "SPSS", "SPSS", "R R and R", "SPSS");
+        List<String> names = Arrays.asList("SPSS", "SPSS SPSS", "R", "R and R", "R R");
+        assertParity(paragraphs, names);
+
+        // identical segments told apart by their token objects
+        List<LayoutToken> documentTokens = documentTokens(paragraphs);
+        DocumentTermMatcher matcher = new DocumentTermMatcher(names, names, documentTokens);
+        assertThat(matcher.getFrequencies().get("SPSS"), is(6));
+        List<List<LayoutToken>> segments = segments(documentTokens);
+        assertThat(matcher.matchLayoutTokens(segments.get(4)).toString(), is(termMatches(segments.get(4), "SPSS")));
+        assertThat(matcher.matchLayoutTokens(segments.get(1)).toString(), is(termMatches(segments.get(1), "SPSS")));
+        assertThat(matcher.matchLayoutTokens(segments.get(2)).toString(), is(termMatches(segments.get(2), "SPSS")));
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        if (!CORPUS.exists())
+            return;
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document corpus = factory.newDocumentBuilder().parse(CORPUS);
+
+        NodeList documents = corpus.getElementsByTagNameNS("*", "TEI");
+        for (int i = 0; i < documents.getLength(); i++) {
+            Element document = (Element) documents.item(i);
+            List<String> paragraphs = new ArrayList<>();
+            NodeList paragraphNodes = document.getElementsByTagNameNS("*", "p");
+            for (int j = 0; j < paragraphNodes.getLength(); j++)
+                paragraphs.add(paragraphNodes.item(j).getTextContent().replace('\n', ' '));
+
+            Set<String> names = new LinkedHashSet<>();
+            NodeList mentions = document.getElementsByTagNameNS("*", "rs");
+            for (int j = 0; j < mentions.getLength(); j++) {
+                Element mention = (Element) mentions.item(j);
+                String name = mention.getTextContent().replace('\n', ' ').trim();
+                if (mention.getAttribute("type").equals("software") && name.length() > 0)
+                    names.add(name);
+            }
+            if (!paragraphs.isEmpty() && !names.isEmpty())
+                assertParity(paragraphs, new ArrayList<>(names));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.grobid.core.lexicon;
+
+import org.grobid.core.analyzers.SoftwareAnalyzer;
+import org.grobid.core.utilities.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class LexiconBundleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String LONG_STRING = String.join("", Collections.nCopies(100, "Statistica-α-"));
+
+    private File writeBundle() throws IOException {
+        File file = folder.newFile();
+        try (LexiconBundleWriter output = new LexiconBundleWriter(file)) {
+            output.writeInt(3);
+            output.writeLong(0x123456789abcdefL);
+            output.writeString("SPSS");
+            output.writeString(null);
+            output.writeString("");
+            output.writeString(LONG_STRING);
+            output.writeStrings(Arrays.asList("R", "ImageJ", "GNU Octave", "Gnuplot – ε"));
+            output.writeStrings(new String[] {"a", null, "b"});
+            output.writeInts(new int[] {0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE});
+            output.writeLongs(new long[] {-1L, Long.MAX_VALUE});
+            output.writeDoubles(new double[] {0.5, -3.25, Double.NaN});
+            output.writeBooleans(new boolean[] {true, false, true});
+            output.writeInts(new int[0]);
+        }
+        return file;
+    }
+
+    private static void readBundle(File file) throws IOException {
+        LexiconBundleReader input = new LexiconBundleReader(file);
+        assertThat(input.readInt(), is(3));
+        assertThat(input.readLong(), is(0x123456789abcdefL));
+        assertThat(input.readString(), is("SPSS"));
+        assertThat(input.readString(), is(nullValue()));
+        assertThat(input.readString(), is(""));
+        assertThat(input.readString(), is(LONG_STRING));
+        assertThat(input.readStrings(), is(Arrays.asList("R", "ImageJ", "GNU Octave", "Gnuplot – ε")));
+        assertThat(Arrays.asList(input.readStringArray()), is(Arrays.asList("a", null, "b")));
+        assertThat(Arrays.equals(input.readInts(), new int[] {0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}), is(true));
+        assertThat(Arrays.equals(input.readLongs(), new long[] {-1L, Long.MAX_VALUE}), is(true));
+        assertThat(Arrays.equals(input.readDoubles(), new double[] {0.5, -3.25, Double.NaN}), is(true));
+        assertThat(Arrays.equals(input.readBooleans(), new boolean[] {true, false, true}), is(true));
+        assertThat(input.readInts().length, is(0));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        readBundle(writeBundle());
+    }
+
+    @Test
+    public void testTruncatedBundle() throws Exception {
+        File file = writeBundle();
+        long size = file.length();
+        // whatever the truncation, the reading fails with an IOException
+        for (long length = size - 1; length >= 0; length--) {
+            try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+                truncated.setLength(length);
+            }
+            try {
+                readBundle(file);
+                fail("bundle truncated to " + length + " bytes was read");
+            } catch (IOException e) {
+                assertThat(e.getMessage(), e.getMessage().startsWith("Truncated lexicon bundle") ||
+                    e.getMessage().startsWith("Invalid length in lexicon bundle"), is(true));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidLengths() throws Exception {
+        for (int length : new int[] {-2, Integer.MIN_VALUE, 1000, Integer.MAX_VALUE}) {
+            File file = folder.newFile();
+            try (LexiconBundleWriter output = new LexiconBundleWriter(file)) {
+                output.writeInt(length);
+                output.writeLong(0L);
+            }
+            try {
+                new LexiconBundleReader(file).readInts();
+                fail("invalid length " + length + " was read");
+            } catch (IOException e) {
+                assertThat(e.getMessage(), startsWith("Invalid length in lexicon bundle"));
+            }
+            try {
+                new LexiconBundleReader(file).readString();
+                fail("invalid string length " + length + " was read");
+            } catch (IOException e) {
+                assertThat(e.getMessage(), startsWith("Invalid length in lexicon bundle"));
+            }
+        }
+    }
+
+    @Test
+    public void testMatcherAndMapRoundTrip() throws Exception {
+        List<String> names = Arrays.asList("GNU Octave", "Octave", "ImageJ", "Node.js", "R");
+        SoftwareNameMatcher matcher = SoftwareNameMatcher.build(names);
+        StringDoubleMap map = new StringDoubleMap(4);
+        map.put("software", 2.5);
+        map.put("the", 0.01);
+
+        File file = folder.newFile();
+        try (LexiconBundleWriter output = new LexiconBundleWriter(file)) {
+            matcher.write(output);
+            map.write(output);
+        }
+        LexiconBundleReader input = new LexiconBundleReader(file);
+        SoftwareNameMatcher readMatcher = SoftwareNameMatcher.read(input);
+        StringDoubleMap readMap = StringDoubleMap.read(input);
+
+        List<Pair<String, String>> pairs = Arrays.asList(
+            new Pair<>("GNU", "<other>"),
+            new Pair<>("Octave", "<other>"),
+            new Pair<>("and", "<other>"),
+            new Pair<>("Node", "<other>"),
+            new Pair<>(".", "<other>"),
+            new Pair<>("js", "<other>"),
+            new Pair<>("R", "<other>"));
+        assertThat(readMatcher.getStateCount(), is(matcher.getStateCount()));
+        assertThat(readMatcher.matchPairs(pairs).toString(), is(matcher.matchPairs(pairs).toString()));
+        assertThat(readMap.size(), is(2));
+        assertThat(readMap.get("software", -1.0), is(2.5));
+        assertThat(readMap.get("the", -1.0), is(0.01));
+        assertThat(readMap.get("absent", -1.0), is(-1.0));
+    }
+
+    @Test
+    public void testInconsistentMapRejected() throws Exception {
+        File file = folder.newFile();
+        try (LexiconBundleWriter output = new LexiconBundleWriter(file)) {
+            output.writeInt(1);
+            // not a power of two
+            output.writeStrings(new String[] {"a", null, null});
+            output.writeDoubles(new double[] {1.0, 0.0, 0.0});
+        }
+        try {
+            StringDoubleMap.read(new LexiconBundleReader(file));
+            fail("inconsistent map was read");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Inconsistent string to double map data"));
+        }
+    }
+
+    /**
+     * The compiled lexicon bundles are only identified by the versions of the tokenization and of 
+     * the matcher: a change of the tokens or of the written automaton must come with a new version, 
+     * and then a new reference here
+     */
+    @Test
+    public void testCodeVersionsMatchTheirReference() throws Exception {
+        String sample = "We used SPSS v.24, ImageJ(1.52a) and R3.6.1 - see https://cran.r-project.org/; " +
+            "GNU-Octave 4.2 «x»";
+        CRC32 tokens = new CRC32();
+        for (String token : SoftwareAnalyzer.getInstance().tokenize(sample)) {
+            tokens.update(token.getBytes(StandardCharsets.UTF_8));
+            tokens.update(0);
+        }
+        assertThat(SoftwareAnalyzer.VERSION + ":" + Long.toHexString(tokens.getValue()), is("1:f1c60f63"));
+
+        File file = folder.newFile();
+        try (LexiconBundleWriter output = new LexiconBundleWriter(file)) {
+            SoftwareNameMatcher.build(Arrays.asList("SPSS", "ImageJ", "GNU Octave", "R", "Image J 2", "R"))
+                .write(output);
+        }
+        CRC32 layout = new CRC32();
+        layout.update(Files.readAllBytes(file.toPath()));
+        assertThat(SoftwareNameMatcher.FORMAT_VERSION + ":" + Long.toHexString(layout.getValue()), is("2:8c0e86e1"));
+    }
+}
@@ -0,0 +1,103 @@
+package org.grobid.core.lexicon;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.grobid.core.analyzers.SoftwareAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.OffsetPosition;
+import org.grobid.core.utilities.Pair;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Parity of the software name matcher with the FastMatcher it replaces, on the real software
+ * name lexicon
+ */
+public class SoftwareNameMatcherTest {
+
+    private static final File SOFTWARE_NAMES = new File("resources/lexicon/wikidata-software.txt");
+
+    private static List<String> names;
+    private static FastMatcher fastMatcher;
+    private static SoftwareNameMatcher matcher;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        File yamlFile = new File(new File("resources/config/config.yml").getAbsolutePath());
+        SoftwareConfiguration softwareConfiguration = mapper.readValue(yamlFile, SoftwareConfiguration.class);
+        GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(softwareConfiguration.getGrobidHome()));
+        GrobidProperties.getInstance(grobidHomeFinder);
+
+        names = new ArrayList<>();
+        for (String line : Files.readAllLines(SOFTWARE_NAMES.toPath(), StandardCharsets.UTF_8)) {
+            if (line.length() > 0)
+                names.add(line);
+        }
+        fastMatcher = new FastMatcher(SOFTWARE_NAMES, SoftwareAnalyzer.getInstance(), true);
+        matcher = SoftwareNameMatcher.build(names);
+    }
+
+    private static List<OffsetPosition> sorted(List<OffsetPosition> positions) {
+        List<OffsetPosition> result = new ArrayList<>(positions);
+        result.sort(SoftwareNameMatcher.POSITION_ORDER);
+        return result;
+    }
+
+    private static void assertSamePositions(List<OffsetPosition> actual, List<OffsetPosition> expected, String text) {
+        assertThat(text, sorted(actual).toString(), is(sorted(expected).toString()));
+    }
+
+    private static void assertParity(String text) {
+        List<LayoutToken> tokens = SoftwareAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+        assertSamePositions(matcher.matchLayoutTokens(tokens), fastMatcher.matchLayoutToken(tokens, true, true), text);
+
+        // vectorized tokens, without spaces
+        List<Pair<String, String>> pairs = new ArrayList<>();
+        for (LayoutToken token : tokens) {
+            if (!token.getText().equals(" ") && !token.getText().equals("\n"))
+                pairs.add(new Pair<>(token.getText(), "<other>"));
+        }
+        assertSamePositions(matcher.matchPairs(pairs), fastMatcher.matcherPairs(pairs, true), text);
+    }
+
+    @Test
+    public void testOverlappingNamesAndDelimiters() {
+        assertParity("The data were analysed with GNU Octave and Microsoft Excel, then with SPSS.");
+        assertParity("We used Node.js, Node js and Node - js (v18) with ImageJ/Fiji and R.");
+        assertParity("Scripts: Python, C++ and R; plots in (R) [Python] \"Octave\" 'SPSS'.");
+        assertParity("spss, python and octave are not matched in lower case\nbut SPSS\nis.");
+        assertParity("");
+        assertParity("   ");
+    }
+
+    @Test
+    public void testRandomSequencesOfLexiconNames() {
+        Random random = new Random(42);
+        String[] separators = {" ", ", ", " (", ") ", "-", "/", "\n", " and ", ". ", " – ", "  "};
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder text = new StringBuilder();
+            int count = 1 + random.nextInt(6);
+            for (int j = 0; j < count; j++) {
+                if (j > 0)
+                    text.append(separators[random.nextInt(separators.length)]);
+                text.append(names.get(random.nextInt(names.size())));
+            }
+            assertParity(text.toString());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.grobid.core.lexicon;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Lookups in the term IDF map compared with the TreeMap it replaces
+ */
+public class StringDoubleMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String randomTerm(Random random) {
+        String alphabet = "abcdefghijklmnopqrstuvwxyzéè-0123456789";
+        StringBuilder term = new StringBuilder();
+        int length = 1 + random.nextInt(8);
+        for (int i = 0; i < length; i++)
+            term.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return term.toString();
+    }
+
+    private static void assertSameLookups(StringDoubleMap map, Map<String, Double> reference, List<String> queries) {
+        assertThat(map.size(), is(reference.size()));
+        for (String query : queries) {
+            assertThat(query, map.containsKey(query), is(reference.containsKey(query)));
+            assertThat(query, map.get(query, 0.0), is(reference.getOrDefault(query, 0.0)));
+        }
+    }
+
+    @Test
+    public void testLookupsAndMissesAsTreeMap() throws Exception {
+        Random random = new Random(7);
+        // starting small so that the map is grown several times
+        StringDoubleMap map = new StringDoubleMap(4);
+        Map<String, Double> reference = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String term = randomTerm(random);
+            double idf = random.nextDouble() * 15.0;
+            map.put(term, idf);
+            reference.put(term, idf);
+        }
+        // collisions of String.hashCode
+        for (String term : new String[] {"Aa", "BB", "AaAa", "BBBB", "AaBB", "BBAa"}) {
+            map.put(term, term.length());
+            reference.put(term, (double) term.length());
+        }
+        map.put("", 0.5);
+        reference.put("", 0.5);
+
+        List<String> queries = new ArrayList<>(reference.keySet());
+        for (int i = 0; i < 20000; i++)
+            queries.add(randomTerm(random) + "#");
+        queries.add("AaAaAa");
+        assertSameLookups(map, reference, queries);
+
+        assertThat(map.get(null, -1.0), is(-1.0));
+        assertThat(map.containsKey(null), is(false));
+
+        // identical lookups once read from a lexicon bundle
+        File file = folder.newFile();
+        try (LexiconBundleWriter output = new LexiconBundleWriter(file)) {
+            map.write(output);
+        }
+        assertSameLookups(StringDoubleMap.read(new LexiconBundleReader(file)), reference, queries);
+    }
+}
@@ -0,0 +1,78 @@
+package org.grobid.core.main.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.commons.io.IOUtils;
+import org.grobid.core.engines.SoftwareParser;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.main.LibraryLoader;
+import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+import org.grobid.service.controller.SoftwareProcessString;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Text results of the command line compared with the results of the text service
+ */
+public class SoftwareMainTest {
+    private static SoftwareConfiguration configuration;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        File yamlFile = new File("resources/config/config.yml");
+        yamlFile = new File(yamlFile.getAbsolutePath());
+        configuration = mapper.readValue(yamlFile, SoftwareConfiguration.class);
+
+        GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(configuration.getGrobidHome()));
+        GrobidProperties.getInstance(grobidHomeFinder);
+        if (configuration.getModels() != null) {
+            for (ModelParameters model : configuration.getModels())
+                GrobidProperties.getInstance().addModel(model);
+        }
+        LibraryLoader.load();
+    }
+
+    /**
+     * JSON result without its processing time
+     */
+    private static JsonNode withoutRuntime(byte[] result) throws Exception {
+        JsonNode json = new ObjectMapper().readTree(result);
+        ((ObjectNode) json).remove("runtime");
+        return json;
+    }
+
+    @Test
+    public void testTextResultAsService() throws Exception {
+        String text = IOUtils.toString(this.getClass().getResourceAsStream("/text.txt"), StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream commandOutput = new ByteArrayOutputStream();
+        SoftwareMain.processText(SoftwareParser.getInstance(configuration), text, false, Format.JSON, commandOutput);
+
+        Response response = SoftwareProcessString.processText(text, false, Format.JSON, false, configuration);
+        assertThat(response.getStatus(), is(Response.Status.OK.getStatusCode()));
+        ByteArrayOutputStream serviceOutput = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(serviceOutput);
+
+        JsonNode commandResult = withoutRuntime(commandOutput.toByteArray());
+        assertThat(commandResult.has("references"), is(false));
+        assertThat(commandResult.has("md5"), is(false));
+        assertThat(commandResult.get("mentions").size() > 0, is(true));
+        assertThat(commandResult, is(withoutRuntime(serviceOutput.toByteArray())));
+    }
+}
@@ -0,0 +1,203 @@
+package org.grobid.core.utilities;
+
+import org.grobid.core.exceptions.GrobidException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MicroBatchSchedulerTest {
+
+    /**
+     * Multiply each item by 10, a negative item making the whole inference call fail
+     */
+    private static class TimesTen implements MicroBatchScheduler.BatchProcessor<Integer, List<Integer>> {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public List<Integer> process(List<Integer> items) throws Exception {
+            batchSizes.add(items.size());
+            List<Integer> result = new ArrayList<>();
+            for (Integer item : items) {
+                if (item < 0)
+                    throw new IllegalStateException("negative item " + item);
+                result.add(item * 10);
+            }
+            return result;
+        }
+
+        @Override
+        public List<Integer> slice(List<Integer> result, int from, int to) {
+            return new ArrayList<>(result.subList(from, to));
+        }
+    }
+
+    private static List<Integer> timesTen(List<Integer> items) {
+        List<Integer> expected = new ArrayList<>();
+        for (Integer item : items)
+            expected.add(item * 10);
+        return expected;
+    }
+
+    @Test
+    public void testResultSlicedPerCallerWithConcurrentSubmits() throws Exception {
+        TimesTen processor = new TimesTen();
+        MicroBatchScheduler<Integer, List<Integer>> scheduler =
+            new MicroBatchScheduler<>("test-slicing", 16, 5, 2, processor);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> submits = new ArrayList<>();
+            for (int caller = 0; caller < 8; caller++) {
+                int seed = caller;
+                submits.add(callers.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 50; i++) {
+                        List<Integer> items = new ArrayList<>();
+                        int size = 1 + random.nextInt(10);
+                        for (int j = 0; j < size; j++)
+                            items.add(seed * 100000 + i * 100 + j);
+                        assertThat(scheduler.process(items), is(timesTen(items)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> submit : submits)
+                submit.get(60, TimeUnit.SECONDS);
+        } finally {
+            callers.shutdownNow();
+        }
+
+        int total = 0;
+        for (int batchSize : processor.batchSizes) {
+            assertThat(batchSize <= 16, is(true));
+            total += batchSize;
+        }
+        // each item is processed once
+        int expectedTotal = 0;
+        for (int caller = 0; caller < 8; caller++) {
+            Random random = new Random(caller);
+            for (int i = 0; i < 50; i++)
+                expectedTotal += 1 + random.nextInt(10);
+        }
+        assertThat(total, is(expectedTotal));
+    }
+
+    @Test
+    public void testRequestLargerThanBatchSizeProcessedAlone() {
+        TimesTen processor = new TimesTen();
+        MicroBatchScheduler<Integer, List<Integer>> scheduler =
+            new MicroBatchScheduler<>("test-large", 4, 5, 1, processor);
+
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            items.add(i);
+        assertThat(scheduler.process(items), is(timesTen(items)));
+        assertThat(processor.batchSizes, is(Collections.singletonList(10)));
+
+        List<Integer> small = new ArrayList<>(items.subList(0, 3));
+        assertThat(scheduler.process(small), is(timesTen(small)));
+    }
+
+    @Test
+    public void testFailurePropagatedToTheCallers() {
+        MicroBatchScheduler<Integer, List<Integer>> scheduler =
+            new MicroBatchScheduler<>("test-failure", 16, 5, 1, new TimesTen());
+
+        try {
+            scheduler.process(new ArrayList<>(List.of(1, -1, 2)));
+            fail("the inference failure should be propagated");
+        } catch (GrobidException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            assertThat(e.getCause().getMessage(), is("negative item -1"));
+        }
+
+        // the scheduler still processes the next requests
+        assertThat(scheduler.process(new ArrayList<>(List.of(1, 2))), is(List.of(10, 20)));
+    }
+
+    @Test
+    public void testBatchesProcessedConcurrently() throws Exception {
+        // each inference call waits for a second one running at the same time
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        MicroBatchScheduler<Integer, List<Integer>> scheduler = new MicroBatchScheduler<>("test-parallel", 1, 0, 2,
+            new TimesTen() {
+                @Override
+                public List<Integer> process(List<Integer> items) throws Exception {
+                    barrier.await(30, TimeUnit.SECONDS);
+                    return super.process(items);
+                }
+            });
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Integer>> first = callers.submit(() -> scheduler.process(new ArrayList<>(List.of(1))));
+            Future<List<Integer>> second = callers.submit(() -> scheduler.process(new ArrayList<>(List.of(2))));
+            assertThat(first.get(60, TimeUnit.SECONDS), is(List.of(10)));
+            assertThat(second.get(60, TimeUnit.SECONDS), is(List.of(20)));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSingleRequestNotDelayed() {
+        TimesTen processor = new TimesTen();
+        MicroBatchScheduler<Integer, List<Integer>> scheduler =
+            new MicroBatchScheduler<>("test-single", 16, TimeUnit.MINUTES.toMillis(1), 1, processor);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++)
+            assertThat(scheduler.process(new ArrayList<>(List.of(i))), is(List.of(i * 10)));
+        assertThat(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(30), is(true));
+        assertThat(processor.batchSizes, is(List.of(1, 1, 1)));
+    }
+
+    @Test
+    public void testRequestsGroupedWhileWorkerBusy() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TimesTen processor = new TimesTen() {
+            @Override
+            public List<Integer> process(List<Integer> items) throws Exception {
+                started.countDown();
+                release.await(30, TimeUnit.SECONDS);
+                return super.process(items);
+            }
+        };
+        MicroBatchScheduler<Integer, List<Integer>> scheduler =
+            new MicroBatchScheduler<>("test-busy", 16, TimeUnit.MINUTES.toMillis(1), 1, processor);
+
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            Future<List<Integer>> first = callers.submit(() -> scheduler.process(new ArrayList<>(List.of(1))));
+            assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+            Future<List<Integer>> second = callers.submit(() -> scheduler.process(new ArrayList<>(List.of(2))));
+            Future<List<Integer>> third = callers.submit(() -> scheduler.process(new ArrayList<>(List.of(3, 4))));
+            // both wait for the busy worker
+            while (scheduler.getQueuedRequests() < 2)
+                Thread.sleep(1);
+            release.countDown();
+
+            assertThat(first.get(60, TimeUnit.SECONDS), is(List.of(10)));
+            assertThat(second.get(60, TimeUnit.SECONDS), is(List.of(20)));
+            assertThat(third.get(60, TimeUnit.SECONDS), is(List.of(30, 40)));
+            assertThat(processor.batchSizes, is(List.of(1, 3)));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+}
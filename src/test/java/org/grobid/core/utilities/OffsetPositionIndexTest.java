@@ -0,0 +1,189 @@
+package org.grobid.core.utilities;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Queries of the offset position index compared with the pairwise loops it replaces, on random
+ * positions including ill-formed ones and positions added between the queries
+ */
+public class OffsetPositionIndexTest {
+
+    private static OffsetPosition randomPosition(Random random) {
+        int start = random.nextInt(500);
+        int length;
+        switch (random.nextInt(20)) {
+            case 0:
+                // ill-formed
+                length = -1 - random.nextInt(10);
+                break;
+            case 1:
+                // long, like a sentence
+                length = random.nextInt(300);
+                break;
+            default:
+                length = random.nextInt(20);
+        }
+        return new OffsetPosition(start, start + length);
+    }
+
+    /**
+     * Positions intersecting [from, to] in the order of the index: the well-formed ones by start
+     * then insertion order, then the ill-formed ones, all of them for an ill-formed interval
+     */
+    private static List<Integer> intersecting(List<OffsetPosition> positions, int from, int to) {
+        List<Integer> wellFormed = new ArrayList<>();
+        List<Integer> illFormed = new ArrayList<>();
+        for (int id = 0; id < positions.size(); id++) {
+            OffsetPosition position = positions.get(id);
+            if (position.start > position.end)
+                illFormed.add(id);
+            else if (from > to || (position.start <= to && position.end >= from))
+                wellFormed.add(id);
+        }
+        wellFormed.sort((id1, id2) -> positions.get(id1).start != positions.get(id2).start ?
+            Integer.compare(positions.get(id1).start, positions.get(id2).start) : Integer.compare(id1, id2));
+        wellFormed.addAll(illFormed);
+        return wellFormed;
+    }
+
+    /**
+     * Previous sentence lookup of addContext: the first sentence, in list order, containing the entity
+     */
+    private static int firstContaining(List<OffsetPosition> sentencePositions, int startEntity, int endEntity) {
+        for (int id = 0; id < sentencePositions.size(); id++) {
+            OffsetPosition sentencePosition = sentencePositions.get(id);
+            if (sentencePosition.start <= startEntity && endEntity <= sentencePosition.end)
+                return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Previous reference callout check of filterByRefCallout: a callout included in the version
+     */
+    private static boolean anyContainedIn(List<OffsetPosition> refBibPositions, int versionStart, int versionEnd) {
+        for (OffsetPosition refBib : refBibPositions) {
+            if ((refBib.start >= versionStart) && (refBib.end <= versionEnd))
+                return true;
+        }
+        return false;
+    }
+
+    private static void assertSameQueries(OffsetPositionIndex index, List<OffsetPosition> positions, Random random) {
+        assertThat(index.size(), is(positions.size()));
+        for (int i = 0; i < 50; i++) {
+            OffsetPosition query = randomPosition(random);
+            String message = positions + " " + query;
+
+            List<Integer> expected = intersecting(positions, query.start, query.end);
+            List<Integer> visited = new ArrayList<>();
+            boolean stopped = index.visitIntersecting(query.start, query.end, (id, start, end) -> {
+                assertThat(message, start, is(positions.get(id).start));
+                assertThat(message, end, is(positions.get(id).end));
+                visited.add(id);
+                return false;
+            });
+            assertThat(message, stopped, is(false));
+            assertThat(message, visited, is(expected));
+
+            // the query stops at the first position accepted by the visitor
+            if (!expected.isEmpty()) {
+                int last = random.nextInt(expected.size());
+                List<Integer> stoppedVisits = new ArrayList<>();
+                stopped = index.visitIntersecting(query.start, query.end, (id, start, end) -> {
+                    stoppedVisits.add(id);
+                    return id == expected.get(last);
+                });
+                assertThat(message, stopped, is(true));
+                assertThat(message, stoppedVisits, is(expected.subList(0, last + 1)));
+            }
+
+            assertThat(message, index.firstContaining(query.start, query.end),
+                is(firstContaining(positions, query.start, query.end)));
+            assertThat(message, index.anyContainedIn(query.start, query.end),
+                is(anyContainedIn(positions, query.start, query.end)));
+        }
+
+        List<Integer> all = new ArrayList<>();
+        index.visitAll((id, start, end) -> all.add(id) && false);
+        assertThat(all, is(intersecting(positions, 1, 0)));
+    }
+
+    @Test
+    public void testQueriesAsPairwiseLoops() {
+        Random random = new Random(17);
+        for (int i = 0; i < 500; i++) {
+            List<OffsetPosition> positions = new ArrayList<>();
+            int size = random.nextInt(i < 100 ? 5 : 60);
+            for (int j = 0; j < size; j++)
+                positions.add(randomPosition(random));
+            assertSameQueries(new OffsetPositionIndex(positions), positions, random);
+        }
+    }
+
+    @Test
+    public void testPositionsAddedBetweenQueries() {
+        Random random = new Random(23);
+        for (int i = 0; i < 50; i++) {
+            OffsetPositionIndex index = new OffsetPositionIndex();
+            List<OffsetPosition> positions = new ArrayList<>();
+            for (int j = 0; j < 100; j++) {
+                OffsetPosition position = randomPosition(random);
+                // identifiers are given in insertion order
+                assertThat(index.add(position), is(positions.size()));
+                positions.add(position);
+                if (j % 10 == 0)
+                    assertSameQueries(index, positions, random);
+            }
+            assertSameQueries(index, positions, random);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLongPositionAmongShortOnes() {
+        // a paragraph span first, then many short mentions in it
+        OffsetPositionIndex index = new OffsetPositionIndex();
+        index.add(0, 10000000);
+        int size = 200000;
+        for (int i = 0; i < size; i++)
+            index.add(i * 50, i * 50 + 10);
+
+        // the short positions before a query are not visited, though the long one ends after it
+        for (int i = 0; i < size; i++) {
+            int from = i * 50 + 2;
+            List<Integer> visited = new ArrayList<>();
+            index.visitIntersecting(from, from + 1, (id, start, end) -> visited.add(id) && false);
+            assertThat(visited, is(List.of(0, i + 1)));
+            assertThat(index.firstContaining(from, from + 1), is(0));
+            assertThat(index.anyContainedIn(from, from + 1), is(false));
+        }
+    }
+
+    @Test
+    public void testExtremeOffsets() {
+        List<OffsetPosition> positions = new ArrayList<>();
+        positions.add(new OffsetPosition(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        positions.add(new OffsetPosition(Integer.MIN_VALUE, Integer.MIN_VALUE));
+        positions.add(new OffsetPosition(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        positions.add(new OffsetPosition(Integer.MAX_VALUE, Integer.MIN_VALUE));
+        positions.add(new OffsetPosition(0, 0));
+        OffsetPositionIndex index = new OffsetPositionIndex(positions);
+
+        int[][] queries = {{Integer.MIN_VALUE, Integer.MIN_VALUE}, {Integer.MAX_VALUE, Integer.MAX_VALUE},
+            {0, 0}, {-5, 5}, {Integer.MIN_VALUE, Integer.MAX_VALUE}, {5, -5}};
+        for (int[] query : queries) {
+            List<Integer> visited = new ArrayList<>();
+            index.visitIntersecting(query[0], query[1], (id, start, end) -> visited.add(id) && false);
+            assertThat(visited, is(intersecting(positions, query[0], query[1])));
+            assertThat(index.firstContaining(query[0], query[1]), is(firstContaining(positions, query[0], query[1])));
+            assertThat(index.anyContainedIn(query[0], query[1]), is(anyContainedIn(positions, query[0], query[1])));
+        }
+    }
+}
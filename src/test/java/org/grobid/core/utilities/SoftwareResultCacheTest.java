@@ -0,0 +1,90 @@
+package org.grobid.core.utilities;
+
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SoftwareResultCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] result(int size) {
+        byte[] result = new byte[size];
+        Arrays.fill(result, (byte) 'x');
+        return result;
+    }
+
+    @Test
+    public void testMemoryAndDiskLevels() throws Exception {
+        File directory = folder.newFolder();
+        SoftwareResultCache cache = new SoftwareResultCache("sig1", 1024, directory, 1024, 100);
+        String key = cache.key("pdf", "ABCD", true, false, Format.JSON);
+        assertThat(cache.get(key), is(nullValue()));
+        cache.put(key, result(10));
+        assertThat(cache.get(key), is(result(10)));
+
+        // the results of the same configuration are read again from the directory
+        SoftwareResultCache diskOnly = new SoftwareResultCache("sig1", 0, directory, 1024, 100);
+        assertThat(diskOnly.get(key), is(result(10)));
+        // the keys depend on the processing options and format
+        assertThat(diskOnly.get(diskOnly.key("pdf", "ABCD", false, false, Format.JSON)), is(nullValue()));
+        assertThat(diskOnly.get(diskOnly.key("pdf", "ABCD", true, false, Format.CBOR)), is(nullValue()));
+
+        // the results of another configuration are deleted
+        SoftwareResultCache otherConfiguration = new SoftwareResultCache("sig2", 0, directory, 1024, 100);
+        assertThat(otherConfiguration.get(otherConfiguration.key("pdf", "ABCD", true, false, Format.JSON)),
+            is(nullValue()));
+        assertThat(directory.listFiles().length, is(0));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvictedFromDisk() throws Exception {
+        File directory = folder.newFolder();
+        SoftwareResultCache cache = new SoftwareResultCache("sig", 0, directory, 250, 100);
+        for (int i = 0; i < 3; i++)
+            cache.put("key" + i, result(100));
+        assertThat(cache.get("key0"), is(nullValue()));
+        assertThat(cache.get("key1"), is(result(100)));
+        assertThat(cache.get("key2"), is(result(100)));
+    }
+
+    @Test
+    public void testOversizedResultNotCached() throws Exception {
+        SoftwareResultCache cache = new SoftwareResultCache("sig", 1024, folder.newFolder(), 1024, 100);
+        cache.put("large", result(101));
+        assertThat(cache.get("large"), is(nullValue()));
+        cache.put("limit", result(100));
+        assertThat(cache.get("limit"), is(result(100)));
+    }
+
+    @Test
+    public void testResultCopy() throws Exception {
+        SoftwareResultCache cache = new SoftwareResultCache("sig", 1024, folder.newFolder(), 1024, 100);
+
+        SoftwareResultCache.ResultCopy copy = cache.copy("small");
+        copy.write(result(60));
+        copy.write('x');
+        copy.write(result(39));
+        // nothing is cached before the result is fully written
+        assertThat(cache.get("small"), is(nullValue()));
+        copy.commit();
+        assertThat(cache.get("small"), is(result(100)));
+
+        // the copy of a large result is dropped as soon as it exceeds the maximum size of an entry
+        SoftwareResultCache.ResultCopy largeCopy = cache.copy("large");
+        largeCopy.write(result(60));
+        largeCopy.write(result(60));
+        largeCopy.write(result(1));
+        largeCopy.commit();
+        assertThat(cache.get("large"), is(nullValue()));
+    }
+}
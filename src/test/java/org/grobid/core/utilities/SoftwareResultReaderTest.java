@@ -0,0 +1,149 @@
+package org.grobid.core.utilities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.grobid.core.data.ArticleBiblio;
+import org.grobid.core.data.BibDataSet;
+import org.grobid.core.data.BiblioComponent;
+import org.grobid.core.data.BiblioItem;
+import org.grobid.core.data.SoftwareComponent;
+import org.grobid.core.data.SoftwareContextAttributes;
+import org.grobid.core.data.SoftwareEntity;
+import org.grobid.core.layout.BoundingBox;
+import org.grobid.core.lexicon.SoftwareLexicon;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SoftwareResultReaderTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        File yamlFile = new File(new File("resources/config/config.yml").getAbsolutePath());
+        SoftwareConfiguration softwareConfiguration = mapper.readValue(yamlFile, SoftwareConfiguration.class);
+        GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(softwareConfiguration.getGrobidHome()));
+        GrobidProperties.getInstance(grobidHomeFinder);
+    }
+
+    private static SoftwareComponent component(String rawForm, int start, int end) {
+        SoftwareComponent component = new SoftwareComponent();
+        component.setRawForm(rawForm);
+        component.setOffsetStart(start);
+        component.setOffsetEnd(end);
+        return component;
+    }
+
+    private static List<SoftwareEntity> entities(BiblioItem biblio) {
+        SoftwareEntity spss = new SoftwareEntity();
+        SoftwareComponent name = component("SPSS", 27, 31);
+        name.setNormalizedForm("SPSS");
+        name.setWikidataId("Q1053133");
+        name.setWikipediaExternalRef(1097457);
+        name.setLang("en");
+        name.setDisambiguationScore(0.73456);
+        name.setBoundingBoxes(Collections.singletonList(BoundingBox.fromPointAndDimensions(2, 101.5, 220.25, 24.0, 9.75)));
+        spss.setSoftwareName(name);
+        spss.setType(SoftwareLexicon.Software_Type.ENVIRONMENT);
+        spss.setVersion(component("25", 40, 42));
+        spss.setCreator(component("IBM", 44, 47));
+        spss.setSoftwareURL(component("https://www.ibm.com/spss", 49, 73));
+        spss.setContext("The analysis was done with SPSS version 25 (IBM, https://www.ibm.com/spss) [12].");
+        spss.setParagraph("Methods. The analysis was done with SPSS version 25 (IBM, https://www.ibm.com/spss) [12].");
+        spss.setParagraphContextOffset(9);
+
+        SoftwareContextAttributes attributes = new SoftwareContextAttributes();
+        attributes.init();
+        attributes.setUsed(true);
+        attributes.setUsedScore(0.987);
+        spss.setMentionContextAttributes(attributes);
+        SoftwareContextAttributes documentAttributes = new SoftwareContextAttributes();
+        documentAttributes.init();
+        documentAttributes.setUsed(true);
+        documentAttributes.setUsedScore(0.991);
+        documentAttributes.setCreatedScore(0.0125);
+        spss.mergeDocumentContextAttributes(documentAttributes);
+
+        BiblioComponent bibRef = new BiblioComponent(biblio, 12);
+        bibRef.setRawForm("[12]");
+        bibRef.setOffsetStart(75);
+        bibRef.setOffsetEnd(79);
+        spss.setBibRefs(new ArrayList<>(Collections.singletonList(bibRef)));
+
+        SoftwareEntity deepTrace = new SoftwareEntity();
+        deepTrace.setSoftwareName(component("DeepTrace", 120, 129));
+        deepTrace.setType(SoftwareLexicon.Software_Type.SOFTWARE);
+        deepTrace.setLanguage(component("Python", 140, 146));
+        deepTrace.setInDataAvailabilitySection(true);
+
+        return Arrays.asList(spss, deepTrace);
+    }
+
+    private static String mentionsJson(List<SoftwareEntity> entities) {
+        return SoftwareResultSerializer.toJsonString(gen -> {
+            gen.writeStartArray();
+            for (SoftwareEntity entity : entities)
+                entity.writeJson(gen);
+            gen.writeEndArray();
+        });
+    }
+
+    private static SoftwareResultReader.Result roundTrip(SoftwareResultSerializer.Format format,
+                                                         Optional<ArticleBiblio> metadata,
+                                                         List<SoftwareEntity> entities) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // the references are only written with the bibliographical data of the document
+        List<BibDataSet> bibDataSet = Collections.singletonList(new BibDataSet());
+        SoftwareResultSerializer.write(output, format, metadata, entities, bibDataSet, "0123456789abcdef", 1234L);
+        // the format is detected from the first bytes
+        return SoftwareResultReader.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    @Test
+    public void testJsonAndCborRoundTrip() throws Exception {
+        BiblioItem biblio = new BiblioItem();
+        biblio.setTitle("SPSS for dummies");
+        List<SoftwareEntity> entities = entities(biblio);
+        Optional<ArticleBiblio> metadata = Optional.of(new ArticleBiblio("10.1371/journal.ppat.1011317",
+            "A software study", "Doe, J."));
+
+        for (SoftwareResultSerializer.Format format : SoftwareResultSerializer.Format.values()) {
+            SoftwareResultReader.Result result = roundTrip(format, metadata, entities);
+
+            assertThat(result.getApplication(), is("software-mentions"));
+            assertThat(result.getMd5(), is("0123456789abcdef"));
+            assertThat(result.getRuntime(), is(1234L));
+            assertThat(result.getBiblio().getDoi(), is("10.1371/journal.ppat.1011317"));
+            assertThat(result.getBiblio().getTitle(), is("A software study"));
+            assertThat(result.getBiblio().getAuthors(), is("Doe, J."));
+
+            // the mentions read back are serialized exactly as the original ones
+            assertThat(mentionsJson(result.getMentions()), is(mentionsJson(entities)));
+            assertThat(result.getReferences().size(), is(1));
+            assertThat(result.getReferences().get(12), is(biblio.toTEI(12)));
+        }
+    }
+
+    @Test
+    public void testEmptyResult() throws Exception {
+        for (SoftwareResultSerializer.Format format : SoftwareResultSerializer.Format.values()) {
+            SoftwareResultReader.Result result = roundTrip(format, Optional.empty(), new ArrayList<>());
+            assertThat(result.getBiblio() == null, is(true));
+            assertThat(result.getMentions().size(), is(0));
+            assertThat(result.getReferences().size(), is(0));
+            assertThat(result.getRuntime(), is(1234L));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.grobid.core.utilities;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.grobid.core.data.ArticleBiblio;
+import org.grobid.core.data.BiblioItem;
+import org.junit.Test;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TEIStreamReaderTest {
+
+    private static final File TEI_FILE = new File("src/test/resources/journal.ppat.1011317.xml");
+
+    @Test
+    public void testStreamedParagraphsAsDOM() throws Exception {
+        List<TEIStreamReader.Paragraph> paragraphs = new ArrayList<>();
+        List<String> xmlIds = new ArrayList<>();
+        TEIStreamReader reader = new TEIStreamReader(new TEIStreamReader.TEIContentHandler() {
+            @Override
+            public void paragraph(TEIStreamReader.Paragraph paragraph) {
+                paragraphs.add(paragraph);
+            }
+
+            @Override
+            public void bibliographicalReference(String xmlId, BiblioItem biblio) {
+                xmlIds.add(xmlId);
+            }
+        });
+        reader.read(new StreamSource(TEI_FILE));
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        org.w3c.dom.Document document = factory.newDocumentBuilder().parse(TEI_FILE);
+
+        org.w3c.dom.NodeList paragraphList = document.getElementsByTagName("p");
+        assertThat(paragraphs.size(), is(paragraphList.getLength()));
+        for (int i = 0; i < paragraphList.getLength(); i++) {
+            org.w3c.dom.Element paragraphElement = (org.w3c.dom.Element) paragraphList.item(i);
+            Pair<String, Map<String, Pair<OffsetPosition, String>>> contentTextAndRef =
+                XMLUtilities.getTextNoRefMarkersAndMarkerPositions(paragraphElement, 100);
+
+            TEIStreamReader.Paragraph paragraph = paragraphs.get(i);
+            assertThat(paragraph.getText(), is(contentTextAndRef.getLeft()));
+            assertThat(paragraph.getFullText(), is(paragraphElement.getTextContent()));
+            assertThat(paragraph.getRefMarkers(100).toString(), is(contentTextAndRef.getRight().toString()));
+        }
+
+        org.w3c.dom.NodeList bibList = document.getElementsByTagName("biblStruct");
+        assertThat(xmlIds.size(), is(bibList.getLength()));
+        for (int i = 0; i < bibList.getLength(); i++)
+            assertThat(xmlIds.get(i), is(((org.w3c.dom.Element) bibList.item(i)).getAttribute("xml:id")));
+
+        Optional<ArticleBiblio> metadata = ArticleBiblio.fromTeiDocument(document);
+        assertThat(reader.getArticleBiblio().toString(), is(metadata.toString()));
+    }
+}
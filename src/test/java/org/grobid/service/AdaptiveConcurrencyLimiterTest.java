@@ -0,0 +1,200 @@
+package org.grobid.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.grobid.service.AdmissionControlFilter.RequestClass;
+import org.grobid.service.controller.SoftwarePaths;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * AIMD limits of the admission control, with a fake clock giving the processing time of each request
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    private AdaptiveConcurrencyLimiter limiter(int maxLimit, long queueTimeout) {
+        return new AdaptiveConcurrencyLimiter("test", maxLimit, queueTimeout, 2.0, metrics, clock::get);
+    }
+
+    /**
+     * Process a request for the given time in ms, alone or along the permits already acquired
+     */
+    private void process(AdaptiveConcurrencyLimiter limiter, long time, long size, boolean failed)
+        throws InterruptedException {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        assertThat(permit, is(notNullValue()));
+        release(permit, time, size, failed);
+    }
+
+    private void release(AdaptiveConcurrencyLimiter.Permit permit, long time, long size, boolean failed) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(time));
+        permit.release(size, failed);
+    }
+
+    /**
+     * Fill all the slots, then release them with the same latency
+     */
+    private void processAtLimit(AdaptiveConcurrencyLimiter limiter, long time) throws InterruptedException {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+            assertThat(permit, is(notNullValue()));
+            permits.add(permit);
+        }
+        for (AdaptiveConcurrencyLimiter.Permit permit : permits)
+            release(permit, time, 1024, false);
+    }
+
+    @Test
+    public void testAdditiveIncreaseWhenLimitReached() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0);
+        assertThat(limiter.getLimit(), is(5));
+
+        int previous = limiter.getLimit();
+        for (int i = 0; i < 100; i++) {
+            processAtLimit(limiter, 10);
+            // at most one more slot for a limit of completed requests
+            assertThat(limiter.getLimit() - previous <= 1, is(true));
+            previous = limiter.getLimit();
+        }
+        assertThat(limiter.getLimit(), is(10));
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    @Test
+    public void testNoIncreaseBelowLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0);
+        for (int i = 0; i < 100; i++)
+            process(limiter, 10, 1024, false);
+        assertThat(limiter.getLimit(), is(5));
+    }
+
+    @Test
+    public void testMultiplicativeDecreaseOnLatency() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0);
+        for (int i = 0; i < 50; i++)
+            process(limiter, 10, 1024, false);
+
+        // the short-term latency exceeds twice the long-term one at the second slow request
+        process(limiter, 100, 1024, false);
+        assertThat(limiter.getLimit(), is(5));
+        process(limiter, 100, 1024, false);
+        assertThat(limiter.getLimit(), is(4));
+        assertThat(metrics.meter("admission.test.limit-decreases").getCount(), is(1L));
+
+        // at most one decrease for a limit of completed requests
+        for (int i = 0; i < 4; i++)
+            process(limiter, 100, 1024, false);
+        assertThat(metrics.meter("admission.test.limit-decreases").getCount(), is(1L));
+        process(limiter, 100, 1024, false);
+        assertThat(metrics.meter("admission.test.limit-decreases").getCount(), is(2L));
+        assertThat(limiter.getLimit(), is(4));
+
+        // never below one slot
+        for (int i = 0; i < 45; i++)
+            process(limiter, 100, 1024, false);
+        assertThat(limiter.getLimit(), is(1));
+    }
+
+    @Test
+    public void testDecreaseOnFailure() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0);
+        for (int i = 0; i < 10; i++)
+            process(limiter, 10, 1024, false);
+        process(limiter, 10, 1024, true);
+        assertThat(limiter.getLimit(), is(4));
+        process(limiter, 10, 1024, true);
+        assertThat(limiter.getLimit(), is(4));
+        assertThat(metrics.meter("admission.test.limit-decreases").getCount(), is(1L));
+    }
+
+    @Test
+    public void testLatencyPerKilobyte() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 0);
+        for (int i = 0; i < 50; i++)
+            process(limiter, 10, 1024, false);
+        // large requests of the same latency per KB, and small requests counted as 1 KB
+        for (int i = 0; i < 20; i++) {
+            process(limiter, 1000, 100 * 1024, false);
+            process(limiter, 10, 100, false);
+        }
+        assertThat(limiter.getLimit(), is(5));
+        assertThat(metrics.meter("admission.test.limit-decreases").getCount(), is(0L));
+    }
+
+    @Test
+    public void testRejectionBeyondLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 0);
+        assertThat(limiter.getLimit(), is(1));
+        process(limiter, 3000, 1024, false);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        assertThat(permit, is(notNullValue()));
+        assertThat(limiter.acquire(), is(nullValue()));
+        assertThat(metrics.meter("admission.test.rejected").getCount(), is(1L));
+        // retry after the average processing time of a request
+        assertThat(limiter.getRetryAfter(), is(3L));
+
+        release(permit, 3000, 1024, false);
+        assertThat(limiter.acquire(), is(notNullValue()));
+    }
+
+    @Test
+    public void testWaitForFreedSlot() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, TimeUnit.MINUTES.toMillis(1));
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> waited = new AtomicReference<>();
+        Thread waiting = new Thread(() -> {
+            try {
+                waited.set(limiter.acquire());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+        while (limiter.getWaiting() == 0)
+            Thread.sleep(1);
+        assertThat(limiter.getInFlight(), is(1));
+
+        release(permit, 10, 1024, false);
+        waiting.join(TimeUnit.MINUTES.toMillis(1));
+        assertThat(waited.get(), is(notNullValue()));
+        assertThat(limiter.getInFlight(), is(1));
+        assertThat(limiter.getWaiting(), is(0));
+    }
+
+    @Test
+    public void testLimitsPerRequestClass() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(2, 0, 2.0, metrics, clock::get);
+        assertThat(AdmissionControlFilter.classify("/service/" + SoftwarePaths.PATH_ANNOTATE_SOFTWARE_PDF),
+            is(RequestClass.PDF));
+        assertThat(AdmissionControlFilter.classify("/service/" + SoftwarePaths.PATH_SOFTWARE_TEXT),
+            is(RequestClass.TEXT));
+        assertThat(AdmissionControlFilter.classify("/service/" + SoftwarePaths.PATH_EXTRACT_SOFTWARE_TEI),
+            is(RequestClass.TEI));
+        assertThat(AdmissionControlFilter.classify("/service/isalive"), is(nullValue()));
+
+        // a saturated class does not limit the other ones
+        AdaptiveConcurrencyLimiter pdf = filter.getLimiter(RequestClass.PDF);
+        assertThat(pdf.acquire(), is(notNullValue()));
+        assertThat(pdf.acquire(), is(nullValue()));
+        assertThat(filter.getLimiter(RequestClass.TEXT).acquire(), is(notNullValue()));
+        assertThat(filter.getLimiter(RequestClass.TEI).acquire(), is(notNullValue()));
+        assertThat(metrics.meter("admission.pdf.rejected").getCount(), is(1L));
+        assertThat(metrics.meter("admission.text.rejected").getCount(), is(0L));
+    }
+}
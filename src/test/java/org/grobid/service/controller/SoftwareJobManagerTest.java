@@ -0,0 +1,315 @@
+package org.grobid.service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.grobid.core.utilities.SoftwareConfiguration;
+import org.grobid.core.utilities.SoftwareResultCache;
+import org.grobid.core.utilities.SoftwareResultSerializer.Format;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * States of the asynchronous jobs, with a processing writing the input back and a fake clock
+ */
+public class SoftwareJobManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(1000000L);
+
+    // inputs in processing order
+    private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+    private static SoftwareConfiguration configuration(int queueSize) {
+        SoftwareConfiguration configuration = new SoftwareConfiguration();
+        configuration.setJobWorkers(1);
+        configuration.setJobQueueSize(queueSize);
+        configuration.setJobResultTTL(1);
+        return configuration;
+    }
+
+    /**
+     * Processing writing "result:" followed by the input, waiting for the given latch when the
+     * input starts with "wait", failing when it starts with "fail"
+     */
+    private SoftwareJobManager.JobProcessor processor(CountDownLatch latch) {
+        return (job, inputFile, output) -> {
+            String input = new String(Files.readAllBytes(inputFile.toPath()), UTF_8);
+            processed.add(input);
+            if (input.startsWith("wait"))
+                latch.await(30, TimeUnit.SECONDS);
+            if (input.startsWith("fail"))
+                throw new IllegalStateException("cannot process " + input);
+            output.write(("result:" + input).getBytes(UTF_8));
+            return 42L;
+        };
+    }
+
+    private SoftwareJobManager manager(File directory, int queueSize, SoftwareResultCache cache,
+                                       CountDownLatch latch) throws IOException {
+        return new SoftwareJobManager(configuration(queueSize), directory, cache, processor(latch), clock::get);
+    }
+
+    private static SoftwareJob submit(SoftwareJobManager manager, String input, int priority) throws IOException {
+        return manager.submit(new ByteArrayInputStream(input.getBytes(UTF_8)), SoftwareJob.Type.PDF, false, false,
+            Format.JSON, priority);
+    }
+
+    private static SoftwareJob await(SoftwareJobManager manager, String id, SoftwareJob.Status status)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (true) {
+            SoftwareJob job = manager.getJob(id);
+            if (job != null && job.getStatus() == status)
+                return job;
+            if (System.currentTimeMillis() > deadline)
+                fail("job " + id + " not " + status + ": " + (job == null ? null : job.getStatus()));
+            Thread.sleep(5);
+        }
+    }
+
+    private static String content(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+
+    @Test
+    public void testSubmitAndPoll() throws Exception {
+        File directory = folder.newFolder();
+        CountDownLatch latch = new CountDownLatch(1);
+        SoftwareJobManager manager = manager(directory, 10, null, latch);
+
+        SoftwareJob submitted = submit(manager, "wait-abc", 0);
+        assertThat(submitted.getStatus(), is(SoftwareJob.Status.QUEUED));
+        assertThat(submitted.getSubmitted(), is(1000000L));
+        // MD5 of "wait-abc"
+        assertThat(submitted.getMd5(), is("54170980451884DDAF62A75F4199EB8A"));
+
+        String id = submitted.getId();
+        await(manager, id, SoftwareJob.Status.RUNNING);
+        assertThat(manager.getResult(id), is(nullValue()));
+
+        clock.addAndGet(500);
+        latch.countDown();
+        SoftwareJob done = await(manager, id, SoftwareJob.Status.DONE);
+        assertThat(done.getRuntime(), is(42L));
+        assertThat(done.getStarted(), is(1000000L));
+        assertThat(done.getFinished(), is(1000500L));
+        assertThat(content(manager.getResult(id)), is("result:wait-abc"));
+        assertThat(new File(directory, id + ".input").exists(), is(false));
+        assertThat(new File(directory, id + ".result.tmp").exists(), is(false));
+
+        assertThat(manager.getJob("unknown"), is(nullValue()));
+        assertThat(manager.getResult("unknown"), is(nullValue()));
+    }
+
+    @Test
+    public void testFailedJob() throws Exception {
+        File directory = folder.newFolder();
+        SoftwareJobManager manager = manager(directory, 10, null, new CountDownLatch(0));
+
+        String id = submit(manager, "fail-abc", 0).getId();
+        SoftwareJob failed = await(manager, id, SoftwareJob.Status.FAILED);
+        assertThat(failed.getError(), is("cannot process fail-abc"));
+        assertThat(failed.getRuntime(), is(nullValue()));
+        assertThat(manager.getResult(id), is(nullValue()));
+        assertThat(new File(directory, id + ".result").exists(), is(false));
+        assertThat(new File(directory, id + ".result.tmp").exists(), is(false));
+    }
+
+    @Test
+    public void testQueueBoundUnderConcurrentSubmits() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        SoftwareJobManager manager = manager(folder.newFolder(), 3, null, latch);
+
+        // the running job does not take a place in the queue
+        String running = submit(manager, "wait", 0).getId();
+        await(manager, running, SoftwareJob.Status.RUNNING);
+
+        int submitters = 16;
+        CyclicBarrier barrier = new CyclicBarrier(submitters);
+        ExecutorService executor = Executors.newFixedThreadPool(submitters);
+        List<String> accepted = Collections.synchronizedList(new ArrayList<>());
+        try {
+            List<Future<?>> submits = new ArrayList<>();
+            for (int i = 0; i < submitters; i++) {
+                String input = "job" + i;
+                submits.add(executor.submit(() -> {
+                    barrier.await(30, TimeUnit.SECONDS);
+                    SoftwareJob job = submit(manager, input, 0);
+                    if (job != null)
+                        accepted.add(job.getId());
+                    return null;
+                }));
+            }
+            for (Future<?> submit : submits)
+                submit.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(accepted.size(), is(3));
+
+        latch.countDown();
+        for (String id : accepted)
+            await(manager, id, SoftwareJob.Status.DONE);
+        // the places are released once the jobs run
+        String next = submit(manager, "next", 0).getId();
+        await(manager, next, SoftwareJob.Status.DONE);
+    }
+
+    @Test
+    public void testPriorityThenSubmissionOrder() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        SoftwareJobManager manager = manager(folder.newFolder(), 10, null, latch);
+
+        String running = submit(manager, "wait", 0).getId();
+        await(manager, running, SoftwareJob.Status.RUNNING);
+        List<String> ids = new ArrayList<>();
+        ids.add(submit(manager, "a", 0).getId());
+        ids.add(submit(manager, "b", 5).getId());
+        ids.add(submit(manager, "c", 0).getId());
+        ids.add(submit(manager, "d", 5).getId());
+
+        latch.countDown();
+        for (String id : ids)
+            await(manager, id, SoftwareJob.Status.DONE);
+        assertThat(processed, is(List.of("wait", "b", "d", "a", "c")));
+    }
+
+    @Test
+    public void testDeleteQueuedAndRunningJobs() throws Exception {
+        File directory = folder.newFolder();
+        CountDownLatch latch = new CountDownLatch(1);
+        SoftwareJobManager manager = manager(directory, 10, null, latch);
+
+        String running = submit(manager, "wait", 0).getId();
+        await(manager, running, SoftwareJob.Status.RUNNING);
+        String queued = submit(manager, "queued", 0).getId();
+        String last = submit(manager, "last", 0).getId();
+
+        assertThat(manager.delete(queued), is(true));
+        assertThat(manager.delete(queued), is(false));
+        assertThat(manager.getJob(queued), is(nullValue()));
+        assertThat(manager.delete(running), is(true));
+
+        latch.countDown();
+        await(manager, last, SoftwareJob.Status.DONE);
+        // the deleted queued job is not processed, the files of the deleted running job are removed
+        // once its processing ends
+        assertThat(processed, is(List.of("wait", "last")));
+        String[] files = directory.list();
+        for (String file : files)
+            assertThat(file, file.startsWith(last), is(true));
+    }
+
+    @Test
+    public void testRestoreAfterRestart() throws Exception {
+        File directory = folder.newFolder();
+        ObjectMapper mapper = new ObjectMapper();
+        // states persisted by a previous run
+        String[][] states = {
+            {"queued", "QUEUED", "2", "input"},
+            {"running", "RUNNING", "1", "input"},
+            {"lost", "RUNNING", "3", null},
+            {"done", "DONE", "0", null}
+        };
+        for (String[] state : states) {
+            SoftwareJob job = new SoftwareJob();
+            job.setId(state[0]);
+            job.setType(SoftwareJob.Type.PDF);
+            job.setFormat(Format.JSON);
+            job.setStatus(SoftwareJob.Status.valueOf(state[1]));
+            job.setSubmitted(Long.parseLong(state[2]));
+            if (job.getStatus() == SoftwareJob.Status.RUNNING) {
+                job.setStage("software-labeling");
+                job.setStarted(5L);
+            }
+            if (job.getStatus() == SoftwareJob.Status.DONE) {
+                job.setFinished(clock.get());
+                Files.write(new File(directory, state[0] + ".result").toPath(), "result:done".getBytes(UTF_8));
+            }
+            mapper.writeValue(new File(directory, state[0] + ".json"), job);
+            if (state[3] != null)
+                Files.write(new File(directory, state[0] + ".input").toPath(), state[0].getBytes(UTF_8));
+        }
+
+        SoftwareJobManager manager = manager(directory, 10, null, new CountDownLatch(0));
+        await(manager, "queued", SoftwareJob.Status.DONE);
+        await(manager, "running", SoftwareJob.Status.DONE);
+        // queued again in submission order
+        assertThat(processed, is(List.of("running", "queued")));
+        assertThat(content(manager.getResult("running")), is("result:running"));
+
+        SoftwareJob lost = manager.getJob("lost");
+        assertThat(lost.getStatus(), is(SoftwareJob.Status.FAILED));
+        assertThat(lost.getError(), is("The input of the job has been lost"));
+        assertThat(content(manager.getResult("done")), is("result:done"));
+
+        // the new states are persisted
+        SoftwareJob persisted = mapper.readValue(new File(directory, "running.json"), SoftwareJob.class);
+        assertThat(persisted.getStatus(), is(SoftwareJob.Status.DONE));
+        assertThat(persisted.getRuntime(), is(42L));
+        persisted = mapper.readValue(new File(directory, "lost.json"), SoftwareJob.class);
+        assertThat(persisted.getStatus(), is(SoftwareJob.Status.FAILED));
+    }
+
+    @Test
+    public void testResultTimeToLive() throws Exception {
+        File directory = folder.newFolder();
+        SoftwareJobManager manager = manager(directory, 10, null, new CountDownLatch(0));
+        String id = submit(manager, "abc", 0).getId();
+        await(manager, id, SoftwareJob.Status.DONE);
+
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(59));
+        manager.removeExpiredJobs();
+        assertThat(manager.getJob(id).getStatus(), is(SoftwareJob.Status.DONE));
+
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(2));
+        manager.removeExpiredJobs();
+        assertThat(manager.getJob(id), is(nullValue()));
+        assertThat(manager.getResult(id), is(nullValue()));
+        assertThat(directory.list().length, is(0));
+    }
+
+    @Test
+    public void testResultCachedFromTheResultFile() throws Exception {
+        SoftwareResultCache cache = new SoftwareResultCache("test", 1024 * 1024, null, 0, 1024 * 1024);
+        AtomicInteger calls = new AtomicInteger();
+        SoftwareJobManager.JobProcessor counting = processor(new CountDownLatch(0));
+        SoftwareJobManager manager = new SoftwareJobManager(configuration(10), folder.newFolder(), cache,
+            (job, inputFile, output) -> {
+                calls.incrementAndGet();
+                return counting.process(job, inputFile, output);
+            }, clock::get);
+
+        String first = submit(manager, "same", 0).getId();
+        assertThat(await(manager, first, SoftwareJob.Status.DONE).getRuntime(), is(42L));
+        String second = submit(manager, "same", 0).getId();
+        // the second result comes from the cache, without runtime as nothing was processed
+        assertThat(await(manager, second, SoftwareJob.Status.DONE).getRuntime(), is(nullValue()));
+        assertThat(content(manager.getResult(second)), is("result:same"));
+        assertThat(calls.get(), is(1));
+    }
+}